@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * Per-tile activity for the word kernel. The grid is cut into tiles one word
+ * (64 columns) wide and TILE_ROWS tall. A tile can only change next generation
+ * if it or one of its eight neighbours changed in the last one, so every other
+ * tile is carried forward without being computed.
+ */
+public class ActiveTiles {
+
+    public static final int TILE_COLS = 64;
+    public static final int TILE_ROWS = 32;
+
+    private final int rows;
+    private final int tilesX;
+    private final int tilesY;
+
+    /** Tiles that changed in the last generation. */
+    private final boolean[] changed;
+    /** Tiles to compute in the next generation. */
+    private final boolean[] active;
+    private final long[] population;
+    private boolean invalid = true;
+    private int activeCount;
+
+    public ActiveTiles(int rows, int cols) {
+        this.rows = rows;
+        this.tilesX = (cols + TILE_COLS - 1) / TILE_COLS;
+        this.tilesY = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        this.changed = new boolean[tilesX * tilesY];
+        this.active = new boolean[tilesX * tilesY];
+        this.population = new long[tilesX * tilesY];
+    }
+
+    public int getTilesX() { return tilesX; }
+    public int getTilesY() { return tilesY; }
+    public int getTileCount() { return tilesX * tilesY; }
+
+    /** Tiles computed in the last generation. */
+    public int getActiveCount() { return activeCount; }
+
+    public int firstRow(int ty) { return ty * TILE_ROWS; }
+    public int endRow(int ty) { return Math.min(rows, (ty + 1) * TILE_ROWS); }
+
+    /** Forces every tile to be computed next generation, e.g. after the grid was edited. */
+    public void invalidate() {
+        invalid = true;
+    }
+
+    /** Works out the active set from the tiles that changed last generation. */
+    public void prepare() {
+        if (invalid) {
+            Arrays.fill(active, true);
+            activeCount = active.length;
+            return;
+        }
+        Arrays.fill(active, false);
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!changed[ty * tilesX + tx]) continue;
+                // The grid is a torus, so the tile ring wraps too
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ny = (ty + dy + tilesY) % tilesY;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = (tx + dx + tilesX) % tilesX;
+                        active[ny * tilesX + nx] = true;
+                    }
+                }
+            }
+        }
+        int count = 0;
+        for (boolean a : active) if (a) count++;
+        activeCount = count;
+    }
+
+    public boolean isActive(int tx, int ty) {
+        return active[ty * tilesX + tx];
+    }
+
+    public boolean isChanged(int tx, int ty) {
+        return changed[ty * tilesX + tx];
+    }
+
+    /** Records the outcome of a tile; inactive tiles must be recorded as unchanged. */
+    public void record(int tx, int ty, boolean tileChanged, long tilePopulation) {
+        int t = ty * tilesX + tx;
+        changed[t] = tileChanged;
+        population[t] = tilePopulation;
+    }
+
+    public void markUnchanged(int tx, int ty) {
+        changed[ty * tilesX + tx] = false;
+    }
+
+    /** Ends a generation; the tile populations are now complete. */
+    public void finish() {
+        invalid = false;
+    }
+
+    public long totalPopulation() {
+        long total = 0;
+        for (long p : population) total += p;
+        return total;
+    }
+}
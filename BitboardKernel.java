@@ -0,0 +1,184 @@
+/**
+ * Word-parallel Life-like step over a packed GridStore.
+ *
+ * Cell x of a row lives in byte x >> 3, bit x & 7, so eight bytes read
+ * little-endian give a long holding cell x at bit x & 63 of word x >> 6.
+ * The neighbour count of 64 cells is built at once with bitwise full adders
+ * over the three rows around them; the grid wraps like a torus, exactly as
+ * countNeighbors does.
+ *
+ * One instance holds the row scratch buffers, so each worker thread needs its own.
+ */
+public final class BitboardKernel {
+
+    private final int cols;
+    private final int words;
+    private final long lastMask;
+    private final int lastBit;
+
+    // Rolling rows of a span: index k holds word startWord + k - 1, with one guard word on each side
+    private long[] up;
+    private long[] mid;
+    private long[] down;
+    private final long[] out;
+
+    /** Per word of the last span: whether it changed, its live cells and, if hashing, its GridHash. */
+    private final boolean[] wordChanged;
+    private final int[] wordPopulation;
+    private final long[] wordHash;
+    private boolean hashing;
+
+    public BitboardKernel(int cols) {
+        this.cols = cols;
+        this.words = wordsPerRow(cols);
+        this.lastBit = (cols - 1) & 63;
+        this.lastMask = (cols & 63) == 0 ? -1L : (1L << (cols & 63)) - 1;
+        this.up = new long[words + 2];
+        this.mid = new long[words + 2];
+        this.down = new long[words + 2];
+        this.out = new long[words];
+        this.wordChanged = new boolean[words];
+        this.wordPopulation = new int[words];
+        this.wordHash = new long[words];
+    }
+
+    /** Hashes the words written as they are computed, while they are still in registers. */
+    public void setHashing(boolean enabled) { hashing = enabled; }
+
+    /** Number of 64-cell words needed for a row of cols cells. */
+    public static int wordsPerRow(int cols) {
+        return (cols + 63) >>> 6;
+    }
+
+    /** Word i of row y, bits past cols cleared. */
+    private long readWord(GridStore grid, int y, int i) {
+        long w = grid.readWord(y, i);
+        return i == words - 1 ? w & lastMask : w;
+    }
+
+    /**
+     * Computes rows [startRow, endRow) of the next generation of src into dst.
+     * src is only read, so several kernels may work on disjoint bands at once.
+     *
+     * @param rule the compiled Life-like rule
+     * @return number of live cells in the rows written
+     */
+    public long stepRows(GridStore src, GridStore dst, int startRow, int endRow, LifeRule rule) {
+        return stepSpan(src, dst, startRow, endRow, 0, words, rule);
+    }
+
+    /**
+     * Computes words [startWord, endWord) of rows [startRow, endRow) into dst, reading
+     * only the words around them, so untouched parts of the grid cost nothing.
+     * Afterwards wordChanged/wordPopulation describe each word column of the span.
+     *
+     * @return number of live cells written
+     */
+    public long stepSpan(GridStore src, GridStore dst, int startRow, int endRow,
+                         int startWord, int endWord, LifeRule rule) {
+        for (int i = startWord; i < endWord; i++) {
+            wordChanged[i] = false;
+            wordPopulation[i] = 0;
+            wordHash[i] = 0;
+        }
+        if (startRow >= endRow || startWord >= endWord) return 0;
+
+        int rows = src.getRows();
+        loadSpan(src, (startRow - 1 + rows) % rows, startWord, endWord, up);
+        loadSpan(src, startRow, startWord, endWord, mid);
+        long population = 0;
+
+        for (int y = startRow; y < endRow; y++) {
+            loadSpan(src, (y + 1) % rows, startWord, endWord, down);
+            population += stepSpanRow(y, startWord, endWord, rule);
+            for (int i = startWord; i < endWord; i++) {
+                dst.writeWord(y, i, out[i]);
+            }
+
+            long[] t = up;
+            up = mid;
+            mid = down;
+            down = t;
+        }
+        return population;
+    }
+
+    public boolean wordChanged(int i) { return wordChanged[i]; }
+    public int wordPopulation(int i) { return wordPopulation[i]; }
+    /** The GridHash of a word column of the last span, when hashing. */
+    public long wordHash(int i) { return wordHash[i]; }
+
+    /**
+     * Loads words [startWord, endWord) into buf[1..n] plus guard words:
+     * buf[0] carries the cell west of the span in bit 63, buf[n + 1] the cell
+     * east of it in bit 0. Both wrap around the torus.
+     */
+    private void loadSpan(GridStore grid, int y, int startWord, int endWord, long[] buf) {
+        int n = endWord - startWord;
+        for (int k = 0; k < n; k++) {
+            buf[k + 1] = readWord(grid, y, startWord + k);
+        }
+        buf[0] = startWord > 0
+                ? readWord(grid, y, startWord - 1)
+                : ((readWord(grid, y, words - 1) >>> lastBit) & 1) << 63;
+        buf[n + 1] = endWord < words ? readWord(grid, y, endWord) : readWord(grid, y, 0) & 1;
+    }
+
+    private long stepSpanRow(int y, int startWord, int endWord, LifeRule rule) {
+        final int last = words - 1;
+        long population = 0;
+
+        for (int i = startWord, k = 1; i < endWord; i++, k++) {
+            long u = up[k];
+            long m = mid[k];
+            long d = down[k];
+
+            // West neighbours come from the next lower bit, east from the next higher one;
+            // the last word's east neighbour wraps in at its last valid column
+            int eastShift = (i == last) ? lastBit : 63;
+            long uw = (u << 1) | (up[k - 1] >>> 63);
+            long mw = (m << 1) | (mid[k - 1] >>> 63);
+            long dw = (d << 1) | (down[k - 1] >>> 63);
+            long ue = (u >>> 1) | (up[k + 1] << eastShift);
+            long me = (m >>> 1) | (mid[k + 1] << eastShift);
+            long de = (d >>> 1) | (down[k + 1] << eastShift);
+
+            long next = evolve(uw, u, ue, mw, m, me, dw, d, de, rule);
+            if (i == last) next &= lastMask;
+
+            out[i] = next;
+            int count = Long.bitCount(next);
+            population += count;
+            wordPopulation[i] += count;
+            wordChanged[i] |= next != m;
+            if (hashing) wordHash[i] ^= GridHash.word(y, i, words, next);
+        }
+        return population;
+    }
+
+    /** Next state of 64 cells from their eight neighbour words and themselves (m). */
+    static long evolve(long uw, long u, long ue, long mw, long m, long me,
+                       long dw, long d, long de, LifeRule rule) {
+        // Full adders over the upper and lower triples, half adder over the middle pair
+        long us = uw ^ u ^ ue;
+        long uc = (uw & u) | (ue & (uw ^ u));
+        long ds = dw ^ d ^ de;
+        long dc = (dw & d) | (de & (dw ^ d));
+        long ms = mw ^ me;
+        long mc = mw & me;
+
+        // Weight 1
+        long s0 = us ^ ds ^ ms;
+        long c1 = (us & ds) | (ms & (us ^ ds));
+        // Weight 2: uc + dc + mc + c1
+        long x = uc ^ dc ^ mc;
+        long y4 = (uc & dc) | (mc & (uc ^ dc));
+        long s1 = x ^ c1;
+        long z4 = x & c1;
+        // Weight 4 and 8
+        long s2 = y4 ^ z4;
+        long s3 = y4 & z4;
+
+        return rule.apply(s0, s1, s2, s3, m);
+    }
+}
@@ -0,0 +1,340 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs many collision setups at once, each on its own core with an unbounded plane of
+ * its own, until it settles. A setup is placed MARGIN cells inside a window; the window
+ * is watched with a CycleDetector, and once it has gone round the same cycle twice the
+ * debris left in it is static or periodic and every ship has flown out of it. Once is
+ * not enough: the last cells of a ship crossing the border can stay put for a
+ * generation, so the window repeats while the ship is still on its way out. The ships
+ * are then counted by a census of the whole plane, so nothing that left is lost to
+ * wrapping around.
+ *
+ * Setups come from files (text grids like Colliders/*.txt, RLE or .cells) or from a
+ * sweep of two-glider collisions over lanes and delays.
+ */
+public final class CollisionBatch {
+
+    /** Dead cells around a setup in the window that is watched for settling. */
+    public static final int MARGIN = 32;
+    /** Cells the gliders of a sweep travel before they meet. */
+    private static final int SWEEP_DISTANCE = 40;
+    private static final String GLIDER = "bo$2bo$3o!";
+
+    /** A collision to run: a name and its cells, in a grid the size of the setup. */
+    public static final class Setup {
+        private final String name;
+        private final GridStore cells;
+
+        public Setup(String name, GridStore cells) {
+            this.name = name;
+            this.cells = cells;
+        }
+
+        public String getName() { return name; }
+        public GridStore getCells() { return cells; }
+    }
+
+    /** How a collision ended. */
+    public static final class Result {
+        /** Column names of toRecord, comma separated. */
+        public static final String HEADER = "collision,population,settled,period,generations,emitted,ships";
+
+        private final String name;
+        private final long population;
+        private final long settled;
+        private final int period;
+        private final long generations;
+        private final long emitted;
+        private final Map<String, Long> ships;
+
+        Result(String name, long population, long settled, int period, long generations, long emitted,
+               Map<String, Long> ships) {
+            this.name = name;
+            this.population = population;
+            this.settled = settled;
+            this.period = period;
+            this.generations = generations;
+            this.emitted = emitted;
+            this.ships = ships;
+        }
+
+        public String getName() { return name; }
+        /** Live cells on the whole plane at the end, ships included. */
+        public long getPopulation() { return population; }
+        /** True if the window settled within the generation limit. */
+        public boolean isSettled() { return period != 0; }
+        /** First generation of the debris' cycle, or -1 if it did not settle. */
+        public long getSettledGeneration() { return settled; }
+        /** Period of the debris, 1 when static; 0 if it did not settle. */
+        public int getPeriod() { return period; }
+        public long getGenerations() { return generations; }
+        /** Ships flying away, or -1 when the plane grew too large to count them. */
+        public long getEmitted() { return emitted; }
+        /** The ships by catalog name. */
+        public Map<String, Long> getShips() { return ships; }
+
+        /** One line: the HEADER columns, ships as name:count separated by ';'. */
+        public String toRecord() {
+            StringBuilder record = new StringBuilder(name.replace(',', ' ')).append(',').append(population).append(',')
+                    .append(settled).append(',').append(period).append(',').append(generations).append(',').append(emitted)
+                    .append(',');
+            String separator = "";
+            for (Map.Entry<String, Long> e : ships.entrySet()) {
+                record.append(separator).append(e.getKey()).append(':').append(e.getValue());
+                separator = ";";
+            }
+            return record.toString();
+        }
+    }
+
+    private final String variant;
+    private final LifeRule rule;
+    private final PatternCatalog catalog;
+    private final long maxGenerations;
+    private final int maxPeriod;
+    private final int threads;
+
+    /**
+     * @param variant         Life-like rule in B/S form
+     * @param maxGenerations  generations after which a collision counts as unsettled
+     * @param maxPeriod       longest debris period recognised
+     * @param threads         collisions run at once
+     */
+    public CollisionBatch(String variant, long maxGenerations, int maxPeriod, int threads) {
+        this.variant = variant;
+        this.rule = LifeRule.parse(variant);
+        if (rule.birthOnEmpty()) throw new IllegalArgumentException("Collisions need a rule without B0.");
+        // Built once and only read afterwards, so every run shares it
+        this.catalog = PatternCatalog.builtIn(rule);
+        this.maxGenerations = maxGenerations;
+        this.maxPeriod = maxPeriod;
+        this.threads = Math.max(1, threads);
+    }
+
+    public PatternCatalog getCatalog() { return catalog; }
+
+    /**
+     * Runs every setup, threads at a time, and hands the results to sink in the order
+     * of the setups, each as soon as it and the ones before it are done.
+     */
+    public void run(List<Setup> setups, Consumer<Result> sink) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "collision");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Result>> results = new ArrayList<>(setups.size());
+            for (Setup setup : setups) results.add(pool.submit(() -> run(setup)));
+            for (Future<Result> result : results) {
+                try {
+                    sink.accept(result.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Runs one setup on the calling thread. */
+    public Result run(Setup setup) throws InterruptedException {
+        GridStore cells = setup.getCells();
+        int rows = cells.getRows() + 2 * MARGIN;
+        int cols = cells.getCols() + 2 * MARGIN;
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, variant, 1)) {
+            int words = cells.getWords();
+            for (int y = 0; y < cells.getRows(); y++) {
+                for (int i = 0; i < words; i++) {
+                    for (long w = cells.readWord(y, i); w != 0; w &= w - 1) {
+                        engine.setBit(MARGIN + (i << 6) + Long.numberOfTrailingZeros(w), MARGIN + y, true);
+                    }
+                }
+            }
+            engine.setUnbounded(true);
+
+            // The engine only watches tori, so the window is watched here
+            CycleDetector cycles = new CycleDetector(maxPeriod);
+            cycles.add(0, engine.getGridHash());
+            long start = -1;
+            int period = 0;
+            boolean settled = false;
+            while (engine.getGenerationCount() < maxGenerations) {
+                engine.step();
+                long generation = engine.getGenerationCount();
+                long hash = engine.getGridHash();
+                if (!cycles.add(generation, hash)) continue;
+                // The second time round starts where the first ended
+                if (cycles.getPeriod() == period && cycles.getStartGeneration() == start + period) {
+                    settled = true;
+                    break;
+                }
+                start = cycles.getStartGeneration();
+                period = cycles.getPeriod();
+                cycles.reset();
+                cycles.add(generation, hash);
+            }
+
+            Map<String, Long> ships = new LinkedHashMap<>();
+            long emitted = countShips(engine.getUniverse(), ships);
+            return new Result(setup.getName(), engine.getAliveCount(), settled ? start : -1, settled ? period : 0,
+                    engine.getGenerationCount(), emitted, ships);
+        }
+    }
+
+    /** Censuses the whole plane into ships by name; -1 when it is too large to hold. */
+    private long countShips(SparseUniverse universe, Map<String, Long> ships) throws InterruptedException {
+        long[] box = universe.bounds();
+        if (box == null) return 0;
+        long width = box[2] - box[0] + 1;
+        long height = box[3] - box[1] + 1;
+        if (width > LifeEngine.MAX_SIZE || height > LifeEngine.MAX_SIZE) return -1;
+        GridStore plane = new HeapGridStore((int) height, (int) width);
+        universe.store(plane, box[0], box[1]);
+        ObjectCensus.Result census = new ObjectCensus(catalog, null).take(plane, false);
+        long emitted = 0;
+        for (Map.Entry<String, Long> e : census.getKnown().entrySet()) {
+            if (catalog.isShip(e.getKey())) {
+                ships.put(e.getKey(), e.getValue());
+                emitted += e.getValue();
+            }
+        }
+        return emitted;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Setups
+
+    /**
+     * Reads a setup file, or every setup file of a directory in name order: text grids,
+     * and RLE or .cells patterns.
+     */
+    public static List<Setup> load(Path path) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> list = Files.list(path)) {
+                list.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+        } else {
+            files.add(path);
+        }
+        List<Setup> setups = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            GridStore cells;
+            if (PatternFile.isPatternFile(file)) {
+                PatternFile.Info info = PatternFile.readInfo(file);
+                if (info.getWidth() == 0) throw new IOException(file + ": pattern is empty.");
+                cells = new HeapGridStore(info.getHeight(), info.getWidth());
+                PatternFile.read(file, cells, 0, 0);
+            } else {
+                try {
+                    cells = GridText.read(file, HeapGridStore.FACTORY);
+                } catch (IOException e) {
+                    throw new IOException(file + ": " + e.getMessage(), e);
+                }
+            }
+            if (cells.getRows() + 2 * MARGIN > LifeEngine.MAX_SIZE || cells.getCols() + 2 * MARGIN > LifeEngine.MAX_SIZE) {
+                throw new IOException(file + ": setup is too large.");
+            }
+            setups.add(new Setup(name, cells));
+        }
+        return setups;
+    }
+
+    /**
+     * Every collision of two gliders on lanes -lanes..lanes apart, with the second one
+     * 0..delays - 1 generations behind: head-on, and at right angles with the second one
+     * coming in from the side.
+     */
+    public static List<Setup> sweep(LifeRule rule, int lanes, int delays) {
+        int[][] phases = gliderPhases(rule);
+        List<Setup> setups = new ArrayList<>();
+        int back = (delays + 2) / 4; // Cells the second glider starts back at the longest delay
+        int top = 2 + back;
+        int rows = SWEEP_DISTANCE + 2 * back + 8;
+        int cols = SWEEP_DISTANCE + 2 * lanes + back + 8;
+        for (int kind = 0; kind < 2; kind++) {
+            boolean headOn = kind == 0;
+            for (int lane = -lanes; lane <= lanes; lane++) {
+                for (int delay = 0; delay < delays; delay++) {
+                    GridStore cells = new HeapGridStore(rows, cols);
+                    // The first glider heads south-east on the diagonal x - y = lanes
+                    place(cells, phases[0], lanes + 2, top, 1, 1);
+                    int m = (delay + 3) / 4;
+                    int[] phase = phases[(4 * m - delay) & 3];
+                    if (headOn) {
+                        // Heading north-west, m cells back along its way
+                        place(cells, phase, lanes + 2 + lane + SWEEP_DISTANCE + m, top + SWEEP_DISTANCE + m, -1, -1);
+                    } else {
+                        // Heading south-west from the same row
+                        place(cells, phase, lanes + 2 + lane + SWEEP_DISTANCE + m, top - m, -1, 1);
+                    }
+                    setups.add(new Setup(String.format(Locale.ROOT, "%s lane=%d delay=%d",
+                            headOn ? "head-on" : "right-angle", lane, delay), cells));
+                }
+            }
+        }
+        return setups;
+    }
+
+    /** The glider's first four generations as x, y pairs from its 3x3 box, heading south-east. */
+    private static int[][] gliderPhases(LifeRule rule) {
+        int size = 16;
+        GridStore a = new HeapGridStore(size, size);
+        GridStore b = new HeapGridStore(size, size);
+        try {
+            PatternFile.readRle(new ByteArrayInputStream(GLIDER.getBytes(StandardCharsets.US_ASCII)), a, 4, 4);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        BitboardKernel kernel = new BitboardKernel(size);
+        int[][] phases = new int[4][];
+        for (int p = 0; p < 4; p++) {
+            List<Integer> xy = new ArrayList<>();
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (a.get(x, y)) {
+                        xy.add(x - 4);
+                        xy.add(y - 4);
+                    }
+                }
+            }
+            phases[p] = xy.stream().mapToInt(Integer::intValue).toArray();
+            kernel.stepRows(a, b, 0, size, rule);
+            GridStore t = a;
+            a = b;
+            b = t;
+        }
+        return phases;
+    }
+
+    /** Sets a glider phase with its box at (x, y), mirrored to head the given way. */
+    private static void place(GridStore cells, int[] phase, int x, int y, int dx, int dy) {
+        for (int k = 0; k < phase.length; k += 2) {
+            int cx = dx > 0 ? phase[k] : 2 - phase[k];
+            int cy = dy > 0 ? phase[k + 1] : 2 - phase[k + 1];
+            cells.set(x + cx, y + cy, true);
+        }
+    }
+}
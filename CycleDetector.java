@@ -0,0 +1,90 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spots a grid coming back to an earlier state, from the GridHash of each generation.
+ * The hashes of the last maxPeriod generations are kept with the generation each was
+ * seen at; when a hash turns up again the grid has repeated itself, and since every
+ * generation is checked as it comes, the earlier sighting is where the cycle starts.
+ * A static grid is period 1. Periods longer than maxPeriod go unnoticed.
+ *
+ * Generations must be added one after another; a gap starts the table afresh. Once a
+ * cycle is found the detector keeps it and ignores further generations until reset.
+ */
+public final class CycleDetector {
+
+    private final int maxPeriod;
+    private final long[] ringHashes;  // The last maxPeriod hashes, oldest at head
+    private final Map<Long, Long> seen;
+    private int size;
+    private int head;
+    private long lastGeneration;
+
+    private volatile int period;      // 0 until a cycle is found
+    private volatile long start;
+
+    public CycleDetector(int maxPeriod) {
+        if (maxPeriod < 1) throw new IllegalArgumentException("The longest period must be at least 1.");
+        this.maxPeriod = maxPeriod;
+        this.ringHashes = new long[maxPeriod];
+        this.seen = new HashMap<>(Math.min(maxPeriod, 1 << 16) * 2);
+    }
+
+    public int getMaxPeriod() { return maxPeriod; }
+
+    /** Forgets every generation and any cycle found. */
+    public void reset() {
+        seen.clear();
+        size = 0;
+        head = 0;
+        period = 0;
+        start = 0;
+    }
+
+    /** True if no generation has been added since the last reset. */
+    public boolean isEmpty() { return size == 0 && period == 0; }
+
+    /**
+     * Adds the hash of a generation; true if this generation repeats one of the last
+     * maxPeriod, which only happens once between resets.
+     */
+    public boolean add(long generation, long hash) {
+        if (period != 0) return false;
+        if (size > 0 && generation != lastGeneration + 1) reset();
+        lastGeneration = generation;
+        Long earlier = seen.get(hash);
+        if (earlier != null) {
+            start = earlier;
+            period = (int) (generation - earlier);
+            return true;
+        }
+        int slot;
+        if (size == maxPeriod) {
+            slot = head;
+            seen.remove(ringHashes[slot]);
+            head = head + 1 == maxPeriod ? 0 : head + 1;
+        } else {
+            slot = head + size < maxPeriod ? head + size : head + size - maxPeriod;
+            size++;
+        }
+        ringHashes[slot] = hash;
+        seen.put(hash, generation);
+        return false;
+    }
+
+    /** True once a cycle has been found. */
+    public boolean hasCycle() { return period != 0; }
+
+    /** The period of the cycle found, 1 for a static grid; 0 while none has been. */
+    public int getPeriod() { return period; }
+
+    /** The first generation of the cycle found: from there on the grid repeats every period generations. */
+    public long getStartGeneration() { return start; }
+
+    /** Describes the outcome, e.g. "static from generation 812" or "period 2 from generation 97". */
+    public String describe() {
+        int p = period;
+        if (p == 0) return "no cycle up to period " + maxPeriod;
+        return (p == 1 ? "static" : "period " + p) + " from generation " + start;
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Live-cell counts of square blocks at every power-of-two size from 8x8 up to one
+ * block covering the whole grid, for drawing zoomed-out views: a screen pixel that
+ * covers a 2^level block shows count(level, bx, by) without touching the cells.
+ *
+ * Level MIN_LEVEL is counted from the grid, eight rows of a word at a time with a
+ * byte-wise popcount; every level above sums four blocks of the one below. Only the
+ * blocks over tiles marked as changed are counted again on refresh, so keeping the
+ * pyramid current costs about as much as the activity on the board. Tiles have the
+ * same size as ActiveTiles, so the engine can pass on what the step found.
+ */
+public final class DensityPyramid {
+
+    /** The finest level kept: 8x8 blocks, one byte of eight grid rows. */
+    public static final int MIN_LEVEL = 3;
+
+    private static final int TILE_COLS = ActiveTiles.TILE_COLS;
+    private static final int TILE_ROWS = ActiveTiles.TILE_ROWS;
+    private static final long ONES = 0x5555_5555_5555_5555L;
+    private static final long TWOS = 0x3333_3333_3333_3333L;
+    private static final long FOURS = 0x0F0F_0F0F_0F0F_0F0FL;
+
+    private final int rows;
+    private final int cols;
+    private final int topLevel;
+    private final int[][] counts;   // Indexed by level; null below MIN_LEVEL
+    private final int[] widths;     // Blocks per row of each level
+    private final int[] heights;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final boolean[] dirty;
+    private boolean allDirty = true;
+
+    // The grid being counted, read by the team jobs
+    private GridStore grid;
+    private final StepTeam.Job countJob = this::countUnit;
+
+    public DensityPyramid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int top = MIN_LEVEL;
+        while ((1 << top) < Math.max(rows, cols)) top++;
+        this.topLevel = top;
+        this.counts = new int[top + 1][];
+        this.widths = new int[top + 1];
+        this.heights = new int[top + 1];
+        for (int level = MIN_LEVEL; level <= top; level++) {
+            widths[level] = ((cols - 1) >> level) + 1;
+            heights[level] = ((rows - 1) >> level) + 1;
+            counts[level] = new int[widths[level] * heights[level]];
+        }
+        this.tilesX = (cols + TILE_COLS - 1) / TILE_COLS;
+        this.tilesY = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        this.dirty = new boolean[tilesX * tilesY];
+    }
+
+    public int getTopLevel() { return topLevel; }
+
+    /** Live cells in block (bx, by) of the given level, MIN_LEVEL to getTopLevel(). */
+    public int count(int level, int bx, int by) {
+        return counts[level][by * widths[level] + bx];
+    }
+
+    /** Recounts everything on the next refresh, e.g. after the grid was replaced. */
+    public void markAll() {
+        allDirty = true;
+    }
+
+    /** Recounts the tile (ActiveTiles coordinates) on the next refresh. */
+    public void markTile(int tx, int ty) {
+        dirty[ty * tilesX + tx] = true;
+    }
+
+    /** Recounts the tile holding cell (x, y) on the next refresh. */
+    public void markCell(int x, int y) {
+        markTile(x / TILE_COLS, y / TILE_ROWS);
+    }
+
+    /**
+     * Brings the counts up to date with the grid.
+     *
+     * @param team  workers to count the finest level on after markAll, or null for the caller's thread
+     */
+    public void refresh(GridStore grid, StepTeam team) throws InterruptedException {
+        if (allDirty) {
+            this.grid = grid;
+            int units = heights[MIN_LEVEL];
+            try {
+                if (team != null) {
+                    team.run(units, countJob);
+                } else {
+                    for (int u = 0; u < units; u++) countUnit(0, u);
+                }
+            } finally {
+                this.grid = null;
+            }
+            for (int level = MIN_LEVEL + 1; level <= topLevel; level++) {
+                sum(level, 0, widths[level], 0, heights[level]);
+            }
+            allDirty = false;
+            Arrays.fill(dirty, false);
+            return;
+        }
+
+        // A tile is a whole number of finest blocks: 8 across and 4 down
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!dirty[ty * tilesX + tx]) continue;
+                int by0 = ty * TILE_ROWS >> MIN_LEVEL;
+                int by1 = Math.min(heights[MIN_LEVEL], (ty + 1) * TILE_ROWS >> MIN_LEVEL);
+                for (int by = by0; by < by1; by++) countBlocks(grid, by, tx);
+            }
+        }
+        for (int level = MIN_LEVEL + 1; level <= topLevel; level++) {
+            for (int ty = 0; ty < tilesY; ty++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    if (!dirty[ty * tilesX + tx]) continue;
+                    int bx0 = tx * TILE_COLS >> level;
+                    int bx1 = Math.min(widths[level], (((tx + 1) * TILE_COLS - 1) >> level) + 1);
+                    int by0 = ty * TILE_ROWS >> level;
+                    int by1 = Math.min(heights[level], (((ty + 1) * TILE_ROWS - 1) >> level) + 1);
+                    sum(level, bx0, bx1, by0, by1);
+                }
+            }
+        }
+        Arrays.fill(dirty, false);
+    }
+
+    private void countUnit(int worker, int by) {
+        int words = grid.getWords();
+        for (int i = 0; i < words; i++) countBlocks(grid, by, i);
+    }
+
+    /** Counts the eight finest blocks under word i of block row by. */
+    private void countBlocks(GridStore grid, int by, int i) {
+        int y0 = by << MIN_LEVEL;
+        int y1 = Math.min(rows, y0 + (1 << MIN_LEVEL));
+        long bytes = 0; // Byte k: live cells of block 8i + k, at most 64
+        for (int y = y0; y < y1; y++) {
+            long w = grid.readWord(y, i);
+            w -= (w >>> 1) & ONES;
+            w = (w & TWOS) + ((w >>> 2) & TWOS);
+            bytes += (w + (w >>> 4)) & FOURS;
+        }
+        int[] level = counts[MIN_LEVEL];
+        int width = widths[MIN_LEVEL];
+        int first = i << 3;
+        int end = Math.min(width, first + 8);
+        for (int bx = first; bx < end; bx++) {
+            level[by * width + bx] = (int) (bytes >>> ((bx - first) << 3)) & 0xFF;
+        }
+    }
+
+    /** Recomputes blocks [bx0, bx1) x [by0, by1) of a level from the level below. */
+    private void sum(int level, int bx0, int bx1, int by0, int by1) {
+        int[] below = counts[level - 1];
+        int belowWidth = widths[level - 1];
+        int belowHeight = heights[level - 1];
+        int[] here = counts[level];
+        int width = widths[level];
+        for (int by = by0; by < by1; by++) {
+            int cy = by << 1;
+            boolean two = cy + 1 < belowHeight;
+            for (int bx = bx0; bx < bx1; bx++) {
+                int cx = bx << 1;
+                int at = cy * belowWidth + cx;
+                int total = below[at];
+                if (cx + 1 < belowWidth) total += below[at + 1];
+                if (two) {
+                    total += below[at + belowWidth];
+                    if (cx + 1 < belowWidth) total += below[at + belowWidth + 1];
+                }
+                here[by * width + bx] = total;
+            }
+        }
+    }
+}
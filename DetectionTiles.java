@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Pattern matches kept between generations, per tile, so detection only looks again
+ * where the board moved. Tiles are one word (64 columns) wide and TILE_ROWS tall and
+ * own the matches whose key cell they hold.
+ *
+ * A match depends only on cells within the scanner's reach of its key cell, in N and,
+ * for evolving patterns, N-1. Between two consecutive generations those cells are
+ * unchanged unless N-1 xor N or N-2 xor N-1 is set nearby, so only tiles near a
+ * change in either are scanned again; the rest keep their matches and their counts.
+ * Highlights are redrawn the same way: the cells a rescanned tile could have marked
+ * are cleared and marked again from the matches of every tile that reaches them. Each
+ * pattern marks its own layer of the highlights.
+ *
+ * Anything but the next generation of the frame seen last (an edit, a jump, a new
+ * size) makes the next update scan every tile.
+ *
+ * The per-tile state stays on the heap whatever the grid's storage: five flags and a
+ * reference per 64x16 tile, some 9 bytes against the tile's 128 bytes of cells, plus
+ * a match list only for the tiles that hold matches.
+ */
+public final class DetectionTiles {
+
+    public static final int TILE_COLS = 64;
+    public static final int TILE_ROWS = 16;
+
+    private final PatternScanner scanner;
+    private final int[] layers;   // Highlight layer of each of the scanner's patterns
+    private final int rows;
+    private final int tilesX;
+    private final int tilesY;
+    private final int reachX;   // Scanner reach in tiles
+    private final int reachY;
+
+    private final PatternScanner.Matches[] matches; // Null for tiles without matches
+    private final PatternScanner.Matches[] workerScratch;
+    private final long[] totals;
+    private final long[][] workerDelta;
+    /** Tiles where N-1 and N differ, for this update and the one before. */
+    private boolean[] changed;
+    private boolean[] changedBefore;
+    private final boolean[] rescan;
+    private final boolean[] repaint;
+    private final boolean[] remark;
+    private int rescanCount;
+
+    private boolean valid;
+    private long generation;
+
+    // The frame being updated, read by the team jobs
+    private GridStore previous;
+    private GridStore current;
+    private HighlightLayers highlights;
+    private final StepTeam.Job changeJob = this::changeUnit;
+    private final StepTeam.Job clearJob = this::clearUnit;
+    private final StepTeam.Job scanJob = this::scanUnit;
+
+    /** @param layers  the highlight layer each of the scanner's patterns marks */
+    public DetectionTiles(PatternScanner scanner, int[] layers, int rows, int cols, int workers) {
+        this.scanner = scanner;
+        this.layers = layers.clone();
+        this.rows = rows;
+        this.tilesX = (cols + TILE_COLS - 1) / TILE_COLS;
+        this.tilesY = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        int reach = scanner.getReach();
+        this.reachX = Math.min(tilesX, (reach + TILE_COLS - 1) / TILE_COLS);
+        this.reachY = Math.min(tilesY, (reach + TILE_ROWS - 1) / TILE_ROWS);
+        int tiles = tilesX * tilesY;
+        this.matches = new PatternScanner.Matches[tiles];
+        this.totals = new long[scanner.getPatterns().size()];
+        this.workerDelta = new long[workers][totals.length];
+        this.workerScratch = new PatternScanner.Matches[workers];
+        for (int w = 0; w < workers; w++) workerScratch[w] = new PatternScanner.Matches();
+        this.changed = new boolean[tiles];
+        this.changedBefore = new boolean[tiles];
+        this.rescan = new boolean[tiles];
+        this.repaint = new boolean[tiles];
+        this.remark = new boolean[tiles];
+    }
+
+    public PatternScanner getScanner() { return scanner; }
+    public int getTileCount() { return tilesX * tilesY; }
+
+    /** Tiles scanned in the last update, out of getTileCount(). */
+    public int getRescanCount() { return rescanCount; }
+
+    /** Makes the next update scan every tile, e.g. after the grid was edited. */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Brings matches, counts and highlights up to date with the frame (previous,
+     * current) of the given generation.
+     *
+     * @return matches per pattern, in the order of the scanner's patterns; do not modify
+     */
+    public long[] update(GridStore previous, GridStore current, long generation,
+                         HighlightLayers highlights, StepTeam team) throws InterruptedException {
+        if (valid && generation == this.generation) return totals;
+        boolean full = !valid || generation != this.generation + 1;
+        for (int layer : layers) highlights.use(layer);
+        this.previous = previous;
+        this.current = current;
+        this.highlights = highlights;
+        try {
+            boolean[] t = changedBefore;
+            changedBefore = changed;
+            changed = t;
+            team.run(tilesY, changeJob);
+
+            if (full) {
+                Arrays.fill(rescan, true);
+                Arrays.fill(repaint, true);
+                Arrays.fill(remark, true);
+                Arrays.fill(totals, 0);
+                for (PatternScanner.Matches m : matches) {
+                    if (m != null) m.clear();
+                }
+            } else {
+                for (int i = 0; i < rescan.length; i++) rescan[i] = changed[i] || changedBefore[i];
+                dilate(rescan, repaint);
+                System.arraycopy(repaint, 0, rescan, 0, rescan.length);
+                dilate(rescan, repaint);
+                dilate(repaint, remark);
+            }
+            int count = 0;
+            for (boolean r : rescan) if (r) count++;
+            rescanCount = count;
+
+            for (long[] d : workerDelta) Arrays.fill(d, 0);
+            team.run(tilesY, clearJob);
+            team.run(tilesY, scanJob);
+            for (long[] d : workerDelta) {
+                for (int p = 0; p < totals.length; p++) totals[p] += d[p];
+            }
+            this.generation = generation;
+            valid = true;
+        } finally {
+            this.previous = null;
+            this.current = null;
+            this.highlights = null;
+        }
+        return totals;
+    }
+
+    /** Sets to every tile within reach of a tile set in from; the tile ring wraps like the grid. */
+    private void dilate(boolean[] from, boolean[] to) {
+        Arrays.fill(to, false);
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!from[ty * tilesX + tx]) continue;
+                for (int dy = -reachY; dy <= reachY; dy++) {
+                    int ny = Math.floorMod(ty + dy, tilesY);
+                    for (int dx = -reachX; dx <= reachX; dx++) {
+                        to[ny * tilesX + Math.floorMod(tx + dx, tilesX)] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void changeUnit(int worker, int ty) {
+        int start = ty * TILE_ROWS;
+        int end = Math.min(rows, start + TILE_ROWS);
+        for (int tx = 0; tx < tilesX; tx++) {
+            long diff = 0;
+            for (int y = start; y < end && diff == 0; y++) {
+                diff = previous.readWord(y, tx) ^ current.readWord(y, tx);
+            }
+            changed[ty * tilesX + tx] = diff != 0;
+        }
+    }
+
+    private void clearUnit(int worker, int ty) {
+        int start = ty * TILE_ROWS;
+        int end = Math.min(rows, start + TILE_ROWS);
+        for (int tx = 0; tx < tilesX; tx++) {
+            // A tile is one word of each of its rows
+            if (repaint[ty * tilesX + tx]) highlights.clear(start, end, tx, tx + 1);
+        }
+    }
+
+    /** Rescans the tiles of a tile row that need it, then marks the matches that reach a cleared tile. */
+    private void scanUnit(int worker, int ty) {
+        long[] delta = workerDelta[worker];
+        int start = ty * TILE_ROWS;
+        int end = Math.min(rows, start + TILE_ROWS);
+        for (int tx = 0; tx < tilesX; tx++) {
+            int tile = ty * tilesX + tx;
+            PatternScanner.Matches m = matches[tile];
+            if (rescan[tile]) {
+                if (m == null) {
+                    m = workerScratch[worker];
+                } else {
+                    for (int k = 0; k < m.size(); k++) delta[scanner.patternOf(m.template(k))]--;
+                    m.clear();
+                }
+                scanner.scan(previous, current, start, end, tx, tx + 1, m);
+                for (int k = 0; k < m.size(); k++) delta[scanner.patternOf(m.template(k))]++;
+                // Only tiles with matches keep a list; an empty one goes back to scratch
+                if (m.size() == 0) {
+                    matches[tile] = null;
+                    workerScratch[worker] = m;
+                } else if (m == workerScratch[worker]) {
+                    matches[tile] = m;
+                    workerScratch[worker] = new PatternScanner.Matches();
+                }
+            }
+            if (remark[tile] && m != null) {
+                for (int k = 0; k < m.size(); k++) {
+                    int t = m.template(k);
+                    scanner.mark(t, m.x(k), m.y(k), highlights, layers[scanner.patternOf(t)]);
+                }
+            }
+        }
+    }
+}
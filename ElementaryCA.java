@@ -0,0 +1,270 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * One-dimensional elementary cellular automaton (Wolfram rules 0-255) on a ring of
+ * width cells, 64 cells per word in the same layout as GridStore rows.
+ *
+ * A generation is three shifts and a small circuit per word: the left and right
+ * neighbours of all 64 cells are the word shifted by one, with the edge bits carried
+ * in from the neighbouring words, and the rule's eight minterms are masked in as
+ * constants chosen when the rule is compiled.
+ *
+ * For rules where an empty neighbourhood stays empty (even rule numbers) only the
+ * words that can hold live cells are computed; that span grows by at most one cell
+ * per side each generation, so a run from a single cell costs the light cone rather
+ * than the whole ring.
+ */
+public final class ElementaryCA {
+
+    private final int rule;
+    private final int width;
+    private final int words;
+    private final long lastMask;
+    private final int lastBit;
+    private final boolean quiescent;
+
+    // Minterm masks: mNNN is -1 when the rule maps (left, centre, right) = NNN to 1
+    private final long m000, m001, m010, m011, m100, m101, m110, m111;
+
+    private long[] cur;
+    private long[] nxt;
+    // Words that may hold live cells in cur and nxt; lo > hi means empty
+    private int lo, hi;
+    private int nxtLo, nxtHi;
+    private long generation;
+
+    /**
+     * @param rule   Wolfram rule number, 0-255
+     * @param width  ring size in cells
+     */
+    public ElementaryCA(int rule, int width) {
+        if (rule < 0 || rule > 255) throw new IllegalArgumentException("Elementary rules are 0-255: " + rule);
+        if (width <= 0) throw new IllegalArgumentException("Width must be positive: " + width);
+        this.rule = rule;
+        this.width = width;
+        this.words = BitboardKernel.wordsPerRow(width);
+        this.lastBit = (width - 1) & 63;
+        this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        this.quiescent = (rule & 1) == 0;
+        m000 = mask(0); m001 = mask(1); m010 = mask(2); m011 = mask(3);
+        m100 = mask(4); m101 = mask(5); m110 = mask(6); m111 = mask(7);
+        this.cur = new long[words];
+        this.nxt = new long[words];
+        clear();
+    }
+
+    private long mask(int pattern) {
+        return (rule & (1 << pattern)) != 0 ? -1L : 0L;
+    }
+
+    /**
+     * Parses "Rule 30", "rule110", "W90" or a bare number.
+     *
+     * @throws IllegalArgumentException if the text is not a rule 0-255
+     */
+    public static int parseRule(String text) {
+        if (text == null) throw new IllegalArgumentException("Missing rule.");
+        String s = text.trim().toLowerCase(Locale.ROOT).replace(" ", "");
+        if (s.startsWith("rule")) s = s.substring(4);
+        else if (s.startsWith("w")) s = s.substring(1);
+        if (!s.matches("\\d{1,3}") || Integer.parseInt(s) > 255) {
+            throw new IllegalArgumentException("Not an elementary rule: " + text);
+        }
+        return Integer.parseInt(s);
+    }
+
+    public int getRule() { return rule; }
+    public int getWidth() { return width; }
+    public long getGeneration() { return generation; }
+
+    public void clear() {
+        Arrays.fill(cur, 0);
+        Arrays.fill(nxt, 0);
+        generation = 0;
+        lo = 0;
+        hi = -1;
+        nxtLo = 0;
+        nxtHi = -1;
+    }
+
+    /** The classic start: one live cell in the middle of the ring. */
+    public void seedCenter() {
+        clear();
+        set(width / 2, true);
+    }
+
+    public void randomize(double density, long seed) {
+        clear();
+        Random random = new Random(seed);
+        for (int x = 0; x < width; x++) {
+            if (random.nextDouble() < density) cur[x >>> 6] |= 1L << (x & 63);
+        }
+        lo = 0;
+        hi = words - 1;
+    }
+
+    public boolean get(int x) {
+        return ((cur[x >>> 6] >>> (x & 63)) & 1) != 0;
+    }
+
+    public void set(int x, boolean alive) {
+        int i = x >>> 6;
+        if (alive) {
+            cur[i] |= 1L << (x & 63);
+            if (lo > hi) {
+                lo = i;
+                hi = i;
+            } else {
+                lo = Math.min(lo, i);
+                hi = Math.max(hi, i);
+            }
+        } else {
+            cur[i] &= ~(1L << (x & 63));
+        }
+    }
+
+    public long population() {
+        long count = 0;
+        for (int i = Math.max(0, lo); i <= hi; i++) count += Long.bitCount(cur[i]);
+        return count;
+    }
+
+    /** Advances one generation. */
+    public void step() {
+        int from, to;
+        if (!quiescent || lo > hi || lo == 0 || hi == words - 1) {
+            // Non-quiescent rules and spans touching the seam compute the whole ring
+            from = 0;
+            to = words - 1;
+        } else {
+            from = lo - 1;
+            to = hi + 1;
+            // Words of nxt outside this range must be empty; they hold the generation before last
+            for (int i = nxtLo; i <= nxtHi; i++) {
+                if (i < from || i > to) nxt[i] = 0;
+            }
+        }
+        if (quiescent && lo > hi) {
+            generation++;
+            return;
+        }
+
+        int newLo = Integer.MAX_VALUE, newHi = -1;
+        for (int i = from; i <= to; i++) {
+            long w = wordAt(cur, i);
+            if (w != 0) {
+                if (newLo == Integer.MAX_VALUE) newLo = i;
+                newHi = i;
+            }
+            nxt[i] = w;
+        }
+
+        long[] t = cur;
+        cur = nxt;
+        nxt = t;
+        nxtLo = lo;
+        nxtHi = hi;
+        if (!quiescent) {
+            lo = 0;
+            hi = words - 1;
+        } else if (newHi < 0) {
+            lo = 0;
+            hi = -1;
+        } else {
+            lo = newLo;
+            hi = newHi;
+        }
+        generation++;
+    }
+
+    public void step(long generations) {
+        for (long g = 0; g < generations; g++) step();
+    }
+
+    /** Next state of word i of the ring row, with the ring's wrap at the seam. */
+    private long wordAt(long[] row, int i) {
+        long c = row[i];
+        long carryIn = i > 0 ? row[i - 1] >>> 63 : (row[words - 1] >>> lastBit) & 1;
+        long carryOut = i < words - 1 ? row[i + 1] << 63 : (row[0] & 1) << lastBit;
+        long out = apply(c << 1 | carryIn, c, c >>> 1 | carryOut);
+        return i == words - 1 ? out & lastMask : out;
+    }
+
+    /** The rule for 64 cells at once, given their left neighbours, themselves and their right neighbours. */
+    private long apply(long l, long c, long r) {
+        long nc = ~c, nr = ~r;
+        long high = (m111 & c & r) | (m110 & c & nr) | (m101 & nc & r) | (m100 & nc & nr);
+        long low = (m011 & c & r) | (m010 & c & nr) | (m001 & nc & r) | (m000 & nc & nr);
+        return (l & high) | (~l & low);
+    }
+
+    /**
+     * Writes row srcY of src with the rule applied into row dstY of dst, wrapping at
+     * the row ends. The stores must be width cells wide.
+     *
+     * @return number of live cells written
+     */
+    public long stepRow(GridStore src, int srcY, GridStore dst, int dstY) {
+        long first = src.readWord(srcY, 0);
+        long last = src.readWord(srcY, words - 1) & lastMask;
+        long prev = (last >>> lastBit) & 1;
+        long c = words == 1 ? last : first;
+        long count = 0;
+        for (int i = 0; i < words; i++) {
+            long following = i + 1 < words - 1 ? src.readWord(srcY, i + 1)
+                    : i + 1 == words - 1 ? last : 0;
+            long carryOut = i < words - 1 ? following << 63 : (first & 1) << lastBit;
+            long out = apply(c << 1 | prev, c, c >>> 1 | carryOut);
+            if (i == words - 1) out &= lastMask;
+            dst.writeWord(dstY, i, out);
+            count += Long.bitCount(out);
+            prev = c >>> 63;
+            c = following;
+        }
+        return count;
+    }
+
+    /** Starts over from row y of src, which must be width cells wide. */
+    public void readRow(GridStore src, int y) {
+        clear();
+        for (int i = 0; i < words; i++) cur[i] = src.readWord(y, i);
+        cur[words - 1] &= lastMask;
+        lo = 0;
+        hi = words - 1;
+    }
+
+    /** Writes the current generation into row y of dst, which must be width cells wide. */
+    public void writeRow(GridStore dst, int y) {
+        for (int i = 0; i < words; i++) dst.writeWord(y, i, cur[i]);
+    }
+
+    /**
+     * Streams the spacetime diagram into rows [startRow, endRow) of dst: the current
+     * generation goes to startRow, the next one below it, and so on, leaving the
+     * automaton at the generation after the last row written.
+     */
+    public void fill(GridStore dst, int startRow, int endRow) {
+        for (int y = startRow; y < endRow; y++) {
+            writeRow(dst, y);
+            step();
+        }
+    }
+
+    /**
+     * Runs the given number of generations and records the centre cell of each one,
+     * starting with the current generation.
+     *
+     * @return the column packed 64 generations per word, generation g at bit g & 63 of word g >> 6
+     */
+    public long[] centerColumn(int generations) {
+        long[] column = new long[BitboardKernel.wordsPerRow(Math.max(1, generations))];
+        int x = width / 2;
+        for (int g = 0; g < generations; g++) {
+            if (get(x)) column[g >>> 6] |= 1L << (g & 63);
+            step();
+        }
+        return column;
+    }
+}
@@ -1,3 +1,3 @@
-public interface EvolvingPattern extends LifePattern {
-    boolean matchesAfterEvolution(byte[][] prev, byte[][] curr, int row, int col, int rows, int cols);
-}
+public interface EvolvingPattern extends LifePattern {
+    boolean matchesAfterEvolution(GridStore prev, GridStore curr, int row, int col, int rows, int cols);
+}
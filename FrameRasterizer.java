@@ -0,0 +1,408 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Turns the visible part of the grid into one frame of palette indices, one byte per
+ * screen pixel, row after row, ready for a single PixelWriter.setPixels call. What is
+ * visible is a View: the cell under the top-left pixel, how many cells a pixel spans
+ * and the size of the frame, so a frame costs the screen rather than the universe.
+ *
+ * At one cell per pixel, eight cells at a time: each byte of the grid indexes a
+ * 256-entry table of the eight pixel bytes it expands to, written as one long.
+ * Zoomed in, each pixel samples the cell under it, and pixel rows over the same cell
+ * row are copied. Zoomed out by two or more, a pixel shows the share of live cells in
+ * the power-of-two block under it as one of SHADES shades, counted from the grid for
+ * 2x2 and 4x4 blocks and read from a DensityPyramid above that. Highlights are drawn
+ * up to one cell per pixel, each layer in its own colour; smaller than that they
+ * would be lost in the shading.
+ *
+ * Bands of pixel rows are independent, so they are drawn in parallel on a StepTeam
+ * when one is given.
+ *
+ * Frames are handed over rather than shared: draw fills a buffer nobody else holds
+ * and publishes it, the display takes the latest with takeFrame and gives it back with
+ * release once it is on screen. Drawing the next frame meanwhile never touches the
+ * one being shown, and a frame and its view always travel together.
+ */
+public final class FrameRasterizer {
+
+    public static final byte DEAD = 0;
+    public static final byte ALIVE = 1;
+    /** Density shades of zoomed-out views: index FIRST_SHADE + s - 1 for s of SHADES live. */
+    public static final int SHADES = 16;
+    public static final int FIRST_SHADE = 2;
+    /** Highlight layer l is drawn with index FIRST_HIGHLIGHT + l. */
+    public static final int FIRST_HIGHLIGHT = FIRST_SHADE + SHADES;
+
+    private static final int ROWS_PER_UNIT = 64;
+    private static final long ONES = 0x5555_5555_5555_5555L;
+    private static final long TWOS = 0x3333_3333_3333_3333L;
+    private static final long FOURS = 0x0F0F_0F0F_0F0F_0F0FL;
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** Pixel bytes of the eight cells of a grid byte, cell k in byte k. */
+    private static final long[] EXPAND = new long[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            long pixels = 0;
+            for (int k = 0; k < 8; k++) {
+                if ((b & (1 << k)) != 0) pixels |= (long) ALIVE << (8 * k);
+            }
+            EXPAND[b] = pixels;
+        }
+    }
+
+    /** The part of the grid a frame shows. */
+    public static final class View {
+        private final double originX;
+        private final double originY;
+        private final double cellsPerPixel;
+        private final int width;
+        private final int height;
+
+        /**
+         * @param originX        grid x at the left edge of the frame
+         * @param originY        grid y at the top edge of the frame
+         * @param cellsPerPixel  cells a pixel spans; below 1 when zoomed in
+         * @param width          frame width in pixels
+         * @param height         frame height in pixels
+         */
+        public View(double originX, double originY, double cellsPerPixel, int width, int height) {
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Bad frame size " + width + "x" + height + ".");
+            }
+            if (!(cellsPerPixel > 0)) throw new IllegalArgumentException("Cells per pixel must be positive.");
+            this.originX = originX;
+            this.originY = originY;
+            this.cellsPerPixel = cellsPerPixel;
+            this.width = width;
+            this.height = height;
+        }
+
+        /** The whole grid at one cell per pixel. */
+        public static View full(int rows, int cols) {
+            return new View(0, 0, 1, cols, rows);
+        }
+
+        public double getOriginX() { return originX; }
+        public double getOriginY() { return originY; }
+        public double getCellsPerPixel() { return cellsPerPixel; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+
+        /** Grid column under pixel column px. */
+        public int cellX(double px) { return (int) Math.floor(originX + px * cellsPerPixel); }
+
+        /** Grid row under pixel row py. */
+        public int cellY(double py) { return (int) Math.floor(originY + py * cellsPerPixel); }
+
+        /** Whether frames of this view read block counts from a DensityPyramid. */
+        public boolean needsPyramid() {
+            return level() >= DensityPyramid.MIN_LEVEL;
+        }
+
+        /** Size of the blocks a pixel shades, as a power of two; 0 when pixels sample single cells. */
+        int level() {
+            if (cellsPerPixel < 2) return 0;
+            return 31 - Integer.numberOfLeadingZeros((int) Math.min(cellsPerPixel, 1 << 30));
+        }
+    }
+
+    /** A finished frame: pixel row y starts at y * getView().getWidth() of getPixels(). */
+    public static final class Frame {
+        private View view;
+        private byte[] pixels = new byte[0];
+
+        public View getView() { return view; }
+        public byte[] getPixels() { return pixels; }
+    }
+
+    private final AtomicReference<Frame> latest = new AtomicReference<>(); // Drawn, not yet taken
+    private final AtomicReference<Frame> spare = new AtomicReference<>();  // Free to draw over
+
+    // The frame being drawn, read by the team jobs
+    private View drawnView;
+    private byte[] frame;
+
+    private GridStore grid;
+    private HighlightLayers highlights;
+    private DensityPyramid pyramid;
+    private int level;
+    private int[] pixelX = new int[0];   // Grid column, or block column when zoomed out, per pixel column
+    private int[][] blockCounts = new int[0][]; // Per worker: live cells of each 2x2 or 4x4 block of a block row
+    private final StepTeam.Job drawJob = this::drawUnit;
+
+    /**
+     * The newest frame drawn since the last call, or null if there is none; it belongs
+     * to the caller until given back with release.
+     */
+    public Frame takeFrame() {
+        return latest.getAndSet(null);
+    }
+
+    /** Gives back a frame from takeFrame, to be drawn over. */
+    public void release(Frame f) {
+        spare.compareAndSet(null, f);
+    }
+
+    /**
+     * Colours for a byte-indexed pixel format: dead and alive, the shades from dead to
+     * alive, then one colour per highlight layer.
+     */
+    public static int[] palette(int dead, int alive, int[] highlights) {
+        if (highlights.length > HighlightLayers.MAX_LAYERS) throw new IllegalArgumentException("Too many highlight colours.");
+        int[] colors = new int[FIRST_HIGHLIGHT + highlights.length];
+        colors[DEAD] = dead;
+        colors[ALIVE] = alive;
+        System.arraycopy(highlights, 0, colors, FIRST_HIGHLIGHT, highlights.length);
+        for (int s = 1; s <= SHADES; s++) {
+            int argb = 0xFF000000;
+            for (int shift = 0; shift < 24; shift += 8) {
+                int from = (dead >>> shift) & 0xFF;
+                int to = (alive >>> shift) & 0xFF;
+                argb |= (from + (to - from) * s / SHADES) << shift;
+            }
+            colors[FIRST_SHADE + s - 1] = argb;
+        }
+        return colors;
+    }
+
+    /**
+     * Draws a view of the grid, with highlights (which may be null) over it.
+     *
+     * @param pyramid  current block counts of the grid; needed when v.needsPyramid()
+     * @param team     workers to draw bands of pixel rows on, or null to draw on the caller's thread
+     */
+    public void draw(View v, GridStore grid, HighlightLayers highlights, DensityPyramid pyramid, StepTeam team)
+            throws InterruptedException {
+        Frame target = spare.getAndSet(null);
+        if (target == null) target = new Frame();
+        int size = v.width * v.height;
+        if (target.pixels.length != size) target.pixels = new byte[size];
+        level = v.level();
+        if (level >= DensityPyramid.MIN_LEVEL) {
+            if (pyramid == null) throw new IllegalArgumentException("Zoomed-out views need a DensityPyramid.");
+            level = Math.min(level, pyramid.getTopLevel());
+        }
+        if (pixelX.length < v.width) pixelX = new int[v.width];
+        for (int px = 0; px < v.width; px++) {
+            int x = v.cellX(px);
+            pixelX[px] = x < 0 || x >= grid.getCols() ? -1 : x >> level;
+        }
+
+        int workers = team == null ? 1 : team.size();
+        int blocks = ((grid.getCols() - 1) >> level) + 1;
+        if (level > 0 && level < DensityPyramid.MIN_LEVEL
+                && (blockCounts.length < workers || blockCounts[0].length < blocks)) {
+            blockCounts = new int[workers][blocks];
+        }
+
+        drawnView = v;
+        frame = target.pixels;
+        this.grid = grid;
+        this.highlights = highlights;
+        this.pyramid = pyramid;
+        int units = (v.height + ROWS_PER_UNIT - 1) / ROWS_PER_UNIT;
+        try {
+            if (team != null) {
+                team.run(units, drawJob);
+            } else {
+                for (int u = 0; u < units; u++) drawUnit(0, u);
+            }
+        } finally {
+            this.grid = null;
+            this.highlights = null;
+            this.pyramid = null;
+            frame = null;
+        }
+        target.view = v;
+        // A frame the display never took is drawn over next time
+        Frame unseen = latest.getAndSet(target);
+        if (unseen != null) release(unseen);
+    }
+
+    private void drawUnit(int worker, int unit) {
+        View v = drawnView;
+        int start = unit * ROWS_PER_UNIT;
+        int end = Math.min(v.height, start + ROWS_PER_UNIT);
+        int lastSource = Integer.MIN_VALUE;
+        for (int py = start; py < end; py++) {
+            int row = py * v.width;
+            int y = v.cellY(py);
+            int source = y < 0 || y >= grid.getRows() ? -1 : y >> level;
+            if (source == lastSource) {
+                // Same cell row or block row as the pixel row above
+                System.arraycopy(frame, row - v.width, frame, row, v.width);
+                continue;
+            }
+            lastSource = source;
+            if (source < 0) {
+                Arrays.fill(frame, row, row + v.width, DEAD);
+            } else if (level > 0) {
+                drawDensityRow(worker, row, v.width, source);
+            } else if (v.cellsPerPixel == 1 && v.originX == Math.floor(v.originX)) {
+                drawCellRow(row, v.width, y, (int) v.originX);
+            } else {
+                drawSampledRow(row, v.width, y);
+            }
+        }
+    }
+
+    /** One cell per pixel from grid column x0, eight cells per table lookup. */
+    private void drawCellRow(int row, int width, int y, int x0) {
+        int cols = grid.getCols();
+        int px = 0;
+        // Pixels left of the grid
+        for (; px < width && x0 + px < 0; px++) frame[row + px] = DEAD;
+        int inside = Math.min(width, cols - x0);
+        for (; px + 64 <= inside; px += 64) {
+            long w = cells(y, x0 + px);
+            for (int k = 0; k < 8; k++) {
+                LONG_LE.set(frame, row + px + (k << 3), EXPAND[(int) (w >>> (k << 3)) & 0xFF]);
+            }
+        }
+        for (; px < inside; px++) {
+            int x = x0 + px;
+            frame[row + px] = ((grid.readWord(y, x >>> 6) >>> (x & 63)) & 1) != 0 ? ALIVE : DEAD;
+        }
+        for (; px < width; px++) frame[row + px] = DEAD;
+        if (highlights == null) return;
+        // Only the set bits of marked words are visited, each layer's word read once
+        int from = Math.max(0, x0);
+        int to = Math.min(cols, x0 + width);
+        int[] layers = highlights.getLayersInUse();
+        for (int i = from >>> 6; i << 6 < to; i++) {
+            long marked = highlights.anyWord(y, i);
+            // Lowest layer first, the one layerAt gives
+            for (int k = 0; marked != 0 && k < layers.length; k++) {
+                long bits = marked & highlights.word(layers[k], y, i);
+                marked &= ~bits;
+                byte color = (byte) (FIRST_HIGHLIGHT + layers[k]);
+                while (bits != 0) {
+                    int x = (i << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (x >= from && x < to) frame[row + x - x0] = color;
+                }
+            }
+        }
+    }
+
+    /** The 64 cells of row y from column x, which must all lie inside the grid. */
+    private long cells(int y, int x) {
+        int i = x >>> 6;
+        int shift = x & 63;
+        long w = grid.readWord(y, i) >>> shift;
+        if (shift != 0) w |= grid.readWord(y, i + 1) << (64 - shift);
+        return w;
+    }
+
+    /** Each pixel the cell under it. */
+    private void drawSampledRow(int row, int width, int y) {
+        int cachedWord = -1;
+        long word = 0;
+        for (int px = 0; px < width; px++) {
+            int x = pixelX[px];
+            if (x < 0) {
+                frame[row + px] = DEAD;
+                continue;
+            }
+            if (x >>> 6 != cachedWord) {
+                cachedWord = x >>> 6;
+                word = grid.readWord(y, cachedWord);
+            }
+            frame[row + px] = ((word >>> (x & 63)) & 1) != 0 ? ALIVE : DEAD;
+        }
+        overlayHighlights(row, width, y);
+    }
+
+    /** Pixels over marked cells in the colour of their layer; words no layer marks are passed over. */
+    private void overlayHighlights(int row, int width, int y) {
+        if (highlights == null) return;
+        int cachedWord = -1;
+        long any = 0;
+        for (int px = 0; px < width; px++) {
+            int x = pixelX[px];
+            if (x < 0) continue;
+            if (x >>> 6 != cachedWord) {
+                cachedWord = x >>> 6;
+                any = highlights.anyWord(y, cachedWord);
+            }
+            if (((any >>> (x & 63)) & 1) != 0) frame[row + px] = (byte) (FIRST_HIGHLIGHT + highlights.layerAt(x, y));
+        }
+    }
+
+    /** Each pixel the shade of the block under it, block row by. */
+    private void drawDensityRow(int worker, int row, int width, int by) {
+        int cols = grid.getCols();
+        int rows = grid.getRows();
+        int side = 1 << level;
+        int height = Math.min(side, rows - (by << level));
+        int[] counts = null;
+        if (level < DensityPyramid.MIN_LEVEL) {
+            // Count the visible blocks of the row up front, a word of each grid row at a time
+            int first = -1, last = -1;
+            for (int px = 0; px < width; px++) {
+                if (pixelX[px] < 0) continue;
+                if (first < 0) first = pixelX[px];
+                last = pixelX[px];
+            }
+            counts = blockCounts[worker];
+            if (first >= 0) countBlocks(counts, by, (first << level) >>> 6, (last << level) >>> 6);
+        }
+        int lastBlock = -2;
+        byte shade = DEAD;
+        for (int px = 0; px < width; px++) {
+            int bx = pixelX[px];
+            if (bx != lastBlock) {
+                lastBlock = bx;
+                if (bx < 0) {
+                    shade = DEAD;
+                } else {
+                    int live = counts == null ? pyramid.count(level, bx, by) : counts[bx];
+                    int area = Math.min(side, cols - (bx << level)) * height;
+                    shade = live == 0 ? DEAD : (byte) (FIRST_SHADE - 1 + (live * SHADES + area - 1) / area);
+                }
+            }
+            frame[row + px] = shade;
+        }
+    }
+
+    /**
+     * Live cells of the 2x2 or 4x4 blocks of block row by under words [firstWord,
+     * lastWord], into counts by block column. Each row's word is reduced to per-block
+     * popcounts with the usual bit-slicing steps, split into even and odd blocks so
+     * the sums over the block's rows cannot overflow their fields.
+     */
+    private void countBlocks(int[] counts, int by, int firstWord, int lastWord) {
+        int y0 = by << level;
+        int y1 = Math.min(grid.getRows(), y0 + (1 << level));
+        int blocks = counts.length;
+        for (int i = firstWord; i <= lastWord; i++) {
+            long even = 0, odd = 0;
+            for (int y = y0; y < y1; y++) {
+                long w = grid.readWord(y, i);
+                w -= (w >>> 1) & ONES;
+                if (level == 1) {
+                    even += w & TWOS;
+                    odd += (w >>> 2) & TWOS;
+                } else {
+                    w = (w & TWOS) + ((w >>> 2) & TWOS);
+                    even += w & FOURS;
+                    odd += (w >>> 4) & FOURS;
+                }
+            }
+            int fieldBits = level == 1 ? 4 : 8;
+            int perWord = 64 >> level;
+            int base = i * perWord;
+            for (int b = 0; b < perWord && base + b < blocks; b++) {
+                long fields = (b & 1) == 0 ? even : odd;
+                counts[base + b] = (int) (fields >>> ((b >> 1) * fieldBits)) & ((1 << fieldBits) - 1);
+            }
+        }
+    }
+}
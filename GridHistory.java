@@ -0,0 +1,455 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Past generations of a grid for scrubbing back and forth: full keyframes now and then,
+ * and for every generation the XOR of the cells that changed since the one before,
+ * kept per 64x32 tile (the ActiveTiles tile) as the words of the rows that changed.
+ *
+ * An XOR delta turns generation g - 1 into g and g back into g - 1, so a generation
+ * is rebuilt from whichever is cheapest: the keyframe before it, the keyframe after
+ * it, or a grid already holding a retained generation. Deltas with the same content
+ * are stored once, which is what keeps a settled board small: its oscillators repeat
+ * the same few deltas forever.
+ *
+ * A keyframe is taken when the deltas stored since the last one add up to
+ * KEYFRAME_GRIDS grids, or after MAX_KEYFRAME_INTERVAL generations. Past the memory budget the oldest
+ * generations go first; the oldest keyframe is rolled forward over them.
+ *
+ * Keyframes are GridStores from the engine's factory, so on an off-heap or mapped
+ * grid they stay off the heap too. Deltas stay on the heap; a generation that changed
+ * more than half of the grid's words gets a keyframe instead, so neither a delta nor
+ * the scratch it is built in grows past half a grid. A budget must hold at least one
+ * keyframe.
+ */
+public final class GridHistory implements AutoCloseable {
+
+    /** Generations between keyframes at most, which bounds the deltas replayed to reach one. */
+    public static final int MAX_KEYFRAME_INTERVAL = 4096;
+    /**
+     * Grids' worth of deltas between keyframes: keyframes stay a fraction of the memory
+     * used, and reaching a generation replays at most about half this much.
+     */
+    public static final int KEYFRAME_GRIDS = 4;
+
+    private static final int TILE_ROWS = ActiveTiles.TILE_ROWS;
+    /** Rough bytes of a delta's object headers and its place in the pool. */
+    private static final int DELTA_OVERHEAD = 96;
+
+    /** The change from one generation to the next. */
+    private static final class Delta {
+        final int[] tiles;    // Changed tiles, ty * tilesX + tx, ascending
+        final int[] rowMasks; // Per tile, bit r for each of its rows that changed
+        final long[] xors;    // The XOR of each changed row's word, tile by tile
+        final long hash;
+        int references;
+        boolean odd;          // Scratch for replay
+
+        Delta(int[] tiles, int[] rowMasks, long[] xors, long hash) {
+            this.tiles = tiles;
+            this.rowMasks = rowMasks;
+            this.xors = xors;
+            this.hash = hash;
+        }
+
+        long bytes() {
+            return DELTA_OVERHEAD + 4L * tiles.length + 4L * rowMasks.length + 8L * xors.length;
+        }
+
+        boolean sameAs(Delta other) {
+            return Arrays.equals(xors, other.xors) && Arrays.equals(tiles, other.tiles)
+                    && Arrays.equals(rowMasks, other.rowMasks);
+        }
+    }
+
+    private final GridStore.Factory storage;
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final int tilesX;
+    private final int tilesY;
+    private long budget;
+
+    // Generations oldest .. newest, generation oldest + i at ring slot (head + i) % capacity.
+    // The oldest always has a keyframe; every other one has the delta that leads to it,
+    // but for keyframes set by keyframe() or taken in place of a large delta, which are
+    // not reached from the one before.
+    private GridStore[] keys = new GridStore[16];
+    private Delta[] deltas = new Delta[16];
+    private int head;
+    private int size;
+    private volatile long oldest;
+    private volatile long newest = -1;
+
+    private final Map<Long, Delta> pool = new HashMap<>(); // Stored deltas by content hash
+    private long memoryBytes;
+    private int keyframes;
+    private long bytesSinceKey;  // Delta bytes stored since the newest keyframe
+    private int sinceKey;        // Generations since the newest keyframe
+    private GridStore spare;     // A dropped keyframe, reused by the next one
+
+    // Scratch for building deltas
+    private int[] tileBuffer = new int[64];
+    private int[] maskBuffer = new int[64];
+    private long[] xorBuffer = new long[256];
+
+    /**
+     * @param storage      where keyframes live, normally the engine's grid factory
+     * @param budgetBytes  memory the retained generations may use; at least the newest is kept
+     * @throws IllegalArgumentException if the budget is smaller than one keyframe
+     */
+    public GridHistory(GridStore.Factory storage, int rows, int cols, long budgetBytes) {
+        this.storage = storage;
+        this.rows = rows;
+        this.cols = cols;
+        this.words = BitboardKernel.wordsPerRow(cols);
+        this.tilesX = words;
+        this.tilesY = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        checkBudget(budgetBytes);
+        this.budget = budgetBytes;
+    }
+
+    /** Bytes one keyframe of a rows x cols grid takes, the smallest budget GridHistory accepts. */
+    public static long keyframeBytes(int rows, int cols) {
+        return 8L * rows * BitboardKernel.wordsPerRow(cols);
+    }
+
+    private void checkBudget(long budgetBytes) {
+        long key = keyframeBytes(rows, cols);
+        if (budgetBytes < key) {
+            throw new IllegalArgumentException("A history budget of " + (budgetBytes >> 20) + " MB does not hold one "
+                    + rows + "x" + cols + " keyframe of " + ((key + (1 << 20) - 1) >> 20) + " MB.");
+        }
+    }
+
+    public int getRows() { return rows; }
+
+    /** The oldest generation retained; meaningless while isEmpty(). */
+    public long getOldestGeneration() { return oldest; }
+    /** The newest generation retained, or -1 while empty. */
+    public long getNewestGeneration() { return newest; }
+    public boolean isEmpty() { return newest < 0; }
+
+    public boolean contains(long generation) {
+        long last = newest;
+        return last >= 0 && generation >= oldest && generation <= last;
+    }
+
+    public long getMemoryBytes() { return memoryBytes; }
+    public int getKeyframeCount() { return keyframes; }
+    /** Generations retained. */
+    public int size() { return size; }
+    public long getBudget() { return budget; }
+
+    /**
+     * Changes the budget, dropping the oldest generations if it is now exceeded.
+     * @throws IllegalArgumentException if the budget is smaller than one keyframe
+     */
+    public void setBudget(long budgetBytes) {
+        checkBudget(budgetBytes);
+        budget = budgetBytes;
+        evict();
+    }
+
+    /** Forgets every generation. */
+    public void clear() {
+        while (size > 0) {
+            int slot = slot(size - 1);
+            dropKey(slot);
+            release(deltas[slot]);
+            deltas[slot] = null;
+            size--;
+        }
+        head = 0;
+        oldest = 0;
+        newest = -1;
+        bytesSinceKey = 0;
+        sinceKey = 0;
+    }
+
+    /** Forgets every generation and frees the keyframes' storage. */
+    @Override
+    public void close() {
+        clear();
+        if (spare != null) spare.close();
+        spare = null;
+    }
+
+    /**
+     * Makes grid a keyframe of the given generation, e.g. after it was edited. Retained
+     * generations from it on are dropped, as they no longer follow; older ones stay and
+     * are reached from the keyframes before it. If it does not follow the newest
+     * retained generation, everything is dropped and history starts again here.
+     */
+    public void keyframe(GridStore grid, long generation) {
+        if (isEmpty() || generation < oldest || generation > newest + 1) {
+            clear();
+            oldest = generation;
+        }
+        truncate(generation);
+        append(null); // No delta: the way back from here is replayed forward instead
+        takeKey(grid, slot(size - 1));
+        newest = generation;
+        evict();
+    }
+
+    /**
+     * Records generation 'generation', held by current, given generation - 1 in previous.
+     * Only the tiles marked changed are compared when tiles is given; otherwise every
+     * word is. A generation already retained is left alone: it can only have come out
+     * the same.
+     */
+    public void record(GridStore previous, GridStore current, long generation, ActiveTiles tiles) {
+        if (generation <= newest && generation >= oldest) return;
+        if (isEmpty() || generation != newest + 1) {
+            throw new IllegalStateException("Generation " + generation + " does not follow " + newest + ".");
+        }
+        Delta delta = diff(previous, current, tiles);
+        append(delta);
+        newest = generation;
+        sinceKey++;
+        if (delta == null || bytesSinceKey >= KEYFRAME_GRIDS * 8L * rows * words || sinceKey >= MAX_KEYFRAME_INTERVAL) {
+            takeKey(current, slot(size - 1));
+        }
+        evict();
+    }
+
+    /**
+     * Writes a retained generation into dst. If dst already holds a retained generation,
+     * give it as from, and it is used when that is the cheapest start; pass -1 otherwise.
+     */
+    public void restore(long generation, GridStore dst, long from) {
+        if (!contains(generation)) throw new IllegalArgumentException("Generation " + generation + " is not retained.");
+        int target = (int) (generation - oldest);
+        int before = target;
+        while (keys[slot(before)] == null) before--;
+        int after = target;
+        while (after < size && keys[slot(after)] == null) after++;
+
+        long gridWords = (long) rows * words;
+        long best = gridWords + replay(before, target, null);
+        int start = before;
+        boolean useKey = true;
+        if (after < size) {
+            long cost = replay(target, after, null);
+            if (cost != Long.MAX_VALUE && gridWords + cost < best) {
+                best = gridWords + cost;
+                start = after;
+            }
+        }
+        if (contains(from)) {
+            int at = (int) (from - oldest);
+            long cost = replay(Math.min(at, target), Math.max(at, target), null);
+            if (cost < best) {
+                start = at;
+                useKey = false;
+            }
+        }
+        if (useKey) restoreFromKey(start, dst);
+        replay(Math.min(start, target), Math.max(start, target), dst);
+    }
+
+    /**
+     * XORs the deltas of generations oldest + from + 1 .. oldest + to into grid, or only
+     * counts the words that takes when grid is null; Long.MAX_VALUE across a keyframe
+     * without a delta. Order does not matter to XOR and a delta applied twice undoes
+     * itself, so each stored delta is applied once if it occurs an odd number of times
+     * and not at all otherwise: an oscillator's deltas mostly cancel.
+     */
+    private long replay(int from, int to, GridStore grid) {
+        for (int i = from + 1; i <= to; i++) {
+            Delta delta = deltas[slot(i)];
+            if (delta == null) {
+                for (int j = from + 1; j < i; j++) deltas[slot(j)].odd = false;
+                return Long.MAX_VALUE;
+            }
+            delta.odd = !delta.odd;
+        }
+        long cost = 0;
+        for (int i = from + 1; i <= to; i++) {
+            Delta delta = deltas[slot(i)];
+            if (!delta.odd) continue;
+            delta.odd = false;
+            cost += delta.xors.length;
+            if (grid != null) apply(delta, grid);
+        }
+        return cost;
+    }
+
+    private void restoreFromKey(int index, GridStore dst) {
+        dst.copyFrom(keys[slot(index)], 0, rows, 0, words);
+    }
+
+    private void apply(Delta delta, GridStore grid) {
+        int k = 0;
+        for (int t = 0; t < delta.tiles.length; t++) {
+            int tx = delta.tiles[t] % tilesX;
+            int y0 = delta.tiles[t] / tilesX * TILE_ROWS;
+            for (int m = delta.rowMasks[t]; m != 0; m &= m - 1) {
+                int y = y0 + Integer.numberOfTrailingZeros(m);
+                grid.writeWord(y, tx, grid.readWord(y, tx) ^ delta.xors[k++]);
+            }
+        }
+    }
+
+    /**
+     * The delta from previous to current, shared with an equal one already stored, or
+     * null when it would hold more than half the grid's words.
+     */
+    private Delta diff(GridStore previous, GridStore current, ActiveTiles tiles) {
+        long limit = (long) rows * words / 2;
+        int count = 0;
+        int xorCount = 0;
+        long hash = 1;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * TILE_ROWS;
+            int y1 = Math.min(rows, y0 + TILE_ROWS);
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (tiles != null && !tiles.isChanged(tx, ty)) continue;
+                int mask = 0;
+                for (int y = y0; y < y1; y++) {
+                    long xor = previous.readWord(y, tx) ^ current.readWord(y, tx);
+                    if (xor == 0) continue;
+                    mask |= 1 << (y - y0);
+                    if (xorCount == limit) return null;
+                    if (xorCount == xorBuffer.length) xorBuffer = Arrays.copyOf(xorBuffer, (int) Math.min(2L * xorCount, limit));
+                    xorBuffer[xorCount++] = xor;
+                    hash = hash * 0x9E3779B97F4A7C15L + xor;
+                }
+                if (mask == 0) continue;
+                if (count == tileBuffer.length) {
+                    tileBuffer = Arrays.copyOf(tileBuffer, 2 * count);
+                    maskBuffer = Arrays.copyOf(maskBuffer, 2 * count);
+                }
+                int tile = ty * tilesX + tx;
+                tileBuffer[count] = tile;
+                maskBuffer[count++] = mask;
+                hash = (hash ^ tile) * 0xBF58476D1CE4E5B9L + mask;
+            }
+        }
+        Delta delta = new Delta(Arrays.copyOf(tileBuffer, count), Arrays.copyOf(maskBuffer, count),
+                Arrays.copyOf(xorBuffer, xorCount), hash);
+        Delta stored = pool.get(hash);
+        if (stored != null && stored.sameAs(delta)) return stored;
+        return delta;
+    }
+
+    /** Adds a generation with the delta leading to it (none for the first). */
+    private void append(Delta delta) {
+        if (size == keys.length) grow();
+        int slot = slot(size++);
+        keys[slot] = null;
+        deltas[slot] = delta;
+        if (delta == null) return;
+        if (delta.references++ == 0) {
+            pool.putIfAbsent(delta.hash, delta);
+            memoryBytes += delta.bytes();
+            bytesSinceKey += delta.bytes();
+        }
+    }
+
+    private void grow() {
+        GridStore[] k = new GridStore[keys.length * 2];
+        Delta[] d = new Delta[keys.length * 2];
+        for (int i = 0; i < size; i++) {
+            k[i] = keys[slot(i)];
+            d[i] = deltas[slot(i)];
+        }
+        memoryBytes += 8L * 2 * keys.length; // The two arrays grow by this many references
+        keys = k;
+        deltas = d;
+        head = 0;
+    }
+
+    private void takeKey(GridStore grid, int slot) {
+        if (keys[slot] != null) return;
+        GridStore key = spare != null ? spare : storage.create(rows, cols);
+        spare = null;
+        key.copyFrom(grid, 0, rows, 0, words);
+        keys[slot] = key;
+        keyframes++;
+        memoryBytes += keyframeBytes(rows, cols);
+        bytesSinceKey = 0;
+        sinceKey = 0;
+    }
+
+    private void dropKey(int slot) {
+        GridStore key = keys[slot];
+        if (key == null) return;
+        keys[slot] = null;
+        keyframes--;
+        memoryBytes -= keyframeBytes(rows, cols);
+        keepSpare(key);
+    }
+
+    /** Keeps one dropped keyframe for the next; a mapped store holds a file, so close the rest. */
+    private void keepSpare(GridStore key) {
+        if (spare == null) {
+            spare = key;
+        } else {
+            key.close();
+        }
+    }
+
+    private void release(Delta delta) {
+        if (delta == null || --delta.references > 0) return;
+        if (pool.get(delta.hash) == delta) pool.remove(delta.hash);
+        memoryBytes -= delta.bytes();
+    }
+
+    /** Drops generations from generation on. */
+    private void truncate(long generation) {
+        int before = size;
+        while (size > 0 && oldest + size - 1 >= generation) {
+            int slot = slot(size - 1);
+            dropKey(slot);
+            release(deltas[slot]);
+            deltas[slot] = null;
+            size--;
+        }
+        if (size == before) return;
+        newest = size == 0 ? -1 : oldest + size - 1;
+        if (size == 0) oldest = generation;
+        recountSinceKey();
+    }
+
+    private void recountSinceKey() {
+        bytesSinceKey = 0;
+        sinceKey = 0;
+        for (int i = size - 1; i >= 0 && keys[slot(i)] == null; i--) {
+            bytesSinceKey += deltas[slot(i)].bytes();
+            sinceKey++;
+        }
+    }
+
+    /**
+     * Drops the oldest generations while over budget. The oldest keyframe moves on to
+     * the next generation by applying its delta, unless that one has a keyframe already.
+     */
+    private void evict() {
+        while (memoryBytes > budget && size > 1) {
+            int first = slot(0);
+            int second = slot(1);
+            GridStore key = keys[first];
+            keys[first] = null;
+            if (keys[second] == null) {
+                apply(deltas[second], key);
+                keys[second] = key;
+            } else {
+                keyframes--;
+                memoryBytes -= keyframeBytes(rows, cols);
+                keepSpare(key);
+            }
+            release(deltas[second]);
+            deltas[second] = null;
+            head = (head + 1) % keys.length;
+            size--;
+            oldest++;
+        }
+    }
+
+    private int slot(int index) {
+        return (head + index) % keys.length;
+    }
+}
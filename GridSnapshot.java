@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary grid snapshots: a header with the size, rule, generation and a checksum,
+ * then the rows exactly as GridStore packs them, (cols + 7) / 8 little-endian bytes
+ * each. Saving and loading map the file and move whole rows, so no cell is looked at
+ * on its own.
+ *
+ * Compressed snapshots deflate blocks of BLOCK_ROWS rows independently; a block
+ * without a live cell takes no space at all, so a sparse board stays small whatever
+ * its size.
+ *
+ * Layout, little-endian:
+ *   0   "LIFEGRID"
+ *   8   int   version, 1
+ *   12  int   flags: 1 = compressed
+ *   16  int   rows
+ *   20  int   cols
+ *   24  long  generation
+ *   32  int   CRC32C of the uncompressed row bytes
+ *   36  int   length of the rule name
+ *   40  rule name in UTF-8, zero-padded to a multiple of 8 bytes
+ *   then the rows; when compressed, an int per block with its deflated length (0 for
+ *   an empty block), then the blocks back to back
+ */
+public final class GridSnapshot {
+
+    /** File name extension the front ends save snapshots under. */
+    public static final String EXTENSION = ".lifegrid";
+
+    /** Rows per compressed block. */
+    public static final int BLOCK_ROWS = 256;
+
+    private static final byte[] MAGIC = "LIFEGRID".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int FIXED_HEADER = 40;
+    private static final int MAX_RULE_BYTES = 256;
+    /** Raw rows are mapped at most this many bytes at a time. */
+    private static final long MAP_BYTES = 1L << 28;
+
+    private GridSnapshot() { }
+
+    /** What a snapshot holds, read from its header. */
+    public static final class Header {
+        private final int rows;
+        private final int cols;
+        private final long generation;
+        private final String rule;
+        private final boolean compressed;
+        private final int checksum;
+        private final long dataOffset;
+
+        private Header(int rows, int cols, long generation, String rule, boolean compressed, int checksum, long dataOffset) {
+            this.rows = rows;
+            this.cols = cols;
+            this.generation = generation;
+            this.rule = rule;
+            this.compressed = compressed;
+            this.checksum = checksum;
+            this.dataOffset = dataOffset;
+        }
+
+        public int getRows() { return rows; }
+        public int getCols() { return cols; }
+        public long getGeneration() { return generation; }
+        /** The rule the grid was saved under: a B/S rule, or an elementary "Rule N". */
+        public String getRule() { return rule; }
+        public boolean isCompressed() { return compressed; }
+    }
+
+    /**
+     * The header of a snapshot, or null when the file does not start like one, e.g.
+     * a grid saved as text.
+     *
+     * @throws IOException if the file is a snapshot with a damaged or unknown header
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, fixed, 0)) return null;
+        fixed.flip();
+        byte[] magic = new byte[MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) return null;
+
+        int version = fixed.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ".");
+        int flags = fixed.getInt();
+        int rows = fixed.getInt();
+        int cols = fixed.getInt();
+        long generation = fixed.getLong();
+        int checksum = fixed.getInt();
+        int ruleLength = fixed.getInt();
+        if (rows <= 0 || cols <= 0) throw new IOException("Invalid grid dimensions specified in file.");
+        if (ruleLength < 0 || ruleLength > MAX_RULE_BYTES) throw new IOException("Snapshot header is damaged.");
+
+        ByteBuffer rule = ByteBuffer.allocate(ruleLength);
+        if (!readFully(channel, rule, FIXED_HEADER)) throw new IOException("Snapshot header is damaged.");
+        return new Header(rows, cols, generation, new String(rule.array(), StandardCharsets.UTF_8),
+                (flags & FLAG_COMPRESSED) != 0, checksum, FIXED_HEADER + pad(ruleLength));
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) return false;
+        }
+        return true;
+    }
+
+    private static int pad(int length) {
+        return (length + 7) & ~7;
+    }
+
+    /**
+     * Saves a grid.
+     *
+     * @param rule      the rule name to record, as Header.getRule returns it
+     * @param compress  deflate blocks of rows; worth it for sparse boards
+     */
+    public static void write(Path file, GridStore grid, String rule, long generation, boolean compress)
+            throws IOException {
+        byte[] ruleBytes = rule.getBytes(StandardCharsets.UTF_8);
+        if (ruleBytes.length > MAX_RULE_BYTES) throw new IllegalArgumentException("Rule name is too long.");
+        int rows = grid.getRows();
+        int rowBytes = grid.getRowBytes();
+        long dataOffset = FIXED_HEADER + pad(ruleBytes.length);
+        CRC32C crc = new CRC32C();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (compress) {
+                writeBlocks(channel, grid, dataOffset, crc);
+            } else {
+                int chunkRows = (int) Math.max(1, MAP_BYTES / rowBytes);
+                for (int y = 0; y < rows; y += chunkRows) {
+                    int n = Math.min(chunkRows, rows - y);
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE,
+                            dataOffset + (long) y * rowBytes, (long) n * rowBytes);
+                    for (int r = 0; r < n; r++) grid.readRow(y + r, map);
+                    crc.update(map.flip());
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(compress ? FLAG_COMPRESSED : 0)
+                    .putInt(rows)
+                    .putInt(grid.getCols())
+                    .putLong(generation)
+                    .putInt((int) crc.getValue())
+                    .putInt(ruleBytes.length)
+                    .put(ruleBytes);
+            header.clear();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    private static void writeBlocks(FileChannel channel, GridStore grid, long dataOffset, CRC32C crc)
+            throws IOException {
+        int rows = grid.getRows();
+        int rowBytes = grid.getRowBytes();
+        int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        ByteBuffer table = ByteBuffer.allocate(4 * blocks).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer raw = ByteBuffer.allocate(BLOCK_ROWS * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] deflated = new byte[raw.capacity() + 64];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        long position = dataOffset + table.capacity();
+        try {
+            for (int b = 0; b < blocks; b++) {
+                int first = b * BLOCK_ROWS;
+                int n = Math.min(BLOCK_ROWS, rows - first);
+                raw.clear();
+                for (int r = 0; r < n; r++) grid.readRow(first + r, raw);
+                raw.flip();
+                crc.update(raw.duplicate());
+                if (isEmpty(raw)) {
+                    table.putInt(0);
+                    continue;
+                }
+
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == deflated.length) deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+                    length += deflater.deflate(deflated, length, deflated.length - length);
+                }
+                ByteBuffer out = ByteBuffer.wrap(deflated, 0, length);
+                while (out.hasRemaining()) position += channel.write(out, position);
+                table.putInt(length);
+            }
+        } finally {
+            deflater.end();
+        }
+        table.flip();
+        long at = dataOffset;
+        while (table.hasRemaining()) at += channel.write(table, at);
+    }
+
+    private static boolean isEmpty(ByteBuffer raw) {
+        int i = raw.position();
+        int end = raw.limit();
+        for (; i + 8 <= end; i += 8) {
+            if (raw.getLong(i) != 0) return false;
+        }
+        for (; i < end; i++) {
+            if (raw.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads the grid of a snapshot into a new store.
+     *
+     * @param header  the file's header, from readHeader
+     * @throws IOException if the data is incomplete or does not match its checksum
+     */
+    public static GridStore read(Path file, Header header, GridStore.Factory storage) throws IOException {
+        GridStore grid = storage.create(header.rows, header.cols);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C crc = new CRC32C();
+            if (header.compressed) {
+                readBlocks(channel, header, grid, crc);
+            } else {
+                int rowBytes = grid.getRowBytes();
+                if (channel.size() < header.dataOffset + (long) header.rows * rowBytes) {
+                    throw new IOException("File data incomplete.");
+                }
+                int chunkRows = (int) Math.max(1, MAP_BYTES / rowBytes);
+                for (int y = 0; y < header.rows; y += chunkRows) {
+                    int n = Math.min(chunkRows, header.rows - y);
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                            header.dataOffset + (long) y * rowBytes, (long) n * rowBytes);
+                    crc.update(map.duplicate());
+                    for (int r = 0; r < n; r++) grid.writeRow(y + r, map);
+                }
+            }
+            if ((int) crc.getValue() != header.checksum) {
+                throw new IOException("Snapshot checksum does not match; the file is damaged.");
+            }
+            return grid;
+        } catch (IOException | RuntimeException e) {
+            grid.close();
+            throw e;
+        }
+    }
+
+    private static void readBlocks(FileChannel channel, Header header, GridStore grid, CRC32C crc)
+            throws IOException {
+        int rows = header.rows;
+        int rowBytes = grid.getRowBytes();
+        int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        ByteBuffer table = ByteBuffer.allocate(4 * blocks).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, table, header.dataOffset)) throw new IOException("File data incomplete.");
+        table.flip();
+
+        ByteBuffer raw = ByteBuffer.allocate(BLOCK_ROWS * rowBytes);
+        byte[] zeros = new byte[raw.capacity()];
+        long position = header.dataOffset + table.capacity();
+        Inflater inflater = new Inflater();
+        try {
+            for (int b = 0; b < blocks; b++) {
+                int first = b * BLOCK_ROWS;
+                int size = Math.min(BLOCK_ROWS, rows - first) * rowBytes;
+                int length = table.getInt();
+                if (length == 0) {
+                    // New stores start empty, so an empty block is only checksummed
+                    crc.update(zeros, 0, size);
+                    continue;
+                }
+                if (length < 0 || position + length > channel.size()) throw new IOException("File data incomplete.");
+
+                MappedByteBuffer deflated = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += length;
+                inflater.reset();
+                inflater.setInput(deflated);
+                raw.clear().limit(size);
+                while (raw.hasRemaining() && !inflater.finished()) {
+                    if (inflater.inflate(raw) == 0 && inflater.needsInput()) break;
+                }
+                if (raw.hasRemaining() || !inflater.finished()) throw new IOException("Snapshot block " + b + " is damaged.");
+                raw.flip();
+                crc.update(raw.duplicate());
+                for (int r = 0; first + r < rows && r < BLOCK_ROWS; r++) grid.writeRow(first + r, raw);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Snapshot data is damaged.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for a packed Life grid: 8 cells per byte, cell x of row y at byte x >> 3,
+ * bit x & 7. Everything that reads the grid (the step kernels, pattern matchers,
+ * the renderer, file I/O) goes through this accessor, so the cells can live on the
+ * heap (HeapGridStore) or in one contiguous off-heap or memory-mapped buffer
+ * (OffHeapGridStore) without the callers knowing.
+ *
+ * Word i of a row holds cells 64 * i .. 64 * i + 63, cell x at bit x & 63, which is
+ * the little-endian reading of the row bytes. Bits past cols are always zero.
+ */
+public interface GridStore extends AutoCloseable {
+
+    /** Creates empty stores of one kind; LifeEngine uses it for the grid, the step buffer and history. */
+    interface Factory {
+        /** @throws UncheckedIOException if a backing file cannot be created */
+        GridStore create(int rows, int cols);
+
+        /** Largest row or column count this kind of store accepts. */
+        int maxSize();
+
+        /** Name shown by the CLI and benchmarks. */
+        String name();
+    }
+
+    int getRows();
+    int getCols();
+
+    /** Number of 64-cell words per row. */
+    default int getWords() {
+        return BitboardKernel.wordsPerRow(getCols());
+    }
+
+    boolean get(int x, int y);
+
+    void set(int x, int y, boolean alive);
+
+    /** Word i of row y; bits past cols read as zero. */
+    long readWord(int y, int i);
+
+    /** Writes word i of row y; bits past cols must be zero. */
+    void writeWord(int y, int i, long w);
+
+    /**
+     * ORs bits into word i of row y atomically, so several threads can mark the same
+     * word; bits past cols must be zero. Plain writes to the word must not overlap it.
+     */
+    void orWord(int y, int i, long bits);
+
+    /** Kills every cell. */
+    void clear();
+
+    /** Bytes of a row in the packed layout, (cols + 7) / 8; what file I/O moves per row. */
+    default int getRowBytes() {
+        return (getCols() + 7) >>> 3;
+    }
+
+    /** Puts the getRowBytes() bytes of row y into dst at its position, advancing it. */
+    default void readRow(int y, ByteBuffer dst) {
+        int left = getRowBytes();
+        for (int i = 0; left > 0; i++) {
+            long w = readWord(y, i);
+            for (int b = 0; b < 8 && left > 0; b++, left--) dst.put((byte) (w >>> (b << 3)));
+        }
+    }
+
+    /** Fills row y from the next getRowBytes() bytes of src; bits past cols are dropped. */
+    default void writeRow(int y, ByteBuffer src) {
+        int left = getRowBytes();
+        int cols = getCols();
+        for (int i = 0; left > 0; i++) {
+            long w = 0;
+            for (int b = 0; b < 8 && left > 0; b++, left--) w |= (src.get() & 0xFFL) << (b << 3);
+            int end = (i << 6) + 64;
+            if (end > cols) w &= (1L << (cols & 63)) - 1;
+            writeWord(y, i, w);
+        }
+    }
+
+    /** Copies words [startWord, endWord) of rows [startRow, endRow) from a store of the same size. */
+    default void copyFrom(GridStore src, int startRow, int endRow, int startWord, int endWord) {
+        for (int y = startRow; y < endRow; y++) {
+            for (int i = startWord; i < endWord; i++) {
+                writeWord(y, i, src.readWord(y, i));
+            }
+        }
+    }
+
+    /** Copies every cell from a store of the same size. */
+    default void copyFrom(GridStore src) {
+        copyFrom(src, 0, getRows(), 0, getWords());
+    }
+
+    default long countAlive() {
+        long count = 0;
+        int words = getWords();
+        for (int y = 0; y < getRows(); y++) {
+            for (int i = 0; i < words; i++) {
+                count += Long.bitCount(readWord(y, i));
+            }
+        }
+        return count;
+    }
+
+    /** Releases the backing memory or file; the store must not be used afterwards. */
+    @Override
+    default void close() { }
+}
@@ -0,0 +1,88 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The text grid format: an "RxC" header line, then one line of C characters per row,
+ * '1' for a live cell and anything else for a dead one. Both directions stream a row
+ * at a time and move whole words of the grid, so the file is never held in memory.
+ */
+public final class GridText {
+
+    private GridText() { }
+
+    /** Reads a text grid into a new store of the given kind. */
+    public static GridStore read(Path file, GridStore.Factory storage) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String first = reader.readLine();
+            if (first == null) throw new IOException("File is empty.");
+
+            // Parse Dimensions from the first line (e.g., "1000x1000")
+            String[] dimParts = first.split("x");
+            if (dimParts.length != 2) throw new IOException("Missing \"RxC\" header.");
+            int rows;
+            int cols;
+            try {
+                rows = Integer.parseInt(dimParts[0].trim());
+                cols = Integer.parseInt(dimParts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid grid dimensions specified in file.", e);
+            }
+            int max = storage.maxSize();
+            if (rows <= 0 || cols <= 0 || rows > max || cols > max) {
+                throw new IOException("Invalid grid dimensions specified in file.");
+            }
+
+            GridStore grid = storage.create(rows, cols);
+            try {
+                int words = grid.getWords();
+                for (int y = 0; y < rows; y++) {
+                    String line = reader.readLine();
+                    if (line == null) throw new IOException("File data incomplete.");
+                    line = line.trim();
+                    if (line.length() != cols) throw new IOException("Row " + y + " has incorrect length.");
+                    for (int i = 0; i < words; i++) {
+                        int base = i << 6;
+                        int end = Math.min(64, cols - base);
+                        long w = 0;
+                        for (int b = 0; b < end; b++) {
+                            if (line.charAt(base + b) == '1') w |= 1L << b;
+                        }
+                        grid.writeWord(y, i, w);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                grid.close();
+                throw e;
+            }
+            return grid;
+        }
+    }
+
+    /** Writes a grid as text, expanding each word of a row straight into its characters. */
+    public static void write(Path file, GridStore grid) throws IOException {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        byte[] newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        byte[] line = new byte[cols + newline.length];
+        System.arraycopy(newline, 0, line, cols, newline.length);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write((rows + "x" + cols).getBytes(StandardCharsets.US_ASCII));
+            out.write(newline);
+            int words = grid.getWords();
+            for (int y = 0; y < rows; y++) {
+                for (int i = 0; i < words; i++) {
+                    long w = grid.readWord(y, i);
+                    int base = i << 6;
+                    int end = Math.min(64, cols - base);
+                    for (int b = 0; b < end; b++) line[base + b] = (byte) ('0' + (int) ((w >>> b) & 1));
+                }
+                out.write(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashlife backend for fast-forwarding long horizons.
+ *
+ * The universe is a canonical quadtree: every distinct square is stored once
+ * (hash-consed), and each node memoizes its centered successor, so repeated
+ * structure is computed once no matter how often or where it appears.
+ * A node of level n is 2^n cells wide; its result is the centered half, advanced
+ * 2^j generations for j <= n-2.
+ *
+ * Unlike LifeEngine this is an unbounded plane, not a torus: patterns that leave
+ * the exported window are dropped from the grid instead of wrapping around.
+ * The node cache is bounded, also in the middle of a jump; when it fills up,
+ * everything not reachable from the current root or from the jump in progress is
+ * evicted, along with the memoized results that point at evicted nodes.
+ */
+public class HashlifeEngine {
+
+    public static final int DEFAULT_MAX_NODES = 1 << 21;
+
+    /** Quadtree node; level 0 nodes are single cells. */
+    static final class Node {
+        final Node nw, ne, sw, se;
+        final int level;
+        final long population;
+        final int id;
+        final int hash;
+
+        Node result;
+        int resultLog = -1;
+
+        Node(int id, boolean alive) {
+            this.nw = this.ne = this.sw = this.se = null;
+            this.level = 0;
+            this.population = alive ? 1 : 0;
+            this.id = id;
+            this.hash = id;
+        }
+
+        Node(int id, Node nw, Node ne, Node sw, Node se) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = nw.level + 1;
+            this.population = nw.population + ne.population + sw.population + se.population;
+            this.id = id;
+            this.hash = hash(nw, ne, sw, se);
+        }
+
+        static int hash(Node nw, Node ne, Node sw, Node se) {
+            int h = nw.id;
+            h = h * 0x9E3779B1 + ne.id;
+            h = h * 0x9E3779B1 + sw.id;
+            h = h * 0x9E3779B1 + se.id;
+            return h ^ (h >>> 16);
+        }
+
+        @Override public int hashCode() { return hash; }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node n)) return false;
+            return level == n.level && nw == n.nw && ne == n.ne && sw == n.sw && se == n.se;
+        }
+    }
+
+    private final Node dead;
+    private final Node alive;
+    private final LifeRule rule;
+    private final int maxNodes;
+
+    private Map<Node, Node> nodes = new HashMap<>();
+    private final Node[] emptyByLevel = new Node[64];
+    private final Node[] level1 = new Node[16];
+    /** 4x4 neighbourhood bits -> 2x2 center after one generation. */
+    private final byte[] level2Table = new byte[1 << 16];
+
+    private int nextId = 2;
+    private long evictions = 0;
+    /** Cache size that triggers the next collection. */
+    private int collectAt;
+    /** Nodes a successor computation in progress still needs; kept through a collection. */
+    private Node[] inFlight = new Node[256];
+    private int inFlightTop = 0;
+
+    private Node root;
+    /** World coordinate of the root's top-left corner. */
+    private long originX;
+    private long originY;
+    private long generation = 0;
+
+    public HashlifeEngine(LifeRule rule) {
+        this(rule, DEFAULT_MAX_NODES);
+    }
+
+    /** @param rule  any Life-like rule without B0; empty space must stay empty */
+    public HashlifeEngine(LifeRule rule, int maxNodes) {
+        if (rule.birthOnEmpty()) throw new IllegalArgumentException("Hashlife cannot run B0 rules.");
+        this.rule = rule;
+        this.maxNodes = Math.max(1 << 12, maxNodes);
+        this.collectAt = this.maxNodes;
+        this.dead = new Node(0, false);
+        this.alive = new Node(1, true);
+        buildTables();
+        this.root = empty(3);
+        this.originX = -4;
+        this.originY = -4;
+    }
+
+    private void buildTables() {
+        for (int bits = 0; bits < 16; bits++) {
+            level1[bits] = intern(cell(bits, 0), cell(bits, 1), cell(bits, 2), cell(bits, 3));
+        }
+        for (int bits = 0; bits < (1 << 16); bits++) {
+            int out = 0;
+            // Center cells of the 4x4 block are (1,1), (2,1), (1,2), (2,2); bit index is y * 4 + x
+            for (int cy = 1; cy <= 2; cy++) {
+                for (int cx = 1; cx <= 2; cx++) {
+                    int n = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            if (dx == 0 && dy == 0) continue;
+                            n += (bits >>> ((cy + dy) * 4 + cx + dx)) & 1;
+                        }
+                    }
+                    boolean isAlive = ((bits >>> (cy * 4 + cx)) & 1) != 0;
+                    boolean next = rule.next(isAlive, n);
+                    if (next) out |= 1 << ((cy - 1) * 2 + (cx - 1));
+                }
+            }
+            level2Table[bits] = (byte) out;
+        }
+    }
+
+    private Node cell(int bits, int index) {
+        return ((bits >>> index) & 1) != 0 ? alive : dead;
+    }
+
+    /** Returns the canonical node with these children. */
+    private Node intern(Node nw, Node ne, Node sw, Node se) {
+        Node probe = new Node(nextId, nw, ne, sw, se);
+        Node existing = nodes.putIfAbsent(probe, probe);
+        if (existing != null) return existing;
+        nextId++;
+        return probe;
+    }
+
+    private Node empty(int level) {
+        if (level == 0) return dead;
+        Node e = emptyByLevel[level];
+        if (e == null) {
+            Node c = empty(level - 1);
+            e = intern(c, c, c, c);
+            emptyByLevel[level] = e;
+        }
+        return e;
+    }
+
+    public long getGeneration() { return generation; }
+    public long getPopulation() { return root.population; }
+    public int getRootLevel() { return root.level; }
+    public int getCachedNodes() { return nodes.size(); }
+    public long getEvictions() { return evictions; }
+
+    // ---------------------------------------------------------------------------------------------
+    // Import / export through GridStore
+
+    /** Replaces the universe with the grid, cell (x, y) going to world (x, y). */
+    public void load(GridStore grid) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int level = 3;
+        while ((1L << level) < Math.max(rows, cols)) level++;
+        originX = 0;
+        originY = 0;
+        root = build(grid, rows, cols, level, 0, 0);
+        generation = 0;
+        collectIfFull();
+    }
+
+    private Node build(GridStore grid, int rows, int cols, int level, int x0, int y0) {
+        if (x0 >= cols || y0 >= rows) return empty(level);
+        if (level == 1) {
+            int bits = 0;
+            if (bit(grid, rows, cols, x0, y0)) bits |= 1;
+            if (bit(grid, rows, cols, x0 + 1, y0)) bits |= 2;
+            if (bit(grid, rows, cols, x0, y0 + 1)) bits |= 4;
+            if (bit(grid, rows, cols, x0 + 1, y0 + 1)) bits |= 8;
+            return level1[bits];
+        }
+        int half = 1 << (level - 1);
+        return intern(build(grid, rows, cols, level - 1, x0, y0),
+                      build(grid, rows, cols, level - 1, x0 + half, y0),
+                      build(grid, rows, cols, level - 1, x0, y0 + half),
+                      build(grid, rows, cols, level - 1, x0 + half, y0 + half));
+    }
+
+    private static boolean bit(GridStore grid, int rows, int cols, int x, int y) {
+        return x < cols && y < rows && grid.get(x, y);
+    }
+
+    /** Writes the window of world cells [0, cols) x [0, rows) into grid; cells outside are dropped. */
+    public void store(GridStore grid) {
+        grid.clear();
+        write(root, originX, originY, grid, grid.getRows(), grid.getCols());
+    }
+
+    private void write(Node n, long x0, long y0, GridStore grid, int rows, int cols) {
+        if (n.population == 0) return;
+        long size = 1L << n.level;
+        if (x0 >= cols || y0 >= rows || x0 + size <= 0 || y0 + size <= 0) return;
+        if (n.level == 0) {
+            grid.set((int) x0, (int) y0, true);
+            return;
+        }
+        long half = size >> 1;
+        write(n.nw, x0, y0, grid, rows, cols);
+        write(n.ne, x0 + half, y0, grid, rows, cols);
+        write(n.sw, x0, y0 + half, grid, rows, cols);
+        write(n.se, x0 + half, y0 + half, grid, rows, cols);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Stepping
+
+    /** Advances exactly 2^log2 generations. */
+    public void advancePow2(int log2) {
+        if (log2 < 0) throw new IllegalArgumentException("log2 must be >= 0");
+        // The successor of a level n node covers 2^(n-2) generations and only its centre
+        // survives, so grow until the pattern sits well inside the centre and n >= log2 + 2.
+        while (root.level < log2 + 2 || !fitsInCenter(root)) {
+            expand();
+        }
+        expand();
+        root = successor(root, log2);
+        long quarter = 1L << (root.level - 1);
+        originX += quarter;
+        originY += quarter;
+        generation += 1L << log2;
+        collectIfFull();
+    }
+
+    /** Advances any number of generations as a sum of powers of two. */
+    public void advance(long generations) {
+        for (int bit = 62; bit >= 0; bit--) {
+            if ((generations & (1L << bit)) != 0) advancePow2(bit);
+        }
+    }
+
+    /** True when everything alive lies in the centre quarter (half width) of n. */
+    private boolean fitsInCenter(Node n) {
+        if (n.level < 3) return n.population == 0;
+        return n.nw.population == n.nw.se.se.population
+            && n.ne.population == n.ne.sw.sw.population
+            && n.sw.population == n.sw.ne.ne.population
+            && n.se.population == n.se.nw.nw.population;
+    }
+
+    /** Doubles the root around its centre. */
+    private void expand() {
+        Node e = empty(root.level - 1);
+        Node nw = intern(e, e, e, root.nw);
+        Node ne = intern(e, e, root.ne, e);
+        Node sw = intern(e, root.sw, e, e);
+        Node se = intern(root.se, e, e, e);
+        long quarter = 1L << (root.level - 1);
+        originX -= quarter;
+        originY -= quarter;
+        root = intern(nw, ne, sw, se);
+    }
+
+    /** Centre of n (level n.level - 1) advanced 2^j generations, j <= n.level - 2. */
+    private Node successor(Node n, int j) {
+        if (n.population == 0) return empty(n.level - 1);
+        if (n.result != null && n.resultLog == j) return n.result;
+        int mark = inFlightTop;
+        push(n);
+        // One jump can intern far more nodes than the cache holds, so collect on the way
+        if (nodes.size() > collectAt) collect();
+
+        Node result;
+        if (n.level == 2) {
+            result = level1[level2Table[pack4x4(n)] & 0xF];
+        } else {
+            boolean full = j == n.level - 2;
+            // Nine overlapping level n-1 squares
+            Node n00 = n.nw;
+            Node n01 = push(centerHorizontal(n.nw, n.ne));
+            Node n02 = n.ne;
+            Node n10 = push(centerVertical(n.nw, n.sw));
+            Node n11 = push(center(n));
+            Node n12 = push(centerVertical(n.ne, n.se));
+            Node n20 = n.sw;
+            Node n21 = push(centerHorizontal(n.sw, n.se));
+            Node n22 = n.se;
+
+            // First half-step advances only when the full 2^(n-2) is wanted; otherwise it just re-centres
+            Node r00 = push(full ? successor(n00, j - 1) : center(n00));
+            Node r01 = push(full ? successor(n01, j - 1) : center(n01));
+            Node r02 = push(full ? successor(n02, j - 1) : center(n02));
+            Node r10 = push(full ? successor(n10, j - 1) : center(n10));
+            Node r11 = push(full ? successor(n11, j - 1) : center(n11));
+            Node r12 = push(full ? successor(n12, j - 1) : center(n12));
+            Node r20 = push(full ? successor(n20, j - 1) : center(n20));
+            Node r21 = push(full ? successor(n21, j - 1) : center(n21));
+            Node r22 = push(full ? successor(n22, j - 1) : center(n22));
+
+            int k = full ? j - 1 : j;
+            Node s0 = push(successor(intern(r00, r01, r10, r11), k));
+            Node s1 = push(successor(intern(r01, r02, r11, r12), k));
+            Node s2 = push(successor(intern(r10, r11, r20, r21), k));
+            Node s3 = successor(intern(r11, r12, r21, r22), k);
+            result = intern(s0, s1, s2, s3);
+        }
+        inFlightTop = mark;
+        n.result = result;
+        n.resultLog = j;
+        return result;
+    }
+
+    private Node push(Node n) {
+        if (inFlightTop == inFlight.length) inFlight = Arrays.copyOf(inFlight, inFlightTop * 2);
+        inFlight[inFlightTop++] = n;
+        return n;
+    }
+
+    private int pack4x4(Node n) {
+        int bits = 0;
+        bits |= pack2x2(n.nw);
+        bits |= pack2x2(n.ne) << 2;
+        bits |= pack2x2(n.sw) << 8;
+        bits |= pack2x2(n.se) << 10;
+        return bits;
+    }
+
+    /** Level 1 node as bits 0,1 (top row) and 4,5 (bottom row) of a 4-wide block. */
+    private static int pack2x2(Node n) {
+        return (int) (n.nw.population | n.ne.population << 1 | n.sw.population << 4 | n.se.population << 5);
+    }
+
+    /** Centre half of n, one level down. */
+    private Node center(Node n) {
+        return intern(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+    }
+
+    private Node centerHorizontal(Node w, Node e) {
+        return intern(w.ne, e.nw, w.se, e.sw);
+    }
+
+    private Node centerVertical(Node n, Node s) {
+        return intern(n.sw, n.se, s.nw, s.ne);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Cache bound
+
+    private void collectIfFull() {
+        if (nodes.size() > collectAt) collect();
+    }
+
+    /**
+     * Keeps what the root and any successor computation in progress reach. When that
+     * alone fills most of the cache, the next collection waits until half the cache's
+     * worth of new nodes has been interned, so a large pattern does not collect after
+     * every few nodes.
+     */
+    private void collect() {
+        evictions++;
+        Map<Node, Node> live = new HashMap<>();
+        keep(dead, live);
+        for (Node e : emptyByLevel) {
+            if (e != null) keep(e, live);
+        }
+        for (Node n : level1) keep(n, live);
+        keep(root, live);
+        for (int i = 0; i < inFlightTop; i++) keep(inFlight[i], live);
+        // A memoized result that survived is still right; the others would pin evicted nodes
+        for (Node n : live.values()) {
+            if (n.result != null && live.get(n.result) != n.result) {
+                n.result = null;
+                n.resultLog = -1;
+            }
+        }
+        nodes = live;
+        collectAt = Math.max(maxNodes, live.size() + maxNodes / 2);
+    }
+
+    /** Re-interns n and its descendants. */
+    private void keep(Node n, Map<Node, Node> live) {
+        if (n.level == 0 || live.containsKey(n)) return;
+        live.put(n, n);
+        keep(n.nw, live);
+        keep(n.ne, live);
+        keep(n.sw, live);
+        keep(n.se, live);
+    }
+}
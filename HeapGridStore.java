@@ -0,0 +1,130 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/** The original layout: one byte[] of (cols + 7) / 8 bytes per row, on the heap. */
+public final class HeapGridStore implements GridStore {
+
+    public static final GridStore.Factory FACTORY = new GridStore.Factory() {
+        @Override public GridStore create(int rows, int cols) { return new HeapGridStore(rows, cols); }
+        @Override public int maxSize() { return LifeEngine.MAX_SIZE; }
+        @Override public String name() { return "heap"; }
+    };
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final byte[][] cells;
+
+    public HeapGridStore(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = BitboardKernel.wordsPerRow(cols);
+        this.cells = new byte[rows][(cols + 7) / 8];
+    }
+
+    @Override public int getRows() { return rows; }
+    @Override public int getCols() { return cols; }
+    @Override public int getWords() { return words; }
+
+    @Override
+    public boolean get(int x, int y) {
+        return (cells[y][x >> 3] & (1 << (x & 7))) != 0;
+    }
+
+    @Override
+    public void set(int x, int y, boolean alive) {
+        int bit = 1 << (x & 7);
+        if (alive) cells[y][x >> 3] |= bit;
+        else cells[y][x >> 3] &= ~bit;
+    }
+
+    @Override
+    public long readWord(int y, int i) {
+        byte[] row = cells[y];
+        int base = i << 3;
+        if (base + 8 <= row.length) {
+            return (long) LONG_LE.get(row, base);
+        }
+        long w = 0;
+        for (int b = 0; base + b < row.length; b++) {
+            w |= (row[base + b] & 0xFFL) << (b << 3);
+        }
+        return w;
+    }
+
+    @Override
+    public void writeWord(int y, int i, long w) {
+        byte[] row = cells[y];
+        int base = i << 3;
+        if (base + 8 <= row.length) {
+            LONG_LE.set(row, base, w);
+            return;
+        }
+        for (int b = 0; base + b < row.length; b++) {
+            row[base + b] = (byte) (w >>> (b << 3));
+        }
+    }
+
+    @Override
+    public void orWord(int y, int i, long bits) {
+        byte[] row = cells[y];
+        int base = i << 3;
+        if (base + 8 <= row.length) {
+            LONG_LE.getAndBitwiseOr(row, base, bits);
+            return;
+        }
+        // The short last word of a row cannot be updated atomically as a long
+        synchronized (row) {
+            for (int b = 0; base + b < row.length; b++) {
+                row[base + b] |= (byte) (bits >>> (b << 3));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (byte[] row : cells) Arrays.fill(row, (byte) 0);
+    }
+
+    @Override
+    public void readRow(int y, ByteBuffer dst) {
+        dst.put(cells[y]);
+    }
+
+    @Override
+    public void writeRow(int y, ByteBuffer src) {
+        byte[] row = cells[y];
+        src.get(row);
+        if ((cols & 7) != 0) row[row.length - 1] &= (byte) ((1 << (cols & 7)) - 1);
+    }
+
+    @Override
+    public void copyFrom(GridStore src, int startRow, int endRow, int startWord, int endWord) {
+        if (!(src instanceof HeapGridStore)) {
+            GridStore.super.copyFrom(src, startRow, endRow, startWord, endWord);
+            return;
+        }
+        byte[][] from = ((HeapGridStore) src).cells;
+        int start = startWord << 3;
+        int length = Math.min(endWord << 3, cells.length == 0 ? 0 : cells[0].length) - start;
+        if (length <= 0) return;
+        for (int y = startRow; y < endRow; y++) {
+            System.arraycopy(from[y], start, cells[y], start, length);
+        }
+    }
+
+    @Override
+    public long countAlive() {
+        long count = 0;
+        for (byte[] row : cells) {
+            for (byte b : row) count += Integer.bitCount(b & 0xFF);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/**
+ * Cells marked by pattern detection, one bit plane per layer in the grid's word layout.
+ * A layer is one kind of pattern, so the renderer can give each its own color; a
+ * plane is only allocated once its layer is used, and costs one bit per cell. Planes
+ * are GridStores from the engine's factory, so they live wherever the grid does.
+ *
+ * Marks are ORed into whole words atomically, since matches near a tile edge reach
+ * into words other workers mark at the same time. Clearing is a plain store and must
+ * not overlap marking of the same words.
+ */
+public final class HighlightLayers implements AutoCloseable {
+
+    /** Layers a palette has room for; see FrameRasterizer.palette. */
+    public static final int MAX_LAYERS = 32;
+
+    private final GridStore.Factory storage;
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final GridStore[] planes = new GridStore[MAX_LAYERS]; // null until the layer is used
+    private int[] inUse = new int[0];                             // Layers with a plane, lowest first
+
+    public HighlightLayers(int rows, int cols) {
+        this(HeapGridStore.FACTORY, rows, cols);
+    }
+
+    /** @param storage  where the planes live, normally the engine's grid factory */
+    public HighlightLayers(GridStore.Factory storage, int rows, int cols) {
+        this.storage = storage;
+        this.rows = rows;
+        this.cols = cols;
+        this.words = BitboardKernel.wordsPerRow(cols);
+    }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int getWords() { return words; }
+
+    /**
+     * Allocates the plane of a layer, so it can be marked from several threads. Call
+     * before handing the layers to a team.
+     */
+    public void use(int layer) {
+        if (planes[layer] != null) return;
+        planes[layer] = storage.create(rows, cols);
+        listInUse();
+    }
+
+    /** Frees every plane but the given layers'. */
+    public void keepOnly(int[] layers) {
+        boolean[] keep = new boolean[MAX_LAYERS];
+        for (int layer : layers) keep[layer] = true;
+        for (int layer = 0; layer < MAX_LAYERS; layer++) {
+            if (!keep[layer] && planes[layer] != null) {
+                planes[layer].close();
+                planes[layer] = null;
+            }
+        }
+        listInUse();
+    }
+
+    /** Frees every plane. */
+    @Override
+    public void close() {
+        keepOnly(new int[0]);
+    }
+
+    private void listInUse() {
+        int[] list = new int[MAX_LAYERS];
+        int count = 0;
+        for (int layer = 0; layer < MAX_LAYERS; layer++) {
+            if (planes[layer] != null) list[count++] = layer;
+        }
+        inUse = Arrays.copyOf(list, count);
+    }
+
+    /** Layers with a plane, lowest first; do not modify. */
+    public int[] getLayersInUse() { return inUse; }
+
+    /** Bytes held by the allocated planes. */
+    public long getMemoryBytes() {
+        return 8L * rows * words * inUse.length;
+    }
+
+    public boolean get(int layer, int x, int y) {
+        GridStore plane = planes[layer];
+        return plane != null && plane.get(x, y);
+    }
+
+    /** Word i of row y of a layer; 0 for a layer never used. */
+    public long word(int layer, int y, int i) {
+        GridStore plane = planes[layer];
+        return plane == null ? 0 : plane.readWord(y, i);
+    }
+
+    /** Word i of row y marked in any layer. */
+    public long anyWord(int y, int i) {
+        long any = 0;
+        for (int layer : inUse) any |= planes[layer].readWord(y, i);
+        return any;
+    }
+
+    /** The lowest layer that marks cell (x, y), or -1. */
+    public int layerAt(int x, int y) {
+        int i = x >>> 6;
+        for (int layer : inUse) {
+            if ((planes[layer].readWord(y, i) >>> x & 1) != 0) return layer;
+        }
+        return -1;
+    }
+
+    /**
+     * Marks cells x .. x + width - 1 of row y where bits, cell x at bit 0, is set. The
+     * row wraps past its end. The layer must be in use.
+     */
+    public void markRow(int layer, int y, int x, long bits, int width) {
+        GridStore plane = planes[layer];
+        if (x + width <= cols) {
+            int i = x >>> 6;
+            int shift = x & 63;
+            or(plane, y, i, bits << shift);
+            if (shift != 0 && shift + width > 64) or(plane, y, i + 1, bits >>> (64 - shift));
+            return;
+        }
+        while (bits != 0) {
+            int c = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            int cx = (x + c) % cols;
+            or(plane, y, cx >>> 6, 1L << cx);
+        }
+    }
+
+    private static void or(GridStore plane, int y, int i, long bits) {
+        if (bits != 0 && (plane.readWord(y, i) & bits) != bits) plane.orWord(y, i, bits);
+    }
+
+    /** Unmarks words [fromWord, toWord) of rows [fromRow, toRow) in every layer. */
+    public void clear(int fromRow, int toRow, int fromWord, int toWord) {
+        for (int layer : inUse) {
+            GridStore plane = planes[layer];
+            for (int y = fromRow; y < toRow; y++) {
+                for (int i = fromWord; i < toWord; i++) plane.writeWord(y, i, 0);
+            }
+        }
+    }
+
+    /** Unmarks everything. */
+    public void clear() {
+        for (int layer : inUse) planes[layer].clear();
+    }
+}
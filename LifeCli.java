@@ -0,0 +1,462 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command-line runner for headless batches.
+ *
+ *   java LifeCli --size 5000x5000 --gens 1000 --patterns Glider,Block --save out.txt
+ */
+public class LifeCli {
+
+    /** Unnamed objects listed by --census, most common first. */
+    private static final int CENSUS_UNKNOWN_SHOWN = 10;
+
+    /** History budget --rewind uses when --history is not given. */
+    private static final long DEFAULT_HISTORY_MB = 256;
+
+    /** Longest period --stop-on-cycle watches for when --cycles is not given. */
+    private static final int DEFAULT_MAX_PERIOD = 1024;
+
+    /** Longest debris period a collision batch recognises when --cycles is not given. */
+    private static final int DEFAULT_COLLISION_PERIOD = 256;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java LifeCli [options]",
+            "  --size RxC          grid size (default 1000x1000, max 5000x5000 on the heap, "
+                    + LifeEngine.MAX_OFF_HEAP_SIZE + " off it)",
+            "  --storage KIND      where grids live: heap (default), direct, or mapped[:DIR] for",
+            "                      memory-mapped scratch files (DIR defaults to the temp directory)",
+            "  --load FILE         start from a saved grid (text or " + GridSnapshot.EXTENSION + " snapshot) instead of a",
+            "                      random soup; a snapshot brings its rule and generation along. An " + PatternFile.RLE + " or",
+            "                      " + PatternFile.CELLS + " pattern is placed in the middle of the --size grid, under its RLE rule",
+            "  --at X,Y            place a --load pattern with its top-left cell at column X, row Y",
+            "  --density D         live-cell density of the random soup (default 0.2)",
+            "  --seed N            random seed for the soup",
+            "  --rule NAME         \"" + LifeEngine.RULE_LIFE + "\" (default) or an elementary rule, \"Rule 0\" to \"Rule 255\"",
+            "  --variant RULE      Life-like rule in B/S form, e.g. B3/S23 (default), B36/S23, 23/3;",
+            "                      \"" + LifeEngine.VARIANT_STANDARD + "\" and \"" + LifeEngine.VARIANT_B2S7 + "\" also work",
+            "  --gens N            generations to run (default 1000)",
+            "  --threads N         worker threads (default: available processors)",
+            "  --scalar            use the per-cell reference step instead of the word kernel",
+            "  --no-tiles          recompute every tile each generation, even where nothing changed",
+            "  --unbounded         infinite plane instead of a torus; the grid is a window at (0, 0)",
+            "  --spacetime         elementary rules: write the whole spacetime diagram of row 0 in one pass",
+            "  --center-column N   elementary rules: run N generations from one live cell on a ring wide",
+            "                      enough not to wrap and report the centre column; ignores the grid",
+            "  --collisions PATH   run every setup in a directory (text grids like Colliders/*.txt, " + PatternFile.RLE + ",",
+            "                      " + PatternFile.CELLS + ") at once, each on an unbounded plane, until its debris settles",
+            "                      or --gens runs out; prints a record per collision and collisions/s",
+            "  --sweep L,D         the same over two-glider collisions, head-on and at right angles,",
+            "                      on lanes -L..L with the second glider 0..D-1 generations behind",
+            "  --out FILE          write the collision records to FILE instead of standard output",
+            "  --hashlife          fast-forward with Hashlife (unbounded plane: nothing wraps around)",
+            "  --report N          print progress every N generations (default: off)",
+            "  --cycles P          watch for the grid repeating one of the last P generations and report",
+            "                      the generation and period: 1 when it has gone static",
+            "  --stop-on-cycle     end the run as soon as a cycle is found (default period up to "
+                    + LifeCli.DEFAULT_MAX_PERIOD + ")",
+            "  --metrics FILE      time every phase of each generation into a CSV file and print p50/p99",
+            "                      per phase, load imbalance and bytes allocated per generation",
+            "  --jmx               show the same metrics as the MBean life:type=PipelineMetrics,name=LifeCli",
+            "  --history MB        keep past generations as keyframes and XOR deltas in at most MB",
+            "  --rewind N          after the run, go back N generations through the history (default",
+            "                      budget " + LifeCli.DEFAULT_HISTORY_MB + " MB) before detecting, counting or saving",
+            "  --patterns a,b,...  detect patterns on the final generation (" + String.join(", ", LifeEngine.patternNames()) + ")",
+            "  --census            count every object on the final generation by name",
+            "  --catalog PATH      .rle file or directory of them to add to the census catalog",
+            "  --save FILE         save the final grid: a binary snapshot when FILE ends in " + GridSnapshot.EXTENSION + ",",
+            "                      the live cells as a pattern for " + PatternFile.RLE + " or " + PatternFile.CELLS + ", otherwise text",
+            "  --compress          deflate the snapshot --save writes; small files for sparse boards");
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) throws Exception {
+        int rows = 1000;
+        int cols = 1000;
+        Path load = null;
+        Path save = null;
+        int[] at = null;
+        double density = 0.2;
+        Long seed = null;
+        String rule = LifeEngine.RULE_LIFE;
+        String variant = LifeEngine.VARIANT_STANDARD;
+        long gens = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean scalar = false;
+        boolean hashlife = false;
+        boolean tiles = true;
+        boolean unbounded = false;
+        boolean spacetime = false;
+        int centerColumn = 0;
+        long report = 0;
+        long historyMb = 0;
+        long rewind = 0;
+        int maxPeriod = 0;
+        boolean stopOnCycle = false;
+        Path metricsFile = null;
+        boolean jmx = false;
+        Path collisions = null;
+        int[] sweep = null;
+        Path out = null;
+        List<String> patterns = List.of();
+        boolean census = false;
+        Path catalog = null;
+        boolean compress = false;
+        boolean ruleGiven = false;
+        GridStore.Factory storage = HeapGridStore.FACTORY;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--size": {
+                    String size = value(args, ++i, arg).toLowerCase().replace(" ", "");
+                    if (!size.matches("\\d+x\\d+")) throw new IllegalArgumentException("Bad size: " + size);
+                    String[] parts = size.split("x");
+                    rows = Integer.parseInt(parts[0]);
+                    cols = Integer.parseInt(parts[1]);
+                    break;
+                }
+                case "--load":      load = Path.of(value(args, ++i, arg)); break;
+                case "--at": {
+                    String xy = value(args, ++i, arg).replace(" ", "");
+                    if (!xy.matches("-?\\d+,-?\\d+")) throw new IllegalArgumentException("Bad position: " + xy);
+                    String[] parts = xy.split(",");
+                    at = new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+                    break;
+                }
+                case "--save":      save = Path.of(value(args, ++i, arg)); break;
+                case "--density":   density = Double.parseDouble(value(args, ++i, arg)); break;
+                case "--seed":      seed = Long.parseLong(value(args, ++i, arg)); break;
+                case "--rule":      rule = value(args, ++i, arg); ruleGiven = true; break;
+                case "--variant":   variant = value(args, ++i, arg); ruleGiven = true; break;
+                case "--gens":      gens = Long.parseLong(value(args, ++i, arg)); break;
+                case "--threads":   threads = Integer.parseInt(value(args, ++i, arg)); break;
+                case "--scalar":    scalar = true; break;
+                case "--hashlife":  hashlife = true; break;
+                case "--no-tiles":  tiles = false; break;
+                case "--unbounded": unbounded = true; break;
+                case "--spacetime": spacetime = true; break;
+                case "--center-column": centerColumn = Integer.parseInt(value(args, ++i, arg)); break;
+                case "--storage":   storage = storage(value(args, ++i, arg)); break;
+                case "--report":    report = Long.parseLong(value(args, ++i, arg)); break;
+                case "--cycles":    maxPeriod = Integer.parseInt(value(args, ++i, arg)); break;
+                case "--stop-on-cycle": stopOnCycle = true; break;
+                case "--metrics":   metricsFile = Path.of(value(args, ++i, arg)); break;
+                case "--jmx":       jmx = true; break;
+                case "--collisions": collisions = Path.of(value(args, ++i, arg)); break;
+                case "--sweep": {
+                    String spec = value(args, ++i, arg).replace(" ", "");
+                    if (!spec.matches("\\d+,\\d+")) throw new IllegalArgumentException("Bad sweep: " + spec);
+                    String[] parts = spec.split(",");
+                    sweep = new int[] {Integer.parseInt(parts[0]), Math.max(1, Integer.parseInt(parts[1]))};
+                    break;
+                }
+                case "--out":       out = Path.of(value(args, ++i, arg)); break;
+                case "--history":   historyMb = Long.parseLong(value(args, ++i, arg)); break;
+                case "--rewind":    rewind = Long.parseLong(value(args, ++i, arg)); break;
+                case "--patterns":  patterns = Arrays.asList(value(args, ++i, arg).split(",")); break;
+                case "--census":    census = true; break;
+                case "--catalog":   catalog = Path.of(value(args, ++i, arg)); census = true; break;
+                case "--compress":  compress = true; break;
+                case "-h":
+                case "--help":
+                    System.out.println(USAGE);
+                    return 0;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        for (String name : patterns) {
+            if (LifeEngine.createPattern(name) == null) throw new IllegalArgumentException("Unknown pattern: " + name);
+        }
+
+        if (stopOnCycle && maxPeriod == 0) maxPeriod = DEFAULT_MAX_PERIOD;
+        if (maxPeriod > 0 && unbounded) {
+            throw new IllegalArgumentException("--cycles needs a torus: the grid is only a window with --unbounded.");
+        }
+
+        if (centerColumn > 0) {
+            return centerColumn(ElementaryCA.parseRule(rule), centerColumn);
+        }
+        if (collisions != null || sweep != null) {
+            if (!rule.equals(LifeEngine.RULE_LIFE)) throw new IllegalArgumentException("Collisions need a Life-like rule.");
+            return collisions(collisions, sweep, out, variant, gens, maxPeriod > 0 ? maxPeriod : DEFAULT_COLLISION_PERIOD, threads);
+        }
+
+        GridSnapshot.Header snapshot = load != null ? GridSnapshot.readHeader(load) : null;
+        if (snapshot != null && !ruleGiven) {
+            // Run the snapshot under the rule it was saved with
+            if (snapshot.getRule().startsWith("Rule ")) {
+                rule = snapshot.getRule();
+            } else {
+                rule = LifeEngine.RULE_LIFE;
+                variant = snapshot.getRule();
+            }
+        }
+
+        boolean pattern = load != null && PatternFile.isPatternFile(load);
+        if (pattern && !ruleGiven) {
+            String fileRule = PatternFile.readInfo(load).getRule();
+            if (fileRule != null) {
+                if (fileRule.matches("[Ww]\\d+")) {
+                    rule = "Rule " + fileRule.substring(1);
+                } else {
+                    try {
+                        variant = LifeRule.parse(fileRule).getName();
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Ignoring the pattern's rule: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        try (LifeEngine engine = new LifeEngine(rows, cols, rule, variant, threads, storage);
+             PipelineMetrics metrics = metricsFile != null || jmx ? new PipelineMetrics() : null) {
+            if (metrics != null) {
+                if (metricsFile != null) metrics.logCsv(metricsFile);
+                if (jmx) metrics.register("LifeCli");
+                engine.setMetrics(metrics);
+            }
+            if (pattern) {
+                long loadNs = System.nanoTime();
+                PatternFile.Info info = at != null ? engine.loadPattern(load, at[0], at[1]) : engine.loadPattern(load);
+                System.out.printf(Locale.ROOT, "Placed %s (%dx%d) in %.3f ms%n",
+                        info.getName() != null ? info.getName() : load.getFileName(), info.getWidth(), info.getHeight(),
+                        (System.nanoTime() - loadNs) / 1e6);
+            } else if (load != null) {
+                engine.load(load);
+            } else if (seed != null) {
+                engine.randomize(density, seed);
+            } else {
+                engine.randomize(density);
+            }
+            engine.setWordKernelEnabled(!scalar);
+            engine.setActiveTilesEnabled(tiles);
+            engine.setUnbounded(unbounded);
+            if (historyMb == 0 && rewind > 0) historyMb = DEFAULT_HISTORY_MB;
+            engine.setHistoryBudget(historyMb << 20);
+            engine.setCycleDetection(maxPeriod);
+            engine.setStopOnCycle(stopOnCycle);
+
+            System.out.printf(Locale.ROOT, "Grid %dx%d (%s), %s, %s, %d threads, %s step, initial population %d%n",
+                    engine.getRows(), engine.getCols(), storage.name(), rule,
+                    engine.getElementaryRule() >= 0 ? "-" : engine.getLifeRule().getName(), engine.getThreads(),
+                    hashlife ? "hashlife" : spacetime ? "spacetime" : scalar ? "scalar" : "word", engine.getAliveCount());
+
+            long activeTiles = 0;
+            long startNs = System.nanoTime();
+            if (spacetime) {
+                engine.fillSpacetime();
+                gens = engine.getRows() - 1;
+            } else if (hashlife) {
+                engine.advanceHashlife(gens);
+                HashlifeEngine h = engine.getHashlife();
+                System.out.printf(Locale.ROOT, "  hashlife: %d cached nodes, %d evictions%n", h.getCachedNodes(), h.getEvictions());
+            } else {
+                for (long g = 1; g <= gens; g++) {
+                    engine.step();
+                    activeTiles += engine.getActiveTileCount();
+                    if (report > 0 && g % report == 0) {
+                        System.out.printf(Locale.ROOT, "  gen %d: population %d, active tiles %d/%d%n", engine.getGenerationCount(),
+                                engine.getAliveCount(), engine.getActiveTileCount(), engine.getTileCount());
+                    }
+                    if (engine.isSettled()) {
+                        gens = g;
+                        break;
+                    }
+                }
+            }
+            long elapsedNs = System.nanoTime() - startNs;
+
+            double seconds = elapsedNs / 1e9;
+            double gensPerSec = gens / Math.max(seconds, 1e-9);
+            double cellsPerSec = gensPerSec * engine.getRows() * (double) engine.getCols();
+            System.out.printf(Locale.ROOT, "Ran %d generations in %.3f s: %.1f gen/s, %.3e cells/s, final population %d%n",
+                    gens, seconds, gensPerSec, cellsPerSec, engine.getAliveCount());
+            if (unbounded) {
+                SparseUniverse universe = engine.getUniverse();
+                long[] box = universe.bounds();
+                System.out.printf(Locale.ROOT, "Universe: %d chunks of %dx%d, bounding box %s%n",
+                        universe.getChunkCount(), SparseUniverse.CHUNK, SparseUniverse.CHUNK,
+                        box == null ? "empty" : String.format(Locale.ROOT, "(%d,%d)-(%d,%d)", box[0], box[1], box[2], box[3]));
+            } else if (!hashlife && !spacetime && gens > 0) {
+                System.out.printf(Locale.ROOT, "Average active tiles per generation: %.1f of %d%n",
+                        activeTiles / (double) gens, engine.getTileCount());
+            }
+            if (metrics != null) {
+                System.out.printf(Locale.ROOT, "Phase timings over the last %d generations (ms):%n",
+                        Math.min(metrics.getGenerationsRecorded(), PipelineMetrics.WINDOW));
+                for (int p = 0; p < PipelineMetrics.PHASES; p++) {
+                    if (metrics.rate(p) == 0 && metrics.meanMillis(p) == 0) continue;
+                    System.out.printf(Locale.ROOT, "  %-8s p50 %.3f  p99 %.3f  mean %.3f%n", PipelineMetrics.phaseName(p),
+                            metrics.percentileMillis(p, 0.5), metrics.percentileMillis(p, 0.99), metrics.meanMillis(p));
+                }
+                System.out.printf(Locale.ROOT, "  load imbalance %.2f, %.0f bytes allocated per generation%n",
+                        metrics.getLoadImbalance(), metrics.getAllocatedBytesPerGeneration());
+            }
+            CycleDetector cycles = engine.getCycleDetector();
+            if (cycles != null) {
+                System.out.println("Cycle: " + cycles.describe()
+                        + (cycles.hasCycle() ? ", found at generation " + (cycles.getStartGeneration() + cycles.getPeriod()) : ""));
+            }
+            GridHistory history = engine.getHistory();
+            if (history != null && !history.isEmpty()) {
+                System.out.printf(Locale.ROOT, "History: generations %d-%d, %d keyframes, %.2f MB (%.1f grids)%n",
+                        history.getOldestGeneration(), history.getNewestGeneration(), history.getKeyframeCount(),
+                        history.getMemoryBytes() / 1048576.0,
+                        history.getMemoryBytes() / (8.0 * engine.getRows() * engine.getGrid().getWords()));
+            }
+            if (rewind > 0) {
+                long target = engine.getGenerationCount() - rewind;
+                long seekNs = System.nanoTime();
+                engine.seekGeneration(target);
+                System.out.printf(Locale.ROOT, "Rewound to generation %d in %.3f ms, population %d%n",
+                        target, (System.nanoTime() - seekNs) / 1e6, engine.getAliveCount());
+            }
+
+            if (!patterns.isEmpty()) {
+                long detectNs = System.nanoTime();
+                Map<String, Long> found = engine.detectPatterns(patterns);
+                detectNs = System.nanoTime() - detectNs;
+                for (Map.Entry<String, Long> e : found.entrySet()) {
+                    System.out.printf(Locale.ROOT, "  %-8s %d%n", e.getKey(), e.getValue());
+                }
+                System.out.printf(Locale.ROOT, "Pattern detection took %.3f ms%n", detectNs / 1e6);
+            }
+
+            if (census) {
+                if (catalog != null) engine.getCatalog().load(catalog);
+                long censusNs = System.nanoTime();
+                ObjectCensus.Result result = engine.census();
+                censusNs = System.nanoTime() - censusNs;
+                System.out.printf(Locale.ROOT, "Census: %d objects, %d cells%n", result.getObjectCount(), result.getCellCount());
+                for (Map.Entry<String, Long> e : result.getKnown().entrySet()) {
+                    System.out.printf(Locale.ROOT, "  %-16s %d%n", e.getKey(), e.getValue());
+                }
+                int shown = 0;
+                for (Map.Entry<String, Long> e : result.getUnknown().entrySet()) {
+                    if (shown++ == CENSUS_UNKNOWN_SHOWN) break;
+                    System.out.printf(Locale.ROOT, "  %-16s %d%n", e.getKey(), e.getValue());
+                }
+                if (result.getUnknown().size() > CENSUS_UNKNOWN_SHOWN) {
+                    System.out.printf(Locale.ROOT, "  ... %d more kinds of object%n", result.getUnknown().size() - CENSUS_UNKNOWN_SHOWN);
+                }
+                System.out.printf(Locale.ROOT, "Census took %.3f ms%n", censusNs / 1e6);
+            }
+
+            if (save != null) {
+                String name = save.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(GridSnapshot.EXTENSION)) {
+                    engine.saveSnapshot(save, compress);
+                } else if (name.endsWith(PatternFile.RLE)) {
+                    engine.saveAsRle(save);
+                } else if (name.endsWith(PatternFile.CELLS)) {
+                    engine.saveAsCells(save);
+                } else {
+                    engine.saveAsText(save);
+                }
+                System.out.println("Saved " + save.toAbsolutePath());
+            }
+        }
+        return 0;
+    }
+
+    /** Runs a collision batch and prints its throughput. */
+    private static int collisions(Path path, int[] sweep, Path out, String variant, long gens, int maxPeriod,
+                                  int threads) throws Exception {
+        CollisionBatch batch = new CollisionBatch(variant, gens, maxPeriod, threads);
+        List<CollisionBatch.Setup> setups = new ArrayList<>();
+        if (path != null) setups.addAll(CollisionBatch.load(path));
+        if (sweep != null) setups.addAll(CollisionBatch.sweep(LifeRule.parse(variant), sweep[0], sweep[1]));
+
+        long[] settled = new long[1];
+        long startNs = System.nanoTime();
+        try (PrintStream records = out != null ? new PrintStream(Files.newOutputStream(out), false, StandardCharsets.UTF_8)
+                : null) {
+            PrintStream sink = records != null ? records : System.out;
+            sink.println(CollisionBatch.Result.HEADER);
+            batch.run(setups, result -> {
+                if (result.isSettled()) settled[0]++;
+                sink.println(result.toRecord());
+            });
+            sink.flush();
+        }
+        double seconds = (System.nanoTime() - startNs) / 1e9;
+        System.out.printf(Locale.ROOT, "Evaluated %d collisions on %d threads in %.3f s: %.1f collisions/s, %d settled within %d generations%n",
+                setups.size(), Math.max(1, threads), seconds, setups.size() / Math.max(seconds, 1e-9), settled[0], gens);
+        if (out != null) System.out.println("Saved " + out.toAbsolutePath());
+        return 0;
+    }
+
+    /**
+     * Runs an elementary rule from one live cell and prints throughput and simple
+     * randomness statistics of the centre column: the share of ones, the longest run
+     * and a chi-square over its bytes (255 degrees of freedom, about 255 when uniform).
+     */
+    private static int centerColumn(int rule, int gens) {
+        // The light cone grows one cell per side per generation, so this ring never wraps
+        ElementaryCA ca = new ElementaryCA(rule, 2 * gens + 64);
+        ca.seedCenter();
+        long startNs = System.nanoTime();
+        long[] column = ca.centerColumn(gens);
+        double seconds = (System.nanoTime() - startNs) / 1e9;
+
+        long ones = 0;
+        int longestRun = 0;
+        int run = 0;
+        boolean last = false;
+        long[] byteCounts = new long[256];
+        for (int g = 0; g < gens; g++) {
+            boolean bit = ((column[g >>> 6] >>> (g & 63)) & 1) != 0;
+            if (bit) ones++;
+            run = g > 0 && bit == last ? run + 1 : 1;
+            longestRun = Math.max(longestRun, run);
+            last = bit;
+        }
+        int bytes = gens / 8;
+        for (int b = 0; b < bytes; b++) {
+            byteCounts[(int) (column[b >>> 3] >>> ((b & 7) << 3)) & 0xFF]++;
+        }
+        double chiSquare = 0;
+        double expected = bytes / 256.0;
+        for (long count : byteCounts) chiSquare += (count - expected) * (count - expected) / Math.max(expected, 1e-9);
+
+        System.out.printf(Locale.ROOT, "Rule %d from one cell: %d generations in %.3f s, %.1f gen/s%n",
+                rule, gens, seconds, gens / Math.max(seconds, 1e-9));
+        System.out.printf(Locale.ROOT, "Centre column: %.5f ones, longest run %d, byte chi-square %.1f over %d bytes%n",
+                ones / (double) gens, longestRun, chiSquare, bytes);
+        return 0;
+    }
+
+    private static GridStore.Factory storage(String kind) {
+        if (kind.equals("heap")) return HeapGridStore.FACTORY;
+        if (kind.equals("direct")) return OffHeapGridStore.direct();
+        if (kind.equals("mapped")) return OffHeapGridStore.mapped(Path.of(System.getProperty("java.io.tmpdir")));
+        if (kind.startsWith("mapped:")) return OffHeapGridStore.mapped(Path.of(kind.substring("mapped:".length())));
+        throw new IllegalArgumentException("Unknown storage: " + kind);
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+}
@@ -0,0 +1,860 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Headless simulation state and step logic.
+ * Holds the packed grid (8 cells per byte), generation N-1 for pattern
+ * detection and the worker team that steps and scans it; no JavaFX stage is needed to run it.
+ * Grids are GridStores from one factory, so they can live on or off the heap.
+ */
+public class LifeEngine implements AutoCloseable {
+
+    public static final int MAX_SIZE = 5000;
+    /** Size limit for grids kept outside the heap. */
+    public static final int MAX_OFF_HEAP_SIZE = 100_000;
+    public static final String RULE_LIFE = "Game of Life";
+    public static final String RULE_30 = "Rule 30";
+    public static final String VARIANT_STANDARD = "Standard (B3/S23)";
+    public static final String VARIANT_B2S7 = "Variant (B2/S7)";
+
+    private static final List<String> PATTERN_NAMES = List.of("Block", "Blinker", "Glider", "Beehive");
+
+    private int rows;
+    private int cols;
+    private final String selectedRule;
+    private final String selectedLifeVariant;
+    // Compiled once from the strings above; the step loops never look at the strings
+    private final int elementaryRule; // Wolfram rule number, or -1 under Life-like rules
+    private final LifeRule lifeRule;
+    private ElementaryCA elementary;  // Row stepper for elementary rules, as wide as the grid
+
+    private final GridStore.Factory storage;
+    // Ring of two preallocated generation buffers, swapped every step instead of copied:
+    // between steps 'grid' holds N and 'next' still holds N-1, which is both the frame
+    // pattern detection compares against and what lets the tiled step skip quiet tiles.
+    private GridStore grid;
+    private GridStore next;
+    private boolean hasPrevious;
+
+    private HighlightLayers highlights; // Allocated on first use; a bit plane per pattern in use
+
+    /** Rows per unit of work for the row-based step paths. */
+    private static final int ROWS_PER_UNIT = 16;
+    /** Per-worker counters sit a cache line apart. */
+    private static final int COUNT_STRIDE = 8;
+
+    private static final int MODE_ELEMENTARY = 0;
+    private static final int MODE_SCALAR = 1;
+    private static final int MODE_WORD = 2;
+    private static final int MODE_TILES = 3;
+
+    private final int threads;
+    private final StepTeam team;
+    private BitboardKernel[] kernels;   // One per team worker
+    private final long[] workerCounts;
+
+    // The generation being stepped, read by the team jobs
+    private int stepMode;
+    private final StepTeam.Job stepJob = this::stepUnit;
+
+    // Pattern detection, also run on the team: the scanner is compiled once per selection
+    // and its matches are kept per tile between generations
+    private List<String> scannerNames;
+    private DetectionTiles detection;
+    private DensityPyramid pyramid;     // Built when a zoomed-out view first asks; kept current per tile
+    private ObjectCensus census;        // Built on first use; keeps its code cache between censuses
+    private boolean useWordKernel = true;
+    private boolean useActiveTiles = true;
+    private ActiveTiles tiles;
+    private HashlifeEngine hashlife;
+    private SparseUniverse universe;
+    private GridHistory history;         // Past generations for seekGeneration; null until given a budget
+    private boolean historyStale = true; // The grid changed other than by a step since history last saw it
+    private CycleDetector cycles;        // Null unless cycle detection is on
+    private volatile boolean stopOnCycle;
+    private long gridHash;               // GridHash of the grid while hashValid
+    private boolean hashValid;
+    private long[] tileHashes;           // GridHash of each tile while tileHashesValid
+    private boolean tileHashesValid;
+    private boolean hashStep;            // The step in progress keeps the hashes
+    private final long[] workerHashes;
+    private volatile PipelineMetrics metrics; // Null unless timing the pipeline
+
+    private volatile long currentAliveCount = 0;
+    private volatile long generationCount = 0;
+
+    public LifeEngine(int rows, int cols, String rule, String lifeVariant) {
+        this(rows, cols, rule, lifeVariant, Runtime.getRuntime().availableProcessors());
+    }
+
+    public LifeEngine(int rows, int cols, String rule, String lifeVariant, int threads) {
+        this(rows, cols, rule, lifeVariant, threads, HeapGridStore.FACTORY);
+    }
+
+    /**
+     * @param storage  where the generation buffers live, e.g.
+     *                 HeapGridStore.FACTORY or OffHeapGridStore.mapped(dir)
+     */
+    public LifeEngine(int rows, int cols, String rule, String lifeVariant, int threads, GridStore.Factory storage) {
+        this.storage = storage;
+        checkSize(rows, cols);
+        this.selectedRule = rule;
+        this.selectedLifeVariant = lifeVariant;
+        this.elementaryRule = rule.equals(RULE_LIFE) ? -1 : ElementaryCA.parseRule(rule);
+        this.lifeRule = elementaryRule >= 0 ? LifeRule.CONWAY : LifeRule.parse(lifeVariant);
+        this.threads = Math.max(1, threads);
+        this.team = new StepTeam(this.threads, "life-step");
+        this.workerCounts = new long[this.threads * COUNT_STRIDE];
+        this.workerHashes = new long[this.threads * COUNT_STRIDE];
+        allocate(rows, cols, null);
+    }
+
+    private void checkSize(int rows, int cols) {
+        int max = storage.maxSize();
+        if (rows <= 0 || cols <= 0 || rows > max || cols > max) {
+            throw new IllegalArgumentException("Grid size must be between 1x1 and " + max + "x" + max + ".");
+        }
+    }
+
+    /** Replaces the grids with new ones of the given size, grid being first when it is not null. */
+    private void allocate(int newRows, int newCols, GridStore first) {
+        releaseGrids();
+        rows = newRows;
+        cols = newCols;
+        grid = first != null ? first : storage.create(rows, cols);
+        next = storage.create(rows, cols);
+        hasPrevious = false;
+        highlights = null;
+        detection = null;
+        pyramid = null;
+        tiles = new ActiveTiles(rows, cols);
+        kernels = new BitboardKernel[threads];
+        for (int w = 0; w < threads; w++) kernels[w] = new BitboardKernel(cols);
+        elementary = elementaryRule >= 0 ? new ElementaryCA(elementaryRule, cols) : null;
+        if (history != null) {
+            // Keep the budget if a keyframe of the new size still fits in it
+            long budget = history.getBudget();
+            history.close();
+            history = budget >= GridHistory.keyframeBytes(rows, cols)
+                    ? new GridHistory(storage, rows, cols, budget) : null;
+        }
+        tileHashes = null;
+        tileHashesValid = false;
+        hashValid = false;
+        if (cycles != null) cycles.reset();
+    }
+
+    private void releaseGrids() {
+        if (grid != null) grid.close();
+        if (next != null) next.close();
+        if (highlights != null) highlights.close();
+    }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public String getRule() { return selectedRule; }
+    public String getLifeVariant() { return selectedLifeVariant; }
+    /** The compiled Life-like rule; meaningless under elementary rules. */
+    public LifeRule getLifeRule() { return lifeRule; }
+    /** Wolfram number of the elementary rule, or -1 under a Life-like rule. */
+    public int getElementaryRule() { return elementaryRule; }
+    /** The rule as snapshots record it: "Rule N" for elementary rules, else the B/S form. */
+    public String getRuleName() {
+        return elementaryRule >= 0 ? "Rule " + elementaryRule : lifeRule.getName();
+    }
+    public GridStore.Factory getStorage() { return storage; }
+    public int getThreads() { return threads; }
+
+    /** Current generation N. Only read it while no step is running. */
+    public GridStore getGrid() { return grid; }
+
+    /** Generation N-1, or the current grid when there is no history yet. */
+    public GridStore getPreviousGrid() {
+        return hasPrevious ? next : grid;
+    }
+
+    /** Cells marked by detectPatterns, layer highlightLayer(name) for each pattern. */
+    public HighlightLayers getHighlights() {
+        if (highlights == null) highlights = new HighlightLayers(storage, rows, cols);
+        return highlights;
+    }
+
+    public long getGenerationCount() { return generationCount; }
+    public long getAliveCount() { return currentAliveCount; }
+
+    /** Switches between the word-parallel kernel and the per-cell reference path. */
+    public void setWordKernelEnabled(boolean enabled) { useWordKernel = enabled; }
+    public boolean isWordKernelEnabled() { return useWordKernel; }
+
+    /**
+     * Switches to an unbounded plane backed by a SparseUniverse. The grid then becomes a
+     * window onto world cells [0, cols) x [0, rows); nothing wraps around, and patterns keep
+     * running after they leave the window. The alive count covers the whole universe.
+     */
+    public void setUnbounded(boolean enabled) {
+        if (enabled && (elementary != null || lifeRule.birthOnEmpty())) {
+            throw new IllegalStateException("The unbounded plane needs a Life-like rule without B0.");
+        }
+        if (enabled == (universe != null)) return;
+        if (enabled) {
+            universe = new SparseUniverse(lifeRule, team);
+            universe.load(grid);
+            currentAliveCount = universe.getPopulation();
+        } else {
+            universe = null;
+            currentAliveCount = countAlive();
+        }
+        tiles.invalidate();
+    }
+
+    public boolean isUnbounded() { return universe != null; }
+
+    /** The backing universe in unbounded mode, otherwise null. */
+    public SparseUniverse getUniverse() { return universe; }
+
+    /**
+     * Keeps past generations in a GridHistory of at most the given size, so that
+     * seekGeneration can go back to them; 0 or less turns history off. Keyframes come
+     * from the grid's factory. Resizing to a grid whose keyframe no longer fits the
+     * budget turns history off.
+     * @throws IllegalArgumentException if the budget is smaller than one keyframe of the grid
+     */
+    public void setHistoryBudget(long bytes) {
+        if (bytes <= 0) {
+            if (history != null) history.close();
+            history = null;
+        } else if (history == null) {
+            history = new GridHistory(storage, rows, cols, bytes);
+            historyStale = true;
+        } else {
+            history.setBudget(bytes);
+        }
+    }
+
+    /** Generations kept for seekGeneration, or null when history is off. Only read it while no step is running. */
+    public GridHistory getHistory() { return history; }
+
+    /**
+     * Makes a generation the history retains the grid again. Stepping on from it finds
+     * the generations after it still retained and leaves them as they are; editing it
+     * drops them. In unbounded mode only the window was kept, so they are dropped anyway.
+     */
+    public void seekGeneration(long generation) {
+        if (history == null) throw new IllegalStateException("History is off.");
+        syncHistory();
+        if (!history.contains(generation)) {
+            throw new IllegalArgumentException("Generation " + generation + " is no longer retained.");
+        }
+        history.restore(generation, grid, generationCount);
+        generationCount = generation;
+        clearHighlights();
+        resetHistory();
+        historyStale = universe != null; // The plane outside the window is gone
+    }
+
+    /** Gives history the grid as a keyframe if it was changed other than by a step. */
+    private void syncHistory() {
+        if (history != null && historyStale) {
+            history.keyframe(grid, generationCount);
+            historyStale = false;
+        }
+    }
+
+    /**
+     * The GridHash of the grid. Steps keep it current while cycle detection is on,
+     * rehashing only the tiles they changed; otherwise it is worked out when asked.
+     */
+    public long getGridHash() {
+        if (!hashValid) {
+            gridHash = GridHash.of(grid);
+            hashValid = true;
+        }
+        return gridHash;
+    }
+
+    /**
+     * Watches every generation for the grid repeating one of the last maxPeriod,
+     * which settles whether it has gone static or into a cycle; 0 or less turns it off.
+     * Not in unbounded mode, where the grid is only a window on what is stepped.
+     */
+    public void setCycleDetection(int maxPeriod) {
+        cycles = maxPeriod > 0 ? new CycleDetector(maxPeriod) : null;
+    }
+
+    /** The cycle detector, or null when detection is off. */
+    public CycleDetector getCycleDetector() { return cycles; }
+
+    /** Makes step(long), and a SimulationClock, stop at the generation where a cycle is found. */
+    public void setStopOnCycle(boolean stop) { stopOnCycle = stop; }
+    public boolean isStopOnCycle() { return stopOnCycle; }
+
+    /** True if the last step found a cycle and runs should stop there. */
+    public boolean isSettled() {
+        CycleDetector c = cycles;
+        return stopOnCycle && c != null && c.hasCycle() && c.getStartGeneration() + c.getPeriod() == generationCount;
+    }
+
+    /**
+     * Times every phase of the pipeline from now on into the given metrics, with the
+     * step team's load imbalance and the bytes allocated per generation; null stops.
+     */
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+        team.setTimed(metrics != null);
+    }
+
+    public PipelineMetrics getMetrics() { return metrics; }
+
+    /** Skips tiles whose neighbourhood did not change; only used with the word kernel. */
+    public void setActiveTilesEnabled(boolean enabled) { useActiveTiles = enabled; }
+    public boolean isActiveTilesEnabled() { return useActiveTiles; }
+
+    /** Tiles computed in the last generation, out of getTileCount(). */
+    public int getActiveTileCount() { return tiles.getActiveCount(); }
+    public int getTileCount() { return tiles.getTileCount(); }
+
+    public boolean getBit(int x, int y) {
+        return grid.get(x, y);
+    }
+
+    public void setBit(int x, int y, boolean value) {
+        boolean was = grid.get(x, y);
+        grid.set(x, y, value);
+        if (was != value) {
+            if (universe != null) universe.set(x, y, value);
+            currentAliveCount += value ? 1 : -1;
+            historyStale = true;
+            if (hashValid || tileHashesValid) {
+                int i = x >> 6;
+                long w = grid.readWord(y, i);
+                long change = GridHash.word(y, i, grid.getWords(), w) ^ GridHash.word(y, i, grid.getWords(), w ^ (1L << x));
+                if (hashValid) gridHash ^= change;
+                if (tileHashesValid) tileHashes[y / ActiveTiles.TILE_ROWS * tiles.getTilesX() + i] ^= change;
+            }
+            if (cycles != null) cycles.reset();
+            tiles.invalidate();
+            if (detection != null) detection.invalidate();
+            if (pyramid != null) pyramid.markCell(x, y);
+        }
+    }
+
+    /** Fills the grid at random with the given live-cell density. */
+    public void randomize(double density) {
+        randomize(density, new Random());
+    }
+
+    public void randomize(double density, long seed) {
+        randomize(density, new Random(seed));
+    }
+
+    private void randomize(double density, Random random) {
+        int words = grid.getWords();
+        for (int y = 0; y < rows; y++) {
+            // Same draw order as cell-by-cell filling, one word written at a time
+            for (int i = 0; i < words; i++) {
+                long w = 0;
+                int end = Math.min(64, cols - (i << 6));
+                for (int b = 0; b < end; b++) {
+                    if (random.nextDouble() < density) w |= 1L << b;
+                }
+                grid.writeWord(y, i, w);
+            }
+        }
+        resetHistory();
+    }
+
+    /** Kills every cell and restarts history. */
+    public void clear() {
+        grid.clear();
+        clearHighlights();
+        resetHistory();
+    }
+
+    private void resetHistory() {
+        // 'next' no longer holds N-1 of this grid, so the next step computes every tile
+        tiles.invalidate();
+        if (detection != null) detection.invalidate();
+        if (pyramid != null) pyramid.markAll();
+        hasPrevious = false;
+        historyStale = true;
+        hashValid = false;
+        tileHashesValid = false;
+        if (cycles != null) cycles.reset();
+        if (universe != null) {
+            universe.load(grid);
+            currentAliveCount = universe.getPopulation();
+        } else {
+            currentAliveCount = countAlive();
+        }
+    }
+
+    /** Counts live cells in the current grid. */
+    public long countAlive() {
+        return grid.countAlive();
+    }
+
+    /** Advances one generation, keeping N-1 for pattern detection. */
+    public void step() throws InterruptedException {
+        PipelineMetrics m = metrics;
+        long allocated = m != null ? PipelineMetrics.allocatedBytes() : 0;
+        long t0 = now(m);
+        syncHistory();
+        long t1 = now(m);
+        boolean watch = cycles != null && universe == null;
+        if (watch && cycles.isEmpty()) cycles.add(generationCount, getGridHash());
+        long t2 = now(m);
+        boolean tiled = updateGridParallel();
+        long t3 = now(m);
+        generationCount++;
+        // Only the tiles the step marked changed can differ from N-1
+        if (history != null) history.record(next, grid, generationCount, tiled ? tiles : null);
+        long t4 = now(m);
+        if (watch) cycles.add(generationCount, getGridHash());
+        if (m != null) {
+            m.phase(PipelineMetrics.STEP, t3 - t2);
+            if (history != null) m.phase(PipelineMetrics.HISTORY, t1 - t0 + t4 - t3);
+            if (watch) m.phase(PipelineMetrics.CYCLES, t2 - t1 + now(m) - t4);
+            m.endGeneration(generationCount, currentAliveCount, tiles.getActiveCount(), tiles.getTileCount(),
+                    team.getImbalance(), PipelineMetrics.allocatedBytes() - allocated);
+        }
+    }
+
+    private static long now(PipelineMetrics m) {
+        return m != null ? System.nanoTime() : 0;
+    }
+
+    /** The new generation becomes the grid; the old grid is kept as N-1 and written over next step. */
+    private void swapBuffers() {
+        GridStore t = grid;
+        grid = next;
+        next = t;
+        hasPrevious = true;
+    }
+
+    /**
+     * Under an elementary rule, writes the whole spacetime diagram of row 0 in one pass:
+     * row y becomes generation y of row 0. That is where stepping settles after rows - 1
+     * generations, so the count moves on by that much; N-1 is not kept.
+     */
+    public void fillSpacetime() {
+        if (elementary == null) throw new IllegalStateException("Spacetime diagrams need an elementary rule.");
+        elementary.readRow(grid, 0);
+        elementary.step();
+        elementary.fill(grid, 1, rows);
+        generationCount += rows - 1;
+        resetHistory();
+    }
+
+    /** Advances the given number of generations, or fewer if isSettled(); returns how many. */
+    public long step(long generations) throws InterruptedException {
+        for (long i = 0; i < generations; i++) {
+            step();
+            if (isSettled()) return i + 1;
+        }
+        return generations;
+    }
+
+    /**
+     * Fast-forwards with the Hashlife backend. The grid is treated as a window on an
+     * unbounded plane rather than a torus, so anything that leaves it is dropped.
+     * The last generation is stepped normally so N-1 is available for pattern detection.
+     */
+    public void advanceHashlife(long generations) throws InterruptedException {
+        if (elementary != null || lifeRule.birthOnEmpty()) {
+            throw new IllegalStateException("Hashlife needs a Life-like rule without B0.");
+        }
+        if (generations <= 0) return;
+        if (hashlife == null) {
+            hashlife = new HashlifeEngine(lifeRule);
+        }
+        if (generations > 1) {
+            hashlife.load(grid);
+            hashlife.advance(generations - 1);
+            hashlife.store(grid);
+            tiles.invalidate();
+            if (pyramid != null) pyramid.markAll();
+            if (universe != null) universe.load(grid);
+            generationCount += generations - 1;
+            historyStale = true; // The generations jumped over are not retained
+            hashValid = false;
+            tileHashesValid = false;
+            if (cycles != null) cycles.reset();
+        }
+        step();
+    }
+
+    public HashlifeEngine getHashlife() { return hashlife; }
+
+    /** Steps the grid; true if the tiles marked changed are the only ones that changed. */
+    private boolean updateGridParallel() throws InterruptedException {
+        if (universe != null) {
+            universe.step();
+            universe.store(next, 0, 0);
+            swapBuffers();
+            currentAliveCount = universe.getPopulation();
+            tiles.invalidate();
+            tiles.prepare();
+            if (pyramid != null) pyramid.markAll();
+            hashValid = false;
+            tileHashesValid = false;
+            return false;
+        }
+
+        boolean tiled = elementary == null && useWordKernel && useActiveTiles;
+        hashStep = cycles != null;
+        // Tile hashes are rebuilt by computing every tile once
+        if (!tiled || (hashStep && !tileHashesValid)) tiles.invalidate();
+        tiles.prepare();
+        if (hashStep && tiled && tileHashes == null) tileHashes = new long[tiles.getTileCount()];
+
+        stepMode = elementary != null ? MODE_ELEMENTARY : tiled ? MODE_TILES : useWordKernel ? MODE_WORD : MODE_SCALAR;
+        Arrays.fill(workerCounts, 0);
+        if (hashStep) Arrays.fill(workerHashes, 0);
+        for (BitboardKernel kernel : kernels) kernel.setHashing(hashStep);
+
+        // Tiled steps hand out whole rows of tiles, the others blocks of rows
+        int units = tiled ? tiles.getTilesY() : (rows + ROWS_PER_UNIT - 1) / ROWS_PER_UNIT;
+        team.run(units, stepJob);
+
+        if (tiled) {
+            tiles.finish();
+            currentAliveCount = tiles.totalPopulation();
+            if (pyramid != null) markChangedTiles();
+            if (hashStep) {
+                long h = 0;
+                for (long t : tileHashes) h ^= t;
+                gridHash = h;
+            }
+            tileHashesValid = hashStep;
+        } else {
+            if (pyramid != null) pyramid.markAll();
+            long total = 0;
+            long h = 0;
+            for (int w = 0; w < threads; w++) {
+                total += workerCounts[w * COUNT_STRIDE];
+                h ^= workerHashes[w * COUNT_STRIDE];
+            }
+            currentAliveCount = total;
+            gridHash = h;
+            tileHashesValid = false;
+        }
+        hashValid = hashStep;
+        swapBuffers();
+        return tiled;
+    }
+
+    private void markChangedTiles() {
+        for (int ty = 0; ty < tiles.getTilesY(); ty++) {
+            for (int tx = 0; tx < tiles.getTilesX(); tx++) {
+                if (tiles.isChanged(tx, ty)) pyramid.markTile(tx, ty);
+            }
+        }
+    }
+
+    private void stepUnit(int worker, int unit) {
+        if (stepMode == MODE_TILES) {
+            stepActiveTiles(kernels[worker], unit);
+            return;
+        }
+        int start = unit * ROWS_PER_UNIT;
+        int end = Math.min(rows, start + ROWS_PER_UNIT);
+        long count;
+        if (stepMode == MODE_ELEMENTARY) {
+            count = stepElementary(start, end);
+        } else if (stepMode == MODE_WORD) {
+            // Word-parallel path: 64 cells per step, population counted in the same pass
+            BitboardKernel kernel = kernels[worker];
+            count = kernel.stepRows(grid, next, start, end, lifeRule);
+            if (hashStep) {
+                long h = 0;
+                for (int i = 0; i < next.getWords(); i++) h ^= kernel.wordHash(i);
+                workerHashes[worker * COUNT_STRIDE] ^= h;
+            }
+        } else {
+            count = stepLifeScalar(start, end);
+        }
+        workerCounts[worker * COUNT_STRIDE] += count;
+        if (hashStep && stepMode != MODE_WORD) workerHashes[worker * COUNT_STRIDE] ^= GridHash.of(next, start, end, 0, next.getWords());
+    }
+
+    /**
+     * Computes the active tiles in tile row ty into 'next', which holds N-1. An inactive
+     * tile did not change from N-1 to N and will not change in N+1, so its N-1 content
+     * is already right and it is left alone.
+     */
+    private void stepActiveTiles(BitboardKernel kernel, int ty) {
+        int y0 = tiles.firstRow(ty);
+        int y1 = tiles.endRow(ty);
+        int tx = 0;
+        while (tx < tiles.getTilesX()) {
+            if (!tiles.isActive(tx, ty)) {
+                tiles.markUnchanged(tx, ty);
+                tx++;
+                continue;
+            }
+            // Step each run of neighbouring active tiles as one span
+            int end = tx;
+            while (end < tiles.getTilesX() && tiles.isActive(end, ty)) end++;
+            kernel.stepSpan(grid, next, y0, y1, tx, end, lifeRule);
+            for (; tx < end; tx++) {
+                boolean changed = kernel.wordChanged(tx);
+                tiles.record(tx, ty, changed, kernel.wordPopulation(tx));
+                // While hashes are being rebuilt every tile is active and hashed
+                if (hashStep && (changed || !tileHashesValid)) tileHashes[ty * tiles.getTilesX() + tx] = kernel.wordHash(tx);
+            }
+        }
+    }
+
+
+    /** Per-cell reference path, kept for verification and benchmarking. */
+    private long stepLifeScalar(int start, int end) {
+        long count = 0;
+        for (int y = start; y < end; y++) {
+            for (int x = 0; x < cols; x++) {
+                int neighbors = countNeighbors(x, y);
+                boolean alive = grid.get(x, y);
+                boolean nextState = lifeRule.next(alive, neighbors);
+                if (nextState) count++;
+                next.set(x, y, nextState);
+            }
+        }
+        return count;
+    }
+
+    /** Row y of the next grid is the elementary rule applied to row y-1; row 0 is kept. */
+    private long stepElementary(int start, int end) {
+        long count = 0;
+        for (int y = start; y < end; y++) {
+            if (y == 0) {
+                next.copyFrom(grid, 0, 1, 0, grid.getWords());
+                for (int i = 0; i < grid.getWords(); i++) count += Long.bitCount(grid.readWord(0, i));
+            } else {
+                count += elementary.stepRow(grid, y - 1, next, y);
+            }
+        }
+        return count;
+    }
+
+    private int countNeighbors(int x, int y) {
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            int ny = (y + dy + rows) % rows;
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                int nx = (x + dx + cols) % cols;
+                if (grid.get(nx, ny)) count++;
+            }
+        }
+        return count;
+    }
+
+    private void clearHighlights() {
+        if (highlights != null) highlights.clear();
+    }
+
+    /** Names accepted by createPattern and detectPatterns. */
+    public static List<String> patternNames() {
+        return PATTERN_NAMES;
+    }
+
+    /**
+     * The highlight layer a pattern marks: its place in patternNames(), so a palette
+     * built from those names colors each pattern the same whatever is selected.
+     */
+    public static int highlightLayer(String name) {
+        return PATTERN_NAMES.indexOf(name);
+    }
+
+    public static LifePattern createPattern(String name) {
+        switch (name) {
+            case "Block":   return new BlockPattern();
+            case "Blinker": return new BlinkerPattern();
+            case "Glider":  return new GliderPattern();
+            case "Beehive": return new BeehivePattern();
+            default:        return null;
+        }
+    }
+
+    /**
+     * Finds the selected patterns by comparing N-1 and N and marks each in its own
+     * highlight layer. All of them are found in one pass, in tiles on the team; from
+     * one generation to the next only tiles near a change are scanned again.
+     *
+     * @return number of matching anchors per pattern name
+     */
+    public Map<String, Long> detectPatterns(List<String> selectedPatterns) throws InterruptedException {
+        PipelineMetrics m = metrics;
+        long start = now(m);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (selectedPatterns == null || selectedPatterns.isEmpty()) {
+            clearHighlights();
+            scannerNames = null;
+            detection = null;
+            return counts;
+        }
+
+        if (detection == null || !selectedPatterns.equals(scannerNames)) {
+            List<LifePattern> patterns = new ArrayList<>();
+            for (String name : selectedPatterns) {
+                LifePattern pattern = createPattern(name);
+                if (pattern != null) patterns.add(pattern);
+            }
+            int[] layers = new int[patterns.size()];
+            for (int p = 0; p < layers.length; p++) layers[p] = highlightLayer(patterns.get(p).getName());
+            // Patterns no longer selected give their planes back; the first update clears the rest
+            getHighlights().keepOnly(layers);
+            detection = new DetectionTiles(new PatternScanner(patterns), layers, rows, cols, threads);
+            scannerNames = List.copyOf(selectedPatterns);
+        }
+        long[] totals = detection.update(getPreviousGrid(), grid, generationCount, getHighlights(), team);
+
+        List<LifePattern> patterns = detection.getScanner().getPatterns();
+        for (String name : selectedPatterns) counts.putIfAbsent(name, 0L);
+        for (int p = 0; p < patterns.size(); p++) {
+            counts.merge(patterns.get(p).getName(), totals[p], Long::sum);
+        }
+        if (m != null) m.phase(PipelineMetrics.DETECT, System.nanoTime() - start);
+        return counts;
+    }
+
+    /** Tiles the last detectPatterns scanned, out of getDetectionTileCount(). */
+    public int getDetectionRescanCount() { return detection == null ? 0 : detection.getRescanCount(); }
+    public int getDetectionTileCount() { return detection == null ? 0 : detection.getTileCount(); }
+
+    /**
+     * Draws a view of the grid and its highlights into the rasterizer's frame, in bands
+     * on the team. Zoomed-out views read the density pyramid, which is brought up to
+     * date first.
+     */
+    public void rasterize(FrameRasterizer raster, FrameRasterizer.View view) throws InterruptedException {
+        PipelineMetrics m = metrics;
+        long start = now(m);
+        DensityPyramid counts = null;
+        if (view.needsPyramid()) {
+            if (pyramid == null) pyramid = new DensityPyramid(rows, cols);
+            pyramid.refresh(grid, team);
+            counts = pyramid;
+        }
+        raster.draw(view, grid, highlights, counts, team);
+        if (m != null) m.phase(PipelineMetrics.RASTER, System.nanoTime() - start);
+    }
+
+    /**
+     * Counts every object on the grid by name, from the built-in catalog for the rule
+     * unless another was set. The grid wraps unless the plane is unbounded.
+     */
+    public ObjectCensus.Result census() throws InterruptedException {
+        if (elementary != null) {
+            throw new IllegalStateException("The census needs a Life-like rule.");
+        }
+        return objectCensus().take(grid, universe == null);
+    }
+
+    /** Catalog the census names objects from; it should be built for this engine's rule. */
+    public void setCatalog(PatternCatalog catalog) {
+        census = new ObjectCensus(catalog, team);
+    }
+
+    public PatternCatalog getCatalog() {
+        return objectCensus().getCatalog();
+    }
+
+    private ObjectCensus objectCensus() {
+        if (census == null) census = new ObjectCensus(PatternCatalog.builtIn(lifeRule), team);
+        return census;
+    }
+
+    /**
+     * Loads a grid saved by saveAsText or saveSnapshot, resizing the engine and
+     * restarting history. A snapshot also restores the generation count; it must have
+     * been saved under this engine's rule.
+     */
+    public void load(Path file) throws IOException {
+        GridSnapshot.Header header = GridSnapshot.readHeader(file);
+        GridStore loaded;
+        long generation = 0;
+        if (header != null) {
+            if (!header.getRule().equals(getRuleName())) {
+                throw new IOException("Saved under " + header.getRule() + ", but this grid runs " + getRuleName() + ".");
+            }
+            int max = storage.maxSize();
+            if (header.getRows() > max || header.getCols() > max) {
+                throw new IOException("Invalid grid dimensions specified in file.");
+            }
+            loaded = GridSnapshot.read(file, header, storage);
+            generation = header.getGeneration();
+        } else {
+            loaded = GridText.read(file, storage);
+        }
+
+        allocate(loaded.getRows(), loaded.getCols(), loaded);
+        generationCount = generation;
+        resetHistory();
+    }
+
+    /**
+     * Clears the grid and places an RLE or .cells pattern in the middle of it, keeping
+     * the grid's size and rule; the file's own rule is only reported in the result.
+     *
+     * @throws IOException if the file cannot be read or the pattern is larger than the grid
+     */
+    public PatternFile.Info loadPattern(Path file) throws IOException {
+        PatternFile.Info info = PatternFile.readInfo(file);
+        return loadPattern(file, (cols - info.getWidth()) / 2, (rows - info.getHeight()) / 2);
+    }
+
+    /** As loadPattern(file), with the pattern's top-left cell at (x, y). */
+    public PatternFile.Info loadPattern(Path file, int x, int y) throws IOException {
+        PatternFile.Info info = PatternFile.readInfo(file);
+        if (info.getWidth() > cols || info.getHeight() > rows) {
+            throw new IOException("The pattern is " + info.getWidth() + "x" + info.getHeight()
+                    + ", larger than this " + cols + "x" + rows + " grid.");
+        }
+        grid.clear();
+        clearHighlights();
+        try {
+            info = PatternFile.read(file, grid, x, y);
+        } finally {
+            generationCount = 0;
+            resetHistory();
+        }
+        return info;
+    }
+
+    /** Writes the grid as an "RxC" header followed by one line of 0/1 per row. */
+    public void saveAsText(Path file) throws IOException {
+        GridText.write(file, grid);
+    }
+
+    /**
+     * Writes the grid as a binary snapshot with the rule and generation count.
+     *
+     * @param compress  deflate blocks of rows, which shrinks sparse boards a lot
+     */
+    public void saveSnapshot(Path file, boolean compress) throws IOException {
+        GridSnapshot.write(file, grid, getRuleName(), generationCount, compress);
+    }
+
+    /** Writes the live cells as RLE, cropped to their bounding box. */
+    public void saveAsRle(Path file) throws IOException {
+        PatternFile.writeRle(file, grid, elementaryRule >= 0 ? "W" + elementaryRule : lifeRule.getName());
+    }
+
+    /** Writes the live cells as .cells plaintext, cropped to their bounding box. */
+    public void saveAsCells(Path file) throws IOException {
+        PatternFile.writeCells(file, grid, file.getFileName().toString().replaceFirst("\\.[^.]*$", ""));
+    }
+
+    @Override
+    public void close() {
+        team.close();
+        releaseGrids();
+        if (history != null) history.close();
+    }
+}
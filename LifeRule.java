@@ -0,0 +1,145 @@
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled outer-totalistic Life-like rule such as B3/S23 or B36/S23.
+ *
+ * The rule is parsed once and then evaluated without looking at the rulestring again:
+ * the scalar paths use an 18-entry lookup table indexed by state and neighbour count,
+ * and the word kernels hand over the four bit planes of the neighbour count. Those are
+ * mapped to the next state by the cheapest circuit for the rule: the hand-written
+ * expressions for B3/S23 and B2/S7, or, for any other rule, a generic circuit whose
+ * masks were set from the birth and survival sets when the rule was compiled.
+ */
+public final class LifeRule {
+
+    private static final Pattern BS = Pattern.compile("B([0-8]*)/?S([0-8]*)");
+    private static final Pattern SB = Pattern.compile("([0-8]*)/([0-8]*)");
+    private static final Pattern PARENTHESES = Pattern.compile(".*\\((.*)\\)\\s*");
+
+    public static final LifeRule CONWAY = parse("B3/S23");
+
+    private static final int CIRCUIT_CONWAY = 0;
+    private static final int CIRCUIT_B2S7 = 1;
+    private static final int CIRCUIT_GENERIC = 2;
+
+    private final int birth;    // Bit n set: a dead cell with n neighbours is born
+    private final int survival; // Bit n set: a live cell with n neighbours survives
+    private final String name;
+    private final boolean[] table = new boolean[18];
+    private final int circuit;
+
+    // Generic circuit: count = 4 * hi + lo with lo in 0..3; quadrant hi 0 and 1 cover 0..7,
+    // count 8 is the only reachable value of quadrant 2. Each mask is 0 or -1.
+    private final long b00, b01, b02, b03, b10, b11, b12, b13, b8;
+    private final long s00, s01, s02, s03, s10, s11, s12, s13, s8;
+
+    private LifeRule(int birth, int survival) {
+        this.birth = birth;
+        this.survival = survival;
+        this.name = "B" + digits(birth) + "/S" + digits(survival);
+        for (int n = 0; n <= 8; n++) {
+            table[n] = (birth & (1 << n)) != 0;
+            table[9 + n] = (survival & (1 << n)) != 0;
+        }
+        if (birth == 1 << 3 && survival == (1 << 2 | 1 << 3)) circuit = CIRCUIT_CONWAY;
+        else if (birth == 1 << 2 && survival == 1 << 7) circuit = CIRCUIT_B2S7;
+        else circuit = CIRCUIT_GENERIC;
+
+        b00 = mask(birth, 0); b01 = mask(birth, 1); b02 = mask(birth, 2); b03 = mask(birth, 3);
+        b10 = mask(birth, 4); b11 = mask(birth, 5); b12 = mask(birth, 6); b13 = mask(birth, 7);
+        b8 = mask(birth, 8);
+        s00 = mask(survival, 0); s01 = mask(survival, 1); s02 = mask(survival, 2); s03 = mask(survival, 3);
+        s10 = mask(survival, 4); s11 = mask(survival, 5); s12 = mask(survival, 6); s13 = mask(survival, 7);
+        s8 = mask(survival, 8);
+    }
+
+    private static long mask(int set, int n) {
+        return (set & (1 << n)) != 0 ? -1L : 0L;
+    }
+
+    private static String digits(int set) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = 0; n <= 8; n++) {
+            if ((set & (1 << n)) != 0) sb.append(n);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses "B36/S23", "b3s23", the older survival/birth form "23/3", or a label with the
+     * rule in parentheses such as LifeEngine.VARIANT_STANDARD.
+     *
+     * @throws IllegalArgumentException if the text is not an outer-totalistic rule
+     */
+    public static LifeRule parse(String text) {
+        if (text == null) throw new IllegalArgumentException("Missing rule.");
+        String s = text.trim();
+        Matcher label = PARENTHESES.matcher(s);
+        if (label.matches()) s = label.group(1).trim();
+        s = s.toUpperCase(Locale.ROOT).replace(" ", "");
+
+        Matcher m = BS.matcher(s);
+        if (m.matches()) return new LifeRule(set(m.group(1)), set(m.group(2)));
+        m = SB.matcher(s);
+        if (m.matches()) return new LifeRule(set(m.group(2)), set(m.group(1)));
+        throw new IllegalArgumentException("Not a B/S rule: " + text);
+    }
+
+    private static int set(String digits) {
+        int set = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            set |= 1 << (digits.charAt(i) - '0');
+        }
+        return set;
+    }
+
+    /** Canonical rulestring, e.g. "B3/S23". */
+    public String getName() { return name; }
+
+    public boolean isBorn(int neighbours) { return (birth & (1 << neighbours)) != 0; }
+    public boolean survives(int neighbours) { return (survival & (1 << neighbours)) != 0; }
+
+    /** True for B0 rules, where empty space comes alive; they only make sense on a finite torus. */
+    public boolean birthOnEmpty() { return (birth & 1) != 0; }
+
+    /** Scalar step: next state of one cell. */
+    public boolean next(boolean alive, int neighbours) {
+        return table[alive ? 9 + neighbours : neighbours];
+    }
+
+    /**
+     * Word step: next state of 64 cells from the bit planes of their neighbour counts
+     * (count = s0 + 2 s1 + 4 s2 + 8 s3) and their current state m.
+     */
+    public long apply(long s0, long s1, long s2, long s3, long m) {
+        if (circuit == CIRCUIT_CONWAY) {
+            return s1 & ~s2 & ~s3 & (s0 | m);
+        }
+        if (circuit == CIRCUIT_B2S7) {
+            long two = ~s0 & s1 & ~s2 & ~s3;
+            long seven = s0 & s1 & s2 & ~s3;
+            return (m & seven) | (~m & two);
+        }
+        // Minterms of the low two bits, then one OR of masked minterms per quadrant
+        long a0 = ~s1 & ~s0, a1 = ~s1 & s0, a2 = s1 & ~s0, a3 = s1 & s0;
+        long q0 = ~s3 & ~s2, q1 = ~s3 & s2;
+        long q8 = s3 & a0;
+        long born = (q0 & ((b00 & a0) | (b01 & a1) | (b02 & a2) | (b03 & a3)))
+                  | (q1 & ((b10 & a0) | (b11 & a1) | (b12 & a2) | (b13 & a3)))
+                  | (q8 & b8);
+        long kept = (q0 & ((s00 & a0) | (s01 & a1) | (s02 & a2) | (s03 & a3)))
+                  | (q1 & ((s10 & a0) | (s11 & a1) | (s12 & a2) | (s13 & a3)))
+                  | (q8 & s8);
+        return (~m & born) | (m & kept);
+    }
+
+    @Override public boolean equals(Object o) {
+        return o instanceof LifeRule r && r.birth == birth && r.survival == survival;
+    }
+
+    @Override public int hashCode() { return birth * 512 + survival; }
+
+    @Override public String toString() { return name; }
+}
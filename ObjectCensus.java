@@ -0,0 +1,443 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts every object on the board: live cells are grouped into 8-connected
+ * components, each component is reduced to an orientation-independent code and the
+ * code is looked up in a PatternCatalog.
+ *
+ * Components are found with union-find over horizontal runs of live cells rather than
+ * single cells. Rows are cut into bands that are labelled in parallel on a StepTeam,
+ * each band only joining runs inside itself; the band seams, and on a torus the grid
+ * edges, are joined afterwards on one thread. Runs are then sorted by component and
+ * each component is drawn into a small bitmap for its code; bitmaps seen before (most
+ * of a settled soup is blocks, blinkers and beehives) reuse their code.
+ *
+ * The code of an object is the part of a Catagolue apgcode after the prefix: its
+ * population, an underscore and the extended Wechsler encoding of whichever of its
+ * eight orientations encodes shortest, then lexicographically smallest. A still
+ * life's apgcode is "xs" followed by this code, e.g. "xs4_33" for the block.
+ * Objects wider or taller than 64 cells are reported by size as "large_WxH_POP".
+ *
+ * Cells belong to one object when they touch, diagonals included. Objects that are
+ * several pieces in some phases (the LWSS in two of its four) are counted as those
+ * pieces in those phases, and two objects touching count as one unknown object.
+ */
+public final class ObjectCensus {
+
+    /** Rows per unit of parallel labelling. */
+    private static final int ROWS_PER_UNIT = 64;
+    /** Column digits of the Wechsler encoding, base 32. */
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuv";
+    /** The digit after y, base 36: runs of 4 to 39 zero columns. */
+    private static final String RUN_DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    /** What a census found. */
+    public static final class Result {
+        private final Map<String, Long> known;
+        private final Map<String, Long> unknown;
+        private final long objects;
+        private final long cells;
+
+        Result(Map<String, Long> known, Map<String, Long> unknown, long objects, long cells) {
+            this.known = known;
+            this.unknown = unknown;
+            this.objects = objects;
+            this.cells = cells;
+        }
+
+        /** Counts by catalog name, most common first. */
+        public Map<String, Long> getKnown() { return known; }
+
+        /** Counts of objects the catalog does not name, by code, most common first. */
+        public Map<String, Long> getUnknown() { return unknown; }
+
+        public long getObjectCount() { return objects; }
+        public long getCellCount() { return cells; }
+    }
+
+    private final PatternCatalog catalog;
+    private final StepTeam team;
+    private final Map<Shape, String> codes = new HashMap<>();
+
+    // Runs of the grid being counted, ordered by row then column; reused between censuses
+    private GridStore grid;
+    private int[] rowFirst = new int[0];
+    private int[] runY = new int[0];
+    private int[] runX0 = new int[0];
+    private int[] runX1 = new int[0];
+    private int[] parent = new int[0];
+    private final StepTeam.Job countJob = this::countUnit;
+    private final StepTeam.Job labelJob = this::labelUnit;
+
+    /**
+     * @param team  workers for the labelling, or null to label on the caller's thread
+     */
+    public ObjectCensus(PatternCatalog catalog, StepTeam team) {
+        this.catalog = catalog;
+        this.team = team;
+    }
+
+    public PatternCatalog getCatalog() { return catalog; }
+
+    /**
+     * Takes the census of a grid. Only one census may run at a time.
+     *
+     * @param wrap  whether the grid is a torus, so objects may continue across its edges
+     */
+    public Result take(GridStore grid, boolean wrap) throws InterruptedException {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        this.grid = grid;
+        if (rowFirst.length < rows + 1) rowFirst = new int[rows + 1];
+        int units = (rows + ROWS_PER_UNIT - 1) / ROWS_PER_UNIT;
+        try {
+            run(units, countJob);
+            int total = 0;
+            for (int y = 0; y < rows; y++) {
+                int count = rowFirst[y + 1];
+                rowFirst[y] = total;
+                total += count;
+            }
+            rowFirst[rows] = total;
+            if (runY.length < total) {
+                int capacity = Math.max(total, runY.length * 3 / 2);
+                runY = new int[capacity];
+                runX0 = new int[capacity];
+                runX1 = new int[capacity];
+                parent = new int[capacity];
+            }
+            run(units, labelJob);
+        } finally {
+            this.grid = null;
+        }
+
+        // Join the bands, then the edges of a torus
+        for (int y = ROWS_PER_UNIT; y < rows; y += ROWS_PER_UNIT) joinRows(y - 1, y);
+        if (wrap) {
+            if (rows > 1) joinRows(rows - 1, 0);
+            if (cols > 1) joinColumnSeam(rows, cols);
+        }
+        int runs = rowFirst[rows];
+        // Roots are always the smaller index, so one ascending pass resolves every run
+        for (int i = 0; i < runs; i++) parent[i] = parent[parent[i]];
+        return count(runs, rows, cols, wrap);
+    }
+
+    private void run(int units, StepTeam.Job job) throws InterruptedException {
+        if (team != null) {
+            team.run(units, job);
+        } else {
+            for (int u = 0; u < units; u++) job.run(0, u);
+        }
+    }
+
+    /** Counts the runs of each row of a band into rowFirst[y + 1]. */
+    private void countUnit(int worker, int unit) {
+        int start = unit * ROWS_PER_UNIT;
+        int end = Math.min(grid.getRows(), start + ROWS_PER_UNIT);
+        int words = grid.getWords();
+        for (int y = start; y < end; y++) {
+            int count = 0;
+            long carry = 0;
+            for (int i = 0; i < words; i++) {
+                long w = grid.readWord(y, i);
+                count += Long.bitCount(w & ~(w << 1 | carry));
+                carry = w >>> 63;
+            }
+            rowFirst[y + 1] = count;
+        }
+    }
+
+    /** Collects the runs of a band and joins those that touch, within the band only. */
+    private void labelUnit(int worker, int unit) {
+        int start = unit * ROWS_PER_UNIT;
+        int end = Math.min(grid.getRows(), start + ROWS_PER_UNIT);
+        int words = grid.getWords();
+        for (int y = start; y < end; y++) {
+            int at = rowFirst[y];
+            long carry = 0;
+            int openX = -1;
+            for (int i = 0; i < words; i++) {
+                long w = grid.readWord(y, i);
+                long next = i + 1 < words ? grid.readWord(y, i + 1) : 0;
+                long starts = w & ~(w << 1 | carry);
+                long ends = w & ~(w >>> 1 | next << 63);
+                carry = w >>> 63;
+                // Starts and ends alternate along the row; a run may end in a later word
+                while (starts != 0 || ends != 0) {
+                    int s = starts != 0 ? Long.numberOfTrailingZeros(starts) : 64;
+                    int e = ends != 0 ? Long.numberOfTrailingZeros(ends) : 64;
+                    if (openX < 0 && s <= e) {
+                        openX = (i << 6) + s;
+                        starts &= starts - 1;
+                    } else {
+                        runY[at] = y;
+                        runX0[at] = openX;
+                        runX1[at] = (i << 6) + e;
+                        parent[at] = at;
+                        at++;
+                        openX = -1;
+                        ends &= ends - 1;
+                    }
+                }
+            }
+            if (y > start) joinRows(y - 1, y);
+        }
+    }
+
+    /** Joins the runs of row b with the runs of row a they touch, diagonals included. */
+    private void joinRows(int a, int b) {
+        int i = rowFirst[a], iEnd = rowFirst[a + 1];
+        int j = rowFirst[b], jEnd = rowFirst[b + 1];
+        while (i < iEnd && j < jEnd) {
+            if (runX0[i] <= runX1[j] + 1 && runX0[j] <= runX1[i] + 1) union(i, j);
+            // Advance whichever run ends first; it cannot touch anything further right
+            if (runX1[i] < runX1[j]) i++;
+            else j++;
+        }
+    }
+
+    /** On a torus, a run ending in the last column touches runs starting in column 0. */
+    private void joinColumnSeam(int rows, int cols) {
+        for (int y = 0; y < rows; y++) {
+            int end = rowFirst[y + 1];
+            if (rowFirst[y] == end || runX1[end - 1] != cols - 1) continue;
+            for (int dy = -1; dy <= 1; dy++) {
+                int other = Math.floorMod(y + dy, rows);
+                int first = rowFirst[other];
+                if (first < rowFirst[other + 1] && runX0[first] == 0) union(end - 1, first);
+            }
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a), rb = find(b);
+        if (ra < rb) parent[rb] = ra;
+        else if (rb < ra) parent[ra] = rb;
+    }
+
+    private Result count(int runs, int rows, int cols, boolean wrap) {
+        // Number the components and sort the runs by them
+        int[] component = new int[runs];
+        int components = 0;
+        for (int i = 0; i < runs; i++) {
+            component[i] = parent[i] == i ? components++ : component[parent[i]];
+        }
+        int[] first = new int[components + 1];
+        for (int i = 0; i < runs; i++) first[component[i] + 1]++;
+        for (int c = 0; c < components; c++) first[c + 1] += first[c];
+        int[] order = new int[runs];
+        int[] fill = Arrays.copyOf(first, components);
+        for (int i = 0; i < runs; i++) order[fill[component[i]]++] = i;
+
+        Map<String, Long> known = new HashMap<>();
+        Map<String, Long> unknown = new HashMap<>();
+        long cells = 0;
+        for (int c = 0; c < components; c++) {
+            int from = first[c], to = first[c + 1];
+            int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+            long population = 0;
+            for (int k = from; k < to; k++) {
+                int r = order[k];
+                minX = Math.min(minX, runX0[r]);
+                maxX = Math.max(maxX, runX1[r]);
+                minY = Math.min(minY, runY[r]);
+                maxY = Math.max(maxY, runY[r]);
+                population += runX1[r] - runX0[r] + 1;
+            }
+            cells += population;
+            // An object across the edges of a torus: move the part near the origin past the far edge
+            int shiftX = wrap && minX == 0 && maxX == cols - 1 ? cols / 2 : -1;
+            int shiftY = wrap && minY == 0 && maxY == rows - 1 ? rows / 2 : -1;
+            String code = code(order, from, to, minX, maxX, minY, maxY, shiftX, shiftY, cols, rows, population);
+            String name = catalog.nameOf(code);
+            if (name != null) known.merge(name, 1L, Long::sum);
+            else unknown.merge(code, 1L, Long::sum);
+        }
+        return new Result(sorted(known), sorted(unknown), components, cells);
+    }
+
+    private String code(int[] order, int from, int to, int minX, int maxX, int minY, int maxY,
+                        int shiftX, int shiftY, int cols, int rows, long population) {
+        if (shiftX >= 0 || shiftY >= 0) {
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (int k = from; k < to; k++) {
+                int r = order[k];
+                int y = unwrap(runY[r], runY[r], shiftY, rows);
+                int dx = unwrap(runX0[r], runX1[r], shiftX, cols) - runX0[r];
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                minX = Math.min(minX, runX0[r] + dx);
+                maxX = Math.max(maxX, runX1[r] + dx);
+            }
+        }
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        if (width > 64 || height > 64) return "large_" + width + "x" + height + "_" + population;
+
+        long[] bitmap = new long[height];
+        for (int k = from; k < to; k++) {
+            int r = order[k];
+            int y = unwrap(runY[r], runY[r], shiftY, rows);
+            int dx = unwrap(runX0[r], runX1[r], shiftX, cols) - runX0[r];
+            int x0 = runX0[r] + dx, x1 = runX1[r] + dx;
+            bitmap[y - minY] |= span(x0 - minX, x1 - minX);
+        }
+        Shape shape = new Shape(width, bitmap);
+        String code = codes.get(shape);
+        if (code == null) {
+            code = canonicalCode(bitmap, width);
+            codes.put(shape, code);
+        }
+        return code;
+    }
+
+    /**
+     * Start of a run [from, to] once an object across a torus edge is made whole: runs
+     * entirely before the cut move one lap on. A cut below zero leaves them in place.
+     */
+    private static int unwrap(int from, int to, int cut, int size) {
+        return cut >= 0 && to < cut ? from + size : from;
+    }
+
+    private static long span(int from, int to) {
+        long upTo = to == 63 ? -1L : (1L << (to + 1)) - 1;
+        return upTo & (-1L << from);
+    }
+
+    private static Map<String, Long> sorted(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Orientation-independent code of an object drawn as rows of at most 64 cells,
+     * column c at bit c: population, "_", then the extended Wechsler encoding of the
+     * orientation that encodes shortest, then lexicographically smallest.
+     */
+    public static String canonicalCode(long[] rows, int width) {
+        long population = 0;
+        for (long row : rows) population += Long.bitCount(row);
+        String best = null;
+        for (int t = 0; t < 8; t++) {
+            long[] oriented = orient(rows, width, t);
+            int orientedWidth = (t & 4) != 0 ? rows.length : width;
+            String w = wechsler(oriented, orientedWidth);
+            if (best == null || w.length() < best.length() || (w.length() == best.length() && w.compareTo(best) < 0)) {
+                best = w;
+            }
+        }
+        return population + "_" + best;
+    }
+
+    /** Orientation t: bit 0 mirrors columns, bit 1 mirrors rows, bit 2 transposes first. */
+    private static long[] orient(long[] rows, int width, int t) {
+        int height = rows.length;
+        long[] source = rows;
+        int w = width, h = height;
+        if ((t & 4) != 0) {
+            source = new long[width];
+            for (int y = 0; y < height; y++) {
+                long bits = rows[y];
+                while (bits != 0) {
+                    int x = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    source[x] |= 1L << y;
+                }
+            }
+            w = height;
+            h = width;
+        }
+        long[] out = new long[h];
+        for (int y = 0; y < h; y++) {
+            long row = source[(t & 2) != 0 ? h - 1 - y : y];
+            out[y] = (t & 1) != 0 ? Long.reverse(row) >>> (64 - w) : row;
+        }
+        return out;
+    }
+
+    /**
+     * Extended Wechsler format: strips of five rows, each column of a strip one base-32
+     * digit with the top row as bit 0, trailing zero columns dropped, runs of zeros
+     * shortened to w (2), x (3) or y plus a base-36 digit (4 to 39), strips joined by z.
+     */
+    static String wechsler(long[] rows, int width) {
+        StringBuilder sb = new StringBuilder();
+        for (int top = 0; top < rows.length; top += 5) {
+            if (top > 0) sb.append('z');
+            int[] digits = new int[width];
+            int last = -1;
+            for (int x = 0; x < width; x++) {
+                int d = 0;
+                for (int k = 0; k < 5 && top + k < rows.length; k++) {
+                    d |= (int) ((rows[top + k] >>> x) & 1) << k;
+                }
+                digits[x] = d;
+                if (d != 0) last = x;
+            }
+            int zeros = 0;
+            for (int x = 0; x <= last; x++) {
+                if (digits[x] == 0) {
+                    zeros++;
+                    continue;
+                }
+                appendZeros(sb, zeros);
+                zeros = 0;
+                sb.append(DIGITS.charAt(digits[x]));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendZeros(StringBuilder sb, int zeros) {
+        while (zeros > 0) {
+            if (zeros >= 4) {
+                int n = Math.min(zeros, 39);
+                sb.append('y').append(RUN_DIGITS.charAt(n - 4));
+                zeros -= n;
+            } else if (zeros == 3) {
+                sb.append('x');
+                zeros = 0;
+            } else if (zeros == 2) {
+                sb.append('w');
+                zeros = 0;
+            } else {
+                sb.append('0');
+                zeros = 0;
+            }
+        }
+    }
+
+    /** A bitmap as a hash key. */
+    private static final class Shape {
+        final int width;
+        final long[] rows;
+        final int hash;
+
+        Shape(int width, long[] rows) {
+            this.width = width;
+            this.rows = rows;
+            this.hash = 31 * width + Arrays.hashCode(rows);
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Shape s && s.width == width && Arrays.equals(s.rows, rows);
+        }
+
+        @Override public int hashCode() { return hash; }
+    }
+}
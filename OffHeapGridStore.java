@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Grid kept outside the Java heap, rows stored back to back, each padded to whole
+ * 64-cell words so the kernel reads every word with one aligned getLong.
+ *
+ * The rows live either in direct buffers (bounded by -XX:MaxDirectMemorySize, which
+ * defaults to the heap size) or in a memory-mapped file, where the OS pages cells in
+ * and out and the only limits are address space and disk. A ByteBuffer holds at most
+ * 2 GB, so large grids are split into segments of a power-of-two number of rows.
+ *
+ * close() frees the buffers and unmaps the file there and then, rather than when the
+ * GC finds them, so a grid replaced by a new one of the same size does not need room
+ * for both. Nothing may touch the grid after it is closed; the engines own their grids
+ * and only close them once no other thread reads them.
+ */
+public final class OffHeapGridStore implements GridStore {
+
+    /** Segments stay well under the 2 GB ByteBuffer limit. */
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    /** Unsafe.invokeCleaner(ByteBuffer), or null when the JDK does not offer it. */
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final int stride;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final ByteBuffer[] segments;
+    private final Path file;
+
+    /** Grids in direct buffers. */
+    public static GridStore.Factory direct() {
+        return new GridStore.Factory() {
+            @Override public GridStore create(int rows, int cols) { return new OffHeapGridStore(rows, cols, null); }
+            @Override public int maxSize() { return LifeEngine.MAX_OFF_HEAP_SIZE; }
+            @Override public String name() { return "direct"; }
+        };
+    }
+
+    /** Grids in memory-mapped scratch files created in dir and deleted when closed. */
+    public static GridStore.Factory mapped(Path dir) {
+        return new GridStore.Factory() {
+            @Override public GridStore create(int rows, int cols) {
+                try {
+                    return new OffHeapGridStore(rows, cols, Files.createTempFile(dir, "life-grid", ".bin"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            @Override public int maxSize() { return LifeEngine.MAX_OFF_HEAP_SIZE; }
+            @Override public String name() { return "mapped"; }
+        };
+    }
+
+    /**
+     * @param file  backing file to map, or null for direct buffers
+     */
+    public OffHeapGridStore(int rows, int cols, Path file) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = BitboardKernel.wordsPerRow(cols);
+        this.stride = words << 3;
+        this.file = file;
+
+        int shift = 0;
+        while (shift < 30 && ((long) stride << (shift + 1)) <= SEGMENT_BYTES) shift++;
+        this.segmentShift = shift;
+        this.segmentMask = (1 << shift) - 1;
+        int count = (int) ((rows + (1L << shift) - 1) >>> shift);
+        this.segments = new ByteBuffer[count];
+
+        try (FileChannel channel = file == null ? null : FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int s = 0; s < count; s++) {
+                long firstRow = (long) s << shift;
+                long bytes = Math.min(1L << shift, rows - firstRow) * stride;
+                ByteBuffer buffer = channel == null
+                        ? ByteBuffer.allocateDirect((int) bytes)
+                        : channel.map(FileChannel.MapMode.READ_WRITE, firstRow * stride, bytes);
+                segments[s] = buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            deleteFile();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public int getRows() { return rows; }
+    @Override public int getCols() { return cols; }
+    @Override public int getWords() { return words; }
+
+    /** Bytes of backing memory, including the row padding. */
+    public long byteSize() {
+        return (long) rows * stride;
+    }
+
+    @Override
+    public boolean get(int x, int y) {
+        return ((readWord(y, x >>> 6) >>> (x & 63)) & 1) != 0;
+    }
+
+    @Override
+    public void set(int x, int y, boolean alive) {
+        ByteBuffer segment = segments[y >>> segmentShift];
+        int index = (y & segmentMask) * stride + (x >>> 3);
+        int bit = 1 << (x & 7);
+        byte b = segment.get(index);
+        segment.put(index, (byte) (alive ? b | bit : b & ~bit));
+    }
+
+    @Override
+    public long readWord(int y, int i) {
+        return segments[y >>> segmentShift].getLong((y & segmentMask) * stride + (i << 3));
+    }
+
+    @Override
+    public void writeWord(int y, int i, long w) {
+        segments[y >>> segmentShift].putLong((y & segmentMask) * stride + (i << 3), w);
+    }
+
+    @Override
+    public void orWord(int y, int i, long bits) {
+        // Rows are padded to whole words and the buffers are direct, so the word is aligned
+        LONG_LE.getAndBitwiseOr(segments[y >>> segmentShift], (y & segmentMask) * stride + (i << 3), bits);
+    }
+
+    @Override
+    public void clear() {
+        byte[] zeros = new byte[Math.min(1 << 16, (int) Math.min(Integer.MAX_VALUE, byteSize()))];
+        for (ByteBuffer segment : segments) {
+            for (int at = 0; at < segment.capacity(); at += zeros.length) {
+                segment.put(at, zeros, 0, Math.min(zeros.length, segment.capacity() - at));
+            }
+        }
+    }
+
+    @Override
+    public void readRow(int y, ByteBuffer dst) {
+        int length = getRowBytes();
+        dst.put(dst.position(), segments[y >>> segmentShift], (y & segmentMask) * stride, length);
+        dst.position(dst.position() + length);
+    }
+
+    @Override
+    public void writeRow(int y, ByteBuffer src) {
+        ByteBuffer segment = segments[y >>> segmentShift];
+        int offset = (y & segmentMask) * stride;
+        int length = getRowBytes();
+        segment.put(offset, src, src.position(), length);
+        src.position(src.position() + length);
+        if ((cols & 7) != 0) {
+            int last = offset + length - 1;
+            segment.put(last, (byte) (segment.get(last) & ((1 << (cols & 7)) - 1)));
+        }
+    }
+
+    @Override
+    public void copyFrom(GridStore src, int startRow, int endRow, int startWord, int endWord) {
+        if (!(src instanceof OffHeapGridStore) || startWord != 0 || endWord != words) {
+            GridStore.super.copyFrom(src, startRow, endRow, startWord, endWord);
+            return;
+        }
+        // Whole rows are contiguous, so copy them a segment at a time
+        OffHeapGridStore from = (OffHeapGridStore) src;
+        int y = startRow;
+        while (y < endRow) {
+            int s = y >>> segmentShift;
+            int last = Math.min(endRow, (s + 1) << segmentShift);
+            int offset = (y & segmentMask) * stride;
+            int length = (last - y) * stride;
+            segments[s].put(offset, from.segments[s], offset, length);
+            y = last;
+        }
+    }
+
+    /**
+     * Frees the direct buffers or unmaps the file, then deletes the file. Without
+     * Unsafe.invokeCleaner the buffers are left to the GC, and a mapped file may not be
+     * deleted on Windows until then.
+     */
+    @Override
+    public void close() {
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer segment = segments[s];
+            // Later use fails on the null rather than reading freed memory
+            segments[s] = null;
+            if (segment != null) free(segment);
+        }
+        deleteFile();
+    }
+
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable e) {
+            // Left to the GC, as without the handle
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void deleteFile() {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Scratch file in a temp directory; nothing else to do
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Names for ObjectCensus codes. Each entry is a pattern given in RLE; it is run for
+ * GENERATIONS generations under the catalog's rule and the code of every phase in
+ * which it is still one object is recorded under its name, so oscillators and ships
+ * are recognised whatever phase and orientation they are found in. An entry whose
+ * first phase comes back moved is a ship.
+ *
+ * The built-in entries are the common still lifes, oscillators and ships of B3/S23;
+ * other rules start with an empty catalog. More can be loaded from .rle files.
+ */
+public final class PatternCatalog {
+
+    /** Generations each entry is run to collect its phases; enough for period 30. */
+    public static final int GENERATIONS = 30;
+
+    private static final String[][] CONWAY_OBJECTS = {
+            {"Block", "2o$2o!"},
+            {"Beehive", "b2o$o2bo$b2o!"},
+            {"Loaf", "b2o$o2bo$bobo$2bo!"},
+            {"Boat", "2o$obo$bo!"},
+            {"Ship", "2o$obo$b2o!"},
+            {"Tub", "bo$obo$bo!"},
+            {"Pond", "b2o$o2bo$o2bo$b2o!"},
+            {"Long boat", "2o$obo$bobo$2bo!"},
+            {"Barge", "bo$obo$bobo$2bo!"},
+            {"Snake", "2obo$ob2o!"},
+            {"Aircraft carrier", "2o$o$3bo$2b2o!"},
+            {"Blinker", "3o!"},
+            {"Toad", "b3o$3o!"},
+            {"Beacon", "2o$2o$2b2o$2b2o!"},
+            {"Pentadecathlon", "2bo4bo$2ob4ob2o$2bo4bo!"},
+            {"Glider", "bo$2bo$3o!"},
+            {"LWSS", "bo2bo$o$o3bo$4o!"},
+            {"MWSS", "3bo$bo3bo$o$o4bo$5o!"},
+            {"HWSS", "3b2o$bo4bo$o$o5bo$6o!"},
+    };
+
+    private final LifeRule rule;
+    private final Map<String, String> names = new HashMap<>();
+    private final List<String> entries = new ArrayList<>();
+    private final Set<String> ships = new HashSet<>();
+
+    /** An empty catalog for the given rule. */
+    public PatternCatalog(LifeRule rule) {
+        this.rule = rule;
+    }
+
+    /** A catalog holding the built-in entries when the rule is B3/S23, otherwise empty. */
+    public static PatternCatalog builtIn(LifeRule rule) {
+        PatternCatalog catalog = new PatternCatalog(rule);
+        if (rule.equals(LifeRule.CONWAY)) {
+            for (String[] entry : CONWAY_OBJECTS) catalog.add(entry[0], entry[1]);
+        }
+        return catalog;
+    }
+
+    public LifeRule getRule() { return rule; }
+
+    /** Entry names in the order they were added. */
+    public List<String> getNames() { return Collections.unmodifiableList(entries); }
+
+    /** True if the entry of that name travels: its first phase came back elsewhere. */
+    public boolean isShip(String name) {
+        return ships.contains(name);
+    }
+
+    /** Number of codes the catalog recognises. */
+    public int getCodeCount() { return names.size(); }
+
+    /** Name of the object with this code, or null. */
+    public String nameOf(String code) {
+        return names.get(code);
+    }
+
+    /**
+     * Adds a pattern under a name. Codes already known keep their first name.
+     *
+     * @param rle  the pattern body in RLE, with or without the header line
+     * @throws IllegalArgumentException if the RLE cannot be read
+     */
+    public void add(String name, String rle) {
+        int pad = GENERATIONS + 2; // Nothing travels faster than one cell per generation
+        byte[] bytes = rle.getBytes(StandardCharsets.ISO_8859_1);
+        GridStore a;
+        try {
+            PatternFile.Info shape = PatternFile.readRle(new ByteArrayInputStream(bytes), null, 0, 0);
+            if (shape.getWidth() == 0) throw new IllegalArgumentException("RLE pattern is empty.");
+            a = new HeapGridStore(shape.getHeight() + 2 * pad, shape.getWidth() + 2 * pad);
+            PatternFile.readRle(new ByteArrayInputStream(bytes), a, pad, pad);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        int rows = a.getRows();
+        int cols = a.getCols();
+        GridStore b = new HeapGridStore(rows, cols);
+
+        ObjectCensus census = new ObjectCensus(new PatternCatalog(rule), null);
+        BitboardKernel kernel = new BitboardKernel(cols);
+        int[] corner = new int[2];
+        long[] first = null;
+        int firstX = 0;
+        int firstY = 0;
+        for (int g = 0; g <= GENERATIONS; g++) {
+            ObjectCensus.Result result;
+            try {
+                result = census.take(a, false);
+            } catch (InterruptedException e) {
+                // Without a team nothing waits, so this only carries a pending interrupt
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (result.getObjectCount() == 0) break;
+            if (result.getObjectCount() == 1) {
+                names.putIfAbsent(result.getUnknown().keySet().iterator().next(), name);
+            }
+            long[] phase = shape(a, corner);
+            if (g == 0) {
+                first = phase;
+                firstX = corner[0];
+                firstY = corner[1];
+            } else if (first != null && Arrays.equals(first, phase) && (corner[0] != firstX || corner[1] != firstY)) {
+                ships.add(name);
+            }
+            if (kernel.stepRows(a, b, 0, rows, rule) == 0) break;
+            GridStore t = a;
+            a = b;
+            b = t;
+        }
+        entries.add(name);
+    }
+
+    /**
+     * The live cells as rows starting at the top row and leftmost column holding any,
+     * which go into corner; null if they are wider than a word.
+     */
+    private static long[] shape(GridStore grid, int[] corner) {
+        int words = grid.getWords();
+        int top = -1;
+        int bottom = -1;
+        int left = Integer.MAX_VALUE;
+        int right = -1;
+        for (int y = 0; y < grid.getRows(); y++) {
+            for (int i = 0; i < words; i++) {
+                long w = grid.readWord(y, i);
+                if (w == 0) continue;
+                if (top < 0) top = y;
+                bottom = y;
+                left = Math.min(left, (i << 6) + Long.numberOfTrailingZeros(w));
+                right = Math.max(right, (i << 6) + 63 - Long.numberOfLeadingZeros(w));
+            }
+        }
+        if (top < 0 || right - left >= 64) return null;
+        long[] rows = new long[bottom - top + 1];
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                if (grid.get(x, y)) rows[y - top] |= 1L << (x - left);
+            }
+        }
+        corner[0] = left;
+        corner[1] = top;
+        return rows;
+    }
+
+    /**
+     * Adds the .rle files of a directory, or a single .rle file. An entry is named by
+     * its #N line, or by its file name without the extension.
+     */
+    public void load(Path path) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> list = Files.list(path)) {
+                list.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(PatternFile.RLE))
+                        .sorted().forEach(files::add);
+            }
+        } else {
+            files.add(path);
+        }
+        for (Path file : files) {
+            String text = Files.readString(file);
+            String name = file.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            for (String line : text.split("\\R")) {
+                if (line.startsWith("#N")) {
+                    name = line.substring(2).trim();
+                    break;
+                }
+            }
+            try {
+                add(name, text);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,567 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Golly-style RLE and .cells plaintext pattern files. Readers decode runs of live
+ * cells straight into the words of a grid, with the pattern's top-left cell at an
+ * offset and wrapping at the edges; nothing is built per line but comments and the
+ * RLE header. Writers crop to the live cells and find runs a word at a time.
+ */
+public final class PatternFile {
+
+    public static final String RLE = ".rle";
+    public static final String CELLS = ".cells";
+
+    /** RLE lines are kept to this length, as Golly does. */
+    private static final int RLE_LINE = 70;
+    private static final int MAX_RUN = 1_000_000_000;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** Per byte of a .cells line: 1 for a live cell, 0 for a dead one, -1 for anything else. */
+    private static final byte[] CELL = new byte[256];
+
+    static {
+        Arrays.fill(CELL, (byte) -1);
+        CELL['.'] = 0;
+        CELL['O'] = 1;
+        CELL['*'] = 1;
+    }
+
+    private PatternFile() { }
+
+    /** What a pattern file says about itself. */
+    public static final class Info {
+        private final int width;
+        private final int height;
+        private final String rule;
+        private final String name;
+
+        Info(int width, int height, String rule, String name) {
+            this.width = width;
+            this.height = height;
+            this.rule = rule;
+            this.name = name;
+        }
+
+        /** Columns of the pattern: the RLE header's x, or as far as cells reach. */
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        /** The RLE header's rule, or null. */
+        public String getRule() { return rule; }
+        /** The #N line of an RLE file or "!Name:" of a .cells file, or null. */
+        public String getName() { return name; }
+    }
+
+    /** Whether a file is named as an RLE or .cells pattern. */
+    public static boolean isPatternFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(RLE) || name.endsWith(CELLS);
+    }
+
+    private static boolean isCells(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(CELLS);
+    }
+
+    /**
+     * Reads the size, rule and name of a pattern file without placing it. An RLE file
+     * with a header stops there; any other is decoded to measure it.
+     */
+    public static Info readInfo(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return isCells(file) ? readCells(in, null, 0, 0) : readRle(in, null, 0, 0, true);
+        }
+    }
+
+    /**
+     * ORs the live cells of a pattern file into a grid, the pattern's top-left cell at
+     * (x, y). Cells past an edge wrap around, as they would in the torus.
+     */
+    public static Info read(Path file, GridStore grid, int x, int y) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return isCells(file) ? readCells(in, grid, x, y) : readRle(in, grid, x, y, false);
+        }
+    }
+
+    /**
+     * Reads RLE into a grid at (x, y), or only measures it when grid is null. States
+     * other than b and . count as alive, so multi-state patterns load as their shape.
+     */
+    public static Info readRle(InputStream in, GridStore grid, int x, int y) throws IOException {
+        return readRle(in, grid, x, y, false);
+    }
+
+    private static Info readRle(InputStream in, GridStore grid, int x0, int y0, boolean headerOnly) throws IOException {
+        Bytes s = new Bytes(in);
+        String name = null;
+        String rule = null;
+        int declaredWidth = 0;
+        int declaredHeight = 0;
+        boolean body = false;
+        boolean lineStart = true;
+        int x = 0;
+        int y = 0;
+        int count = 0;
+        int width = 0;
+        int height = 0;
+        Placer cells = grid == null ? null : new Placer(grid, x0, y0);
+        int c;
+        while ((c = s.next()) >= 0) {
+            if (lineStart) {
+                if (c == ' ' || c == '\t' || c == '\r' || c == '\n') continue;
+                if (c == '#') {
+                    String line = s.restOfLine();
+                    if (line.startsWith("N") && name == null) name = line.substring(1).trim();
+                    continue;
+                }
+                if (c == 'x' && !body) {
+                    String[] header = parseHeader(s, "x" + s.restOfLine());
+                    declaredWidth = Integer.parseInt(header[0]);
+                    declaredHeight = Integer.parseInt(header[1]);
+                    rule = header[2];
+                    body = true;
+                    if (headerOnly) return new Info(declaredWidth, declaredHeight, rule, name);
+                    continue;
+                }
+                lineStart = false;
+                body = true;
+            }
+            int digit = c - '0';
+            if (digit >= 0 && digit <= 9) {
+                count = count * 10 + digit;
+                if (count > MAX_RUN) throw s.error("Run too long");
+                continue;
+            }
+            int n = count == 0 ? 1 : count;
+            switch (c) {
+                case 'b': case '.':
+                    x += n;
+                    break;
+                case 'o':
+                    if (cells != null) cells.run(x, y, n);
+                    x += n;
+                    if (x > width) width = x;
+                    height = y + 1;
+                    break;
+                case '$':
+                    y += n;
+                    x = 0;
+                    break;
+                case '\n':
+                    lineStart = true;
+                    continue;
+                case ' ': case '\t': case '\r':
+                    continue;
+                case '!':
+                    if (cells != null) cells.flush();
+                    return new Info(Math.max(width, declaredWidth), Math.max(height, declaredHeight), rule, name);
+                default:
+                    if (c >= 'p' && c <= 'y') continue; // Prefix of a state above 24; the letter follows
+                    if (c < 'A' || c > 'X') throw s.error("Unexpected '" + (char) c + "'");
+                    if (cells != null) cells.run(x, y, n);
+                    x += n;
+                    if (x > width) width = x;
+                    height = y + 1;
+            }
+            count = 0;
+        }
+        if (cells != null) cells.flush();
+        return new Info(Math.max(width, declaredWidth), Math.max(height, declaredHeight), rule, name);
+    }
+
+    /** Splits "x = m, y = n, rule = r" into m, n and r (null when absent). */
+    private static String[] parseHeader(Bytes s, String line) throws IOException {
+        String[] header = new String[3];
+        for (String part : line.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) throw s.error("Bad header \"" + line.trim() + "\"");
+            String key = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+            if (key.equals("x")) header[0] = value;
+            else if (key.equals("y")) header[1] = value;
+            else if (key.equals("rule")) header[2] = value;
+        }
+        if (header[0] == null || header[1] == null) throw s.error("Header needs x and y");
+        try {
+            if (Integer.parseInt(header[0]) < 0 || Integer.parseInt(header[1]) < 0) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            throw s.error("Bad size in header \"" + line.trim() + "\"");
+        }
+        return header;
+    }
+
+    /**
+     * Reads .cells plaintext into a grid at (x, y), or only measures it when grid is
+     * null. 'O' or '*' is alive, '.' dead; lines starting with '!' are comments. Cells
+     * are classified eight bytes at a time and gathered into whole words.
+     */
+    public static Info readCells(InputStream in, GridStore grid, int x0, int y0) throws IOException {
+        Bytes s = new Bytes(in);
+        String name = null;
+        boolean lineStart = true;
+        int x = 0;
+        int y = 0;
+        long bits = 0; // Cells of the word under way, from column x & ~63
+        int width = 0;
+        Placer cells = grid == null ? null : new Placer(grid, x0, y0);
+        while (s.fill()) {
+            // Runs of cells are the bulk of a file: take them straight from the buffer
+            byte[] buffer = s.buffer;
+            int at = s.at;
+            int end = s.end;
+            int start = at;
+            while (at + 8 <= end) {
+                long chunk = (long) LONG_LE.get(buffer, at);
+                long live = zeroBytes(chunk ^ 0x4F4F4F4F4F4F4F4FL) | zeroBytes(chunk ^ 0x2A2A2A2A2A2A2A2AL); // O, *
+                if ((live | zeroBytes(chunk ^ 0x2E2E2E2E2E2E2E2EL)) != HIGH_BITS) break;
+                at += 8;
+                long eight = (live >>> 7) * 0x0102040810204080L >>> 56; // Byte k's flag to bit k
+                int shift = x & 63;
+                bits |= eight << shift;
+                x += 8;
+                if (shift >= 56) {
+                    if (bits != 0 && cells != null) cells.word((x - 8) & ~63, y, bits);
+                    bits = shift == 56 ? 0 : eight >>> (64 - shift);
+                }
+            }
+            while (at < end) {
+                int live = CELL[buffer[at] & 0xFF];
+                if (live < 0) break;
+                at++;
+                bits |= (long) live << x;
+                if ((++x & 63) == 0) {
+                    if (bits != 0 && cells != null) cells.word(x - 64, y, bits);
+                    bits = 0;
+                }
+            }
+            s.at = at;
+            if (at > start) lineStart = false;
+            if (at == end) continue;
+            int c = s.next();
+            if (lineStart && c == '!') {
+                String line = s.restOfLine();
+                if (line.startsWith("Name:") && name == null) name = line.substring(5).trim();
+                continue;
+            }
+            if (c == '\n') {
+                if (bits != 0 && cells != null) cells.word(x & ~63, y, bits);
+                bits = 0;
+                width = Math.max(width, x);
+                x = 0;
+                y++;
+                lineStart = true;
+            } else if (c != '\r' && c != ' ' && c != '\t') {
+                throw s.error("Unexpected '" + (char) c + "'");
+            }
+        }
+        if (!lineStart) {
+            if (bits != 0 && cells != null) cells.word(x & ~63, y, bits);
+            width = Math.max(width, x);
+            y++;
+        }
+        if (cells != null) cells.flush();
+        return new Info(width, y, null, name);
+    }
+
+    /** The high bit of each byte of v that is zero. */
+    private static long zeroBytes(long v) {
+        return ~(((v & LOW_BITS) + LOW_BITS) | v | LOW_BITS);
+    }
+
+    /**
+     * ORs runs and words into a grid at an offset. Runs arrive left to right along a
+     * row, so bits gather in one word and the grid is only touched when a run moves past it.
+     */
+    private static final class Placer {
+        private final GridStore grid;
+        private final int x0;
+        private final int y0;
+        private final int rows;
+        private final int cols;
+        private int lastY = -1; // Pattern row of the last run, and where it lands
+        private int gy;
+        private int row = -1;   // Grid row and word the pending bits belong to
+        private int word;
+        private long bits;
+
+        Placer(GridStore grid, int x0, int y0) {
+            this.grid = grid;
+            this.rows = grid.getRows();
+            this.cols = grid.getCols();
+            this.x0 = Math.floorMod(x0, cols);
+            this.y0 = Math.floorMod(y0, rows);
+        }
+
+        /** Sets n cells from (x, y) of the pattern, wrapping both ways. */
+        void run(int x, int y, int n) {
+            if (y != lastY) {
+                lastY = y;
+                gy = (int) ((y0 + (long) y) % rows);
+            }
+            long ax = x0 + (long) x;
+            int gx = ax < cols ? (int) ax : (int) (ax % cols);
+            n = Math.min(n, cols);
+            while (n > 0) {
+                int length = Math.min(n, cols - gx);
+                int end = gx + length - 1;
+                int first = gx >>> 6;
+                int last = end >>> 6;
+                for (int i = first; i <= last; i++) {
+                    long mask = -1L;
+                    if (i == first) mask &= -1L << (gx & 63);
+                    if (i == last) mask &= -1L >>> (63 - (end & 63));
+                    if (i != word || gy != row) {
+                        flush();
+                        row = gy;
+                        word = i;
+                    }
+                    bits |= mask;
+                }
+                n -= length;
+                gx = 0;
+            }
+        }
+
+        /** ORs 64 cells from (x, y) of the pattern, cell x at bit 0. */
+        void word(int x, int y, long cells) {
+            if (y != lastY) {
+                lastY = y;
+                gy = (int) ((y0 + (long) y) % rows);
+            }
+            long ax = x0 + (long) x;
+            int gx = ax < cols ? (int) ax : (int) (ax % cols);
+            if (gx + 64 > cols) {
+                for (; cells != 0; cells &= cells - 1) run(x + Long.numberOfTrailingZeros(cells), y, 1);
+                return;
+            }
+            int i = gx >>> 6;
+            int shift = gx & 63;
+            grid.writeWord(gy, i, grid.readWord(gy, i) | cells << shift);
+            if (shift != 0) grid.writeWord(gy, i + 1, grid.readWord(gy, i + 1) | cells >>> (64 - shift));
+        }
+
+        void flush() {
+            if (bits != 0) grid.writeWord(row, word, grid.readWord(row, word) | bits);
+            bits = 0;
+        }
+    }
+
+    /**
+     * Writes the live cells as RLE, cropped to their bounding box; the header carries
+     * the rule. An empty grid gives a 0 by 0 pattern.
+     */
+    public static void writeRle(Path file, GridStore grid, String rule) throws IOException {
+        int[] box = bounds(grid);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            if (box == null) {
+                out.write(ascii("x = 0, y = 0, rule = " + rule + "\n!\n"));
+                return;
+            }
+            int left = box[0];
+            int right = box[1];
+            out.write(ascii("x = " + (right - left) + ", y = " + (box[3] - box[2]) + ", rule = " + rule + "\n"));
+            RunWriter runs = new RunWriter(out);
+            for (int y = box[2]; y < box[3]; y++) {
+                int x = left;
+                while (true) {
+                    int start = nextLive(grid, y, x, right);
+                    if (start == right) break;
+                    int stop = nextDead(grid, y, start, right);
+                    runs.run(start - x, (byte) 'b');
+                    runs.run(stop - start, (byte) 'o');
+                    x = stop;
+                }
+                runs.endRow();
+            }
+            runs.finish();
+        }
+    }
+
+    /** Writes the live cells as .cells plaintext, cropped to their bounding box. */
+    public static void writeCells(Path file, GridStore grid, String name) throws IOException {
+        int[] box = bounds(grid);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write(ascii("!Name: " + name + "\n"));
+            if (box == null) return;
+            int left = box[0];
+            int right = box[1];
+            byte[] line = new byte[right - left + 1];
+            for (int y = box[2]; y < box[3]; y++) {
+                int x = left;
+                int length = 0;
+                while (true) {
+                    int start = nextLive(grid, y, x, right);
+                    if (start == right) break;
+                    int stop = nextDead(grid, y, start, right);
+                    for (; x < start; x++) line[length++] = '.';
+                    for (; x < stop; x++) line[length++] = 'O';
+                }
+                line[length++] = '\n';
+                out.write(line, 0, length);
+            }
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Left, right, top and bottom (exclusive) of the live cells, or null if none. */
+    private static int[] bounds(GridStore grid) {
+        int rows = grid.getRows();
+        int words = grid.getWords();
+        int left = Integer.MAX_VALUE;
+        int right = -1;
+        int top = -1;
+        int bottom = -1;
+        for (int y = 0; y < rows; y++) {
+            for (int i = 0; i < words; i++) {
+                long w = grid.readWord(y, i);
+                if (w == 0) continue;
+                if (top < 0) top = y;
+                bottom = y + 1;
+                left = Math.min(left, (i << 6) + Long.numberOfTrailingZeros(w));
+                right = Math.max(right, (i << 6) + 64 - Long.numberOfLeadingZeros(w));
+            }
+        }
+        return top < 0 ? null : new int[] {left, right, top, bottom};
+    }
+
+    /** First live cell of row y in [from, limit), or limit. */
+    private static int nextLive(GridStore grid, int y, int from, int limit) {
+        // A run ending at the row's last cell leaves from one word past the row
+        if (from >= limit) return limit;
+        int i = from >>> 6;
+        long w = grid.readWord(y, i) & (-1L << (from & 63));
+        while (w == 0) {
+            if (++i << 6 >= limit) return limit;
+            w = grid.readWord(y, i);
+        }
+        return Math.min(limit, (i << 6) + Long.numberOfTrailingZeros(w));
+    }
+
+    /** First dead cell of row y in [from, limit), or limit. */
+    private static int nextDead(GridStore grid, int y, int from, int limit) {
+        // A run ending at the row's last cell leaves from one word past the row
+        if (from >= limit) return limit;
+        int i = from >>> 6;
+        long w = ~grid.readWord(y, i) & (-1L << (from & 63));
+        while (w == 0) {
+            if (++i << 6 >= limit) return limit;
+            w = ~grid.readWord(y, i);
+        }
+        return Math.min(limit, (i << 6) + Long.numberOfTrailingZeros(w));
+    }
+
+    /** Emits RLE runs, holding back row ends until a live run follows them. */
+    private static final class RunWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int length;
+        private int column;
+        private int rowEnds;
+
+        RunWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void run(int n, byte tag) throws IOException {
+            if (n == 0) return;
+            if (rowEnds > 0) {
+                int ends = rowEnds;
+                rowEnds = 0;
+                emit(ends, (byte) '$');
+            }
+            emit(n, tag);
+        }
+
+        void endRow() {
+            rowEnds++;
+        }
+
+        void finish() throws IOException {
+            emit(1, (byte) '!');
+            buffer[length++] = '\n';
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+
+        /** Appends n and the tag, "3o" or just "o", starting a new line if it would pass RLE_LINE. */
+        private void emit(int n, byte tag) throws IOException {
+            if (length > buffer.length - 16) {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+            int size = 1;
+            if (n > 1) {
+                for (int v = n; v > 0; v /= 10) size++;
+            }
+            if (column + size > RLE_LINE) {
+                buffer[length++] = '\n';
+                column = 0;
+            }
+            int at = length + size;
+            buffer[--at] = tag;
+            if (n > 1) {
+                for (; n > 0; n /= 10) buffer[--at] = (byte) ('0' + n % 10);
+            }
+            length += size;
+            column += size;
+        }
+    }
+
+    /** Bytes of a stream through one buffer, counting lines for error messages. */
+    private static final class Bytes {
+        private final InputStream in;
+        final byte[] buffer = new byte[1 << 16];
+        int at;  // Next byte of the buffer, and the end of what it holds
+        int end;
+        private int line = 1;
+
+        Bytes(InputStream in) {
+            this.in = in;
+        }
+
+        /** Makes sure a byte is buffered; false at the end of the stream. */
+        boolean fill() throws IOException {
+            if (at < end) return true;
+            end = Math.max(0, in.read(buffer, 0, buffer.length));
+            at = 0;
+            return end > 0;
+        }
+
+        int next() throws IOException {
+            if (!fill()) return -1;
+            int c = buffer[at++] & 0xFF;
+            if (c == '\n') line++;
+            return c;
+        }
+
+        /** The rest of the current line, which is consumed with its line break. */
+        String restOfLine() throws IOException {
+            StringBuilder text = new StringBuilder();
+            int c;
+            while ((c = next()) >= 0 && c != '\n') {
+                if (c != '\r') text.append((char) c);
+            }
+            return text.toString();
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at line " + line + ".");
+        }
+    }
+}
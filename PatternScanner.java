@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds every selected pattern in one pass over the grid.
+ *
+ * All templates of all patterns are indexed by their key: the first live cell of
+ * their busiest row and the next few cells after it. The scan visits only live cells
+ * of the current grid, reads the KEY_BITS cells starting there, and looks up the
+ * templates whose key they satisfy; only those are checked in full. Adding patterns
+ * adds entries to the index rather than another scan, and dead areas cost nothing.
+ *
+ * Each template finds a given window from exactly one key cell, and templates that
+ * see the same live cells count an object once, so every match is seen once. Key
+ * cells are independent, so blocks of them can be scanned in parallel, and a block
+ * whose surroundings did not change can keep the matches it found before.
+ */
+public final class PatternScanner {
+
+    private final List<LifePattern> patterns;
+    private final PatternTemplate[] templates;
+    private final int[] patternOf;
+    /** Earlier templates of the same pattern with the same live cells; an object they match is already counted. */
+    private final int[][] earlier;
+    /** Templates by the KEY_BITS cells read at a live cell, that cell at bit 0. */
+    private final int[][] byKey;
+
+    public PatternScanner(List<LifePattern> patterns) {
+        this.patterns = List.copyOf(patterns);
+        List<PatternTemplate> all = new ArrayList<>();
+        List<Integer> owner = new ArrayList<>();
+        for (int p = 0; p < this.patterns.size(); p++) {
+            for (PatternTemplate t : this.patterns.get(p).getCompiledTemplates()) {
+                all.add(t);
+                owner.add(p);
+            }
+        }
+        templates = all.toArray(new PatternTemplate[0]);
+        patternOf = new int[templates.length];
+        earlier = new int[templates.length][];
+        for (int t = 0; t < templates.length; t++) {
+            patternOf[t] = owner.get(t);
+            int[] list = new int[t];
+            int count = 0;
+            for (int s = 0; s < t; s++) {
+                if (owner.get(s).equals(owner.get(t)) && templates[s].sameLiveCells(templates[t])) list[count++] = s;
+            }
+            earlier[t] = Arrays.copyOf(list, count);
+        }
+
+        byKey = new int[1 << PatternTemplate.KEY_BITS][];
+        for (int key = 0; key < byKey.length; key++) {
+            int count = 0;
+            int[] list = new int[templates.length];
+            for (int t = 0; t < templates.length; t++) {
+                if ((key & templates[t].keyMask) == templates[t].keyValue) list[count++] = t;
+            }
+            byKey[key] = Arrays.copyOf(list, count);
+        }
+    }
+
+    public List<LifePattern> getPatterns() { return patterns; }
+
+    public int getTemplateCount() { return templates.length; }
+
+    /** Index into getPatterns() of the pattern a template belongs to. */
+    public int patternOf(int template) { return patternOf[template]; }
+
+    /**
+     * How far from its key cell a match can look, in cells, counting the previous
+     * window of evolving templates and the windows matchedEarlier compares. A match
+     * can only appear or vanish when a cell this close to its key cell changes.
+     */
+    public int getReach() {
+        int extent = 0;
+        for (PatternTemplate t : templates) {
+            extent = Math.max(extent, Math.max(t.width, t.height));
+            if (t.prevAlive != null) {
+                extent = Math.max(extent, Math.max(t.prevWidth + Math.abs(t.prevDx), t.prevAlive.length + Math.abs(t.prevDy)));
+            }
+        }
+        // Windows of other templates of the same object are offset by at most one extent
+        return 2 * extent;
+    }
+
+    /** Matches found by a scan: template index and window top-left, three ints per match. */
+    public static final class Matches {
+        private int[] data = new int[0];
+        private int size;
+
+        void add(int template, int x, int y) {
+            if (size + 3 > data.length) data = Arrays.copyOf(data, Math.max(24, data.length * 2));
+            data[size] = template;
+            data[size + 1] = x;
+            data[size + 2] = y;
+            size += 3;
+        }
+
+        public void clear() { size = 0; }
+        public int size() { return size / 3; }
+        public int template(int m) { return data[3 * m]; }
+        public int x(int m) { return data[3 * m + 1]; }
+        public int y(int m) { return data[3 * m + 2]; }
+    }
+
+    /**
+     * Finds the matches whose key cell lies in rows [startRow, endRow) and words
+     * [startWord, endWord) of current, adding them to out.
+     */
+    public void scan(GridStore previous, GridStore current, int startRow, int endRow,
+                     int startWord, int endWord, Matches out) {
+        int rows = current.getRows();
+        int cols = current.getCols();
+        int words = current.getWords();
+        int keyMask = (1 << PatternTemplate.KEY_BITS) - 1;
+        for (int y = startRow; y < endRow; y++) {
+            long following = current.readWord(y, startWord);
+            for (int i = startWord; i < endWord; i++) {
+                long word = following;
+                following = i + 1 < words ? current.readWord(y, i + 1) : 0;
+                long bits = word;
+                while (bits != 0) {
+                    int b = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int x = (i << 6) + b;
+                    int key = x + PatternTemplate.KEY_BITS <= cols
+                            ? (int) ((word >>> b) | (b == 0 ? 0 : following << (64 - b))) & keyMask
+                            : (int) PatternTemplate.window(current, x, y, PatternTemplate.KEY_BITS);
+                    for (int t : byKey[key]) {
+                        PatternTemplate template = templates[t];
+                        int wx = x - template.keyX;
+                        int wy = y - template.keyY;
+                        if (template.wraps) {
+                            wx = PatternTemplate.wrap(wx, cols);
+                            wy = PatternTemplate.wrap(wy, rows);
+                        } else if (wx < 0 || wy < 0 || wx + template.width > cols || wy + template.height > rows) {
+                            continue;
+                        }
+                        if (!template.matchesAt(previous, current, wx, wy)) continue;
+                        if (matchedEarlier(t, previous, current, wx, wy)) continue;
+                        out.add(t, wx, wy);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Marks the live cells of a match in a layer of the highlights, which must be in use. */
+    public void mark(int template, int x, int y, HighlightLayers highlights, int layer) {
+        templates[template].mark(highlights, layer, x, y);
+    }
+
+    private boolean matchedEarlier(int t, GridStore previous, GridStore current, int wx, int wy) {
+        PatternTemplate template = templates[t];
+        int rows = current.getRows();
+        int cols = current.getCols();
+        for (int s : earlier[t]) {
+            PatternTemplate other = templates[s];
+            // The other template's window with its live cells on the same ones
+            int ox = wx + template.liveX - other.liveX;
+            int oy = wy + template.liveY - other.liveY;
+            if (other.wraps) {
+                ox = PatternTemplate.wrap(ox, cols);
+                oy = PatternTemplate.wrap(oy, rows);
+            } else if (ox < 0 || oy < 0 || ox + other.width > cols || oy + other.height > rows) {
+                continue;
+            }
+            if (other.matchesAt(previous, current, ox, oy)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One arrangement a pattern is recognised by, in a form the PatternScanner can index:
+ * the cells a window of the current grid must have, and for evolving patterns the
+ * cells a window of the previous grid must have.
+ *
+ * Rows are bit masks with column c at bit c, the same order as grid words, so a row
+ * of the window is one or two word reads and a shift, and is checked with one AND
+ * and one compare. Cells not in the care mask are ignored.
+ *
+ * Patterns describe a single orientation; compiled() adds every distinct rotation
+ * and reflection, so a glider written heading south-east is found heading anywhere.
+ */
+public final class PatternTemplate {
+
+    /** Key rows are indexed by this many cells, starting at their first live cell. */
+    static final int KEY_BITS = 8;
+
+    /** The eight symmetries of the square as (x, y) -> (a x + b y, c x + d y), identity first. */
+    private static final int[][] SYMMETRIES = {
+        {1, 0, 0, 1}, {0, -1, 1, 0}, {-1, 0, 0, -1}, {0, 1, -1, 0},
+        {-1, 0, 0, 1}, {1, 0, 0, -1}, {0, 1, 1, 0}, {0, -1, -1, 0}
+    };
+
+    private static final Map<Class<?>, List<PatternTemplate>> COMPILED = new ConcurrentHashMap<>();
+
+    final int originX;  // Window's top-left relative to the anchor the pattern reports
+    final int originY;
+    final int width;
+    final int height;
+    final boolean wraps; // Otherwise the whole window must lie inside the grid
+    final long[] care;
+    final long[] alive;
+    final int prevWidth;
+    final long[] prevCare;  // null for still patterns
+    final long[] prevAlive;
+    final int prevDx;       // Previous window relative to the current one
+    final int prevDy;
+
+    // The live cell the scanner finds the template by, and the cells after it in its row
+    final int keyX;
+    final int keyY;
+    final int keyMask;
+    final int keyValue;
+
+    // Top-left of the live cells in the window; templates of one object agree on where it is
+    final int liveX;
+    final int liveY;
+
+    private PatternTemplate(int originX, int originY, int width, boolean wraps, long[] care, long[] alive,
+                            int prevWidth, long[] prevCare, long[] prevAlive, int prevDx, int prevDy) {
+        if (width < 1 || width > 64 || prevWidth > 64) throw new IllegalArgumentException("Templates are 1 to 64 cells wide.");
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = alive.length;
+        this.wraps = wraps;
+        this.care = care;
+        this.alive = alive;
+        this.prevWidth = prevWidth;
+        this.prevCare = prevCare;
+        this.prevAlive = prevAlive;
+        this.prevDx = prevDx;
+        this.prevDy = prevDy;
+
+        // Key on the row with the most live cells: it is the rarest one in a soup
+        int best = -1;
+        long any = 0;
+        for (int r = 0; r < height; r++) {
+            any |= alive[r];
+            if (alive[r] != 0 && (best < 0 || Long.bitCount(alive[r]) > Long.bitCount(alive[best]))) best = r;
+        }
+        if (best < 0) throw new IllegalArgumentException("A template needs at least one live cell.");
+        keyY = best;
+        keyX = Long.numberOfTrailingZeros(alive[best]);
+        int span = Math.min(KEY_BITS, width - keyX);
+        int bits = (1 << span) - 1;
+        keyMask = (int) (care[best] >>> keyX) & bits;
+        keyValue = (int) (alive[best] >>> keyX) & bits;
+
+        int top = 0;
+        while (alive[top] == 0) top++;
+        liveY = top;
+        liveX = Long.numberOfTrailingZeros(any);
+    }
+
+    /**
+     * A still template: every cell of the window is compared with the current grid.
+     *
+     * @param rows  row masks, column c at bit c
+     */
+    public static PatternTemplate still(int originX, int originY, int width, boolean wraps, long[] rows) {
+        return new PatternTemplate(originX, originY, width, wraps, full(width, rows.length), rows,
+                0, null, null, 0, 0);
+    }
+
+    /**
+     * An evolving template: the window must hold rows in the current grid and
+     * previousRows, shifted by (prevDx, prevDy), in the previous one.
+     */
+    public static PatternTemplate evolving(int originX, int originY, int width, boolean wraps,
+                                           long[] previousRows, int prevDx, int prevDy, long[] rows) {
+        return new PatternTemplate(originX, originY, width, wraps, full(width, rows.length), rows,
+                width, full(width, previousRows.length), previousRows, prevDx, prevDy);
+    }
+
+    private static long[] full(int width, int height) {
+        long[] care = new long[height];
+        Arrays.fill(care, mask(width));
+        return care;
+    }
+
+    private static long mask(int width) {
+        return width == 64 ? -1L : (1L << width) - 1;
+    }
+
+    /**
+     * Converts the byte-per-row shapes the pattern classes are written in.
+     *
+     * @param leftmostHigh  true when column 0 is bit width - 1, as in 0b0110 for .OO.;
+     *                      false when column 0 is bit 0
+     */
+    public static long[] rows(byte[][] shape, int width, boolean leftmostHigh) {
+        long[] rows = new long[shape.length];
+        for (int r = 0; r < shape.length; r++) {
+            int b = shape[r][0] & 0xFF;
+            for (int c = 0; c < width; c++) {
+                int bit = leftmostHigh ? width - 1 - c : c;
+                if (((b >> bit) & 1) != 0) rows[r] |= 1L << c;
+            }
+        }
+        return rows;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean isEvolving() { return prevAlive != null; }
+
+    /**
+     * The pattern's templates in every orientation, duplicates removed, compiled once
+     * per pattern class. Patterns that keep their own copy return it from
+     * LifePattern.getCompiledTemplates, which skips this lookup.
+     */
+    public static List<PatternTemplate> compiled(LifePattern pattern) {
+        List<PatternTemplate> compiled = COMPILED.get(pattern.getClass());
+        return compiled != null ? compiled : COMPILED.computeIfAbsent(pattern.getClass(), k -> orient(pattern.getTemplates()));
+    }
+
+    /** All distinct rotations and reflections of the templates, the originals first. */
+    public static List<PatternTemplate> orient(List<PatternTemplate> templates) {
+        List<PatternTemplate> out = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (PatternTemplate t : templates) {
+            for (int[] m : SYMMETRIES) {
+                PatternTemplate o = t.transform(m[0], m[1], m[2], m[3]);
+                if (seen.add(o.shapeKey())) out.add(o);
+            }
+        }
+        return out;
+    }
+
+    /** The template with every cell moved by the symmetry, about the anchor. */
+    private PatternTemplate transform(int a, int b, int c, int d) {
+        // Corners of the current window relative to the anchor, then of the previous one
+        int x0 = a * originX + b * originY;
+        int y0 = c * originX + d * originY;
+        int x1 = a * (originX + width - 1) + b * (originY + height - 1);
+        int y1 = c * (originX + width - 1) + d * (originY + height - 1);
+        int nx = Math.min(x0, x1), ny = Math.min(y0, y1);
+        int nw = Math.abs(x1 - x0) + 1, nh = Math.abs(y1 - y0) + 1;
+        long[] nCare = new long[nh], nAlive = new long[nh];
+        move(care, alive, width, originX, originY, a, b, c, d, nx, ny, nCare, nAlive);
+        if (prevAlive == null) {
+            return new PatternTemplate(nx, ny, nw, wraps, nCare, nAlive, 0, null, null, 0, 0);
+        }
+
+        int px = originX + prevDx, py = originY + prevDy, ph = prevAlive.length;
+        int p0x = a * px + b * py, p0y = c * px + d * py;
+        int p1x = a * (px + prevWidth - 1) + b * (py + ph - 1);
+        int p1y = c * (px + prevWidth - 1) + d * (py + ph - 1);
+        int npx = Math.min(p0x, p1x), npy = Math.min(p0y, p1y);
+        int npw = Math.abs(p1x - p0x) + 1, nph = Math.abs(p1y - p0y) + 1;
+        long[] nPrevCare = new long[nph], nPrevAlive = new long[nph];
+        move(prevCare, prevAlive, prevWidth, px, py, a, b, c, d, npx, npy, nPrevCare, nPrevAlive);
+        return new PatternTemplate(nx, ny, nw, wraps, nCare, nAlive,
+                npw, nPrevCare, nPrevAlive, npx - nx, npy - ny);
+    }
+
+    private static void move(long[] care, long[] alive, int width, int ox, int oy, int a, int b, int c, int d,
+                             int nx, int ny, long[] nCare, long[] nAlive) {
+        for (int r = 0; r < alive.length; r++) {
+            for (int col = 0; col < width; col++) {
+                int x = ox + col, y = oy + r;
+                int tx = a * x + b * y - nx, ty = c * x + d * y - ny;
+                if (((care[r] >>> col) & 1) != 0) nCare[ty] |= 1L << tx;
+                if (((alive[r] >>> col) & 1) != 0) nAlive[ty] |= 1L << tx;
+            }
+        }
+    }
+
+    /** Everything the template checks, but not where its anchor is. */
+    private String shapeKey() {
+        return width + " " + wraps + " " + Arrays.toString(care) + Arrays.toString(alive) + " "
+                + prevWidth + " " + prevDx + " " + prevDy + " " + Arrays.toString(prevCare) + Arrays.toString(prevAlive);
+    }
+
+    /** Whether the two templates see the same live cells, so one object cannot count for both. */
+    boolean sameLiveCells(PatternTemplate other) {
+        for (int r = 0; ; r++) {
+            int ra = liveY + r, rb = other.liveY + r;
+            long va = ra < height ? alive[ra] >>> liveX : 0;
+            long vb = rb < other.height ? other.alive[rb] >>> other.liveX : 0;
+            if (va != vb) return false;
+            if (ra >= height && rb >= other.height) return true;
+        }
+    }
+
+    /**
+     * Per-anchor check against compiled templates, for callers that test one anchor at
+     * a time: whether any orientation of the pattern matches at (row, col).
+     *
+     * @param previous  the previous grid, ignored by still patterns
+     */
+    public static boolean matchesAnchor(LifePattern pattern, GridStore previous, GridStore current, int row, int col) {
+        int rows = current.getRows();
+        int cols = current.getCols();
+        for (PatternTemplate t : pattern.getCompiledTemplates()) {
+            int x = t.windowX(col, cols), y = t.windowY(row, rows);
+            if (t.fits(x, y, rows, cols) && t.matchesAt(previous, current, x, y)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the live cells of the first orientation whose current window matches at
+     * (row, col) in a layer; the previous grid is not needed to draw what is there now.
+     */
+    public static void markAnchor(LifePattern pattern, HighlightLayers layers, int layer, GridStore current, int row, int col) {
+        int rows = current.getRows();
+        int cols = current.getCols();
+        for (PatternTemplate t : pattern.getCompiledTemplates()) {
+            int x = t.windowX(col, cols), y = t.windowY(row, rows);
+            if (t.fits(x, y, rows, cols) && t.matchesCurrent(current, x, y)) {
+                layers.use(layer);
+                t.mark(layers, layer, x, y);
+                return;
+            }
+        }
+    }
+
+    // Window of an anchor, wrapped when the template wraps; fits() rejects it otherwise
+    private int windowX(int col, int cols) { return wraps ? wrap(col + originX, cols) : col + originX; }
+    private int windowY(int row, int rows) { return wraps ? wrap(row + originY, rows) : row + originY; }
+
+    private boolean fits(int x, int y, int rows, int cols) {
+        return wraps || (x >= 0 && y >= 0 && x + width <= cols && y + height <= rows);
+    }
+
+    /**
+     * Whether the template matches with its window's top-left at (x, y), which the
+     * caller has already wrapped or bounds-checked.
+     */
+    boolean matchesAt(GridStore previous, GridStore current, int x, int y) {
+        if (!matchesCurrent(current, x, y)) return false;
+        if (prevAlive == null) return true;
+        int rows = current.getRows();
+        int px = wrap(x + prevDx, current.getCols());
+        for (int r = 0; r < prevAlive.length; r++) {
+            if ((window(previous, px, wrap(y + prevDy + r, rows), prevWidth) & prevCare[r]) != prevAlive[r]) return false;
+        }
+        return true;
+    }
+
+    private boolean matchesCurrent(GridStore current, int x, int y) {
+        int rows = current.getRows();
+        for (int r = 0; r < height; r++) {
+            if ((window(current, x, wrap(y + r, rows), width) & care[r]) != alive[r]) return false;
+        }
+        return true;
+    }
+
+    /** Marks the template's live cells in a layer with its window's top-left at (x, y), a row at a time. */
+    void mark(HighlightLayers layers, int layer, int x, int y) {
+        int rows = layers.getRows();
+        for (int r = 0; r < height; r++) {
+            if (alive[r] != 0) layers.markRow(layer, wrap(y + r, rows), x, alive[r], width);
+        }
+    }
+
+    static int wrap(int v, int size) {
+        return v >= size ? v % size : v < 0 ? (v % size + size) % size : v;
+    }
+
+    /**
+     * Cells x .. x + width - 1 of row y, column x at bit 0, wrapping past the row end.
+     * Inside the row this is one or two word reads and a shift.
+     */
+    static long window(GridStore grid, int x, int y, int width) {
+        int cols = grid.getCols();
+        if (x + width <= cols) {
+            int i = x >>> 6;
+            int shift = x & 63;
+            long w = grid.readWord(y, i) >>> shift;
+            if (shift != 0 && shift + width > 64) w |= grid.readWord(y, i + 1) << (64 - shift);
+            return w & mask(width);
+        }
+        long w = 0;
+        for (int c = 0; c < width; c++) {
+            if (grid.get(wrap(x + c, cols), y)) w |= 1L << c;
+        }
+        return w;
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timings of the generation pipeline, for a LifeEngine given one with setMetrics.
+ * Each phase keeps its last WINDOW durations and end times, which give the rolling
+ * percentiles and rates; each generation adds its alive and active-tile counts, how
+ * unevenly the step team shared the work and the bytes the stepping thread allocated.
+ *
+ * A phase is recorded by one thread only: the stepping thread for the engine's phases,
+ * the FX thread for UPLOAD and FX_WAIT. Readers such as JMX and the overlay see a
+ * recent window, not an exact one. Optionally every generation is also appended to a
+ * CSV file; a row covers what the pipeline did since the generation before, so the
+ * frame drawn of generation g - 1 lands in the row of g.
+ */
+public final class PipelineMetrics implements PipelineMetricsMBean, AutoCloseable {
+
+    public static final int STEP = 0;     // LifeEngine.step, hashing included
+    public static final int HISTORY = 1;  // Keyframes and deltas for GridHistory
+    public static final int CYCLES = 2;   // Looking the hash up in the CycleDetector
+    public static final int DETECT = 3;   // detectPatterns
+    public static final int RASTER = 4;   // Drawing a frame off the FX thread
+    public static final int UPLOAD = 5;   // Putting the frame on screen, on the FX thread
+    public static final int FX_WAIT = 6;  // From handing a frame over to the FX thread running it
+    private static final String[] PHASE_NAMES = {"step", "history", "cycles", "detect", "raster", "upload", "fx-wait"};
+    public static final int PHASES = PHASE_NAMES.length;
+
+    /** Samples kept per phase and per generation; a power of two. */
+    public static final int WINDOW = 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final long[][] durations = new long[PHASES][WINDOW];
+    private final long[][] ends = new long[PHASES][WINDOW];
+    private final long[] counts = new long[PHASES];
+    private final AtomicLongArray sinceRow = new AtomicLongArray(PHASES); // Nanoseconds since the last CSV row
+
+    private final long[] generationEnds = new long[WINDOW];
+    private final double[] imbalances = new double[WINDOW];
+    private final long[] allocations = new long[WINDOW];
+    private volatile long generations;
+    private volatile long generation;
+    private volatile long alive;
+    private volatile int activeTiles;
+    private volatile int tileCount;
+
+    private volatile BufferedWriter csv;   // Swapped and written under the lock
+    private IOException csvFailure;       // Guarded by the lock
+    private ObjectName registered;
+
+    public static String phaseName(int phase) { return PHASE_NAMES[phase]; }
+
+    /** Bytes allocated so far by the calling thread, or 0 where the JVM does not say. */
+    public static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                    return threads;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Not measured, then
+        }
+        return null;
+    }
+
+    /** Records one run of a phase that took the given nanoseconds and ended now. */
+    public void phase(int phase, long ns) {
+        int slot = (int) counts[phase] & (WINDOW - 1);
+        durations[phase][slot] = ns;
+        ends[phase][slot] = System.nanoTime();
+        counts[phase]++;
+        sinceRow.addAndGet(phase, ns);
+    }
+
+    /** Closes a generation, after the phases that stepped it were recorded. */
+    public void endGeneration(long generation, long alive, int activeTiles, int tileCount,
+                              double imbalance, long allocated) {
+        int slot = (int) generations & (WINDOW - 1);
+        generationEnds[slot] = System.nanoTime();
+        imbalances[slot] = imbalance;
+        allocations[slot] = allocated;
+        this.generation = generation;
+        this.alive = alive;
+        this.activeTiles = activeTiles;
+        this.tileCount = tileCount;
+        generations++;
+        if (csv != null) writeRow(generation, alive, activeTiles, imbalance, allocated);
+    }
+
+    /** Appends a row per generation to a CSV file from now on, until close. */
+    public synchronized void logCsv(Path file) throws IOException {
+        closeCsv();
+        csv = Files.newBufferedWriter(file);
+        StringBuilder header = new StringBuilder("generation");
+        for (String name : PHASE_NAMES) header.append(',').append(name.replace('-', '_')).append("_ns");
+        csv.write(header.append(",alive,active_tiles,imbalance,allocated_bytes").toString());
+        csv.newLine();
+        for (int p = 0; p < PHASES; p++) sinceRow.set(p, 0);
+    }
+
+    /**
+     * Under the lock logCsv and close swap the writer under, so a row never goes to a
+     * writer being closed; the unlocked null check in endGeneration only spares runs
+     * without a log the lock.
+     */
+    private synchronized void writeRow(long generation, long alive, int activeTiles, double imbalance, long allocated) {
+        BufferedWriter out = csv;
+        if (out == null) return;
+        StringBuilder row = new StringBuilder(128).append(generation);
+        for (int p = 0; p < PHASES; p++) row.append(',').append(sinceRow.getAndSet(p, 0));
+        row.append(',').append(alive).append(',').append(activeTiles).append(',')
+                .append(String.format(Locale.ROOT, "%.3f", imbalance)).append(',').append(allocated);
+        try {
+            out.write(row.toString());
+            out.newLine();
+        } catch (IOException e) {
+            // Reported by close; the run goes on without its log
+            csvFailure = e;
+            csv = null;
+        }
+    }
+
+    private void closeCsv() throws IOException {
+        BufferedWriter w = csv;
+        csv = null;
+        IOException failure = csvFailure;
+        csvFailure = null;
+        if (w != null) w.close();
+        if (failure != null) throw failure;
+    }
+
+    /** Shows these metrics in the platform MBean server as life:type=PipelineMetrics,name=NAME. */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("life:type=PipelineMetrics,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        registered = objectName;
+    }
+
+    public synchronized void unregister() {
+        if (registered == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException e) {
+            // Already gone
+        }
+        registered = null;
+    }
+
+    /** Stops the CSV log and leaves JMX. */
+    @Override
+    public synchronized void close() throws IOException {
+        unregister();
+        closeCsv();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Readings over the window
+
+    /** The q-quantile (0 to 1) of a phase's recent durations, in milliseconds; 0 before any. */
+    public double percentileMillis(int phase, double q) {
+        long[] sample = sample(phase);
+        if (sample.length == 0) return 0;
+        Arrays.sort(sample);
+        return sample[(int) Math.min(sample.length - 1, Math.round(q * (sample.length - 1)))] / 1e6;
+    }
+
+    public double meanMillis(int phase) {
+        long[] sample = sample(phase);
+        long total = 0;
+        for (long ns : sample) total += ns;
+        return sample.length == 0 ? 0 : total / 1e6 / sample.length;
+    }
+
+    /** Runs of a phase per second over the window. */
+    public double rate(int phase) {
+        return rate(ends[phase], counts[phase]);
+    }
+
+    private long[] sample(int phase) {
+        int n = (int) Math.min(counts[phase], WINDOW);
+        return Arrays.copyOf(durations[phase], n);
+    }
+
+    private static double rate(long[] ends, long count) {
+        int n = (int) Math.min(count, WINDOW);
+        if (n < 2) return 0;
+        long last = ends[(int) (count - 1) & (WINDOW - 1)];
+        long first = ends[(int) (count - n) & (WINDOW - 1)];
+        return last == first ? 0 : (n - 1) * 1e9 / (last - first);
+    }
+
+    @Override public long getGeneration() { return generation; }
+    @Override public long getGenerationsRecorded() { return generations; }
+    @Override public long getAliveCount() { return alive; }
+    @Override public int getActiveTiles() { return activeTiles; }
+    @Override public int getTileCount() { return tileCount; }
+    @Override public double getGenerationsPerSecond() { return rate(generationEnds, generations); }
+    @Override public double getFramesPerSecond() { return rate(RASTER); }
+    @Override public double getStepMillisP50() { return percentileMillis(STEP, 0.5); }
+    @Override public double getStepMillisP99() { return percentileMillis(STEP, 0.99); }
+    @Override public String[] getPhaseNames() { return PHASE_NAMES.clone(); }
+
+    @Override
+    public double[] getPhaseMillisP50() {
+        double[] p = new double[PHASES];
+        for (int i = 0; i < PHASES; i++) p[i] = percentileMillis(i, 0.5);
+        return p;
+    }
+
+    @Override
+    public double[] getPhaseMillisP99() {
+        double[] p = new double[PHASES];
+        for (int i = 0; i < PHASES; i++) p[i] = percentileMillis(i, 0.99);
+        return p;
+    }
+
+    @Override
+    public double[] getPhaseMillisMean() {
+        double[] p = new double[PHASES];
+        for (int i = 0; i < PHASES; i++) p[i] = meanMillis(i);
+        return p;
+    }
+
+    /** Mean over the window of StepTeam.getImbalance: 1 when the workers shared evenly. */
+    @Override
+    public double getLoadImbalance() {
+        int n = (int) Math.min(generations, WINDOW);
+        double total = 0;
+        for (int i = 0; i < n; i++) total += imbalances[i];
+        return n == 0 ? 1 : total / n;
+    }
+
+    @Override
+    public double getAllocatedBytesPerGeneration() {
+        int n = (int) Math.min(generations, WINDOW);
+        long total = 0;
+        for (int i = 0; i < n; i++) total += allocations[i];
+        return n == 0 ? 0 : total / (double) n;
+    }
+
+    /** Forgets the window; the CSV log goes on. */
+    @Override
+    public void reset() {
+        Arrays.fill(counts, 0);
+        generations = 0;
+    }
+}
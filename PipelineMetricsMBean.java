@@ -0,0 +1,19 @@
+/** What PipelineMetrics shows over JMX; times are in milliseconds over its recent window. */
+public interface PipelineMetricsMBean {
+    long getGeneration();
+    long getGenerationsRecorded();
+    long getAliveCount();
+    int getActiveTiles();
+    int getTileCount();
+    double getGenerationsPerSecond();
+    double getFramesPerSecond();
+    double getStepMillisP50();
+    double getStepMillisP99();
+    String[] getPhaseNames();
+    double[] getPhaseMillisP50();
+    double[] getPhaseMillisP99();
+    double[] getPhaseMillisMean();
+    double getLoadImbalance();
+    double getAllocatedBytesPerGeneration();
+    void reset();
+}
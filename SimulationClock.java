@@ -0,0 +1,238 @@
+/**
+ * Runs a LifeEngine on a thread of its own, at a target number of generations per
+ * second or as fast as it will go, apart from whoever displays it. The display asks
+ * for a frame when it is ready for one; the next time the clock is between two
+ * generations it hands the engine to the Frame callback, so the callback always sees
+ * the latest finished generation and the ones in between are never drawn.
+ *
+ * The engine belongs to the clock thread while the clock is busy. Other threads may
+ * use it only after pause() has returned and until the clock is started again.
+ *
+ * When the engine settles into a cycle it stops on, the clock stops and calls the
+ * Settled callback; it draws nothing the display did not ask for.
+ */
+public final class SimulationClock implements AutoCloseable {
+
+    /** Draws the engine's current generation; runs on the clock thread. */
+    public interface Frame {
+        void draw(LifeEngine engine) throws InterruptedException;
+    }
+
+    /** Told that the clock stopped because the engine settled; runs on the clock thread. */
+    public interface Settled {
+        void settled(long generation);
+    }
+
+    /** Rates are measured over windows of about this length. */
+    private static final long RATE_WINDOW_NS = 500_000_000L;
+    /** Behind schedule by more than this, the clock starts a new schedule rather than catch up in a burst. */
+    private static final long MAX_LAG_NS = 250_000_000L;
+
+    private final LifeEngine engine;
+    private final Frame frame;
+    private final Settled settled;
+    private final Thread thread;
+
+    // Guarded by this
+    private boolean running;
+    private long stepsLeft;         // Single generations asked for while not running
+    private boolean frameWanted;
+    private boolean busy;           // The clock thread holds the engine
+    private boolean closed;
+    private double targetRate;      // Generations per second; 0 for as fast as possible
+    private long nextDue;           // When the next generation is due at the target rate
+
+    private volatile double generationRate;
+    private volatile double frameRate;
+
+    /** @param gensPerSecond  target rate, or 0 or less for as fast as possible */
+    public SimulationClock(LifeEngine engine, Frame frame, double gensPerSecond) {
+        this(engine, frame, null, gensPerSecond);
+    }
+
+    /**
+     * @param settled        told when the clock stops on a settled engine, or null
+     * @param gensPerSecond  target rate, or 0 or less for as fast as possible
+     */
+    public SimulationClock(LifeEngine engine, Frame frame, Settled settled, double gensPerSecond) {
+        this.engine = engine;
+        this.frame = frame;
+        this.settled = settled;
+        this.targetRate = Math.max(0, gensPerSecond);
+        this.thread = new Thread(this::loop, "life-clock");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Generations per second over the last window; 0 while paused. */
+    public double getGenerationRate() { return generationRate; }
+
+    /** Frames drawn per second over the last window. */
+    public double getFrameRate() { return frameRate; }
+
+    public synchronized double getTargetRate() { return targetRate; }
+
+    /** Sets the target rate, or 0 or less for as fast as possible. Takes effect at once. */
+    public synchronized void setTargetRate(double gensPerSecond) {
+        targetRate = Math.max(0, gensPerSecond);
+        nextDue = System.nanoTime();
+        notifyAll();
+    }
+
+    public synchronized boolean isRunning() { return running; }
+
+    /** Starts running generations continuously. */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        nextDue = System.nanoTime();
+        notifyAll();
+    }
+
+    /** Stops after the generation in progress; returns at once. */
+    public synchronized void stop() {
+        running = false;
+        stepsLeft = 0;
+    }
+
+    /** Stops and waits until the clock thread has let go of the engine. */
+    public synchronized void pause() throws InterruptedException {
+        stop();
+        while (busy || frameWanted) wait();
+    }
+
+    /** Runs one generation and draws it; ignored while running. */
+    public synchronized void stepOnce() {
+        if (running) return;
+        stepsLeft++;
+        frameWanted = true;
+        notifyAll();
+    }
+
+    /**
+     * Asks for the current generation to be drawn. While running it is drawn after the
+     * generation in progress; while paused, right away. Asking again before the frame
+     * was drawn asks for a single frame.
+     */
+    public synchronized void requestFrame() {
+        frameWanted = true;
+        notifyAll();
+    }
+
+    private void loop() {
+        long windowStart = System.nanoTime();
+        int generations = 0;
+        int frames = 0;
+        try {
+            while (true) {
+                boolean step;
+                synchronized (this) {
+                    while (true) {
+                        if (closed) return;
+                        long now = System.nanoTime();
+                        if (stepsLeft > 0) {
+                            stepsLeft--;
+                            step = true;
+                            break;
+                        }
+                        if (running) {
+                            if (now - nextDue > MAX_LAG_NS) nextDue = now;
+                            if (targetRate == 0 || now >= nextDue) {
+                                step = true;
+                                break;
+                            }
+                        }
+                        if (frameWanted) {
+                            step = false;
+                            break;
+                        }
+                        busy = false;
+                        notifyAll();
+                        if (running) {
+                            long wait = nextDue - now;
+                            wait(wait / 1_000_000, (int) (wait % 1_000_000));
+                        } else {
+                            generationRate = 0;
+                            frameRate = 0;
+                            wait();
+                            windowStart = System.nanoTime();
+                            generations = 0;
+                            frames = 0;
+                        }
+                    }
+                    busy = true;
+                    if (step && targetRate > 0) nextDue += (long) (1e9 / targetRate);
+                }
+
+                boolean stopped = false;
+                if (step) {
+                    try {
+                        engine.step();
+                        generations++;
+                        stopped = engine.isSettled();
+                        if (stopped) stop();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        stop();
+                    }
+                }
+
+                boolean draw;
+                synchronized (this) {
+                    draw = frameWanted;
+                    frameWanted = false;
+                }
+                if (draw) {
+                    try {
+                        frame.draw(engine);
+                        frames++;
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (stopped && settled != null) {
+                    try {
+                        settled.settled(engine.getGenerationCount());
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - windowStart >= RATE_WINDOW_NS) {
+                    double seconds = (now - windowStart) / 1e9;
+                    generationRate = generations / seconds;
+                    frameRate = frames / seconds;
+                    windowStart = now;
+                    generations = 0;
+                    frames = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed while stepping or drawing
+        } finally {
+            synchronized (this) {
+                busy = false;
+                frameWanted = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /** Stops the clock thread; the clock cannot be used afterwards. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            running = false;
+            notifyAll();
+        }
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unbounded Life plane made of 64x64 chunks kept in a hash table keyed by chunk coordinates.
+ *
+ * A chunk is 64 row words (cell x of a row at bit x, like BitboardKernel) and exists
+ * only while it has live cells: empty chunks are released after every generation and
+ * new ones appear where something is born. Memory follows the live area, not the
+ * bounding box, and gliders can travel as far as they like.
+ *
+ * Each chunk holds the current and the next generation and keeps links to its eight
+ * neighbours, so a step reads and writes arrays it already has and looks nothing up;
+ * released chunks are pooled for the next birth. The table is open-addressed on the
+ * packed coordinates, so a lookup boxes nothing: once the pool and the table have
+ * grown to a pattern's size, stepping it allocates nothing, whether it moves or not.
+ */
+public class SparseUniverse {
+
+    public static final int CHUNK = 64;
+    /** Released chunks kept for reuse. */
+    private static final int MAX_POOL = 1 << 12;
+
+    /** A live chunk. around[(dy + 1) * 3 + dx + 1] is the chunk at (cx + dx, cy + dy), or null. */
+    private static final class Chunk {
+        long key;
+        int cx;
+        int cy;
+        int index; // In live
+        long[] cells = new long[CHUNK];
+        long[] next = new long[CHUNK];
+        long population; // Of next, while stepping
+        final Chunk[] around = new Chunk[9];
+    }
+
+    private final LifeRule rule;
+    /** Candidate chunks per unit of work handed to the team. */
+    private static final int BATCH = 16;
+
+    private final StepTeam team;
+    private final int workers;
+    private final long[] counts;
+    private final long[][] scratch;
+    private final StepTeam.Job batchJob = this::stepBatch;
+
+    /** Live chunks by key, linear probing, at most half full. */
+    private Chunk[] table = new Chunk[64];
+    private int shift = 64 - 6;
+    private final List<Chunk> live = new ArrayList<>();
+    private final List<Chunk> pool = new ArrayList<>();
+    private long population = 0;
+    private long generation = 0;
+
+    /**
+     * @param team  workers used to step chunks in parallel, or null to step on the caller's thread
+     */
+    public SparseUniverse(LifeRule rule, StepTeam team) {
+        if (rule.birthOnEmpty()) throw new IllegalArgumentException("An unbounded plane cannot run B0 rules.");
+        this.rule = rule;
+        this.team = team;
+        this.workers = team == null ? 1 : team.size();
+        this.counts = new long[workers];
+        // Rows -1..64 of a chunk and of its west and east neighbours, per worker
+        this.scratch = new long[workers * 3][CHUNK + 2];
+    }
+
+    static long key(long cx, long cy) {
+        return (cy << 32) | (cx & 0xFFFFFFFFL);
+    }
+
+    static int chunkX(long key) { return (int) key; }
+    static int chunkY(long key) { return (int) (key >> 32); }
+
+    public long getPopulation() { return population; }
+    public long getGeneration() { return generation; }
+    public int getChunkCount() { return live.size(); }
+
+    public boolean get(long x, long y) {
+        Chunk c = find(key(Math.floorDiv(x, CHUNK), Math.floorDiv(y, CHUNK)));
+        return c != null && ((c.cells[Math.floorMod(y, CHUNK)] >>> Math.floorMod(x, CHUNK)) & 1) != 0;
+    }
+
+    public void set(long x, long y, boolean alive) {
+        int cx = (int) Math.floorDiv(x, CHUNK);
+        int cy = (int) Math.floorDiv(y, CHUNK);
+        Chunk c = find(key(cx, cy));
+        if (c == null) {
+            if (!alive) return;
+            c = create(cx, cy);
+        }
+        int r = Math.floorMod(y, CHUNK);
+        long bit = 1L << Math.floorMod(x, CHUNK);
+        boolean was = (c.cells[r] & bit) != 0;
+        if (was == alive) return;
+        if (alive) {
+            c.cells[r] |= bit;
+            population++;
+        } else {
+            c.cells[r] &= ~bit;
+            population--;
+            if (isEmpty(c.cells)) release(c);
+        }
+    }
+
+    /** Removes every cell. */
+    public void clear() {
+        for (int i = live.size() - 1; i >= 0; i--) {
+            Chunk c = live.get(i);
+            Arrays.fill(c.cells, 0);
+            release(c);
+        }
+        population = 0;
+    }
+
+    /** Replaces the universe with a grid placed with its cell (0, 0) at world (0, 0). */
+    public void load(GridStore grid) {
+        clear();
+        // Grid word i of row y is exactly row y & 63 of chunk (i, y >> 6)
+        for (int y = 0; y < grid.getRows(); y++) {
+            for (int i = 0; i < grid.getWords(); i++) {
+                long w = grid.readWord(y, i);
+                if (w == 0) continue;
+                Chunk c = find(key(i, y >> 6));
+                if (c == null) c = create(i, y >> 6);
+                c.cells[y & (CHUNK - 1)] = w;
+                population += Long.bitCount(w);
+            }
+        }
+        generation = 0;
+    }
+
+    /** Writes world cells [originX, originX + cols) x [originY, originY + rows) into grid. */
+    public void store(GridStore grid, long originX, long originY) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        grid.clear();
+        for (Chunk chunk : live) {
+            long x0 = (long) chunk.cx * CHUNK - originX;
+            long y0 = (long) chunk.cy * CHUNK - originY;
+            if (x0 >= cols || y0 >= rows || x0 + CHUNK <= 0 || y0 + CHUNK <= 0) continue;
+            long[] c = chunk.cells;
+            for (int r = 0; r < CHUNK; r++) {
+                long y = y0 + r;
+                if (y < 0 || y >= rows || c[r] == 0) continue;
+                if ((x0 & (CHUNK - 1)) == 0 && x0 >= 0) {
+                    // Chunk columns line up with grid words
+                    long keep = cols - x0 >= CHUNK ? -1L : (1L << (cols - x0)) - 1;
+                    grid.writeWord((int) y, (int) (x0 >> 6), c[r] & keep);
+                    continue;
+                }
+                long bits = c[r];
+                while (bits != 0) {
+                    long x = x0 + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (x >= 0 && x < cols) grid.set((int) x, (int) y, true);
+                }
+            }
+        }
+    }
+
+    /** Smallest box holding every live cell as {minX, minY, maxX, maxY}, or null when empty. */
+    public long[] bounds() {
+        if (population == 0) return null;
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (Chunk chunk : live) {
+            long[] c = chunk.cells;
+            long x0 = (long) chunk.cx * CHUNK;
+            long y0 = (long) chunk.cy * CHUNK;
+            long columns = 0;
+            for (int r = 0; r < CHUNK; r++) {
+                if (c[r] == 0) continue;
+                columns |= c[r];
+                minY = Math.min(minY, y0 + r);
+                maxY = Math.max(maxY, y0 + r);
+            }
+            minX = Math.min(minX, x0 + Long.numberOfTrailingZeros(columns));
+            maxX = Math.max(maxX, x0 + 63 - Long.numberOfLeadingZeros(columns));
+        }
+        return new long[] {minX, minY, maxX, maxY};
+    }
+
+    public void step(long generations) throws InterruptedException {
+        for (long i = 0; i < generations; i++) step();
+    }
+
+    /** Advances one generation. */
+    public void step() throws InterruptedException {
+        addNeighbours();
+        int n = live.size();
+
+        if (team == null || workers == 1 || n < 64) {
+            population = stepChunks(0, n, 0);
+        } else {
+            Arrays.fill(counts, 0);
+            team.run((n + BATCH - 1) / BATCH, batchJob);
+            long total = 0;
+            for (int w = 0; w < workers; w++) total += counts[w];
+            population = total;
+        }
+
+        for (int i = n - 1; i >= 0; i--) {
+            Chunk c = live.get(i);
+            long[] t = c.cells;
+            c.cells = c.next;
+            c.next = t;
+            if (c.population == 0) release(c);
+        }
+        generation++;
+    }
+
+    private void stepBatch(int worker, int unit) {
+        int start = unit * BATCH;
+        int end = Math.min(live.size(), start + BATCH);
+        counts[worker] += stepChunks(start, end, worker);
+    }
+
+    /** Creates the empty neighbours that the edge cells of live chunks can reach. */
+    private void addNeighbours() {
+        for (int i = 0, n = live.size(); i < n; i++) {
+            Chunk chunk = live.get(i);
+            long[] c = chunk.cells;
+            long columns = 0;
+            for (long w : c) columns |= w;
+            boolean north = c[0] != 0;
+            boolean south = c[CHUNK - 1] != 0;
+            boolean west = (columns & 1) != 0;
+            boolean east = (columns >>> 63) != 0;
+            if (north) neighbour(chunk, 0, -1);
+            if (south) neighbour(chunk, 0, 1);
+            if (west) neighbour(chunk, -1, 0);
+            if (east) neighbour(chunk, 1, 0);
+            if ((c[0] & 1) != 0) neighbour(chunk, -1, -1);
+            if ((c[0] >>> 63) != 0) neighbour(chunk, 1, -1);
+            if ((c[CHUNK - 1] & 1) != 0) neighbour(chunk, -1, 1);
+            if ((c[CHUNK - 1] >>> 63) != 0) neighbour(chunk, 1, 1);
+        }
+    }
+
+    private void neighbour(Chunk chunk, int dx, int dy) {
+        if (chunk.around[(dy + 1) * 3 + dx + 1] == null) create(chunk.cx + dx, chunk.cy + dy);
+    }
+
+    /** Steps live chunks [start, end) into their next arrays and returns their population. */
+    private long stepChunks(int start, int end, int worker) {
+        long[] centre = scratch[worker * 3];
+        long[] west = scratch[worker * 3 + 1];
+        long[] east = scratch[worker * 3 + 2];
+        long total = 0;
+
+        for (int i = start; i < end; i++) {
+            Chunk chunk = live.get(i);
+            Chunk[] a = chunk.around;
+            fillColumn(centre, a[1], chunk, a[7]);
+            fillColumn(west, a[0], a[3], a[6]);
+            fillColumn(east, a[2], a[5], a[8]);
+
+            long[] result = chunk.next;
+            long count = 0;
+            for (int r = 1; r <= CHUNK; r++) {
+                long u = centre[r - 1], m = centre[r], d = centre[r + 1];
+                long next = BitboardKernel.evolve(
+                        (u << 1) | (west[r - 1] >>> 63), u, (u >>> 1) | (east[r - 1] << 63),
+                        (m << 1) | (west[r] >>> 63), m, (m >>> 1) | (east[r] << 63),
+                        (d << 1) | (west[r + 1] >>> 63), d, (d >>> 1) | (east[r + 1] << 63),
+                        rule);
+                result[r - 1] = next;
+                count += Long.bitCount(next);
+            }
+            chunk.population = count;
+            total += count;
+        }
+        return total;
+    }
+
+    /** Rows -1..64 of one chunk column; missing chunks read as dead. */
+    private static void fillColumn(long[] dst, Chunk above, Chunk self, Chunk below) {
+        dst[0] = above == null ? 0 : above.cells[CHUNK - 1];
+        if (self == null) {
+            Arrays.fill(dst, 1, CHUNK + 1, 0);
+        } else {
+            System.arraycopy(self.cells, 0, dst, 1, CHUNK);
+        }
+        dst[CHUNK + 1] = below == null ? 0 : below.cells[0];
+    }
+
+    /** Adds an empty chunk at (cx, cy), taken from the pool when one is there, and links it in. */
+    private Chunk create(int cx, int cy) {
+        Chunk c = pool.isEmpty() ? new Chunk() : pool.remove(pool.size() - 1);
+        c.key = key(cx, cy);
+        c.cx = cx;
+        c.cy = cy;
+        c.index = live.size();
+        live.add(c);
+        insert(c);
+        c.around[4] = c;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                Chunk n = find(key(cx + dx, cy + dy));
+                int slot = (dy + 1) * 3 + dx + 1;
+                c.around[slot] = n;
+                if (n != null) n.around[8 - slot] = c;
+            }
+        }
+        return c;
+    }
+
+    /** Unlinks an empty chunk and returns it to the pool. */
+    private void release(Chunk c) {
+        remove(c);
+        Chunk last = live.remove(live.size() - 1);
+        if (last != c) {
+            live.set(c.index, last);
+            last.index = c.index;
+        }
+        for (int slot = 0; slot < 9; slot++) {
+            Chunk n = c.around[slot];
+            if (n != null && n != c) n.around[8 - slot] = null;
+            c.around[slot] = null;
+        }
+        if (pool.size() < MAX_POOL) pool.add(c);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private Chunk find(long key) {
+        int mask = table.length - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            Chunk c = table[i];
+            if (c == null || c.key == key) return c;
+        }
+    }
+
+    /** Adds a chunk already counted in live. */
+    private void insert(Chunk c) {
+        if (live.size() * 2 > table.length) {
+            Chunk[] old = table;
+            table = new Chunk[old.length * 2];
+            shift--;
+            for (Chunk o : old) if (o != null) place(o);
+        }
+        place(c);
+    }
+
+    private void place(Chunk c) {
+        int mask = table.length - 1;
+        int i = slot(c.key);
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = c;
+    }
+
+    /** Removes a chunk and shifts later entries of its probe run back over the hole. */
+    private void remove(Chunk c) {
+        int mask = table.length - 1;
+        int hole = slot(c.key);
+        while (table[hole] != c) hole = (hole + 1) & mask;
+        for (int j = (hole + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            // An entry may fill the hole if the hole lies between its home slot and j
+            if (((j - slot(table[j].key)) & mask) >= ((j - hole) & mask)) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = null;
+    }
+
+    private static boolean isEmpty(long[] c) {
+        for (long w : c) if (w != 0) return false;
+        return true;
+    }
+}
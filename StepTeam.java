@@ -0,0 +1,164 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Long-lived worker team for stepping. The calling thread is worker 0 and the other
+ * workers are daemon threads that stay parked between generations. A generation is
+ * started by bumping an epoch and released by a countdown, both reused forever, so
+ * it allocates nothing; Phaser and CountDownLatch allocate wait nodes or new latches.
+ *
+ * Work is a range of units (tile rows, row blocks, chunk batches). Each worker owns a
+ * contiguous band of them and, once its band is drained, steals what is left of the
+ * others' bands, so uneven tiles do not leave workers idle at the barrier.
+ */
+public final class StepTeam implements AutoCloseable {
+
+    /** One unit of work; worker indexes per-worker scratch such as kernels and counters. */
+    public interface Job {
+        void run(int worker, int unit);
+    }
+
+    /** Busy-wait this many rounds before parking; a generation is often shorter than a park. */
+    private static final int SPINS = 1 << 10;
+    /** Longs between workers' busy times, so they do not share a cache line. */
+    private static final int STRIDE = 8;
+
+    private final int size;
+    private final Thread[] helpers;
+    private final AtomicInteger[] cursors;
+    private final int[] bandEnd;
+
+    private volatile Job job;
+    private volatile int epoch;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread caller;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile boolean timed;
+    private final long[] busyNs;
+
+    /** @param size  number of workers, including the calling thread */
+    public StepTeam(int size, String name) {
+        this.size = Math.max(1, size);
+        this.cursors = new AtomicInteger[this.size];
+        this.bandEnd = new int[this.size];
+        this.busyNs = new long[this.size * STRIDE];
+        for (int w = 0; w < this.size; w++) cursors[w] = new AtomicInteger();
+
+        helpers = new Thread[this.size - 1];
+        for (int w = 1; w < this.size; w++) {
+            final int worker = w;
+            Thread t = new Thread(() -> helperLoop(worker), name + "-" + w);
+            t.setDaemon(true);
+            helpers[w - 1] = t;
+            t.start();
+        }
+    }
+
+    public int size() { return size; }
+
+    /** Times how long each worker is busy in a run, for getImbalance. */
+    public void setTimed(boolean enabled) { timed = enabled; }
+
+    /**
+     * The busiest worker's time over the mean in the last timed run: 1 when the work
+     * was spread evenly, up to size() when one worker did all of it.
+     */
+    public double getImbalance() {
+        long max = 0;
+        long total = 0;
+        for (int w = 0; w < size; w++) {
+            long ns = busyNs[w * STRIDE];
+            max = Math.max(max, ns);
+            total += ns;
+        }
+        return total == 0 ? 1 : max * (double) size / total;
+    }
+
+    /**
+     * Runs units [0, units) of the job on the whole team and returns when all are done.
+     * Only one thread may call run at a time. Worker 0 is the calling thread.
+     */
+    public void run(int units, Job job) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (closed) throw new IllegalStateException("Step team is closed.");
+        for (int w = 0; w < size; w++) {
+            cursors[w].set((int) ((long) units * w / size));
+            bandEnd[w] = (int) ((long) units * (w + 1) / size);
+        }
+        if (size == 1) {
+            work(0, job);
+            return;
+        }
+
+        failure = null;
+        this.job = job;
+        caller = Thread.currentThread();
+        pending.set(size - 1);
+        epoch++; // Publishes the cursors and the job
+        for (Thread t : helpers) LockSupport.unpark(t);
+
+        // The helpers must be done with the job before run returns, even when it throws
+        // here, or the next run would reset the cursors under helpers still writing; a
+        // failure on this thread is kept like a helper's and thrown once they are done.
+        try {
+            work(0, job);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        for (int spin = 0; pending.get() != 0; spin++) {
+            if (spin < SPINS) Thread.onSpinWait();
+            else LockSupport.park(this);
+        }
+        this.job = null;
+
+        Throwable t = failure;
+        if (t != null) {
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private void helperLoop(int worker) {
+        int seen = 0;
+        while (true) {
+            for (int spin = 0; epoch == seen && !closed; spin++) {
+                if (spin < SPINS) Thread.onSpinWait();
+                else LockSupport.park(this);
+            }
+            if (closed) return;
+            seen = epoch;
+            try {
+                work(worker, job);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            if (pending.decrementAndGet() == 0) LockSupport.unpark(caller);
+        }
+    }
+
+    /** Drains the worker's own band, then steals from the others in turn. */
+    private void work(int worker, Job job) {
+        boolean time = timed;
+        long start = time ? System.nanoTime() : 0;
+        for (int k = 0; k < size; k++) {
+            int band = (worker + k) % size;
+            AtomicInteger cursor = cursors[band];
+            int end = bandEnd[band];
+            int unit;
+            while (cursor.get() < end && (unit = cursor.getAndIncrement()) < end) {
+                job.run(worker, unit);
+            }
+        }
+        if (time) busyNs[worker * STRIDE] = System.nanoTime() - start;
+    }
+
+    /** Stops the helper threads; the team cannot be used afterwards. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (Thread t : helpers) LockSupport.unpark(t);
+    }
+}
@@ -0,0 +1,793 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark suite for the hot paths: stepping, pattern detection, pixel packing and text I/O.
+ *
+ * JMH refuses benchmark classes in the default package, and every class in this
+ * project lives there, so this is a small harness following the same method:
+ * warmup iterations, timed measurement iterations, state reset per iteration,
+ * and results consumed through a sink so the JIT cannot drop the work.
+ *
+ *   mvn -Pbench test-compile exec:exec -Dbench.args="-sizes 100,1000 -densities 0.2 step"
+ *
+ * Every benchmark runs for each size x density; new engines are added to benchmarks()
+ * next to the baselines they replace so both show up in the same table.
+ */
+public class LifeBenchmark {
+
+    /** One benchmark: setup once per grid, reset before every iteration, then run ops. */
+    abstract static class Bench {
+        final String name;
+
+        Bench(String name) { this.name = name; }
+
+        abstract void setup(int size, double density) throws Exception;
+
+        void reset() throws Exception { }
+
+        /** Runs one operation and returns something to feed the sink. */
+        abstract long op() throws Exception;
+
+        void tearDown() throws Exception { }
+    }
+
+    private static final long SEED = 42;
+    private static final Path TEMP_DIR = Path.of(System.getProperty("java.io.tmpdir"));
+    private static volatile long sink;
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationNs = 1_000_000_000L;
+    private int[] sizes = {100, 1000, 5000};
+    private double[] densities = {0.05, 0.2, 0.5};
+    private Pattern filter = Pattern.compile(".*");
+    private Path csv;
+
+    public static void main(String[] args) throws Exception {
+        LifeBenchmark harness = new LifeBenchmark();
+        harness.parse(args);
+        harness.runAll();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":        warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i":         iterations = Integer.parseInt(args[++i]); break;
+                case "-r":         iterationNs = (long) (Double.parseDouble(args[++i]) * 1e9); break;
+                case "-sizes":     sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "-densities": densities = Arrays.stream(args[++i].split(",")).mapToDouble(Double::parseDouble).toArray(); break;
+                case "-csv":       csv = Path.of(args[++i]); break;
+                case "-l":
+                    for (Bench b : benchmarks()) System.out.println(b.name);
+                    System.exit(0);
+                    break;
+                case "-h":
+                    System.out.println("Usage: LifeBenchmark [-wi N] [-i N] [-r seconds] [-sizes a,b] [-densities a,b] [-csv file] [-l] [regex]");
+                    System.exit(0);
+                    break;
+                default:
+                    filter = Pattern.compile(".*(" + args[i] + ").*");
+            }
+        }
+    }
+
+    /** All benchmarks, baselines first. */
+    static List<Bench> benchmarks() {
+        List<Bench> list = new ArrayList<>();
+
+        // Stepping: the per-cell countNeighbors loop, the word kernel, then the kernel with active tiles
+        int cores = Runtime.getRuntime().availableProcessors();
+        list.add(new StepBench("step.scalar.1t", false, false, 1));
+        list.add(new StepBench("step.scalar.mt", false, false, cores));
+        list.add(new StepBench("step.word.1t", true, false, 1));
+        list.add(new StepBench("step.word.mt", true, false, cores));
+        list.add(new StepBench("step.tiles.1t", true, true, 1));
+        list.add(new StepBench("step.tiles.mt", true, true, cores));
+        list.add(new StepBench("step.word.1t.highlife", true, false, 1).variant("B36/S23"));
+        list.add(new StepBench("step.word.1t.direct", true, false, 1).storage(OffHeapGridStore.direct()));
+        list.add(new StepBench("step.tiles.1t.direct", true, true, 1).storage(OffHeapGridStore.direct()));
+        list.add(new StepBench("step.tiles.1t.mapped", true, true, 1).storage(OffHeapGridStore.mapped(TEMP_DIR)));
+        list.add(new StepBench("step.sparse.1t", true, true, 1).unbounded());
+        list.add(new StepBench("step.sparse.mt", true, true, cores).unbounded());
+        list.add(new HashlifeBench("step.hashlife.1024gen", 10));
+        // The same tiled step while keeping history, then jumps back to retained generations
+        list.add(new StepBench("step.history.1t", true, true, 1).history(256L << 20));
+        list.add(new HistorySeekBench("history.seek", 200));
+        // The same tiled step while hashing every generation to watch for cycles
+        list.add(new StepBench("step.cycles.1t", true, true, 1).cycles(1024));
+        // The same tiled step timed phase by phase into PipelineMetrics
+        list.add(new StepBench("step.metrics.mt", true, true, cores).metrics());
+        // A batch of two-glider collisions run to settling, one per core at a time; ignores size
+        list.add(new CollisionBench("collisions.sweep.mt", 4, 4, cores));
+
+        // Elementary rules: one generation of the row pipeline, then a whole diagram in one pass
+        list.add(new StepBench("step.rule30.1t", true, false, 1).rule(LifeEngine.RULE_30));
+        list.add(new SpacetimeBench("spacetime.rule30", 30));
+
+        // Pattern detection: one full anchor scan per shipped pattern, the engine's single-pass scanner, then the object census
+        for (String name : LifeEngine.patternNames()) {
+            list.add(new MatchBench("match." + name, name));
+        }
+        list.add(new DetectBench("detect.all"));
+        list.add(new DetectStepBench("detect.incremental"));
+        list.add(new CensusBench("census.all"));
+
+        // Rendering: the old per-pixel palette packing, the lookup-table rasterizer, then zoomed-out views
+        list.add(new HighlightClearBench("render.clearHighlights.boolean", false));
+        list.add(new HighlightClearBench("render.clearHighlights.layers", true));
+        list.add(new PackBench("render.packRows"));
+        list.add(new RasterBench("render.raster.1t", 1, 1));
+        list.add(new RasterBench("render.raster.mt", cores, 1));
+        list.add(new RasterBench("render.zoomout4.1t", 1, 4));
+        list.add(new RasterBench("render.zoomout16.1t", 1, 16));
+
+        // File I/O
+        list.add(new SaveTextBench("io.saveText"));
+        list.add(new LoadTextBench("io.loadText"));
+        list.add(new SnapshotBench("io.saveSnapshot", false, false));
+        list.add(new SnapshotBench("io.loadSnapshot", true, false));
+        list.add(new SnapshotBench("io.saveSnapshot.deflate", false, true));
+        list.add(new SnapshotBench("io.loadSnapshot.deflate", true, true));
+        list.add(new PatternFileBench("io.saveRle", false, PatternFile.RLE));
+        list.add(new PatternFileBench("io.loadRle", true, PatternFile.RLE));
+        list.add(new PatternFileBench("io.saveCells", false, PatternFile.CELLS));
+        list.add(new PatternFileBench("io.loadCells", true, PatternFile.CELLS));
+        return list;
+    }
+
+    private void runAll() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("benchmark,size,density,ms_per_op,error_ms,ops_per_s,cells_per_s");
+        System.out.printf(Locale.ROOT, "%-22s %6s %7s %14s %12s %14s%n",
+                "Benchmark", "Size", "Density", "ms/op", "+/- ms", "cells/s");
+
+        for (Bench bench : benchmarks()) {
+            if (!filter.matcher(bench.name).matches()) continue;
+            for (int size : sizes) {
+                for (double density : densities) {
+                    double[] result = measure(bench, size, density);
+                    double msPerOp = result[0];
+                    double cellsPerSec = (double) size * size / (msPerOp / 1e3);
+                    System.out.printf(Locale.ROOT, "%-22s %6d %7.2f %14.4f %12.4f %14.3e%n",
+                            bench.name, size, density, msPerOp, result[1], cellsPerSec);
+                    lines.add(String.format(Locale.ROOT, "%s,%d,%.2f,%.6f,%.6f,%.3f,%.3e",
+                            bench.name, size, density, msPerOp, result[1], 1e3 / msPerOp, cellsPerSec));
+                }
+            }
+        }
+
+        if (csv != null) {
+            Files.write(csv, lines);
+            System.out.println("Results written to " + csv.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns {mean ms/op, 99.9% half-width ms} over the measurement iterations, using
+     * the Student-t quantile for their count as JMH does; NaN with a single iteration.
+     */
+    private double[] measure(Bench bench, int size, double density) throws Exception {
+        bench.setup(size, density);
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(bench);
+            }
+            double[] samples = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                samples[i] = iteration(bench);
+            }
+            double mean = Arrays.stream(samples).average().orElse(Double.NaN);
+            double var = 0;
+            for (double s : samples) var += (s - mean) * (s - mean);
+            if (samples.length < 2) return new double[] {mean, Double.NaN};
+            double stdev = Math.sqrt(var / (samples.length - 1));
+            return new double[] {mean, studentT999(samples.length - 1) * stdev / Math.sqrt(samples.length)};
+        } finally {
+            bench.tearDown();
+        }
+    }
+
+    /** Two-sided 99.9% Student-t quantiles for 1..30 degrees of freedom. */
+    private static final double[] T_999 = {
+        636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646,
+    };
+
+    /**
+     * The t quantile JMH scales its 99.9% error by; past the table, the Cornish-Fisher
+     * expansion around the normal quantile is good to three decimals.
+     */
+    static double studentT999(int df) {
+        if (df <= T_999.length) return T_999[df - 1];
+        double z = 3.290527;
+        double z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+        return z + (z3 + z) / (4.0 * df)
+                + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df)
+                + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384.0 * df * df * df);
+    }
+
+    /** Runs ops for about one iteration period and returns ms/op. */
+    private double iteration(Bench bench) throws Exception {
+        bench.reset();
+        long ops = 0;
+        long acc = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            acc += bench.op();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNs);
+        sink += acc;
+        return elapsed / 1e6 / ops;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    static class StepBench extends Bench {
+        private final boolean word;
+        private final boolean tiles;
+        private final int threads;
+        private boolean unbounded;
+        private long historyBudget;
+        private int maxPeriod;
+        private boolean timed;
+        private GridStore.Factory storage = HeapGridStore.FACTORY;
+        private String rule = LifeEngine.RULE_LIFE;
+        private String variant = LifeEngine.VARIANT_STANDARD;
+        private LifeEngine engine;
+        private double density;
+
+        StepBench(String name, boolean word, boolean tiles, int threads) {
+            super(name);
+            this.word = word;
+            this.tiles = tiles;
+            this.threads = threads;
+        }
+
+        /** Keeps the grids in the given storage instead of on the heap. */
+        StepBench storage(GridStore.Factory factory) {
+            storage = factory;
+            return this;
+        }
+
+        /** Steps under an elementary rule instead of a Life-like one. */
+        StepBench rule(String name) {
+            rule = name;
+            return this;
+        }
+
+        /** Steps under another Life-like rule, which takes the generic word circuit. */
+        StepBench variant(String rule) {
+            variant = rule;
+            return this;
+        }
+
+        /** Steps the soup on the sparse unbounded plane instead of the torus. */
+        StepBench unbounded() {
+            unbounded = true;
+            return this;
+        }
+
+        /** Records every generation in a history of the given budget. */
+        StepBench history(long bytes) {
+            historyBudget = bytes;
+            return this;
+        }
+
+        /** Watches every generation for cycles up to the given period. */
+        StepBench cycles(int period) {
+            maxPeriod = period;
+            return this;
+        }
+
+        /** Times each phase of every generation. */
+        StepBench metrics() {
+            timed = true;
+            return this;
+        }
+
+        @Override void setup(int size, double density) {
+            this.density = density;
+            engine = new LifeEngine(size, size, rule, variant, threads, storage);
+            engine.setWordKernelEnabled(word);
+            engine.setActiveTilesEnabled(tiles);
+            engine.setUnbounded(unbounded);
+            engine.setHistoryBudget(historyBudget);
+            engine.setCycleDetection(maxPeriod);
+            if (timed) engine.setMetrics(new PipelineMetrics());
+        }
+
+        @Override void reset() {
+            // Soups thin out as they run, so every iteration starts from the same one
+            engine.randomize(density, SEED);
+        }
+
+        @Override long op() throws InterruptedException {
+            engine.step();
+            return engine.getAliveCount();
+        }
+
+        @Override void tearDown() { engine.close(); }
+    }
+
+    /** One op advances 2^log2 generations from the same soup, starting from a cold cache. */
+    /** Seeking to retained generations spread over a recorded run, from wherever the last seek left the grid. */
+    static class HistorySeekBench extends Bench {
+        private final int generations;
+        private LifeEngine engine;
+        private Random random;
+
+        HistorySeekBench(String name, int generations) {
+            super(name);
+            this.generations = generations;
+        }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+            engine.setHistoryBudget(1L << 30);
+            engine.randomize(density, SEED);
+            engine.step(generations);
+            random = new Random(SEED);
+        }
+
+        @Override long op() {
+            GridHistory history = engine.getHistory();
+            long oldest = history.getOldestGeneration();
+            engine.seekGeneration(oldest + random.nextInt((int) (history.getNewestGeneration() - oldest + 1)));
+            return engine.getAliveCount();
+        }
+
+        @Override void tearDown() { engine.close(); }
+    }
+
+    static class HashlifeBench extends Bench {
+        private final int log2;
+        private GridStore soup;
+
+        HashlifeBench(String name, int log2) {
+            super(name);
+            this.log2 = log2;
+        }
+
+        @Override void setup(int size, double density) {
+            try (LifeEngine engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+                engine.randomize(density, SEED);
+                soup = new HeapGridStore(size, size);
+                soup.copyFrom(engine.getGrid());
+            }
+        }
+
+        @Override long op() {
+            HashlifeEngine hashlife = new HashlifeEngine(LifeRule.CONWAY);
+            hashlife.load(soup);
+            hashlife.advancePow2(log2);
+            return hashlife.getPopulation();
+        }
+    }
+
+    /** One op writes a size x size spacetime diagram of a random row. */
+    static class SpacetimeBench extends Bench {
+        private final int rule;
+        private ElementaryCA ca;
+        private GridStore grid;
+        private double density;
+
+        SpacetimeBench(String name, int rule) {
+            super(name);
+            this.rule = rule;
+        }
+
+        @Override void setup(int size, double density) {
+            this.density = density;
+            ca = new ElementaryCA(rule, size);
+            grid = new HeapGridStore(size, size);
+        }
+
+        @Override void reset() {
+            ca.randomize(density, SEED);
+        }
+
+        @Override long op() {
+            ca.fill(grid, 0, grid.getRows());
+            return ca.population();
+        }
+    }
+
+    /** One op runs a whole sweep of two-glider collisions until each settles. */
+    static class CollisionBench extends Bench {
+        private final int lanes;
+        private final int delays;
+        private final int threads;
+        private CollisionBatch batch;
+        private List<CollisionBatch.Setup> setups;
+
+        CollisionBench(String name, int lanes, int delays, int threads) {
+            super(name);
+            this.lanes = lanes;
+            this.delays = delays;
+            this.threads = threads;
+        }
+
+        @Override void setup(int size, double density) {
+            batch = new CollisionBatch(LifeEngine.VARIANT_STANDARD, 2000, 256, threads);
+            setups = CollisionBatch.sweep(LifeRule.CONWAY, lanes, delays);
+        }
+
+        @Override long op() throws InterruptedException {
+            long[] population = new long[1];
+            batch.run(setups, result -> population[0] += result.getPopulation());
+            return population[0];
+        }
+    }
+
+    /** Two consecutive generations of a soup, as the detectors see them. */
+    static class Frames {
+        final int rows;
+        final int cols;
+        final GridStore prev;
+        final GridStore curr;
+        final LifeEngine engine;
+
+        Frames(int size, double density) throws InterruptedException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD);
+            engine.randomize(density, SEED);
+            // Let the soup settle a little so there is something to find
+            engine.step(Math.min(50, size));
+            rows = size;
+            cols = size;
+            prev = engine.getPreviousGrid();
+            curr = engine.getGrid();
+        }
+    }
+
+    static class MatchBench extends Bench {
+        private final String patternName;
+        private LifePattern pattern;
+        private Frames frames;
+
+        MatchBench(String name, String patternName) {
+            super(name);
+            this.patternName = patternName;
+        }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            pattern = LifeEngine.createPattern(patternName);
+            frames = new Frames(size, density);
+        }
+
+        @Override long op() {
+            long found = 0;
+            for (int r = 0; r < frames.rows; r++) {
+                for (int c = 0; c < frames.cols; c++) {
+                    boolean match = (pattern instanceof EvolvingPattern ep)
+                            ? ep.matchesAfterEvolution(frames.prev, frames.curr, r, c, frames.rows, frames.cols)
+                            : pattern.matches(frames.curr, r, c, frames.rows, frames.cols);
+                    if (match) found++;
+                }
+            }
+            return found;
+        }
+
+        @Override void tearDown() { frames.engine.close(); }
+    }
+
+    /** The engine's scanner over the whole grid, as on the first frame after an edit. */
+    static class DetectBench extends Bench {
+        private Frames frames;
+        private StepTeam team;
+        private DetectionTiles detection;
+        private HighlightLayers highlights;
+
+        DetectBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            frames = new Frames(size, density);
+            team = new StepTeam(frames.engine.getThreads(), "bench-detect");
+            List<LifePattern> patterns = new ArrayList<>();
+            List<String> names = LifeEngine.patternNames();
+            int[] layers = new int[names.size()];
+            for (int p = 0; p < layers.length; p++) {
+                patterns.add(LifeEngine.createPattern(names.get(p)));
+                layers[p] = LifeEngine.highlightLayer(names.get(p));
+            }
+            detection = new DetectionTiles(new PatternScanner(patterns), layers, frames.rows, frames.cols, team.size());
+            highlights = new HighlightLayers(frames.rows, frames.cols);
+        }
+
+        @Override long op() throws InterruptedException {
+            detection.invalidate();
+            return detection.update(frames.prev, frames.curr, 0, highlights, team)[0];
+        }
+
+        @Override void tearDown() {
+            team.close();
+            frames.engine.close();
+        }
+    }
+
+    /** One generation and its detection, where only tiles near a change are scanned again. */
+    static class DetectStepBench extends Bench {
+        private Frames frames;
+
+        DetectStepBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            frames = new Frames(size, density);
+            frames.engine.detectPatterns(LifeEngine.patternNames());
+        }
+
+        @Override long op() throws InterruptedException {
+            frames.engine.step();
+            return frames.engine.detectPatterns(LifeEngine.patternNames()).size();
+        }
+
+        @Override void tearDown() { frames.engine.close(); }
+    }
+
+    /** Every object of the soup named against the built-in catalog. */
+    static class CensusBench extends Bench {
+        private Frames frames;
+
+        CensusBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            frames = new Frames(size, density);
+            frames.engine.getCatalog();
+        }
+
+        @Override long op() throws InterruptedException {
+            return frames.engine.census().getObjectCount();
+        }
+
+        @Override void tearDown() { frames.engine.close(); }
+    }
+
+    /** The old drawGrid: one palette index per cell into a row buffer, one setPixels per row. */
+    static class PackBench extends Bench {
+        private Frames frames;
+        private ByteBuffer rowBuffer;
+        private boolean[][] highlight;
+
+        PackBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            frames = new Frames(size, density);
+            frames.engine.detectPatterns(LifeEngine.patternNames());
+            rowBuffer = ByteBuffer.allocate(size);
+            // The old cell-per-boolean buffer, filled from the engine's layers
+            HighlightLayers layers = frames.engine.getHighlights();
+            highlight = new boolean[size][size];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) highlight[y][x] = layers.layerAt(x, y) >= 0;
+            }
+        }
+
+        @Override long op() {
+            long acc = 0;
+            for (int y = 0; y < frames.rows; y++) {
+                packRow(frames.curr, highlight, y, frames.cols, rowBuffer);
+                acc += rowBuffer.get(y % frames.cols);
+            }
+            return acc;
+        }
+
+        private static void packRow(GridStore grid, boolean[][] highlightBuffer, int y, int width, ByteBuffer rowBuffer) {
+            rowBuffer.clear();
+            long word = 0;
+            for (int x = 0; x < width; x++) {
+                if ((x & 63) == 0) word = grid.readWord(y, x >>> 6);
+                byte pixelValue;
+                if (highlightBuffer[y][x]) {
+                    pixelValue = (byte) FrameRasterizer.FIRST_HIGHLIGHT;
+                } else if (((word >>> (x & 63)) & 1) != 0) {
+                    pixelValue = FrameRasterizer.ALIVE;
+                } else {
+                    pixelValue = FrameRasterizer.DEAD;
+                }
+                rowBuffer.put(pixelValue);
+            }
+            rowBuffer.flip();
+        }
+
+        @Override void tearDown() { frames.engine.close(); }
+    }
+
+    /** Clearing every highlight, as the old per-generation Arrays.fill did, in booleans or in bit planes. */
+    static class HighlightClearBench extends Bench {
+        private final boolean packed;
+        private boolean[][] booleans;
+        private HighlightLayers layers;
+
+        HighlightClearBench(String name, boolean packed) {
+            super(name);
+            this.packed = packed;
+        }
+
+        @Override void setup(int size, double density) {
+            if (packed) {
+                layers = new HighlightLayers(size, size);
+                layers.use(0);
+            } else {
+                booleans = new boolean[size][size];
+            }
+        }
+
+        @Override long op() {
+            if (packed) {
+                layers.clear();
+                return layers.getMemoryBytes();
+            }
+            for (boolean[] row : booleans) Arrays.fill(row, false);
+            return booleans.length;
+        }
+    }
+
+    /** A frame of the whole grid through FrameRasterizer, at one cell per pixel or zoomed out. */
+    static class RasterBench extends Bench {
+        private final int threads;
+        private final double cellsPerPixel;
+        private LifeEngine engine;
+        private FrameRasterizer raster;
+        private FrameRasterizer.View view;
+
+        RasterBench(String name, int threads, double cellsPerPixel) {
+            super(name);
+            this.threads = threads;
+            this.cellsPerPixel = cellsPerPixel;
+        }
+
+        @Override void setup(int size, double density) throws InterruptedException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, threads);
+            engine.randomize(density, SEED);
+            engine.step(Math.min(50, size));
+            engine.detectPatterns(LifeEngine.patternNames());
+            raster = new FrameRasterizer();
+            int pixels = (int) Math.ceil(size / cellsPerPixel);
+            view = new FrameRasterizer.View(0, 0, cellsPerPixel, pixels, pixels);
+        }
+
+        @Override long op() throws InterruptedException {
+            engine.rasterize(raster, view);
+            FrameRasterizer.Frame frame = raster.takeFrame();
+            byte middle = frame.getPixels()[frame.getPixels().length / 2];
+            raster.release(frame);
+            return middle;
+        }
+
+        @Override void tearDown() { engine.close(); }
+    }
+
+    static class SaveTextBench extends Bench {
+        private LifeEngine engine;
+        private Path file;
+
+        SaveTextBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws IOException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+            engine.randomize(density, SEED);
+            file = Files.createTempFile("life-bench", ".txt");
+        }
+
+        @Override long op() throws IOException {
+            engine.saveAsText(file);
+            return Files.size(file);
+        }
+
+        @Override void tearDown() throws IOException {
+            engine.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static class LoadTextBench extends Bench {
+        private LifeEngine engine;
+        private Path file;
+
+        LoadTextBench(String name) { super(name); }
+
+        @Override void setup(int size, double density) throws IOException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+            engine.randomize(density, SEED);
+            file = Files.createTempFile("life-bench", ".txt");
+            engine.saveAsText(file);
+        }
+
+        @Override long op() throws IOException {
+            engine.load(file);
+            return engine.getAliveCount();
+        }
+
+        @Override void tearDown() throws IOException {
+            engine.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Saving or loading a binary snapshot, raw or deflated. */
+    static class SnapshotBench extends Bench {
+        private final boolean load;
+        private final boolean compress;
+        private LifeEngine engine;
+        private Path file;
+
+        SnapshotBench(String name, boolean load, boolean compress) {
+            super(name);
+            this.load = load;
+            this.compress = compress;
+        }
+
+        @Override void setup(int size, double density) throws IOException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+            engine.randomize(density, SEED);
+            file = Files.createTempFile("life-bench", GridSnapshot.EXTENSION);
+            engine.saveSnapshot(file, compress);
+        }
+
+        @Override long op() throws IOException {
+            if (load) {
+                engine.load(file);
+                return engine.getAliveCount();
+            }
+            engine.saveSnapshot(file, compress);
+            return Files.size(file);
+        }
+
+        @Override void tearDown() throws IOException {
+            engine.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Saving the soup as an RLE or .cells pattern, or placing it back into the grid. */
+    static class PatternFileBench extends Bench {
+        private final boolean load;
+        private final String extension;
+        private LifeEngine engine;
+        private Path file;
+
+        PatternFileBench(String name, boolean load, String extension) {
+            super(name);
+            this.load = load;
+            this.extension = extension;
+        }
+
+        @Override void setup(int size, double density) throws IOException {
+            engine = new LifeEngine(size, size, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+            engine.randomize(density, SEED);
+            file = Files.createTempFile("life-bench", extension);
+            save();
+        }
+
+        private void save() throws IOException {
+            if (extension.equals(PatternFile.RLE)) engine.saveAsRle(file);
+            else engine.saveAsCells(file);
+        }
+
+        @Override long op() throws IOException {
+            if (load) {
+                engine.loadPattern(file, 0, 0);
+                return engine.getAliveCount();
+            }
+            save();
+            return Files.size(file);
+        }
+
+        @Override void tearDown() throws IOException {
+            engine.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
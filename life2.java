@@ -1,718 +1,757 @@
-import javafx.application.Application;
-import javafx.collections.FXCollections;
-import javafx.scene.control.ButtonType;
-import javafx.scene.control.ButtonBar.ButtonData;
-import javafx.scene.control.ComboBox;
-import javafx.scene.control.Dialog;
-import javafx.scene.layout.GridPane;
-import javafx.scene.control.Label;
-import javafx.scene.control.ListView;
-import javafx.scene.control.SelectionMode;
-import javafx.scene.control.Menu;
-import javafx.scene.control.MenuBar;
-import javafx.scene.control.MenuItem;
-import javafx.scene.control.TextField;
-import javafx.scene.Scene;
-import javafx.scene.control.Alert;
-import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.image.*;
-import javafx.scene.input.ScrollEvent;
-import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.VBox;
-import javafx.scene.Group;
-import javafx.stage.Stage;
-import javafx.stage.FileChooser;
-import javafx.animation.AnimationTimer;
-import javafx.scene.paint.Color;
-import javafx.scene.control.TextInputDialog;
-import javafx.application.Platform;
-import javafx.util.Pair;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
-
-import java.util.Optional;
-import java.nio.ByteBuffer;
-import java.util.ArrayDeque; // Added
-import java.util.Deque;      // Added
-import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
-
-public class life2 extends Application {
-
-    private int rows = 1000;
-    private int cols = 1000;
-    private final int maxCanvasSize = 1000;
-    private int cellSize;
-    private int rowBytes;
-    private String selectedRule = "Game of Life";
-    private String selectedLifeVariant = "Standard (B3/S23)";
-
-    private byte[][] grid;
-    private byte[][] next;
-
-    private final int HISTORY_SIZE = 2;
-    private final Deque<byte[][]> history = new ArrayDeque<>(HISTORY_SIZE);
-
-    private boolean[][] highlightBuffer;
-    private final int COLOR_DEAD = 0xFF000000; // Black
-    private final int COLOR_ALIVE = 0xFFFFFFFF; // White
-    private final int COLOR_HIGHLIGHT = 0xFFFF0000; // Red (for all patterns)
-
-  
-
-    private WritableImage image;
-    private PixelWriter writer;
-    private PixelFormat<ByteBuffer> format;
-    private ByteBuffer rowBuffer;
-
-    private ExecutorService pool;
-    private AnimationTimer timer;
-    private volatile boolean isCalculating = false; // Prevents frame stacking
-    private ListView<String> patternListView;
-    private long currentAliveCount = 0;
-    private long generationCount = 0; // Contador de generaciones
-    private Label genLabel;           // Etiqueta para mostrar la generación
-    private Label popLabel;           // Etiqueta para mostrar células vivas
-
-    private double scaleFactor = 1.0;
-    private final double zoomStep = 0.1;
-
-    private boolean isSimulationRunning = false;
-
-    private final int THREADS = Runtime.getRuntime().availableProcessors();
-
-    @Override
-    public void start(Stage stage) {
-        if (!askGridSize()) {
-            System.out.println("Invalid grid size or cancelled.");
-            return;
-        }
-
-        rowBytes = (cols + 7) / 8;
-        grid = new byte[rows][rowBytes];
-        next = new byte[rows][rowBytes];
-	    highlightBuffer = new boolean[rows][cols];	
-
-
-        image = new WritableImage(cols, rows);
-        writer = image.getPixelWriter();
-        format = PixelFormat.createByteIndexedInstance(new int[]{COLOR_DEAD, COLOR_ALIVE, COLOR_HIGHLIGHT});
-        rowBuffer = ByteBuffer.allocate(cols);
-        pool = Executors.newFixedThreadPool(THREADS);
-	
-	MenuBar menuBar = new MenuBar();
-	Menu fileMenu = new Menu("File");
-	menuBar.getMenus().addAll(fileMenu);
-
-	MenuItem openItem = new MenuItem("Open Grid...");
-	MenuItem saveAsTextItem = new MenuItem("Save As Text...");
-
-	fileMenu.getItems().addAll(openItem, saveAsTextItem);
-
-        initializeGrid();
-	saveHistorySnapshot();
-        
-	patternListView = new ListView<>();
-        patternListView.setItems(FXCollections.observableArrayList(
-                "Block", "Blinker", "Glider", "Beehive" // Add "Toad", "Beacon" if you have them
-        ));
-    patternListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-
-    ImageView view = new ImageView(image);
-    view.setPreserveRatio(true);
-    view.setFitWidth(maxCanvasSize);
-    view.setFitHeight(maxCanvasSize);
-	view.setOnScroll(this::handleZoom);
-
-	view.setOnMouseClicked(this::handleMouseClick);
-
-	saveAsTextItem.setOnAction(e -> saveGridAsText());
-	openItem.setOnAction(e -> openGridFromFile(stage));
-
-    Group viewGroup = new Group(view);
-	ScrollPane scrollPane = new ScrollPane(viewGroup);
-    scrollPane.setPannable(true);
-
-    Button oneGenButton = new Button("Run One Generation");
-    Button startButton = new Button("Start");
-    Button stopButton = new Button("Stop");
-	Button clearButton = new Button("Clear Grid");
-	
-	genLabel = new Label("Generación: 0");
-	genLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-
-	popLabel = new Label("Células Vivas: 0");
-	popLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-
-	
-	VBox controls = new VBox(10, genLabel, popLabel, oneGenButton, startButton, stopButton, clearButton, patternListView);
-        
-    
-    controls.setStyle("-fx-padding: 10; -fx-background-color: #DDDDDD");
-
-    BorderPane root = new BorderPane();
-	root.setTop(menuBar);
-    root.setCenter(scrollPane);
-    root.setRight(controls);
-
-    Scene scene = new Scene(root);
-    stage.setScene(scene);
-    stage.setTitle("Game of Life"); // Title simplified
-    stage.show();
-
-    timer = new AnimationTimer() {
-        private long lastUpdate = 0;
-
-        @Override
-        public void handle(long now) {
-            long delayNs = 100_000_000L; // 0.1 sec
-            if (isCalculating || (now - lastUpdate < delayNs)) {
-                    return;
-            }
-                
-            isCalculating = true;
-            lastUpdate = now;
-            
-            final List<String> selectedPatterns = patternListView.getSelectionModel().getSelectedItems();
-
-            Runnable simulationTask = () -> {
-                try {
-                    // 1. Save N-1 state
-                        saveHistorySnapshot();
-                        
-                    // 2. Calculate N state (this blocks the worker thread, not FX thread)
-                        updateGridParallel();
-						generationCount++; 
-                        
-                    // 3. Find patterns by comparing N-1 and N
-                    	highlightPatternsParallel(selectedPatterns);
-
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    } finally {
-                    // 4. When done, schedule draw on FX thread
-                        Platform.runLater(() -> {
-                            drawGrid();
-			    			genLabel.setText("Generación: " + generationCount);
-    
-    			    		popLabel.setText("Células Vivas: " + currentAliveCount);
-                            isCalculating = false;
-                        });
-                    }
-                };
-                pool.submit(simulationTask);
-            }
-        };        
-	
-	clearButton.setOnAction(e -> clearGrid());
-        oneGenButton.setOnAction(e -> runOnce());
-        startButton.setOnAction(e -> {
-		timer.start();
-		isSimulationRunning = true;
-		});
-        stopButton.setOnAction(e -> {
-		timer.stop();
-		isSimulationRunning = false;
-	});
-
-        drawGrid();
-    }
-
-    private void runOnce() {
-        if (isCalculating) return; // Don't run if already running
-        
-        isCalculating = true;
-        final List<String> selectedPatterns = patternListView.getSelectionModel().getSelectedItems();
-
-        Runnable simulationTask = () -> {
-            try {
-                saveHistorySnapshot();
-                updateGridParallel();
-				generationCount++;
-                highlightPatternsParallel(selectedPatterns);
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                Platform.runLater(() -> {
-                    drawGrid();
-		    		genLabel.setText("Generación: " + generationCount);
-		    		popLabel.setText("Células Vivas: " + currentAliveCount);
-                    isCalculating = false;
-                });
-            }
-        };
-        pool.submit(simulationTask);
-    }
-    
-	private void showError(String msg) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle("Error");
-        alert.setHeaderText(null);
-        alert.setContentText(msg);
-        alert.showAndWait();
-    }
-
-	private void handleMouseClick(javafx.scene.input.MouseEvent event) 
-    	if (isSimulationRunning) {
-        	event.consume();
-        	return; 
-    	}
-
-    	double clickX = event.getX();
-    	double clickY = event.getY();
-    
-    	ImageView view = (ImageView) event.getSource();
-    	double effectiveWidth = view.getBoundsInLocal().getWidth();
-    	double effectiveHeight = view.getBoundsInLocal().getHeight();
-    
-    	int gridX = (int) Math.floor((clickX / effectiveWidth) * cols);
-    	int gridY = (int) Math.floor((clickY / effectiveHeight) * rows);
-    
-    
-    	if (gridX >= 0 && gridX < cols && gridY >= 0 && gridY < rows) {
-        
-        	boolean isAlive = getBit(grid, gridX, gridY);
-        	setBit(grid, gridX, gridY, !isAlive);
-
-        	drawGrid(); 
-    	}
-    
-    	event.consume();
-	}    
-
-private boolean askGridSize() {
-    Dialog<Pair<String, String>> dialog = new Dialog<>();
-    dialog.setTitle("Configuración de Simulación");
-    dialog.setHeaderText("Configura Tamaño, Regla y Variante");
-
-    ButtonType loginButtonType = new ButtonType("Aceptar", javafx.scene.control.ButtonBar.ButtonData.OK_DONE);
-    dialog.getDialogPane().getButtonTypes().addAll(loginButtonType, ButtonType.CANCEL);
-
-    GridPane gridPane = new GridPane();
-    gridPane.setHgap(10);
-    gridPane.setVgap(10);
-    gridPane.setPadding(new javafx.geometry.Insets(20, 150, 10, 10));
-
-    TextField sizeField = new TextField();
-    sizeField.setPromptText("1000x1000");
-    sizeField.setText("1000x1000");
-
-    ComboBox<String> ruleBox = new ComboBox<>();
-    ruleBox.getItems().addAll("Game of Life", "Rule 30");
-    ruleBox.setValue("Game of Life");
-
-    ComboBox<String> variantBox = new ComboBox<>();
-    variantBox.getItems().addAll("Standard (B3/S23)", "Variant (B2/S7)");
-    variantBox.setValue("Standard (B3/S23)");
-
-    // Lógica visual: Deshabilitar la variante si se elige Rule 30
-    ruleBox.setOnAction(e -> {
-        variantBox.setDisable(ruleBox.getValue().equals("Rule 30"));
-    });
-
-    gridPane.add(new Label("Tamaño (Filas x Cols):"), 0, 0);
-    gridPane.add(sizeField, 1, 0);
-    gridPane.add(new Label("Regla Principal:"), 0, 1);
-    gridPane.add(ruleBox, 1, 1);
-    gridPane.add(new Label("Variante (solo GoL):"), 0, 2);
-    gridPane.add(variantBox, 1, 2);
-
-    dialog.getDialogPane().setContent(gridPane);
-
-    dialog.setResultConverter(dialogButton -> {
-        if (dialogButton == loginButtonType) {
-            // AQUÍ guardamos la variante directamente en la variable de clase
-            selectedLifeVariant = variantBox.getValue();
-            return new Pair<>(sizeField.getText(), ruleBox.getValue());
-        }
-        return null;
-    });
-
-    Optional<Pair<String, String>> result = dialog.showAndWait();
-
-    if (result.isEmpty()) return false;
-
-    String input = result.get().getKey().toLowerCase().replace(" ", "");
-    selectedRule = result.get().getValue(); // Guardamos la regla principal
-
-    if (!input.matches("\\d+x\\d+")) return false;
-
-    String[] parts = input.split("x");
-    rows = Integer.parseInt(parts[0]);
-    cols = Integer.parseInt(parts[1]);
-
-    if (rows <= 0 || cols <= 0 || rows > 5000 || cols > 5000) {
-        showError("Grid size must be between 1x1 and 5000x5000.");
-        return false;
-    }
-
-    int cellWidth = maxCanvasSize / cols;
-    int cellHeight = maxCanvasSize / rows;
-    cellSize = Math.max(1, Math.min(cellWidth, cellHeight));
-
-    return true;
-}
-
- private void handleZoom(ScrollEvent event) {
-        if (event.getDeltaY() == 0) return;
-
-        double zoomFactor = (event.getDeltaY() > 0) ? (1 + zoomStep) : (1 - zoomStep);
-        scaleFactor *= zoomFactor;
-        scaleFactor = Math.max(0.1, Math.min(scaleFactor, 10));
-
-        ImageView view = (ImageView) event.getSource();
-        view.setScaleX(scaleFactor);
-        view.setScaleY(scaleFactor);
-        event.consume();
-    }
-
-private void initializeGrid() {
-    for (int y = 0; y < rows; y++) {
-        for (int x = 0; x < cols; x++) {
-            if (Math.random() < 0.2)
-                setBit(grid, x, y, true);
-            	}
-        }
-}
-
-private void updateGridParallel() throws InterruptedException {
-    CountDownLatch latch = new CountDownLatch(THREADS);
-    int chunk = rows / THREADS;
-	
-	AtomicLong totalNextGen = new AtomicLong(0);
-    for (int t = 0; t < THREADS; t++) {
-        final int start = t * chunk;
-        final int end = (t == THREADS - 1) ? rows : start + chunk;
-
-        pool.submit(() -> {
-			long threadLocalCount = 0;
-            for (int y = start; y < end; y++) {
-                for (int x = 0; x < cols; x++) {
-			
-				boolean nextState;
-				if (selectedRule.equals("Rule 30")){
-					if (y == 0) {
-        				nextState = getBit(grid, x, y);
-    				} else {
-        				int prevY = y - 1;
-						boolean left   = getBit(grid, (x - 1 + cols) % cols, prevY);
-        				boolean center = getBit(grid, x, prevY);
-        				boolean right  = getBit(grid, (x + 1 + cols) % cols, prevY);
-
-        				nextState = left ^ (center || right);
-        				setBit(next, x, y, nextState);
-    				}	
-				} else {
-                        int neighbors = countNeighbors(x, y);
-                        boolean alive = getBit(grid, x, y);
-				
-						if (selectedLifeVariant.contains("B2/S7")) {
-							nextState = alive ? (neighbors == 7) : (neighbors ==2);
-						} else {
-                        		nextState = alive ? (neighbors == 2 || neighbors == 3) : (neighbors == 3);		}
-						}
-						if (nextState) {
-                        	threadLocalCount++;
-                    	}
-                        setBit(next, x, y, nextState);
-                    	}
-                	}
-			totalNextGen.addAndGet(threadLocalCount);
-            latch.countDown();
-            });
-        }
-
-        latch.await();
-	
-	currentAliveCount = totalNextGen.get();
-    for (int y = 0; y < rows; y++) {
-            System.arraycopy(next[y], 0, grid[y], 0, rowBytes);
-		}
-    }
-
-private void saveHistorySnapshot() {
-    if (history.size() >= HISTORY_SIZE) {
-        history.removeFirst();
-    }
-    history.addLast(deepCopyGrid(grid));
-    }
-
-private byte[][] deepCopyGrid(byte[][] src) {
-    if (src == null) return null;
-    byte[][] copy = new byte[src.length][];
-    for (int i = 0; i < src.length; i++) {
-        copy[i] = src[i].clone();
-    }
-    return copy;
-}
-
-private int countNeighbors(int x, int y) {
-    int count = 0;
-    for (int dy = -1; dy <= 1; dy++) {
-        int ny = (y + dy + rows) % rows;
-        for (int dx = -1; dx <= 1; dx++) {
-            if (dx == 0 && dy == 0) continue;
-            int nx = (x + dx + cols) % cols;
-            if (getBit(grid, nx, ny)) count++;
-        }
-    }
-    return count;
-}
-
-public boolean getBit(byte[][] g, int x, int y) {
-    return (g[y][x >> 3] & (1 << (x & 7))) != 0;
-}
-
-private void setBit(byte[][] g, int x, int y, boolean value) {
-    int bit = 1 << (x & 7);
-    int byteIndex = x >> 3;
-    if (value) g[y][byteIndex] |= bit;
-    else g[y][byteIndex] &= ~bit;
-}
-
-private void printGridState(byte[][] prevGrid, byte[][] currentGrid) {
-    if (rows > 50 || cols > 50) {
-        System.out.println("Grid is too large for full printout (Max 50x50 recommended). Printing aborted.");
-    return;
-}
-    
-    int printRows = rows;
-    int printCols = cols;
-
-    System.out.println("=================================================");
-    System.out.println("GENERATION DEBUG (Size: " + rows + "x" + cols + ")");
-    System.out.println("=================================================");
-
-    // Print Header
-    System.out.printf("%-" + (printCols * 2 + 10) + "s %s\n", "PREVIOUS GRID (N-1)", "CURRENT GRID (N)");
-
-    for (int y = 0; y < printRows; y++) {
-        StringBuilder prevLine = new StringBuilder();
-        StringBuilder currLine = new StringBuilder();
-        
-        for (int x = 0; x < printCols; x++) {
-            boolean prevAlive = getBit(prevGrid, x, y);
-            boolean currAlive = getBit(currentGrid, x, y);
-            
-            prevLine.append(prevAlive ? "■ " : "□ ");
-            currLine.append(currAlive ? "■ " : "□ ");
-        }
-        
-        System.out.printf("%-" + (printCols * 2 + 10) + "s %s\n", prevLine.toString(), currLine.toString());
-    }
-    System.out.println("=================================================");
-}
-
-private void drawGrid() {
-    int imgWidth = cols;
-    int imgHeight = rows;
-
-    for (int y = 0; y < imgHeight; y++) {
-            rowBuffer.clear();
-            for (int x = 0; x < imgWidth; x++) {
-                byte pixelValue;
-                if (highlightBuffer[y][x]) {
-                    pixelValue = 2; // Index for COLOR_HIGHLIGHT
-                } else if (getBit(grid, x, y)) {
-                    pixelValue = 1; // Index for COLOR_ALIVE
-                } else {
-                    pixelValue = 0; // Index for COLOR_DEAD
-                }
-                rowBuffer.put(pixelValue);
-        }
-        rowBuffer.flip();
-        writer.setPixels(0, y, imgWidth, 1, format, rowBuffer, imgWidth);
-    }
-}
-    
-private void highlightPatternsParallel(List<String> selectedPatterns) throws InterruptedException {
-    for (boolean[] row : highlightBuffer) java.util.Arrays.fill(row, false);
-    	if (selectedPatterns == null || selectedPatterns.isEmpty()) {
-            return;
-        }
-
-
-    byte[][] prevGrid = (history.size() >= 2) ? history.getLast() : grid;
-	//printGridState(prevGrid, grid);
-
-    CountDownLatch latch = new CountDownLatch(selectedPatterns.size());
-
-    for (String patternName : selectedPatterns) {
-        pool.submit(() -> {
-            try {
-                LifePattern pattern = null;
-                switch (patternName) {
-                        case "Block":   pattern = new BlockPattern(); break;
-                        case "Blinker": pattern = new BlinkerPattern(); break;
-                        case "Glider":  pattern = new GliderPattern(); break;
-						case "Beehive": pattern = new BeehivePattern();break;
-                    }
-                    if (pattern == null) return;
-
-                    // Iterate all cells to check for this pattern
-                    for (int r = 0; r < rows; r++) {
-                        for (int c = 0; c < cols; c++) {
-                            boolean match = false;
-                            if (pattern instanceof EvolvingPattern ep) {
-                                // Evolving patterns need 'prevGrid' and 'grid'
-                                match = ep.matchesAfterEvolution(prevGrid, grid, r, c, rows, cols);
-                            } else {
-                                // Still lifes only need the current 'grid'
-                                match = pattern.matches(grid, r, c, rows, cols);
-                            }
-
-                            if (match){
-                                pattern.markPattern(highlightBuffer, grid, r, c, rows, cols);
-                            }
-                        }
-                    }
-                } finally {
-                    latch.countDown();
-                }
-            });
-        }
-
-        // 3. Wait for all pattern-search threads to finish
-        latch.await();
-    }
-
-    private void saveGridAsText() {
-    FileChooser fileChooser = new FileChooser();
-    fileChooser.setTitle("Save Grid As Text");
-    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files (*.txt)", "*.txt"));
-    File file = fileChooser.showSaveDialog(null);
-
-    if (file != null) {
-        try (PrintWriter writer = new PrintWriter(file)) {
-            // Write rows and columns header first
-            writer.println(rows + "x" + cols); 
-
-            // Write the grid state row by row
-            for (int y = 0; y < rows; y++) {
-                StringBuilder rowString = new StringBuilder();
-                for (int x = 0; x < cols; x++) {
-                    // Use '1' for alive and '0' for dead
-                    rowString.append(getBit(grid, x, y) ? '1' : '0');
-                }
-                writer.println(rowString.toString());
-            }
-            showError("Grid successfully saved to " + file.getAbsolutePath());
-        } catch (IOException e) {
-            showError("Error saving file: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-}
- 
-   private void openGridFromFile(Stage stage) {
-    FileChooser fileChooser = new FileChooser();
-    fileChooser.setTitle("Open Grid File");
-    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files (*.txt)", "*.txt"));
-    File file = fileChooser.showOpenDialog(stage);
-
-    if (file != null) {
-        try {
-            List<String> lines = Files.readAllLines(file.toPath());
-            if (lines.isEmpty()) throw new IOException("File is empty.");
-
-            // 1. Parse Dimensions from the first line (e.g., "1000x1000")
-            String[] dimParts = lines.get(0).split("x");
-            int newRows = Integer.parseInt(dimParts[0].trim());
-            int newCols = Integer.parseInt(dimParts[1].trim());
-
-            if (newRows <= 0 || newCols <= 0 || newRows > 5000 || newCols > 5000) {
-                throw new IOException("Invalid grid dimensions specified in file.");
-            }
-
-            // 2. Stop/Reset Current Simulation
-            timer.stop(); 
-            isSimulationRunning = false;
-            
-            // 3. Re-initialize Grid and related structures
-            rows = newRows;
-            cols = newCols;
-            rowBytes = (cols + 7) / 8;
-            grid = new byte[rows][rowBytes];
-            next = new byte[rows][rowBytes];
-            highlightBuffer = new boolean[rows][cols]; // Assuming you changed this to int[][] for multiple colors, otherwise make it boolean[][]
-            history.clear();
-
-            // 4. Load Grid Data
-            for (int y = 0; y < rows; y++) {
-                if (y + 1 >= lines.size()) throw new IOException("File data incomplete.");
-                String dataLine = lines.get(y + 1).trim();
-                if (dataLine.length() != cols) throw new IOException("Row " + y + " has incorrect length.");
-                
-                for (int x = 0; x < cols; x++) {
-                    boolean isAlive = dataLine.charAt(x) == '1';
-                    setBit(grid, x, y, isAlive);
-                }
-            }
-
-            // 5. Update UI and Draw
-            // NOTE: You'll need to reconfigure the ImageView/WritableImage if the size changed drastically
-            // For now, we only update the core grid, assuming the canvas scales.
-            drawGrid(); 
-            saveHistorySnapshot(); // Start a new history
-            
-            showError("Grid loaded successfully (" + rows + "x" + cols + ").");
-
-        } catch (Exception e) {
-            showError("Error loading grid file: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-}
-
-	// life2.java
-
-/** Resets the entire grid, stopping the simulation and clearing history. */
-private void clearGrid() {
-    // 1. Stop the animation timer if running
-    if (timer != null) {
-        timer.stop();
-        isSimulationRunning = false;
-    }
-
-    // 2. Clear the main grid arrays (setting all bytes to 0)
-    for (int y = 0; y < rows; y++) {
-        // Since the initial state of a byte array is 0, Arrays.fill is the fastest way
-        java.util.Arrays.fill(grid[y], (byte) 0);
-        java.util.Arrays.fill(next[y], (byte) 0);
-    }
-    
-    // 3. Clear the highlight buffer (resetting all indices/colors to 0)
-    if (highlightBuffer != null) {
-        for (int y = 0; y < rows; y++) {
-            java.util.Arrays.fill(highlightBuffer[y], false);
-        }
-    }
-
-    // 4. Clear history
-    history.clear();
-    saveHistorySnapshot(); // Save the new, empty state as the starting point
-
-    // 5. Redraw the grid to show a blank canvas
-    drawGrid();
-}
-   
-
-    @Override
-    public void stop() throws Exception {
-        if (pool != null && !pool.isShutdown()) pool.shutdownNow();
-        super.stop();
-    }
-
-	
-
-    public static void main(String[] args) { launch(); }
-}
-
+import javafx.application.Application;
+import javafx.collections.FXCollections;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ButtonBar.ButtonData;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Dialog;
+import javafx.scene.layout.GridPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Slider;
+import javafx.scene.image.*;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.FileChooser;
+import javafx.animation.AnimationTimer;
+import javafx.scene.paint.Color;
+import javafx.scene.control.TextInputDialog;
+import javafx.application.Platform;
+import javafx.util.Pair;
+import javafx.geometry.Bounds;
+import javafx.geometry.Pos;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Optional;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import javax.management.JMException;
+import java.util.stream.Collectors;
+
+public class life2 extends Application {
+
+    private int rows = 1000;
+    private int cols = 1000;
+    private final int maxCanvasSize = 1000;
+    private int cellSize;
+    private String selectedRule = LifeEngine.RULE_LIFE;
+    private String selectedLifeVariant = LifeEngine.VARIANT_STANDARD;
+    private boolean unboundedPlane = false; // Plano infinito en vez de toroide (solo GoL)
+
+    private LifeEngine engine;
+
+    private final int COLOR_DEAD = 0xFF000000; // Black
+    private final int COLOR_ALIVE = 0xFFFFFFFF; // White
+
+  
+
+    private ImageView view;
+    private WritableImage image;
+    private PixelWriter writer;
+    private PixelFormat<ByteBuffer> format;
+    private final FrameRasterizer raster = new FrameRasterizer(); // Frames are drawn off the FX thread, which only uploads them
+    private volatile FrameRasterizer.View currentView;              // The visible part of the grid, set on the FX thread
+    private FrameRasterizer.View shownView; // The view of the frame on screen, null before the first
+    private boolean framePending = false;  // A frame was asked of the clock and not yet uploaded
+    private boolean redrawPending = false; // The view changed while a frame was pending
+    private boolean stepPending = false;   // One generation was asked for while a frame was pending
+
+    private SimulationClock clock;    // Runs generations on its own thread and draws a frame when asked
+    private AnimationTimer timer;     // Asks for a frame at display rate while the clock runs
+    private ListView<String> patternListView;
+    private volatile List<String> selectedPatterns = List.of(); // Read by the clock thread when it draws
+    private Label genLabel;           // Etiqueta para mostrar la generación
+    private Label popLabel;           // Etiqueta para mostrar células vivas
+    private Label rateLabel;          // Generaciones por segundo y fotogramas por segundo
+    private long lastRateUpdate = 0;
+
+    // Target rates offered in the speed box; 0 runs as fast as possible
+    private static final String[] SPEED_NAMES = {"1 gen/s", "10 gen/s", "30 gen/s", "60 gen/s", "250 gen/s", "1000 gen/s", "Max"};
+    private static final double[] SPEED_RATES = {1, 10, 30, 60, 250, 1000, 0};
+
+    // Past generations kept for scrubbing back: keyframes plus XOR deltas, see GridHistory
+    private static final long HISTORY_BUDGET = 256L << 20;
+    private Slider historySlider;            // Oldest to newest retained generation
+    private boolean updatingSlider = false;  // The slider is following the frames, not the user
+
+    // Every generation is hashed to spot the grid going static or into a cycle, see CycleDetector
+    private static final int MAX_PERIOD = 1024;
+    private Label cycleLabel;
+
+    // Phase timings of the pipeline, also shown over JMX; the overlay sits on the board
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private Label metricsOverlay;
+
+    private Pane canvas;              // Scroll content the size of the zoomed grid; the view covers only its visible part
+    private ScrollPane scrollPane;
+    private double zoom = 1.0;        // Screen pixels per cell
+    private final double zoomStep = 0.1;
+    private final double maxZoom = 32;
+
+    private boolean isSimulationRunning = false;
+
+    @Override
+    public void start(Stage stage) {
+        if (!askGridSize()) {
+            System.out.println("Invalid grid size or cancelled.");
+            return;
+        }
+
+        engine = new LifeEngine(rows, cols, selectedRule, selectedLifeVariant);
+        engine.setUnbounded(unboundedPlane);
+        engine.setHistoryBudget(HISTORY_BUDGET);
+        if (!unboundedPlane) engine.setCycleDetection(MAX_PERIOD);
+        engine.setMetrics(metrics);
+        try {
+            metrics.register("life2");
+        } catch (JMException e) {
+            System.err.println("Metrics are not on JMX: " + e.getMessage());
+        }
+
+        // Indexed by FrameRasterizer.DEAD, ALIVE, the shades, then one highlight colour per pattern
+        format = PixelFormat.createByteIndexedInstance(FrameRasterizer.palette(COLOR_DEAD, COLOR_ALIVE, highlightColors()));
+        clock = new SimulationClock(engine, this::drawFrame, generation -> Platform.runLater(this::simulationSettled), 10);
+	
+	MenuBar menuBar = new MenuBar();
+	Menu fileMenu = new Menu("File");
+	menuBar.getMenus().addAll(fileMenu);
+
+	MenuItem openItem = new MenuItem("Open Grid...");
+	MenuItem saveAsTextItem = new MenuItem("Save As...");
+
+	fileMenu.getItems().addAll(openItem, saveAsTextItem);
+
+        engine.randomize(0.2);
+        
+	patternListView = new ListView<>();
+        patternListView.setItems(FXCollections.observableArrayList(LifeEngine.patternNames()));
+    patternListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+    patternListView.getSelectionModel().getSelectedItems().addListener(
+            (javafx.collections.ListChangeListener<String>) change -> {
+                selectedPatterns = List.copyOf(patternListView.getSelectionModel().getSelectedItems());
+                drawGrid();
+            });
+
+    view = new ImageView();
+
+	view.setOnMouseClicked(this::handleMouseClick);
+
+	saveAsTextItem.setOnAction(e -> saveGridAsText());
+	openItem.setOnAction(e -> openGridFromFile(stage));
+
+    canvas = new Pane(view);
+	canvas.setOnScroll(this::handleZoom);
+	scrollPane = new ScrollPane(canvas);
+    scrollPane.setPannable(true);
+    scrollPane.setPrefViewportWidth(maxCanvasSize);
+    scrollPane.setPrefViewportHeight(maxCanvasSize);
+    // Frames are drawn for the viewport only, so every scroll or resize redraws
+    scrollPane.hvalueProperty().addListener((obs, old, now) -> updateView());
+    scrollPane.vvalueProperty().addListener((obs, old, now) -> updateView());
+    scrollPane.viewportBoundsProperty().addListener((obs, old, now) -> updateView());
+    fitZoom();
+
+    Button oneGenButton = new Button("Run One Generation");
+    Button startButton = new Button("Start");
+    Button stopButton = new Button("Stop");
+	Button clearButton = new Button("Clear Grid");
+	
+	genLabel = new Label("Generación: 0");
+	genLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
+
+	popLabel = new Label("Células Vivas: " + engine.getAliveCount());
+	popLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
+
+	rateLabel = new Label("Gen/s: 0 | FPS: 0");
+
+	cycleLabel = new Label(describeCycle(engine.getCycleDetector()));
+	CheckBox stopOnCycleBox = new CheckBox("Parar al estabilizarse");
+	stopOnCycleBox.setDisable(engine.getCycleDetector() == null);
+	stopOnCycleBox.setOnAction(e -> engine.setStopOnCycle(stopOnCycleBox.isSelected()));
+
+	metricsOverlay = new Label();
+	metricsOverlay.setStyle("-fx-font-family: monospace; -fx-text-fill: white; -fx-background-color: rgba(0,0,0,0.6); -fx-padding: 6;");
+	metricsOverlay.setMouseTransparent(true);
+	metricsOverlay.setVisible(false);
+	StackPane.setAlignment(metricsOverlay, Pos.TOP_LEFT);
+	CheckBox metricsBox = new CheckBox("Métricas");
+	metricsBox.setOnAction(e -> {
+		metricsOverlay.setVisible(metricsBox.isSelected());
+		updateMetricsOverlay();
+	});
+
+	ComboBox<String> speedBox = new ComboBox<>();
+	speedBox.getItems().addAll(SPEED_NAMES);
+	speedBox.setValue(SPEED_NAMES[1]);
+	speedBox.setOnAction(e -> clock.setTargetRate(SPEED_RATES[speedBox.getSelectionModel().getSelectedIndex()]));
+
+	// Scrubbing stops the simulation and shows the chosen generation from the history
+	historySlider = new Slider(0, 0, 0);
+	historySlider.valueProperty().addListener((obs, old, now) -> {
+		if (!updatingSlider) seekGeneration(Math.round(now.doubleValue()));
+	});
+	Button backButton = new Button("< Gen");
+	Button forwardButton = new Button("Gen >");
+	backButton.setOnAction(e -> seekGeneration(engine.getGenerationCount() - 1));
+	forwardButton.setOnAction(e -> stepForward());
+	HBox scrubButtons = new HBox(5, backButton, forwardButton);
+
+	VBox controls = new VBox(10, genLabel, popLabel, rateLabel, metricsBox, cycleLabel, stopOnCycleBox, speedBox, oneGenButton, startButton, stopButton, clearButton,
+			new Label("Historial"), historySlider, scrubButtons, patternListView);
+        
+    
+    controls.setStyle("-fx-padding: 10; -fx-background-color: #DDDDDD");
+
+    BorderPane root = new BorderPane();
+	root.setTop(menuBar);
+    root.setCenter(new StackPane(scrollPane, metricsOverlay));
+    root.setRight(controls);
+
+    Scene scene = new Scene(root);
+    stage.setScene(scene);
+    stage.setTitle("Game of Life"); // Title simplified
+    stage.show();
+
+    // The clock steps on its own; the display only samples the latest generation
+    timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (now - lastRateUpdate >= 250_000_000L) {
+                lastRateUpdate = now;
+                rateLabel.setText(String.format("Gen/s: %.0f | FPS: %.0f", clock.getGenerationRate(), clock.getFrameRate()));
+                if (metricsOverlay.isVisible()) updateMetricsOverlay();
+            }
+            if (clock.isRunning() && !framePending) {
+                framePending = true;
+                clock.requestFrame();
+            }
+        }
+    };
+    timer.start();
+
+	clearButton.setOnAction(e -> clearGrid());
+        oneGenButton.setOnAction(e -> runOnce());
+        startButton.setOnAction(e -> {
+		clock.start();
+		isSimulationRunning = true;
+		});
+        stopButton.setOnAction(e -> {
+		clock.stop();
+		isSimulationRunning = false;
+	});
+
+        drawGrid();
+    }
+
+    private void runOnce() {
+        if (isSimulationRunning) return;
+        if (framePending) {
+            stepPending = true; // Stepped once the frame in flight is up
+            return;
+        }
+        framePending = true;
+        clock.stepOnce();
+    }
+
+    /** The clock stopped by itself on a cycle; shows where it stopped. */
+    private void simulationSettled() {
+        isSimulationRunning = false;
+        drawGrid();
+    }
+
+    /**
+     * Finds the selected patterns and draws the visible part of the latest generation,
+     * on the clock thread, then hands the frame to the FX thread to upload.
+     */
+    private void drawFrame(LifeEngine engine) throws InterruptedException {
+        engine.detectPatterns(selectedPatterns);
+        engine.rasterize(raster, currentView);
+        long generation = engine.getGenerationCount();
+        long alive = engine.getAliveCount();
+        String cycle = describeCycle(engine.getCycleDetector());
+        long posted = System.nanoTime();
+        Platform.runLater(() -> frameDone(generation, alive, cycle, posted));
+    }
+
+    /** Rolling percentiles of the step and the frame phases, rates and the last generation's counts. */
+    private void updateMetricsOverlay() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-8s %8s %8s%n", "ms", "p50", "p99"));
+        for (int p = 0; p < PipelineMetrics.PHASES; p++) {
+            text.append(String.format(Locale.ROOT, "%-8s %8.3f %8.3f%n", PipelineMetrics.phaseName(p),
+                    metrics.percentileMillis(p, 0.5), metrics.percentileMillis(p, 0.99)));
+        }
+        text.append(String.format(Locale.ROOT, "gen/s %.0f  fps %.0f%n", metrics.getGenerationsPerSecond(), metrics.getFramesPerSecond()));
+        text.append(String.format(Locale.ROOT, "desequilibrio %.2f  %.1f KB/gen%n",
+                metrics.getLoadImbalance(), metrics.getAllocatedBytesPerGeneration() / 1024));
+        text.append(String.format(Locale.ROOT, "teselas activas %d/%d", metrics.getActiveTiles(), metrics.getTileCount()));
+        metricsOverlay.setText(text.toString());
+    }
+
+    private static String describeCycle(CycleDetector cycles) {
+        if (cycles == null) return "Ciclo: -";
+        if (!cycles.hasCycle()) return "Ciclo: ninguno";
+        return (cycles.getPeriod() == 1 ? "Estable" : "Periodo " + cycles.getPeriod())
+                + " desde la gen. " + cycles.getStartGeneration();
+    }
+
+    /** Each pattern's own highlight colour, in the order of its highlight layer. */
+    private static int[] highlightColors() {
+        List<String> names = LifeEngine.patternNames();
+        int[] colors = new int[names.size()];
+        for (int i = 0; i < colors.length; i++) {
+            Color c = LifeEngine.createPattern(names.get(i)).getHighlightColor();
+            colors[LifeEngine.highlightLayer(names.get(i))] = (int) Math.round(c.getOpacity() * 255) << 24
+                    | (int) Math.round(c.getRed() * 255) << 16
+                    | (int) Math.round(c.getGreen() * 255) << 8
+                    | (int) Math.round(c.getBlue() * 255);
+        }
+        return colors;
+    }
+
+    private void updateLabels() {
+        genLabel.setText("Generación: " + engine.getGenerationCount());
+        popLabel.setText("Células Vivas: " + engine.getAliveCount());
+        cycleLabel.setText(describeCycle(engine.getCycleDetector()));
+        updateHistorySlider(engine.getGenerationCount());
+    }
+
+    /** Stretches the slider over the retained generations and puts it on the one shown. */
+    private void updateHistorySlider(long generation) {
+        GridHistory history = engine.getHistory();
+        if (history == null || history.isEmpty()) return;
+        updatingSlider = true;
+        historySlider.setMin(history.getOldestGeneration());
+        historySlider.setMax(Math.max(history.getNewestGeneration(), generation));
+        historySlider.setValue(generation);
+        updatingSlider = false;
+    }
+
+    /** Stops the simulation and shows a generation the history still has. */
+    private void seekGeneration(long generation) {
+        pauseClock();
+        GridHistory history = engine.getHistory();
+        if (history == null || generation == engine.getGenerationCount() || !history.contains(generation)) return;
+        try {
+            engine.seekGeneration(generation);
+        } catch (IllegalArgumentException e) {
+            return; // Dropped by an edit since the slider was last updated
+        }
+        drawGrid();
+        updateLabels();
+    }
+
+    /** Moves on one generation: from the history if it has it, otherwise by stepping. */
+    private void stepForward() {
+        long next = engine.getGenerationCount() + 1;
+        GridHistory history = engine.getHistory();
+        if (history != null && history.contains(next)) {
+            seekGeneration(next);
+        } else {
+            runOnce();
+        }
+    }
+
+    /** Shows the frame the clock drew, of the given generation. */
+    private void frameDone(long generation, long alive, String cycle, long posted) {
+        long start = System.nanoTime();
+        metrics.phase(PipelineMetrics.FX_WAIT, start - posted);
+        uploadFrame();
+        metrics.phase(PipelineMetrics.UPLOAD, System.nanoTime() - start);
+        genLabel.setText("Generación: " + generation);
+        popLabel.setText("Células Vivas: " + alive);
+        cycleLabel.setText(cycle);
+        if (!clock.isRunning()) isSimulationRunning = false; // Stopped by itself, e.g. on an error
+        updateHistorySlider(generation);
+        framePending = false;
+        if (stepPending) {
+            stepPending = false;
+            redrawPending = false; // The step's frame shows the current view
+            runOnce();
+        } else if (redrawPending) {
+            redrawPending = false;
+            drawGrid();
+        }
+    }
+
+    /** Zooms so the whole grid fits the initial canvas size. */
+    private void fitZoom() {
+        zoom = Math.min(maxZoom, Math.min(maxCanvasSize / (double) cols, maxCanvasSize / (double) rows));
+        canvas.setPrefSize(cols * zoom, rows * zoom);
+        canvas.setMinSize(cols * zoom, rows * zoom);
+        updateView();
+    }
+
+    /** Works out which cells the viewport shows and redraws them. */
+    private void updateView() {
+        Bounds viewport = scrollPane.getViewportBounds();
+        double contentWidth = cols * zoom;
+        double contentHeight = rows * zoom;
+        double left = Math.max(0, contentWidth - viewport.getWidth()) * scrollPane.getHvalue();
+        double top = Math.max(0, contentHeight - viewport.getHeight()) * scrollPane.getVvalue();
+        int width = (int) Math.ceil(Math.min(viewport.getWidth(), contentWidth - left));
+        int height = (int) Math.ceil(Math.min(viewport.getHeight(), contentHeight - top));
+        if (width <= 0 || height <= 0) {
+            // Not laid out yet: show the whole grid at the fitted size until it is
+            width = (int) Math.ceil(contentWidth);
+            height = (int) Math.ceil(contentHeight);
+        }
+        currentView = new FrameRasterizer.View(left / zoom, top / zoom, 1 / zoom, width, height);
+        if (engine != null) drawGrid();
+    }
+    
+	private void showError(String msg) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(msg);
+        alert.showAndWait();
+    }
+
+	private void handleMouseClick(javafx.scene.input.MouseEvent event) {
+    	if (isSimulationRunning || !event.isStillSincePress()) {
+        	event.consume();
+        	return; // Running, or the end of a pan
+    	}
+
+    	pauseClock(); // The engine is the clock's while it draws
+
+    	// The view shows the frame on screen, one image pixel per screen pixel
+    	FrameRasterizer.View shown = shownView;
+    	if (shown == null) return;
+    	int gridX = shown.cellX(event.getX());
+    	int gridY = shown.cellY(event.getY());
+    
+    
+    	if (gridX >= 0 && gridX < cols && gridY >= 0 && gridY < rows) {
+        
+        	boolean isAlive = engine.getBit(gridX, gridY);
+        	engine.setBit(gridX, gridY, !isAlive);
+
+        	drawGrid(); 
+        	updateLabels();
+    	}
+    
+    	event.consume();
+	}    
+
+private boolean askGridSize() {
+    Dialog<Pair<String, String>> dialog = new Dialog<>();
+    dialog.setTitle("Configuración de Simulación");
+    dialog.setHeaderText("Configura Tamaño, Regla y Variante");
+
+    ButtonType loginButtonType = new ButtonType("Aceptar", javafx.scene.control.ButtonBar.ButtonData.OK_DONE);
+    dialog.getDialogPane().getButtonTypes().addAll(loginButtonType, ButtonType.CANCEL);
+
+    GridPane gridPane = new GridPane();
+    gridPane.setHgap(10);
+    gridPane.setVgap(10);
+    gridPane.setPadding(new javafx.geometry.Insets(20, 150, 10, 10));
+
+    TextField sizeField = new TextField();
+    sizeField.setPromptText("1000x1000");
+    sizeField.setText("1000x1000");
+
+    ComboBox<String> ruleBox = new ComboBox<>();
+    ruleBox.getItems().addAll(LifeEngine.RULE_LIFE, LifeEngine.RULE_30, "Rule 90", "Rule 110", "Rule 184");
+    ruleBox.setValue(LifeEngine.RULE_LIFE);
+
+    ComboBox<String> variantBox = new ComboBox<>();
+    variantBox.getItems().addAll(LifeEngine.VARIANT_STANDARD, LifeEngine.VARIANT_B2S7,
+            "HighLife (B36/S23)", "Day & Night (B3678/S34678)", "Seeds (B2/S)", "Life without Death (B3/S012345678)");
+    variantBox.setValue(LifeEngine.VARIANT_STANDARD);
+    // Cualquier regla B/S escrita a mano, p. ej. "B36/S23" o "23/36"
+    variantBox.setEditable(true);
+
+    CheckBox unboundedBox = new CheckBox("Plano infinito (sin toroide)");
+
+    // Lógica visual: Deshabilitar la variante si se elige una regla elemental
+    ruleBox.setOnAction(e -> {
+        boolean elementary = !ruleBox.getValue().equals(LifeEngine.RULE_LIFE);
+        variantBox.setDisable(elementary);
+        unboundedBox.setDisable(elementary);
+    });
+
+    gridPane.add(new Label("Tamaño (Filas x Cols):"), 0, 0);
+    gridPane.add(sizeField, 1, 0);
+    gridPane.add(new Label("Regla Principal:"), 0, 1);
+    gridPane.add(ruleBox, 1, 1);
+    gridPane.add(new Label("Variante (solo GoL):"), 0, 2);
+    gridPane.add(variantBox, 1, 2);
+    gridPane.add(unboundedBox, 1, 3);
+
+    dialog.getDialogPane().setContent(gridPane);
+
+    dialog.setResultConverter(dialogButton -> {
+        if (dialogButton == loginButtonType) {
+            // AQUÍ guardamos la variante directamente en la variable de clase
+            selectedLifeVariant = variantBox.getEditor().getText();
+            unboundedPlane = !unboundedBox.isDisabled() && unboundedBox.isSelected();
+            return new Pair<>(sizeField.getText(), ruleBox.getValue());
+        }
+        return null;
+    });
+
+    Optional<Pair<String, String>> result = dialog.showAndWait();
+
+    if (result.isEmpty()) return false;
+
+    String input = result.get().getKey().toLowerCase().replace(" ", "");
+    selectedRule = result.get().getValue(); // Guardamos la regla principal
+
+    if (selectedRule.equals(LifeEngine.RULE_LIFE)) {
+        LifeRule lifeRule;
+        try {
+            lifeRule = LifeRule.parse(selectedLifeVariant);
+        } catch (IllegalArgumentException e) {
+            showError("Unknown rule \"" + selectedLifeVariant + "\". Use the B/S form, e.g. B36/S23.");
+            return false;
+        }
+        if (unboundedPlane && lifeRule.birthOnEmpty()) {
+            showError("B0 rules fill empty space and only run on the torus.");
+            return false;
+        }
+    }
+
+    if (!input.matches("\\d+x\\d+")) return false;
+
+    String[] parts = input.split("x");
+    rows = Integer.parseInt(parts[0]);
+    cols = Integer.parseInt(parts[1]);
+
+    if (rows <= 0 || cols <= 0 || rows > LifeEngine.MAX_SIZE || cols > LifeEngine.MAX_SIZE) {
+        showError("Grid size must be between 1x1 and " + LifeEngine.MAX_SIZE + "x" + LifeEngine.MAX_SIZE + ".");
+        return false;
+    }
+
+    int cellWidth = maxCanvasSize / cols;
+    int cellHeight = maxCanvasSize / rows;
+    cellSize = Math.max(1, Math.min(cellWidth, cellHeight));
+
+    return true;
+}
+
+ private void handleZoom(ScrollEvent event) {
+        if (event.getDeltaY() == 0) return;
+
+        double zoomFactor = (event.getDeltaY() > 0) ? (1 + zoomStep) : (1 - zoomStep);
+        double minZoom = Math.min(1, Math.min(maxCanvasSize / (double) cols, maxCanvasSize / (double) rows));
+        double newZoom = Math.max(minZoom, Math.min(zoom * zoomFactor, maxZoom));
+
+        // Keep the cell under the pointer where it is; event coordinates are the canvas's
+        Bounds viewport = scrollPane.getViewportBounds();
+        double left = Math.max(0, cols * zoom - viewport.getWidth()) * scrollPane.getHvalue();
+        double top = Math.max(0, rows * zoom - viewport.getHeight()) * scrollPane.getVvalue();
+        double newLeft = event.getX() / zoom * newZoom - (event.getX() - left);
+        double newTop = event.getY() / zoom * newZoom - (event.getY() - top);
+
+        zoom = newZoom;
+        canvas.setPrefSize(cols * zoom, rows * zoom);
+        canvas.setMinSize(cols * zoom, rows * zoom);
+        double spareWidth = cols * zoom - viewport.getWidth();
+        double spareHeight = rows * zoom - viewport.getHeight();
+        scrollPane.setHvalue(spareWidth > 0 ? Math.max(0, Math.min(1, newLeft / spareWidth)) : 0);
+        scrollPane.setVvalue(spareHeight > 0 ? Math.max(0, Math.min(1, newTop / spareHeight)) : 0);
+        updateView();
+        event.consume();
+    }
+
+private void printGridState(GridStore prevGrid, GridStore currentGrid) {
+    int rows = engine.getRows();
+    int cols = engine.getCols();
+    if (rows > 50 || cols > 50) {
+        System.out.println("Grid is too large for full printout (Max 50x50 recommended). Printing aborted.");
+    return;
+}
+    
+    int printRows = rows;
+    int printCols = cols;
+
+    System.out.println("=================================================");
+    System.out.println("GENERATION DEBUG (Size: " + rows + "x" + cols + ")");
+    System.out.println("=================================================");
+
+    // Print Header
+    System.out.printf("%-" + (printCols * 2 + 10) + "s %s\n", "PREVIOUS GRID (N-1)", "CURRENT GRID (N)");
+
+    for (int y = 0; y < printRows; y++) {
+        StringBuilder prevLine = new StringBuilder();
+        StringBuilder currLine = new StringBuilder();
+        
+        for (int x = 0; x < printCols; x++) {
+            boolean prevAlive = prevGrid.get(x, y);
+            boolean currAlive = currentGrid.get(x, y);
+            
+            prevLine.append(prevAlive ? "■ " : "□ ");
+            currLine.append(currAlive ? "■ " : "□ ");
+        }
+        
+        System.out.printf("%-" + (printCols * 2 + 10) + "s %s\n", prevLine.toString(), currLine.toString());
+    }
+    System.out.println("=================================================");
+}
+
+/**
+ * Redraws the visible part, e.g. after an edit or a scroll. The clock draws it between
+ * generations; while a frame is already on its way the redraw waits for it.
+ */
+private void drawGrid() {
+    if (framePending) {
+        redrawPending = true;
+        return;
+    }
+    framePending = true;
+    clock.requestFrame();
+}
+
+/** Stops the simulation and waits until the clock has let go of the engine, so the FX thread may change it. */
+private void pauseClock() {
+    isSimulationRunning = false;
+    try {
+        clock.pause();
+    } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+    }
+}
+
+/**
+ * Pushes the newest drawn frame to the image in one call and puts it over the cells it
+ * shows. The frame is the FX thread's until given back, so the clock draws the next
+ * one elsewhere.
+ */
+private void uploadFrame() {
+    FrameRasterizer.Frame frame = raster.takeFrame();
+    if (frame == null) return; // Already shown by an earlier call
+    FrameRasterizer.View drawn = frame.getView();
+    int width = drawn.getWidth();
+    int height = drawn.getHeight();
+    if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+        image = new WritableImage(width, height);
+        writer = image.getPixelWriter();
+        view.setImage(image);
+    }
+    writer.setPixels(0, 0, width, height, format, frame.getPixels(), 0, width);
+    view.relocate(drawn.getOriginX() / drawn.getCellsPerPixel(), drawn.getOriginY() / drawn.getCellsPerPixel());
+    shownView = drawn;
+    raster.release(frame);
+}
+    
+    private void saveGridAsText() {
+    FileChooser fileChooser = new FileChooser();
+    fileChooser.setTitle("Save Grid");
+    fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Text Files (*.txt)", "*.txt"),
+            new FileChooser.ExtensionFilter("Compressed Snapshots (*" + GridSnapshot.EXTENSION + ")", "*" + GridSnapshot.EXTENSION),
+            new FileChooser.ExtensionFilter("RLE Patterns (*" + PatternFile.RLE + ")", "*" + PatternFile.RLE),
+            new FileChooser.ExtensionFilter("Plaintext Patterns (*" + PatternFile.CELLS + ")", "*" + PatternFile.CELLS));
+    File file = fileChooser.showSaveDialog(null);
+
+    if (file != null) {
+        try {
+            pauseClock(); // The engine is the clock's while it runs
+            // Snapshots keep the rule and generation and load without parsing
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (name.endsWith(GridSnapshot.EXTENSION)) {
+                engine.saveSnapshot(file.toPath(), true);
+            } else if (name.endsWith(PatternFile.RLE)) {
+                engine.saveAsRle(file.toPath()); // Patterns keep only the live cells, cropped
+            } else if (name.endsWith(PatternFile.CELLS)) {
+                engine.saveAsCells(file.toPath());
+            } else {
+                engine.saveAsText(file.toPath());
+            }
+            showError("Grid successfully saved to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            showError("Error saving file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
+ 
+   private void openGridFromFile(Stage stage) {
+    FileChooser fileChooser = new FileChooser();
+    fileChooser.setTitle("Open Grid File");
+    fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Grids (*.txt, *" + GridSnapshot.EXTENSION + ")", "*.txt", "*" + GridSnapshot.EXTENSION),
+            new FileChooser.ExtensionFilter("Patterns (*" + PatternFile.RLE + ", *" + PatternFile.CELLS + ")",
+                    "*" + PatternFile.RLE, "*" + PatternFile.CELLS));
+    File file = fileChooser.showOpenDialog(stage);
+
+    if (file != null) {
+        try {
+            // 1. Stop/Reset Current Simulation
+            pauseClock();
+
+            // 2. Load Grid Data (the engine checks the header and resizes itself);
+            //    a pattern is placed in the middle of the grid we have
+            if (PatternFile.isPatternFile(file.toPath())) {
+                engine.loadPattern(file.toPath());
+            } else {
+                engine.load(file.toPath());
+            }
+
+            // 3. Zoom to fit if the size changed, then draw
+            if (engine.getRows() != rows || engine.getCols() != cols) {
+                rows = engine.getRows();
+                cols = engine.getCols();
+                fitZoom();
+            }
+            drawGrid(); 
+            updateLabels();
+            
+            showError("Grid loaded successfully (" + rows + "x" + cols + ").");
+
+        } catch (Exception e) {
+            showError("Error loading grid file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
+
+	// life2.java
+
+/** Resets the entire grid, stopping the simulation and clearing history. */
+private void clearGrid() {
+    // 1. Stop the simulation if running
+    pauseClock();
+
+    // 2. Clear the grid, highlight buffer and history
+    engine.clear();
+
+    // 3. Redraw the grid to show a blank canvas
+    drawGrid();
+    updateLabels();
+}
+   
+
+    @Override
+    public void stop() throws Exception {
+        if (timer != null) timer.stop();
+        if (clock != null) clock.close();
+        if (engine != null) engine.close();
+        metrics.close();
+        super.stop();
+    }
+
+	
+
+    public static void main(String[] args) { launch(); }
+}
+
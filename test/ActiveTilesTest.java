@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Tiled stepping, which carries quiet tiles forward, against a per-cell torus step. */
+class ActiveTilesTest {
+
+    @Test
+    void soupMatchesPerCellTorus() throws InterruptedException {
+        for (int threads : new int[] {1, 3}) {
+            try (LifeEngine engine = new LifeEngine(100, 130, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, threads)) {
+                engine.randomize(0.3, 17);
+                check(engine, LifeRule.CONWAY, 200);
+            }
+        }
+    }
+
+    @Test
+    void gliderCrossesTileSeamsAndTheWrap() throws InterruptedException {
+        // Eight tiles high and seven wide, with a partial last tile in both directions
+        try (LifeEngine engine = new LifeEngine(250, 420, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            int[][] glider = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}};
+            for (int[] c : glider) engine.setBit(c[0] + 60, c[1] + 28, true);
+            // Every four generations the glider is itself again, one cell further down and right
+            for (int g = 1; g <= 1700; g++) {
+                engine.step();
+                // The edit made the first step compute everything
+                assertTrue(g == 1 || engine.getActiveTileCount() <= 16,
+                        "a glider changes at most 2x2 tiles, which wake at most 4x4");
+                if (g % 4 != 0) continue;
+                for (int[] c : glider) {
+                    int x = (c[0] + 60 + g / 4) % 420;
+                    int y = (c[1] + 28 + g / 4) % 250;
+                    assertTrue(engine.getBit(x, y), "generation " + g);
+                }
+                assertEquals(5, engine.getAliveCount(), "generation " + g);
+            }
+        }
+    }
+
+    @Test
+    void editsBetweenStepsWakeTheirTiles() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(64, 192, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            engine.step(3);
+            assertEquals(0, engine.getActiveTileCount());
+            // A blinker set into a tile that has been quiet for generations
+            for (int x = 150; x < 153; x++) engine.setBit(x, 40, true);
+            check(engine, LifeRule.CONWAY, 10);
+        }
+    }
+
+    private static void check(LifeEngine engine, LifeRule rule, int generations) throws InterruptedException {
+        boolean[][] cells = ReferenceLife.read(engine);
+        for (int g = 0; g < generations; g++) {
+            engine.step();
+            cells = ReferenceLife.step(cells, rule);
+            assertArrayEquals(cells, ReferenceLife.read(engine), "generation " + (g + 1));
+            assertEquals(ReferenceLife.count(cells), engine.getAliveCount());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The word kernel, alone and on several threads, against a per-cell step on a plain
+ * boolean torus. Sizes are picked to leave a partial last word and a single row or column.
+ */
+class BitboardKernelTest {
+
+    private static final int[][] SIZES = {{3, 3}, {1, 70}, {70, 1}, {37, 70}, {64, 128}, {100, 65}, {130, 200}};
+
+    @Test
+    void wordKernelMatchesPerCellTorus() throws InterruptedException {
+        for (int[] size : SIZES) {
+            for (String variant : new String[] {LifeEngine.VARIANT_STANDARD, LifeEngine.VARIANT_B2S7}) {
+                for (int threads : new int[] {1, 3}) {
+                    check(size[0], size[1], variant, threads, true);
+                }
+            }
+        }
+    }
+
+    @Test
+    void perCellPathMatchesPerCellTorus() throws InterruptedException {
+        check(37, 70, LifeEngine.VARIANT_STANDARD, 1, false);
+        check(100, 65, LifeEngine.VARIANT_B2S7, 3, false);
+    }
+
+    private static void check(int rows, int cols, String variant, int threads, boolean word)
+            throws InterruptedException {
+        LifeRule rule = LifeRule.parse(variant);
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, variant, threads)) {
+            engine.setWordKernelEnabled(word);
+            engine.setActiveTilesEnabled(false);
+            engine.randomize(0.3, rows * 31L + cols);
+            boolean[][] cells = ReferenceLife.read(engine);
+            for (int g = 0; g < 60; g++) {
+                engine.step();
+                cells = ReferenceLife.step(cells, rule);
+                String where = rows + "x" + cols + " " + rule + " on " + threads + " threads, generation " + (g + 1);
+                assertArrayEquals(cells, ReferenceLife.read(engine), where);
+                assertEquals(ReferenceLife.count(cells), engine.getAliveCount(), where);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Sweeps laid out as asked, and collisions run against the plane stepped cell by cell:
+ * where the window goes round a cycle twice, the population left and the gliders
+ * flying off.
+ */
+class CollisionBatchTest {
+
+    private static final int MAX_PERIOD = 60;
+    private static final long MAX_GENERATIONS = 2000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sweepPlacesTwoGlidersPerLaneAndDelay() {
+        int lanes = 3, delays = 6;
+        List<CollisionBatch.Setup> setups = CollisionBatch.sweep(LifeRule.CONWAY, lanes, delays);
+        assertEquals(2 * (2 * lanes + 1) * delays, setups.size());
+        Map<String, Set<Long>> inTime = new HashMap<>();
+        for (CollisionBatch.Setup setup : setups) {
+            Set<Long> cells = ReferenceLife.live(setup.getCells());
+            assertEquals(10, cells.size(), setup.getName());
+            // The first glider is the same in every setup; the second, stepped on by its
+            // delay, is where it is with none
+            String name = setup.getName();
+            int delay = Integer.parseInt(name.substring(name.indexOf("delay=") + 6));
+            Set<Long> first = firstGlider(cells, lanes);
+            Set<Long> second = new HashSet<>(cells);
+            second.removeAll(first);
+            assertEquals(5, first.size(), name);
+            for (int g = 0; g < delay; g++) second = ReferenceLife.step(second, LifeRule.CONWAY);
+            String key = name.substring(0, name.indexOf(" delay="));
+            inTime.putIfAbsent(key + " first", first);
+            inTime.putIfAbsent(key, second);
+            assertEquals(inTime.get(key + " first"), first, name);
+            assertEquals(inTime.get(key), second, name);
+        }
+    }
+
+    @Test
+    void resultsMatchThePlaneSteppedCellByCell() throws InterruptedException {
+        CollisionBatch batch = new CollisionBatch("B3/S23", MAX_GENERATIONS, MAX_PERIOD, 4);
+        List<CollisionBatch.Setup> setups = CollisionBatch.sweep(LifeRule.CONWAY, 2, 4);
+        List<CollisionBatch.Result> results = new ArrayList<>();
+        batch.run(setups, results::add);
+        assertEquals(setups.size(), results.size());
+
+        int collided = 0;
+        for (int s = 0; s < setups.size(); s++) {
+            CollisionBatch.Setup setup = setups.get(s);
+            CollisionBatch.Result result = results.get(s);
+            assertEquals(setup.getName(), result.getName(), "results come in the order of the setups");
+
+            Set<Long> plane = new HashSet<>();
+            for (long cell : ReferenceLife.live(setup.getCells())) {
+                plane.add(ReferenceLife.cell(ReferenceLife.x(cell) + CollisionBatch.MARGIN,
+                        ReferenceLife.y(cell) + CollisionBatch.MARGIN));
+            }
+            int cols = setup.getCells().getCols() + 2 * CollisionBatch.MARGIN;
+            int rows = setup.getCells().getRows() + 2 * CollisionBatch.MARGIN;
+            Map<Set<Long>, Long> seen = new HashMap<>();
+            seen.put(window(plane, cols, rows), 0L);
+            // The first repeat and the same one again right after it
+            long start = -1, period = 0, g = 0;
+            while (g < MAX_GENERATIONS) {
+                plane = ReferenceLife.step(plane, LifeRule.CONWAY);
+                g++;
+                Set<Long> inside = window(plane, cols, rows);
+                Long earlier = seen.put(inside, g);
+                if (earlier == null || g - earlier > MAX_PERIOD) continue;
+                if (g - earlier == period && earlier == start + period) break;
+                start = earlier;
+                period = g - earlier;
+                seen.clear();
+                seen.put(inside, g);
+            }
+            String name = setup.getName();
+            assertTrue(result.isSettled(), name);
+            assertEquals(start, result.getSettledGeneration(), name);
+            assertEquals(period, result.getPeriod(), name);
+            assertEquals(g, result.getGenerations(), name);
+            assertEquals(plane.size(), result.getPopulation(), name);
+
+            long ships = 0;
+            for (long n : result.getShips().values()) ships += n;
+            assertEquals(result.getEmitted(), ships, name);
+            // Whatever is outside the window flew out of it: gliders, five cells each
+            int outside = plane.size() - window(plane, cols, rows).size();
+            assertEquals(outside, 5 * result.getShips().getOrDefault("Glider", 0L), name);
+            if (plane.size() != 10 || result.getEmitted() != 2) collided++;
+
+            // The same run on the calling thread
+            CollisionBatch.Result alone = batch.run(setup);
+            assertEquals(result.toRecord(), alone.toRecord(), name);
+        }
+        assertTrue(collided > setups.size() / 2, "most gliders met: " + collided);
+
+        // Head-on gliders on lanes far apart pass each other by; at right angles they
+        // always meet, flying down side by side
+        for (CollisionBatch.Setup setup : CollisionBatch.sweep(LifeRule.CONWAY, 12, 1)) {
+            if (!setup.getName().matches("head-on lane=-?12 .*")) continue;
+            CollisionBatch.Result result = batch.run(setup);
+            assertEquals(2, result.getEmitted(), setup.getName());
+            assertEquals(Map.of("Glider", 2L), result.getShips(), setup.getName());
+            assertEquals(10, result.getPopulation(), setup.getName());
+            assertEquals(1, result.getPeriod(), "an empty window is static");
+        }
+    }
+
+    @Test
+    void setupsLoadFromEveryFormatInNameOrder() throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("b" + PatternFile.RLE), "x = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+        Files.writeString(dir.resolve("a" + PatternFile.CELLS), "!Name: block\nOO\nOO\n");
+        try (LifeEngine engine = new LifeEngine(4, 5, LifeEngine.RULE_LIFE, "B3/S23")) {
+            PatternScannerTest.place(engine, 1, 1, "OOO");
+            engine.saveAsText(dir.resolve("c.txt"));
+        }
+        List<CollisionBatch.Setup> setups = CollisionBatch.load(dir);
+        List<String> names = new ArrayList<>();
+        for (CollisionBatch.Setup setup : setups) names.add(setup.getName());
+        assertEquals(List.of("a" + PatternFile.CELLS, "b" + PatternFile.RLE, "c.txt"), names);
+        assertEquals(4, ReferenceLife.live(setups.get(0).getCells()).size());
+        assertEquals(5, ReferenceLife.live(setups.get(1).getCells()).size());
+        assertEquals(3, ReferenceLife.live(setups.get(2).getCells()).size());
+
+        CollisionBatch batch = new CollisionBatch("B3/S23", MAX_GENERATIONS, MAX_PERIOD, 2);
+        List<CollisionBatch.Result> results = new ArrayList<>();
+        batch.run(setups, results::add);
+        assertEquals("a.cells,4,0,1,2,0,", results.get(0).toRecord());
+        assertEquals(Map.of("Glider", 1L), results.get(1).getShips());
+        assertEquals(2, results.get(2).getPeriod());
+    }
+
+    /** The first glider of a sweep, in its box at the top left of the setup. */
+    private static Set<Long> firstGlider(Set<Long> cells, int lanes) {
+        Set<Long> first = new TreeSet<>();
+        for (long cell : cells) {
+            long x = ReferenceLife.x(cell) - (lanes + 2);
+            long y = ReferenceLife.y(cell);
+            if (x >= 0 && x < 3 && y < 3 + 2 + 2) first.add(cell);
+        }
+        return first;
+    }
+
+    private static Set<Long> window(Set<Long> plane, int cols, int rows) {
+        Set<Long> inside = new HashSet<>();
+        for (long cell : plane) {
+            long x = ReferenceLife.x(cell);
+            long y = ReferenceLife.y(cell);
+            if (x >= 0 && x < cols && y >= 0 && y < rows) inside.add(cell);
+        }
+        return inside;
+    }
+}
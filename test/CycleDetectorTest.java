@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/** Periods and first generations of cycles against the grids themselves compared generation by generation. */
+class CycleDetectorTest {
+
+    @Test
+    void soupsSettleWhereTheGridFirstRepeats() throws InterruptedException {
+        int found = 0;
+        for (int[] size : new int[][] {{16, 16}, {20, 37}, {24, 70}}) {
+            for (long seed = 1; seed <= 6; seed++) {
+                boolean activeTiles = seed % 2 == 0;
+                try (LifeEngine engine = new LifeEngine(size[0], size[1], LifeEngine.RULE_LIFE,
+                        LifeEngine.VARIANT_STANDARD, activeTiles ? 2 : 1)) {
+                    engine.setActiveTilesEnabled(activeTiles);
+                    engine.randomize(0.35, seed);
+                    engine.setCycleDetection(500);
+                    Map<String, Integer> seen = new HashMap<>();
+                    seen.put(Arrays.deepToString(ReferenceLife.read(engine)), 0);
+                    int start = -1, period = 0;
+                    for (int g = 1; g <= 3000 && start < 0; g++) {
+                        engine.step();
+                        Integer earlier = seen.putIfAbsent(Arrays.deepToString(ReferenceLife.read(engine)), g);
+                        if (earlier != null && g - earlier <= 500) {
+                            start = earlier;
+                            period = g - earlier;
+                        }
+                        assertEquals(start >= 0, engine.getCycleDetector().hasCycle(),
+                                size[0] + "x" + size[1] + ", seed " + seed + ", generation " + g);
+                    }
+                    if (start < 0) continue;
+                    found++;
+                    CycleDetector cycles = engine.getCycleDetector();
+                    assertEquals(period, cycles.getPeriod());
+                    assertEquals(start, cycles.getStartGeneration());
+                }
+            }
+        }
+        assertTrue(found >= 12, "most soups settled: " + found);
+    }
+
+    @Test
+    void knownObjectsCycle() throws InterruptedException {
+        assertCycle(20, 20, 1, 0, "OO", "OO");
+        assertCycle(20, 20, 2, 0, "OOO");
+        assertCycle(20, 20, 2, 0, ".OOO", "OOO.");
+        // A glider comes back to where it was after crossing the torus: 4 generations a cell
+        assertCycle(20, 20, 80, 0, ".O.", "..O", "OOO");
+        assertCycle(24, 40, 480, 0, ".O.", "..O", "OOO");
+        // The R-pentomino's ash on a small torus
+        assertCycle(16, 16, 2, 67, ".OO", "OO.", ".O.");
+    }
+
+    @Test
+    void periodsPastTheLongestGoUnnoticed() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(24, 40, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            PatternScannerTest.place(engine, 5, 5, ".O.", "..O", "OOO");
+            engine.setCycleDetection(479);
+            engine.step(2000);
+            assertFalse(engine.getCycleDetector().hasCycle());
+        }
+    }
+
+    @Test
+    void stoppingOnACycleEndsOnePeriodIn() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(20, 20, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            PatternScannerTest.place(engine, 5, 5, ".O.", "..O", "OOO");
+            engine.setCycleDetection(100);
+            engine.setStopOnCycle(true);
+            assertEquals(80, engine.step(10_000));
+            assertTrue(engine.isSettled());
+
+            // An edit starts the watch again from the edited grid
+            engine.setBit(0, 0, !engine.getBit(0, 0));
+            assertFalse(engine.getCycleDetector().hasCycle());
+            assertFalse(engine.isSettled());
+            long steps = engine.step(10_000);
+            CycleDetector cycles = engine.getCycleDetector();
+            assertTrue(cycles.hasCycle());
+            assertTrue(cycles.getStartGeneration() >= 80);
+            assertEquals(cycles.getStartGeneration() + cycles.getPeriod(), 80 + steps);
+        }
+    }
+
+    @Test
+    void aGapInTheGenerationsStartsAfresh() {
+        CycleDetector cycles = new CycleDetector(10);
+        assertFalse(cycles.add(0, 7));
+        assertFalse(cycles.add(1, 8));
+        assertFalse(cycles.add(3, 7), "generation 2 was skipped");
+        assertFalse(cycles.add(4, 9));
+        assertTrue(cycles.add(5, 7));
+        assertEquals(2, cycles.getPeriod());
+        assertEquals(3, cycles.getStartGeneration());
+        assertEquals("period 2 from generation 3", cycles.describe());
+        assertFalse(cycles.add(6, 9), "a cycle found is kept");
+
+        // Only the last maxPeriod generations are remembered
+        cycles.reset();
+        for (int g = 0; g < 11; g++) assertFalse(cycles.add(g, 100 + g));
+        assertFalse(cycles.add(11, 100));
+        assertTrue(cycles.add(12, 102));
+        assertEquals(10, cycles.getPeriod());
+    }
+
+    private static void assertCycle(int rows, int cols, int period, long start, String... object)
+            throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            PatternScannerTest.place(engine, 5, 5, object);
+            engine.setCycleDetection(1000);
+            engine.step(start + period);
+            CycleDetector cycles = engine.getCycleDetector();
+            String name = String.join("/", object);
+            assertTrue(cycles.hasCycle(), name);
+            assertEquals(period, cycles.getPeriod(), name);
+            assertEquals(start, cycles.getStartGeneration(), name);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Block counts kept current tile by tile against counting every block again. */
+class DensityPyramidTest {
+
+    @Test
+    void refreshedTilesEqualARecount() throws InterruptedException {
+        // Neither side a power of two nor a whole number of tiles
+        int rows = 300, cols = 520;
+        GridStore grid = new HeapGridStore(rows, cols);
+        Random random = new Random(17);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) grid.set(x, y, random.nextInt(4) == 0);
+        }
+        DensityPyramid pyramid = new DensityPyramid(rows, cols);
+        try (StepTeam team = new StepTeam(3, "test")) {
+            pyramid.refresh(grid, team);
+            assertCounts(pyramid, grid, "first count");
+            for (int round = 0; round < 30; round++) {
+                // A few clusters of edits, some in the last row and column
+                for (int k = 0; k < 4; k++) {
+                    int x0 = k == 0 ? cols - 3 : random.nextInt(cols);
+                    int y0 = k == 0 ? rows - 3 : random.nextInt(rows);
+                    for (int e = 0; e < 20; e++) {
+                        int x = Math.min(cols - 1, x0 + random.nextInt(8));
+                        int y = Math.min(rows - 1, y0 + random.nextInt(8));
+                        grid.set(x, y, !grid.get(x, y));
+                        pyramid.markCell(x, y);
+                    }
+                }
+                pyramid.refresh(grid, round % 2 == 0 ? null : team);
+                assertCounts(pyramid, grid, "round " + round);
+            }
+        }
+        // Replaced wholesale
+        grid.clear();
+        pyramid.markAll();
+        pyramid.refresh(grid, null);
+        assertCounts(pyramid, grid, "cleared");
+    }
+
+    @Test
+    void engineKeepsThePyramidCurrent() throws InterruptedException {
+        int rows = 200, cols = 330;
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 2)) {
+            Random random = new Random(23);
+            for (int y = 20; y < 90; y++) {
+                for (int x = 100; x < 200; x++) if (random.nextInt(3) == 0) engine.setBit(x, y, true);
+            }
+            FrameRasterizer raster = new FrameRasterizer();
+            FrameRasterizer.View v = new FrameRasterizer.View(0, 0, 8, cols / 8 + 1, rows / 8 + 1);
+            for (int g = 1; g <= 200; g++) {
+                engine.step();
+                // Edits between steps, and jumps past generations
+                if (g % 50 == 0) PatternScannerTest.place(engine, 10, 150, ".O.", "..O", "OOO");
+                if (g % 70 == 0) engine.advanceHashlife(3);
+                engine.rasterize(raster, v);
+                FrameRasterizer.Frame f = raster.takeFrame();
+                assertArrayEquals(FrameRasterizerTest.expected(v, engine.getGrid(), null), f.getPixels(), "generation " + g);
+                raster.release(f);
+            }
+        }
+    }
+
+    private static void assertCounts(DensityPyramid pyramid, GridStore grid, String where) {
+        for (int level = DensityPyramid.MIN_LEVEL; level <= pyramid.getTopLevel(); level++) {
+            int side = 1 << level;
+            for (int by = 0; by * side < grid.getRows(); by++) {
+                for (int bx = 0; bx * side < grid.getCols(); bx++) {
+                    int live = 0;
+                    for (int y = by * side; y < Math.min(grid.getRows(), (by + 1) * side); y++) {
+                        for (int x = bx * side; x < Math.min(grid.getCols(), (bx + 1) * side); x++) {
+                            if (grid.get(x, y)) live++;
+                        }
+                    }
+                    assertEquals(live, pyramid.count(level, bx, by), "level " + level + ", block " + bx + "," + by + ", " + where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Matches kept from one generation to the next against a scan of every tile: the same
+ * counts and the same highlight planes, through soups settling and edits.
+ */
+class DetectionTilesTest {
+
+    @Test
+    void keptMatchesEqualAFullScan() throws InterruptedException {
+        List<LifePattern> patterns = new ArrayList<>();
+        for (String name : LifeEngine.patternNames()) patterns.add(LifeEngine.createPattern(name));
+        PatternScanner scanner = new PatternScanner(patterns);
+        int[] layers = new int[patterns.size()];
+        for (int p = 0; p < layers.length; p++) layers[p] = p;
+
+        for (int workers : new int[] {1, 3}) {
+            // 400 columns end inside a word; the tiles of both sizes wrap
+            for (int cols : new int[] {400, 512}) {
+                int rows = 240;
+                try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1);
+                     StepTeam team = new StepTeam(workers, "test");
+                     HighlightLayers kept = new HighlightLayers(rows, cols)) {
+                    // A soup across the corner seam, quiet board elsewhere
+                    Random random = new Random(cols + workers);
+                    for (int y = -40; y < 40; y++) {
+                        for (int x = -50; x < 50; x++) {
+                            if (random.nextDouble() < 0.35) engine.setBit(Math.floorMod(x, cols), Math.floorMod(y, rows), true);
+                        }
+                    }
+                    DetectionTiles tiles = new DetectionTiles(scanner, layers, rows, cols, workers);
+                    int partial = 0;
+                    for (int g = 1; g <= 400; g++) {
+                        engine.step();
+                        if (g == 150 || g == 300) {
+                            // An edit the tiles cannot see from the frame
+                            PatternScannerTest.place(engine, 30, 40, "OO", "OO");
+                            PatternScannerTest.place(engine, cols - 3, rows - 3, ".O.", "..O", "OOO");
+                            tiles.invalidate();
+                        }
+                        long[] totals = tiles.update(engine.getPreviousGrid(), engine.getGrid(),
+                                engine.getGenerationCount(), kept, team).clone();
+                        if (tiles.getRescanCount() < tiles.getTileCount()) partial++;
+                        if (g % 5 != 0 && g < 390) continue;
+
+                        String where = workers + " workers, " + cols + " columns, generation " + g;
+                        try (HighlightLayers scanned = new HighlightLayers(rows, cols)) {
+                            DetectionTiles full = new DetectionTiles(scanner, layers, rows, cols, workers);
+                            long[] expected = full.update(engine.getPreviousGrid(), engine.getGrid(),
+                                    engine.getGenerationCount(), scanned, team);
+                            assertEquals(full.getTileCount(), full.getRescanCount());
+                            assertArrayEquals(expected, totals, where);
+                            assertSamePlanes(layers, scanned, kept, where);
+                        }
+                    }
+                    assertTrue(partial > 300, "most updates scanned only part of the board: " + partial);
+
+                    // The same tiles made to scan everything again agree with themselves
+                    long[] before = tiles.update(engine.getPreviousGrid(), engine.getGrid(),
+                            engine.getGenerationCount(), kept, team).clone();
+                    tiles.invalidate();
+                    long[] after = tiles.update(engine.getPreviousGrid(), engine.getGrid(),
+                            engine.getGenerationCount(), kept, team);
+                    assertEquals(tiles.getTileCount(), tiles.getRescanCount());
+                    assertArrayEquals(before, after);
+                }
+            }
+        }
+    }
+
+    private static void assertSamePlanes(int[] layers, HighlightLayers expected, HighlightLayers actual, String where) {
+        for (int layer : layers) {
+            for (int y = 0; y < expected.getRows(); y++) {
+                for (int i = 0; i < expected.getWords(); i++) {
+                    if (expected.word(layer, y, i) != actual.word(layer, y, i)) {
+                        assertEquals(Long.toBinaryString(expected.word(layer, y, i)),
+                                Long.toBinaryString(actual.word(layer, y, i)),
+                                "layer " + layer + ", row " + y + ", word " + i + ", " + where);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/** Every rule against a per-cell ring step, from soups and from a single cell. */
+class ElementaryCATest {
+
+    private static final int[] WIDTHS = {1, 2, 5, 63, 64, 65, 130, 200};
+
+    @Test
+    void everyRuleMatchesPerCellRing() {
+        for (int rule = 0; rule < 256; rule++) {
+            for (int width : WIDTHS) {
+                ElementaryCA ca = new ElementaryCA(rule, width);
+                ca.randomize(0.4, rule * 7L + width);
+                boolean[] cells = read(ca);
+                for (int g = 0; g < 40; g++) {
+                    ca.step();
+                    cells = step(cells, rule);
+                    assertArrayEquals(cells, read(ca), "rule " + rule + ", width " + width + ", generation " + (g + 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void lightConeMatchesWholeRingAcrossTheSeam() {
+        // Even rules only compute the words the pattern can reach; run until it wraps around
+        for (int rule : new int[] {18, 30, 90, 110, 150, 254}) {
+            for (int width : new int[] {300, 1000}) {
+                ElementaryCA ca = new ElementaryCA(rule, width);
+                ca.seedCenter();
+                boolean[] cells = read(ca);
+                for (int g = 0; g < width; g++) {
+                    ca.step();
+                    cells = step(cells, rule);
+                    String where = "rule " + rule + ", width " + width + ", generation " + (g + 1);
+                    assertArrayEquals(cells, read(ca), where);
+                    assertEquals(count(cells), ca.population(), where);
+                }
+            }
+        }
+    }
+
+    @Test
+    void stepRowMatchesStep() {
+        for (int rule : new int[] {30, 45, 105, 110}) {
+            for (int width : WIDTHS) {
+                GridStore grid = HeapGridStore.FACTORY.create(2, width);
+                ElementaryCA ca = new ElementaryCA(rule, width);
+                ca.randomize(0.5, width);
+                ca.writeRow(grid, 0);
+                long count = ca.stepRow(grid, 0, grid, 1);
+                ca.step();
+                assertArrayEquals(read(ca), ReferenceLife.read(grid)[1], "rule " + rule + ", width " + width);
+                assertEquals(ca.population(), count);
+            }
+        }
+    }
+
+    @Test
+    void rule30CenterColumn() {
+        ElementaryCA ca = new ElementaryCA(30, 401);
+        ca.seedCenter();
+        long[] column = ca.centerColumn(100);
+        // OEIS A051023
+        int[] expected = {1, 1, 0, 1, 1, 1, 0, 0, 1, 1, 0, 0, 0, 1, 0, 1, 1, 0, 0, 1, 0, 0, 1, 1, 1};
+        for (int g = 0; g < expected.length; g++) {
+            assertEquals(expected[g], (int) (column[g >>> 6] >>> (g & 63)) & 1, "generation " + g);
+        }
+        assertEquals(100, ca.getGeneration());
+    }
+
+    @Test
+    void parsesRuleNames() {
+        assertEquals(30, ElementaryCA.parseRule("Rule 30"));
+        assertEquals(110, ElementaryCA.parseRule("rule110"));
+        assertEquals(90, ElementaryCA.parseRule("W90"));
+        assertEquals(0, ElementaryCA.parseRule("0"));
+        for (String bad : new String[] {"Rule 256", "B3/S23", "", "rule"}) {
+            assertThrows(IllegalArgumentException.class, () -> ElementaryCA.parseRule(bad), bad);
+        }
+    }
+
+    /** One generation of a ring, looking up each cell's neighbourhood in the rule number. */
+    private static boolean[] step(boolean[] cells, int rule) {
+        int width = cells.length;
+        boolean[] next = new boolean[width];
+        for (int x = 0; x < width; x++) {
+            int pattern = (cells[Math.floorMod(x - 1, width)] ? 4 : 0) | (cells[x] ? 2 : 0)
+                    | (cells[(x + 1) % width] ? 1 : 0);
+            next[x] = (rule >>> pattern & 1) != 0;
+        }
+        return next;
+    }
+
+    private static boolean[] read(ElementaryCA ca) {
+        boolean[] cells = new boolean[ca.getWidth()];
+        for (int x = 0; x < cells.length; x++) cells[x] = ca.get(x);
+        return cells;
+    }
+
+    private static long count(boolean[] cells) {
+        long n = 0;
+        for (boolean c : cells) if (c) n++;
+        return n;
+    }
+}
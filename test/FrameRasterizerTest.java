@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Frames against the cell, or the highlight, under each pixel; and frames handed over, not shared. */
+class FrameRasterizerTest {
+
+    @Test
+    void pixelsShowTheCellUnderThem() throws InterruptedException {
+        // 150 columns end inside a word
+        int rows = 90, cols = 150;
+        GridStore grid = new HeapGridStore(rows, cols);
+        Random random = new Random(16);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) grid.set(x, y, random.nextInt(3) == 0);
+        }
+        try (HighlightLayers highlights = new HighlightLayers(rows, cols);
+             StepTeam team = new StepTeam(3, "test")) {
+            for (int layer : new int[] {1, 4}) {
+                highlights.use(layer);
+                for (int k = 0; k < 40; k++) {
+                    highlights.markRow(layer, random.nextInt(rows), random.nextInt(cols), random.nextLong(), 64);
+                }
+            }
+            FrameRasterizer.View[] views = {
+                FrameRasterizer.View.full(rows, cols),
+                // Unaligned, hanging over every edge
+                new FrameRasterizer.View(-7, -3, 1, cols + 20, rows + 9),
+                new FrameRasterizer.View(37, 11, 1, 100, 40),
+                new FrameRasterizer.View(-0.5, 2.25, 1, 80, 30),
+                // Zoomed in, by a whole and by an odd factor
+                new FrameRasterizer.View(10, 5, 0.25, 300, 200),
+                new FrameRasterizer.View(-3.3, 70.1, 0.37, 500, 90),
+                new FrameRasterizer.View(0, 0, 1.5, 100, 60),
+            };
+            FrameRasterizer raster = new FrameRasterizer();
+            for (FrameRasterizer.View v : views) {
+                byte[] expected = expected(v, grid, highlights);
+                for (StepTeam t : new StepTeam[] {null, team}) {
+                    raster.draw(v, grid, highlights, null, t);
+                    FrameRasterizer.Frame f = raster.takeFrame();
+                    assertSame(v, f.getView());
+                    assertArrayEquals(expected, f.getPixels(), "origin " + v.getOriginX() + "," + v.getOriginY()
+                            + ", " + v.getCellsPerPixel() + " cells per pixel");
+                    raster.release(f);
+                }
+                // Without highlights the cells show through
+                raster.draw(v, grid, null, null, team);
+                FrameRasterizer.Frame f = raster.takeFrame();
+                assertArrayEquals(expected(v, grid, null), f.getPixels());
+                raster.release(f);
+            }
+        }
+    }
+
+    @Test
+    void zoomedOutPixelsShowTheShareOfLiveCells() throws InterruptedException {
+        // Neither side a power of two; the density falls off across the grid
+        int rows = 300, cols = 650;
+        GridStore grid = new HeapGridStore(rows, cols);
+        Random random = new Random(17);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) grid.set(x, y, random.nextInt(cols) < cols - x);
+        }
+        DensityPyramid pyramid = new DensityPyramid(rows, cols);
+        pyramid.refresh(grid, null);
+        try (HighlightLayers highlights = new HighlightLayers(rows, cols);
+             StepTeam team = new StepTeam(3, "test")) {
+            // Highlights are not drawn when zoomed out
+            highlights.use(0);
+            highlights.markRow(0, 5, 5, -1L, 64);
+            FrameRasterizer raster = new FrameRasterizer();
+            // 2x2 and 4x4 blocks counted from the grid, the rest read from the pyramid
+            for (double cellsPerPixel : new double[] {2, 3.5, 4, 7.9, 8, 16, 33, 256, 1000, 5000}) {
+                for (double origin : new double[] {0, -40, 123.4}) {
+                    int width = (int) Math.max(4, cols / cellsPerPixel + 20);
+                    int height = (int) Math.max(4, rows / cellsPerPixel + 10);
+                    FrameRasterizer.View v = new FrameRasterizer.View(origin, origin / 2, cellsPerPixel, width, height);
+                    byte[] expected = expected(v, grid, null);
+                    for (StepTeam t : new StepTeam[] {null, team}) {
+                        raster.draw(v, grid, highlights, pyramid, t);
+                        FrameRasterizer.Frame f = raster.takeFrame();
+                        assertArrayEquals(expected, f.getPixels(), cellsPerPixel + " cells per pixel from " + origin);
+                        raster.release(f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void framesAreHandedOver() throws InterruptedException {
+        GridStore grid = new HeapGridStore(10, 10);
+        FrameRasterizer raster = new FrameRasterizer();
+        assertNull(raster.takeFrame());
+
+        FrameRasterizer.View first = FrameRasterizer.View.full(10, 10);
+        raster.draw(first, grid, null, null, null);
+        FrameRasterizer.Frame shown = raster.takeFrame();
+        assertSame(first, shown.getView());
+        assertNull(raster.takeFrame(), "a frame is taken once");
+
+        // Drawn while the first is on screen, then again before the display looks
+        FrameRasterizer.View second = new FrameRasterizer.View(1, 1, 1, 10, 10);
+        FrameRasterizer.View third = new FrameRasterizer.View(2, 2, 1, 10, 10);
+        raster.draw(second, grid, null, null, null);
+        raster.draw(third, grid, null, null, null);
+        FrameRasterizer.Frame latest = raster.takeFrame();
+        assertNotNull(latest);
+        assertSame(third, latest.getView());
+        assertSame(first, shown.getView(), "the frame on screen was not drawn over");
+
+        // The frame the display skipped is drawn over next, then a released one
+        raster.draw(first, grid, null, null, null);
+        FrameRasterizer.Frame skipped = raster.takeFrame();
+        assertNotSame(shown, skipped);
+        assertNotSame(latest, skipped);
+        raster.release(shown);
+        raster.draw(first, grid, null, null, null);
+        assertSame(shown, raster.takeFrame());
+    }
+
+    /**
+     * Each pixel the cell under it, or the lowest layer marking that cell; zoomed out by
+     * two or more, the shade of the live cells in the block under it.
+     */
+    static byte[] expected(FrameRasterizer.View v, GridStore grid, HighlightLayers highlights) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int level = 0;
+        while (v.getCellsPerPixel() >= 2L << level && level < 30) level++;
+        int top = DensityPyramid.MIN_LEVEL;
+        while ((1 << top) < Math.max(rows, cols)) top++;
+        level = Math.min(level, top);
+        byte[] pixels = new byte[v.getWidth() * v.getHeight()];
+        for (int py = 0; py < v.getHeight(); py++) {
+            for (int px = 0; px < v.getWidth(); px++) {
+                int x = v.cellX(px);
+                int y = v.cellY(py);
+                byte pixel = FrameRasterizer.DEAD;
+                if (x < 0 || x >= cols || y < 0 || y >= rows) {
+                    // Outside the grid
+                } else if (level > 0) {
+                    int x0 = x >> level << level;
+                    int y0 = y >> level << level;
+                    int x1 = Math.min(cols, x0 + (1 << level));
+                    int y1 = Math.min(rows, y0 + (1 << level));
+                    int live = 0;
+                    for (int cy = y0; cy < y1; cy++) {
+                        for (int cx = x0; cx < x1; cx++) if (grid.get(cx, cy)) live++;
+                    }
+                    int area = (x1 - x0) * (y1 - y0);
+                    if (live > 0) pixel = (byte) (FrameRasterizer.FIRST_SHADE - 1 + Math.ceil((double) live * FrameRasterizer.SHADES / area));
+                } else {
+                    int layer = highlights == null ? -1 : highlights.layerAt(x, y);
+                    if (layer >= 0) {
+                        pixel = (byte) (FrameRasterizer.FIRST_HIGHLIGHT + layer);
+                    } else if (grid.get(x, y)) {
+                        pixel = FrameRasterizer.ALIVE;
+                    }
+                }
+                pixels[py * v.getWidth() + px] = pixel;
+            }
+        }
+        return pixels;
+    }
+}
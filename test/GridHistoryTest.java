@@ -0,0 +1,149 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Generations rebuilt from keyframes and deltas against copies kept of every grid. */
+class GridHistoryTest {
+
+    @Test
+    void restoresEveryRetainedGeneration() throws InterruptedException {
+        // 130 columns end inside a word; the soup runs on active tiles and without
+        for (boolean activeTiles : new boolean[] {true, false}) {
+            try (LifeEngine engine = new LifeEngine(100, 130, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 2)) {
+                engine.setActiveTilesEnabled(activeTiles);
+                engine.randomize(0.35, 22);
+                engine.setHistoryBudget(64L << 20);
+                List<boolean[][]> grids = new ArrayList<>();
+                grids.add(ReferenceLife.read(engine));
+                for (int g = 1; g <= 600; g++) {
+                    engine.step();
+                    grids.add(ReferenceLife.read(engine));
+                }
+                GridHistory history = engine.getHistory();
+                assertEquals(0, history.getOldestGeneration());
+                assertEquals(600, history.getNewestGeneration());
+                assertTrue(history.getKeyframeCount() > 1, "keyframes were taken on the way");
+
+                GridStore dst = new HeapGridStore(100, 130);
+                Random random = new Random(5);
+                long held = -1;
+                for (int k = 0; k < 200; k++) {
+                    int g = k < 20 ? k : random.nextInt(601);
+                    // From a keyframe, or from the generation dst already holds
+                    history.restore(g, dst, random.nextBoolean() ? held : -1);
+                    assertArrayEquals(grids.get(g), ReferenceLife.read(dst), "generation " + g + " from " + held);
+                    held = g;
+                }
+            }
+        }
+    }
+
+    @Test
+    void seekingBackAndSteppingOnKeepsWhatFollows() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(80, 70, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            engine.randomize(0.35, 9);
+            engine.setHistoryBudget(16L << 20);
+            List<boolean[][]> grids = new ArrayList<>();
+            grids.add(ReferenceLife.read(engine));
+            for (int g = 1; g <= 200; g++) {
+                engine.step();
+                grids.add(ReferenceLife.read(engine));
+            }
+            engine.seekGeneration(50);
+            assertEquals(50, engine.getGenerationCount());
+            assertArrayEquals(grids.get(50), ReferenceLife.read(engine));
+            engine.step();
+            assertArrayEquals(grids.get(51), ReferenceLife.read(engine));
+            assertEquals(200, engine.getHistory().getNewestGeneration(), "stepping on found the same generations");
+            engine.seekGeneration(200);
+            assertArrayEquals(grids.get(200), ReferenceLife.read(engine));
+
+            // An edit drops the generations after it
+            engine.seekGeneration(120);
+            engine.setBit(3, 3, !engine.getBit(3, 3));
+            boolean[][] edited = ReferenceLife.read(engine);
+            engine.step();
+            assertEquals(121, engine.getHistory().getNewestGeneration());
+            engine.seekGeneration(120);
+            assertArrayEquals(edited, ReferenceLife.read(engine));
+            engine.seekGeneration(119);
+            assertArrayEquals(grids.get(119), ReferenceLife.read(engine));
+        }
+    }
+
+    @Test
+    void oldestGenerationsGoPastTheBudget() throws InterruptedException {
+        int rows = 96, cols = 128;
+        long budget = 6 * GridHistory.keyframeBytes(rows, cols);
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            engine.randomize(0.4, 31);
+            engine.setHistoryBudget(budget);
+            List<boolean[][]> grids = new ArrayList<>();
+            grids.add(ReferenceLife.read(engine));
+            for (int g = 1; g <= 1500; g++) {
+                engine.step();
+                grids.add(ReferenceLife.read(engine));
+                assertTrue(engine.getHistory().getMemoryBytes() <= budget, "generation " + g);
+            }
+            GridHistory history = engine.getHistory();
+            assertTrue(history.getOldestGeneration() > 0, "the oldest generations were dropped");
+            assertEquals(1500, history.getNewestGeneration());
+            assertEquals(1500 - history.getOldestGeneration() + 1, history.size());
+            assertFalse(history.contains(history.getOldestGeneration() - 1));
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.seekGeneration(history.getOldestGeneration() - 1));
+
+            GridStore dst = new HeapGridStore(rows, cols);
+            for (long g = history.getOldestGeneration(); g <= 1500; g += 7) {
+                history.restore(g, dst, -1);
+                assertArrayEquals(grids.get((int) g), ReferenceLife.read(dst), "generation " + g);
+            }
+
+            // A smaller budget drops more, down to one keyframe's worth
+            long oldest = history.getOldestGeneration();
+            engine.setHistoryBudget(GridHistory.keyframeBytes(rows, cols));
+            assertTrue(history.getOldestGeneration() > oldest);
+            assertTrue(history.getMemoryBytes() <= GridHistory.keyframeBytes(rows, cols));
+            history.restore(1500, dst, -1);
+            assertArrayEquals(grids.get(1500), ReferenceLife.read(dst));
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.setHistoryBudget(GridHistory.keyframeBytes(rows, cols) - 1));
+        }
+    }
+
+    @Test
+    void settledBoardKeepsThousandsOfGenerationsSmall() throws InterruptedException {
+        // Still lifes and period-2 oscillators, as a soup leaves behind, on a grid of 128 KB
+        String[][] objects = {
+            {"OO", "OO"},
+            {".OO.", "O..O", ".OO."},
+            {"OOO"},
+            {".OOO", "OOO."},
+            {"OO..", "OO..", "..OO", "..OO"},
+        };
+        int rows = 1024, cols = 1024;
+        try (LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            Random random = new Random(8);
+            for (int y = 0; y < 320; y += 10) {
+                for (int x = 0; x < 320; x += 10) {
+                    PatternScannerTest.place(engine, x + random.nextInt(4), y + random.nextInt(4),
+                            objects[random.nextInt(objects.length)]);
+                }
+            }
+            engine.setHistoryBudget(1L << 30);
+            engine.step(10_000);
+            GridHistory history = engine.getHistory();
+            assertEquals(10_001, history.size());
+            long grid = GridHistory.keyframeBytes(rows, cols);
+            assertTrue(history.getMemoryBytes() < 8 * grid,
+                    "10,000 settled generations take " + (double) history.getMemoryBytes() / grid + " grids");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Snapshots and text grids written and read back, on sizes that leave a partial last word. */
+class GridSnapshotTest {
+
+    // 600 rows span three compressed blocks, the last one partial
+    private static final int[][] SIZES = {{1, 1}, {5, 64}, {37, 70}, {130, 200}, {600, 129}};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRestoresGridAndGeneration() throws IOException, InterruptedException {
+        GridStore.Factory[] storages = {HeapGridStore.FACTORY, OffHeapGridStore.direct(), OffHeapGridStore.mapped(dir)};
+        for (int[] size : SIZES) {
+            for (boolean compress : new boolean[] {false, true}) {
+                try (LifeEngine engine = soup(size[0], size[1], "B36/S23")) {
+                    engine.step(7);
+                    boolean[][] cells = ReferenceLife.read(engine);
+                    Path file = dir.resolve("grid" + GridSnapshot.EXTENSION);
+                    engine.saveSnapshot(file, compress);
+
+                    GridSnapshot.Header header = GridSnapshot.readHeader(file);
+                    assertEquals(size[0], header.getRows());
+                    assertEquals(size[1], header.getCols());
+                    assertEquals(7, header.getGeneration());
+                    assertEquals("B36/S23", header.getRule());
+                    assertEquals(compress, header.isCompressed());
+
+                    for (GridStore.Factory storage : storages) {
+                        try (LifeEngine loaded = new LifeEngine(3, 3, LifeEngine.RULE_LIFE, "B36/S23", 1, storage)) {
+                            loaded.load(file);
+                            String where = size[0] + "x" + size[1] + (compress ? " compressed" : "") + " on " + storage.name();
+                            assertArrayEquals(cells, ReferenceLife.read(loaded), where);
+                            assertEquals(7, loaded.getGenerationCount(), where);
+                            assertEquals(engine.getAliveCount(), loaded.getAliveCount(), where);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyBlocksTakeNoSpace() throws IOException {
+        try (LifeEngine engine = new LifeEngine(4 * GridSnapshot.BLOCK_ROWS, 4096, LifeEngine.RULE_LIFE, "B3/S23")) {
+            engine.setBit(4095, 4 * GridSnapshot.BLOCK_ROWS - 1, true);
+            Path file = dir.resolve("sparse" + GridSnapshot.EXTENSION);
+            engine.saveSnapshot(file, true);
+            assertTrue(Files.size(file) < 1024, "a lone cell compresses to " + Files.size(file) + " bytes");
+
+            try (LifeEngine loaded = new LifeEngine(3, 3, LifeEngine.RULE_LIFE, "B3/S23")) {
+                loaded.load(file);
+                assertEquals(1, loaded.getAliveCount());
+                assertTrue(loaded.getBit(4095, 4 * GridSnapshot.BLOCK_ROWS - 1));
+            }
+        }
+    }
+
+    @Test
+    void damagedRowsAreRejected() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            try (LifeEngine engine = soup(130, 200, "B3/S23")) {
+                Path file = dir.resolve("damaged" + GridSnapshot.EXTENSION);
+                engine.saveSnapshot(file, compress);
+                byte[] bytes = Files.readAllBytes(file);
+                bytes[bytes.length - 20] ^= 0x10;
+                Files.write(file, bytes);
+                try (LifeEngine loaded = new LifeEngine(3, 3, LifeEngine.RULE_LIFE, "B3/S23")) {
+                    assertThrows(IOException.class, () -> loaded.load(file));
+                }
+            }
+        }
+    }
+
+    @Test
+    void textRestoresGrid() throws IOException {
+        for (int[] size : SIZES) {
+            try (LifeEngine engine = soup(size[0], size[1], "B3/S23")) {
+                boolean[][] cells = ReferenceLife.read(engine);
+                Path file = dir.resolve("grid.txt");
+                engine.saveAsText(file);
+                assertNull(GridSnapshot.readHeader(file), "text is not taken for a snapshot");
+
+                try (LifeEngine loaded = new LifeEngine(3, 3, LifeEngine.RULE_LIFE, "B3/S23")) {
+                    loaded.load(file);
+                    assertArrayEquals(cells, ReferenceLife.read(loaded));
+                }
+            }
+        }
+    }
+
+    private static LifeEngine soup(int rows, int cols, String rule) {
+        LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, rule);
+        engine.randomize(0.4, rows * 31L + cols);
+        return engine;
+    }
+}
@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Hashlife against a plain step over the live cells of an unbounded plane. */
+class HashlifeEngineTest {
+
+    // A soup in the middle of a window it cannot leave in the generations run
+    private static final int SIZE = 256;
+    private static final int GENERATIONS = 96;
+
+    @Test
+    void jumpsMatchPlainStep() {
+        check(LifeRule.CONWAY, HashlifeEngine.DEFAULT_MAX_NODES, false);
+        check(LifeRule.parse("B36/S23"), HashlifeEngine.DEFAULT_MAX_NODES, false);
+    }
+
+    @Test
+    void singleGenerationsMatchPlainStep() {
+        check(LifeRule.CONWAY, HashlifeEngine.DEFAULT_MAX_NODES, true);
+    }
+
+    @Test
+    void smallestCacheCollectsMidJumpAndStillMatches() {
+        HashlifeEngine engine = check(LifeRule.CONWAY, 1, false);
+        assertTrue(engine.getEvictions() > 0, "the cache was never collected");
+    }
+
+    @Test
+    void cellsLeavingTheWindowAreDroppedNotWrapped() {
+        // A glider heading down and right from the corner of a 16x16 window
+        GridStore grid = HeapGridStore.FACTORY.create(16, 16);
+        int[][] glider = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}};
+        for (int[] c : glider) grid.set(c[0] + 8, c[1] + 8, true);
+        HashlifeEngine engine = new HashlifeEngine(LifeRule.CONWAY);
+        engine.load(grid);
+        engine.advance(64);
+        engine.store(grid);
+        assertEquals(5, engine.getPopulation());
+        assertEquals(Set.of(), ReferenceLife.live(grid));
+    }
+
+    @Test
+    void birthOnEmptyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HashlifeEngine(LifeRule.parse("B03/S23")));
+    }
+
+    private static HashlifeEngine check(LifeRule rule, int maxNodes, boolean single) {
+        Set<Long> cells = ReferenceLife.soup(100, 100, 56, 56, 0.35, 3);
+        GridStore grid = HeapGridStore.FACTORY.create(SIZE, SIZE);
+        for (long c : cells) grid.set((int) ReferenceLife.x(c), (int) ReferenceLife.y(c), true);
+        for (int g = 0; g < GENERATIONS; g++) cells = ReferenceLife.step(cells, rule);
+
+        HashlifeEngine engine = new HashlifeEngine(rule, maxNodes);
+        engine.load(grid);
+        if (single) {
+            for (int g = 0; g < GENERATIONS; g++) engine.advance(1);
+        } else {
+            engine.advance(GENERATIONS);
+        }
+        engine.store(grid);
+        assertEquals(GENERATIONS, engine.getGeneration());
+        assertEquals(cells.size(), engine.getPopulation(), rule.getName());
+        assertEquals(cells, ReferenceLife.live(grid), rule.getName());
+        return engine;
+    }
+}
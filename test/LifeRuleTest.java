@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Parsing, the scalar table, and the word circuits against the scalar table. */
+class LifeRuleTest {
+
+    private static final String[] RULES = {"B3/S23", "B2/S7", "B36/S23", "B3678/S34678", "B1357/S1357", "B/S012345678",
+            "B12345678/S", "B0/S8"};
+
+    @Test
+    void parsesEveryNotation() {
+        assertEquals("B3/S23", LifeRule.parse("B3/S23").getName());
+        assertEquals("B36/S23", LifeRule.parse("b36s23").getName());
+        assertEquals("B36/S23", LifeRule.parse("23/36").getName());
+        assertEquals("B2/S7", LifeRule.parse(LifeEngine.VARIANT_B2S7).getName());
+        assertEquals(LifeRule.CONWAY, LifeRule.parse(LifeEngine.VARIANT_STANDARD));
+        assertEquals("B/S", LifeRule.parse("B/S").getName());
+        for (String bad : new String[] {"", "B9/S23", "Life", "B3/S23/C2", "S23"}) {
+            assertThrows(IllegalArgumentException.class, () -> LifeRule.parse(bad), bad);
+        }
+        assertThrows(IllegalArgumentException.class, () -> LifeRule.parse(null));
+    }
+
+    @Test
+    void tableFollowsBirthAndSurvivalSets() {
+        LifeRule highLife = LifeRule.parse("B36/S23");
+        for (int n = 0; n <= 8; n++) {
+            assertEquals(n == 3 || n == 6, highLife.next(false, n), "birth on " + n);
+            assertEquals(n == 2 || n == 3, highLife.next(true, n), "survival on " + n);
+        }
+        assertTrue(LifeRule.parse("B0/S8").birthOnEmpty());
+        assertFalse(LifeRule.CONWAY.birthOnEmpty());
+    }
+
+    @Test
+    void wordCircuitMatchesTable() {
+        Random random = new Random(8);
+        for (String text : RULES) {
+            LifeRule rule = LifeRule.parse(text);
+            for (int k = 0; k < 2000; k++) {
+                long s0 = random.nextLong(), s1 = random.nextLong(), s2 = random.nextLong(), m = random.nextLong();
+                // Counts stop at 8: the high plane is only set on an otherwise zero count
+                long s3 = random.nextLong() & ~s0 & ~s1 & ~s2;
+                long next = rule.apply(s0, s1, s2, s3, m);
+                for (int b = 0; b < 64; b++) {
+                    int count = (int) ((s0 >>> b & 1) | (s1 >>> b & 1) << 1 | (s2 >>> b & 1) << 2 | (s3 >>> b & 1) << 3);
+                    boolean expected = rule.next((m >>> b & 1) != 0, count);
+                    assertEquals(expected, (next >>> b & 1) != 0, text + ", count " + count);
+                }
+            }
+        }
+    }
+
+    @Test
+    void engineRunsAnyRuleLikeThePerCellStep() throws InterruptedException {
+        for (String text : RULES) {
+            LifeRule rule = LifeRule.parse(text);
+            try (LifeEngine engine = new LifeEngine(37, 70, LifeEngine.RULE_LIFE, text, 2)) {
+                engine.randomize(0.3, 12);
+                boolean[][] cells = ReferenceLife.read(engine);
+                for (int g = 0; g < 30; g++) {
+                    engine.step();
+                    cells = ReferenceLife.step(cells, rule);
+                    assertArrayEquals(cells, ReferenceLife.read(engine), text + ", generation " + (g + 1));
+                }
+            }
+        }
+    }
+}
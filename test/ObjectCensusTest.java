@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/** Labelling and codes against a flood fill over a boolean grid, and codes against Catagolue's. */
+class ObjectCensusTest {
+
+    @Test
+    void codesMatchApgcodes() {
+        assertEquals("4_33", code("OO", "OO"));
+        assertEquals("6_696", code(".OO.", "O..O", ".OO."));
+        assertEquals("7_2596", code(".OO.", "O..O", ".O.O", "..O."));
+        assertEquals("5_253", code("OO.", "O.O", ".O."));
+        assertEquals("6_356", code("OO.", "O.O", ".OO"));
+        assertEquals("4_252", code(".O.", "O.O", ".O."));
+        assertEquals("8_6996", code(".OO.", "O..O", "O..O", ".OO."));
+        assertEquals("3_7", code("OOO"));
+    }
+
+    @Test
+    void longZeroRunsUseBase36() {
+        // y and one base-36 digit cover 4 to 39 zero columns; longer runs continue. Short
+        // gaps are left out: standing the pair on end encodes them shorter
+        assertEquals("2_1yg1", code(gap(20)));
+        assertEquals("2_1yv1", code(gap(35)));
+        assertEquals("2_1yw1", code(gap(36)));
+        assertEquals("2_1yz1", code(gap(39)));
+        assertEquals("2_1yz01", code(gap(40)));
+        assertEquals("2_1yzy21", code(gap(45)));
+    }
+
+    @Test
+    void labellingMatchesFloodFill() throws InterruptedException {
+        PatternCatalog empty = new PatternCatalog(LifeRule.CONWAY);
+        // Bands of 64 rows, joined on one thread; a torus also joins its edges
+        for (int threads : new int[] {1, 3}) {
+            try (StepTeam team = threads == 1 ? null : new StepTeam(threads, "test");
+                 LifeEngine engine = new LifeEngine(200, 150, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+                engine.randomize(0.35, 21);
+                engine.step(300);
+                boolean[][] cells = ReferenceLife.read(engine);
+                for (boolean wrap : new boolean[] {true, false}) {
+                    ObjectCensus.Result result = new ObjectCensus(empty, team).take(engine.getGrid(), wrap);
+                    Map<String, Long> expected = floodFill(cells, wrap);
+                    assertEquals(expected, result.getUnknown(), threads + " threads, wrap " + wrap);
+                    assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), result.getObjectCount());
+                    assertEquals(ReferenceLife.count(cells), result.getCellCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    void objectsAcrossSeamsAndEdgesAreWhole() throws InterruptedException {
+        GridStore grid = HeapGridStore.FACTORY.create(130, 100);
+        // A block on all four corners of the torus, a beehive across the first band seam,
+        // and a glider across the column edge
+        int[][] block = {{99, 129}, {0, 129}, {99, 0}, {0, 0}};
+        for (int[] c : block) grid.set(c[0], c[1], true);
+        int[][] beehive = {{41, 62}, {42, 62}, {40, 63}, {43, 63}, {41, 64}, {42, 64}};
+        for (int[] c : beehive) grid.set(c[0], c[1], true);
+        int[][] glider = {{99, 90}, {0, 91}, {98, 92}, {99, 92}, {0, 92}};
+        for (int[] c : glider) grid.set(c[0], c[1], true);
+
+        ObjectCensus census = new ObjectCensus(PatternCatalog.builtIn(LifeRule.CONWAY), null);
+        ObjectCensus.Result torus = census.take(grid, true);
+        assertEquals(Map.of("Block", 1L, "Beehive", 1L, "Glider", 1L), torus.getKnown());
+        assertEquals(3, torus.getObjectCount());
+
+        // On a plane the corner block is four cells and the glider three pieces
+        ObjectCensus.Result plane = census.take(grid, false);
+        assertEquals(1L, plane.getKnown().get("Beehive"));
+        assertEquals(8, plane.getObjectCount());
+    }
+
+    private static String[] gap(int zeros) {
+        return new String[] {"O" + ".".repeat(zeros) + "O"};
+    }
+
+    private static String code(String... rows) {
+        int width = 0;
+        long[] bits = new long[rows.length];
+        for (int r = 0; r < rows.length; r++) {
+            width = Math.max(width, rows[r].length());
+            for (int c = 0; c < rows[r].length(); c++) {
+                if (rows[r].charAt(c) == 'O') bits[r] |= 1L << c;
+            }
+        }
+        return ObjectCensus.canonicalCode(bits, width);
+    }
+
+    /** Components by flood fill, 8-connected, each drawn at the coordinates the fill reached it by. */
+    private static Map<String, Long> floodFill(boolean[][] cells, boolean wrap) {
+        int rows = cells.length;
+        int cols = cells[0].length;
+        boolean[][] seen = new boolean[rows][cols];
+        Map<String, Long> codes = new HashMap<>();
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (!cells[y][x] || seen[y][x]) continue;
+                List<int[]> object = new ArrayList<>();
+                ArrayDeque<int[]> queue = new ArrayDeque<>();
+                queue.add(new int[] {x, y});
+                seen[y][x] = true;
+                while (!queue.isEmpty()) {
+                    int[] c = queue.poll();
+                    object.add(c);
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int nx = c[0] + dx, ny = c[1] + dy;
+                            int wx = Math.floorMod(nx, cols), wy = Math.floorMod(ny, rows);
+                            if (!wrap && (nx != wx || ny != wy)) continue;
+                            if (!cells[wy][wx] || seen[wy][wx]) continue;
+                            seen[wy][wx] = true;
+                            queue.add(new int[] {nx, ny});
+                        }
+                    }
+                }
+                codes.merge(code(object), 1L, Long::sum);
+            }
+        }
+        return codes;
+    }
+
+    private static String code(List<int[]> object) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int[] c : object) {
+            minX = Math.min(minX, c[0]);
+            minY = Math.min(minY, c[1]);
+            maxX = Math.max(maxX, c[0]);
+            maxY = Math.max(maxY, c[1]);
+        }
+        int width = maxX - minX + 1, height = maxY - minY + 1;
+        if (width > 64 || height > 64) return "large_" + width + "x" + height + "_" + object.size();
+        long[] bits = new long[height];
+        for (int[] c : object) bits[c[1] - minY] |= 1L << (c[0] - minX);
+        return ObjectCensus.canonicalCode(bits, width);
+    }
+}
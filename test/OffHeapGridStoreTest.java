@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Direct and mapped grids against heap grids and the per-cell torus step. */
+class OffHeapGridStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void engineMatchesPerCellTorus() throws InterruptedException {
+        for (GridStore.Factory storage : new GridStore.Factory[] {OffHeapGridStore.direct(), OffHeapGridStore.mapped(dir)}) {
+            for (int threads : new int[] {1, 2}) {
+                try (LifeEngine engine = new LifeEngine(100, 65, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD,
+                        threads, storage)) {
+                    engine.randomize(0.3, 23);
+                    boolean[][] cells = ReferenceLife.read(engine);
+                    for (int g = 0; g < 60; g++) {
+                        engine.step();
+                        cells = ReferenceLife.step(cells, LifeRule.CONWAY);
+                        assertArrayEquals(cells, ReferenceLife.read(engine), storage.name() + ", generation " + (g + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void accessorsMatchHeapGrid() {
+        // 70 columns: a partial last word and a partial last byte
+        for (GridStore.Factory storage : new GridStore.Factory[] {OffHeapGridStore.direct(), OffHeapGridStore.mapped(dir)}) {
+            try (GridStore off = storage.create(9, 70);
+                 GridStore heap = HeapGridStore.FACTORY.create(9, 70)) {
+                Random random = new Random(4);
+                for (int k = 0; k < 300; k++) {
+                    int x = random.nextInt(70), y = random.nextInt(9);
+                    boolean alive = random.nextBoolean();
+                    off.set(x, y, alive);
+                    heap.set(x, y, alive);
+                }
+                off.orWord(3, 1, 0x3F);
+                heap.orWord(3, 1, 0x3F);
+                off.writeWord(5, 0, -1L);
+                heap.writeWord(5, 0, -1L);
+                assertArrayEquals(ReferenceLife.read(heap), ReferenceLife.read(off), storage.name());
+                assertEquals(heap.countAlive(), off.countAlive());
+
+                // Whole rows through the packed byte layout, stray bits past cols dropped
+                ByteBuffer row = ByteBuffer.allocate(off.getRowBytes());
+                heap.readRow(5, row);
+                row.flip();
+                off.writeRow(7, row.put(row.limit() - 1, (byte) 0xFF));
+                assertEquals(0, off.readWord(7, 1) >>> 6, "bits past cols");
+
+                GridStore copy = storage.create(9, 70);
+                copy.copyFrom(off);
+                assertArrayEquals(ReferenceLife.read(off), ReferenceLife.read(copy));
+                copy.clear();
+                assertEquals(0, copy.countAlive());
+                copy.close();
+            }
+        }
+    }
+
+    @Test
+    void closeFreesDirectMemoryAndDeletesTheMappedFile() throws Exception {
+        BufferPoolMXBean direct = pool("direct");
+        long before = direct.getMemoryUsed();
+        GridStore grid = OffHeapGridStore.direct().create(1024, 1024);
+        assertTrue(direct.getMemoryUsed() - before >= 1024 * 1024 / 8);
+        grid.close();
+        assertTrue(direct.getMemoryUsed() - before < 1024 * 1024 / 8, "direct buffers still held after close");
+        assertThrows(NullPointerException.class, () -> grid.get(0, 0));
+        grid.close();
+
+        BufferPoolMXBean mapped = pool("mapped");
+        long mappedBefore = mapped.getCount();
+        GridStore file = OffHeapGridStore.mapped(dir).create(64, 64);
+        assertEquals(mappedBefore + 1, mapped.getCount());
+        file.close();
+        assertEquals(mappedBefore, mapped.getCount());
+        try (var files = Files.list(dir)) {
+            assertFalse(files.findAny().isPresent(), "scratch file left behind");
+        }
+    }
+
+    private static BufferPoolMXBean pool(String name) {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(p -> p.getName().equals(name)).findFirst().orElseThrow();
+    }
+}
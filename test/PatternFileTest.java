@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** RLE and .cells written and read back, cropped to the live cells, on every kind of storage. */
+class PatternFileTest {
+
+    private static final int[][] SIZES = {{1, 1}, {5, 64}, {37, 70}, {130, 200}};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rleRestoresPattern() throws IOException {
+        for (int[] size : SIZES) {
+            patternRoundTrip(soup(size[0], size[1], HeapGridStore.FACTORY), dir.resolve("pattern" + PatternFile.RLE));
+        }
+    }
+
+    @Test
+    void cellsRestoresPattern() throws IOException {
+        for (int[] size : SIZES) {
+            patternRoundTrip(soup(size[0], size[1], HeapGridStore.FACTORY), dir.resolve("pattern" + PatternFile.CELLS));
+        }
+    }
+
+    @Test
+    void runsEndingAtTheLastWordStayInsideTheRow() throws IOException {
+        // Rows a whole number of words wide, so the word after the last cell is the next row's, or none
+        for (GridStore.Factory storage : new GridStore.Factory[] {OffHeapGridStore.direct(), OffHeapGridStore.mapped(dir)}) {
+            for (String extension : new String[] {PatternFile.RLE, PatternFile.CELLS}) {
+                for (int cols : new int[] {64, 128}) {
+                    try (LifeEngine engine = soup(128, cols, storage)) {
+                        engine.setBit(cols - 1, 127, true);
+                        engine.setBit(cols - 1, 0, true);
+                        engine.setBit(0, 127, true);
+                        patternRoundTrip(engine, dir.resolve("edge" + extension));
+                    }
+                    try (LifeEngine engine = new LifeEngine(128, cols, LifeEngine.RULE_LIFE, "B3/S23", 1, storage)) {
+                        // A lone cell in the last column of the last row
+                        engine.setBit(cols - 1, 127, true);
+                        patternRoundTrip(engine, dir.resolve("corner" + extension));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyGridSavesAsEmptyPattern() throws IOException {
+        try (LifeEngine engine = new LifeEngine(20, 30, LifeEngine.RULE_LIFE, "B3/S23")) {
+            for (String extension : new String[] {PatternFile.RLE, PatternFile.CELLS}) {
+                Path file = dir.resolve("empty" + extension);
+                if (extension.equals(PatternFile.RLE)) engine.saveAsRle(file);
+                else engine.saveAsCells(file);
+                engine.loadPattern(file);
+                assertEquals(0, engine.getAliveCount());
+            }
+        }
+    }
+
+    /** Patterns are cropped to their live cells, so they are loaded back at the crop's corner. */
+    private static void patternRoundTrip(LifeEngine engine, Path file) throws IOException {
+        try (engine) {
+            int rows = engine.getRows();
+            int cols = engine.getCols();
+            boolean[][] cells = ReferenceLife.read(engine);
+            int minX = cols, minY = rows;
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    if (cells[y][x]) {
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                    }
+                }
+            }
+            if (file.toString().endsWith(PatternFile.RLE)) engine.saveAsRle(file);
+            else engine.saveAsCells(file);
+
+            try (LifeEngine loaded = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, "B3/S23")) {
+                PatternFile.Info info = loaded.loadPattern(file, minX == cols ? 0 : minX, minY == rows ? 0 : minY);
+                assertArrayEquals(cells, ReferenceLife.read(loaded), file.getFileName() + " " + rows + "x" + cols);
+                if (file.toString().endsWith(PatternFile.RLE)) assertEquals("B3/S23", info.getRule());
+            }
+        }
+    }
+
+    private static LifeEngine soup(int rows, int cols, GridStore.Factory storage) {
+        LifeEngine engine = new LifeEngine(rows, cols, LifeEngine.RULE_LIFE, "B3/S23", 1, storage);
+        engine.randomize(0.4, rows * 31L + cols);
+        return engine;
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The single indexed pass against every template tried at every window, each object
+ * counted once by the live cells it matched.
+ */
+class PatternScannerTest {
+
+    @Test
+    void onePassFindsWhatEveryWindowFinds() throws InterruptedException {
+        List<LifePattern> patterns = new ArrayList<>();
+        for (String name : LifeEngine.patternNames()) patterns.add(LifeEngine.createPattern(name));
+        PatternScanner scanner = new PatternScanner(patterns);
+
+        // 70 columns wrap inside a word, 150 cross a word boundary
+        long found = 0;
+        for (int cols : new int[] {70, 150}) {
+            try (LifeEngine engine = new LifeEngine(80, cols, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+                engine.randomize(0.35, cols);
+                for (int g = 1; g <= 200; g++) {
+                    engine.step();
+                    if (g % 40 != 0) continue;
+                    GridStore previous = engine.getPreviousGrid();
+                    GridStore current = engine.getGrid();
+                    PatternScanner.Matches matches = new PatternScanner.Matches();
+                    scanner.scan(previous, current, 0, current.getRows(), 0, current.getWords(), matches);
+
+                    long[] counts = new long[patterns.size()];
+                    for (int m = 0; m < matches.size(); m++) counts[scanner.patternOf(matches.template(m))]++;
+                    found += matches.size();
+                    for (int p = 0; p < patterns.size(); p++) {
+                        assertEquals(everyWindow(patterns.get(p), previous, current), counts[p],
+                                patterns.get(p).getName() + " on " + cols + " columns, generation " + g);
+                    }
+                }
+            }
+        }
+        assertTrue(found > 100, "the soups settled into objects");
+    }
+
+    @Test
+    void placedObjectsAreCountedOnce() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(60, 100, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            place(engine, 5, 5, "OO", "OO");
+            place(engine, 20, 5, "OO", "OO");
+            place(engine, 40, 5, ".OO.", "O..O", ".OO.");
+            place(engine, 60, 5, ".O.", "O.O", "O.O", ".O.");
+            place(engine, 5, 30, "OOO");
+            place(engine, 20, 30, "O", "O", "O");
+            place(engine, 60, 30, ".O.", "..O", "OOO");
+            engine.step();
+            Map<String, Long> counts = engine.detectPatterns(LifeEngine.patternNames());
+            assertEquals(2L, counts.get("Block"));
+            assertEquals(2L, counts.get("Beehive"));
+            assertEquals(2L, counts.get("Blinker"));
+            assertEquals(1L, counts.get("Glider"));
+        }
+    }
+
+    static void place(LifeEngine engine, int x, int y, String... rows) {
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < rows[r].length(); c++) {
+                if (rows[r].charAt(c) == 'O') engine.setBit(x + c, y + r, true);
+            }
+        }
+    }
+
+    /** Tries each orientation at each window and counts the distinct sets of live cells matched. */
+    private static long everyWindow(LifePattern pattern, GridStore previous, GridStore current) {
+        int rows = current.getRows();
+        int cols = current.getCols();
+        Set<Set<Long>> objects = new HashSet<>();
+        for (PatternTemplate t : pattern.getCompiledTemplates()) {
+            int maxY = t.wraps ? rows : rows - t.height + 1;
+            int maxX = t.wraps ? cols : cols - t.width + 1;
+            for (int y = 0; y < maxY; y++) {
+                for (int x = 0; x < maxX; x++) {
+                    if (!t.matchesAt(previous, current, x, y)) continue;
+                    Set<Long> cells = new HashSet<>();
+                    for (int r = 0; r < t.height; r++) {
+                        for (int c = 0; c < t.width; c++) {
+                            if ((t.alive[r] >>> c & 1) != 0) {
+                                cells.add(ReferenceLife.cell((x + c) % cols, (y + r) % rows));
+                            }
+                        }
+                    }
+                    objects.add(cells);
+                }
+            }
+        }
+        return objects.size();
+    }
+}
@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+/** Orientations against the eight symmetries applied cell by cell, and gliders in every heading. */
+class PatternTemplateTest {
+
+    private static final int[][] SYMMETRIES = {
+        {1, 0, 0, 1}, {0, -1, 1, 0}, {-1, 0, 0, -1}, {0, 1, -1, 0},
+        {-1, 0, 0, 1}, {1, 0, 0, -1}, {0, 1, 1, 0}, {0, -1, -1, 0}
+    };
+
+    @Test
+    void orientTransformsEveryCellAboutTheAnchor() {
+        // R-pentomino, with no symmetry of its own, as a still and as an evolving template
+        long[] r = {0b110, 0b011, 0b010};
+        List<PatternTemplate> templates = List.of(
+                PatternTemplate.still(-1, -2, 3, true, r),
+                PatternTemplate.evolving(0, 0, 3, false, new long[] {0b111}, 1, 1, r));
+        List<PatternTemplate> oriented = PatternTemplate.orient(templates);
+        assertEquals(16, oriented.size());
+        for (PatternTemplate t : templates) {
+            for (int[] m : SYMMETRIES) {
+                String image = cells(t, m);
+                assertTrue(oriented.stream().anyMatch(o -> cells(o, SYMMETRIES[0]).equals(image)), image);
+            }
+        }
+    }
+
+    @Test
+    void shippedPatternsKeepOnlyDistinctOrientations() {
+        for (String name : LifeEngine.patternNames()) {
+            LifePattern pattern = LifeEngine.createPattern(name);
+            // Distinct up to translation: orient() drops symmetric copies whatever their anchor
+            Set<String> shapes = new HashSet<>();
+            for (PatternTemplate t : pattern.getTemplates()) {
+                for (int[] m : SYMMETRIES) shapes.add(shape(t, m));
+            }
+            Set<String> compiled = new HashSet<>();
+            for (PatternTemplate t : pattern.getCompiledTemplates()) compiled.add(shape(t, SYMMETRIES[0]));
+            assertEquals(shapes, compiled, name);
+            assertEquals(shapes.size(), pattern.getCompiledTemplates().size(), name);
+        }
+        assertEquals(1, LifeEngine.createPattern("Block").getCompiledTemplates().size());
+        assertEquals(2, LifeEngine.createPattern("Beehive").getCompiledTemplates().size());
+    }
+
+    @Test
+    void glidersAreFoundInAllFourHeadings() throws InterruptedException {
+        try (LifeEngine engine = new LifeEngine(100, 100, LifeEngine.RULE_LIFE, LifeEngine.VARIANT_STANDARD, 1)) {
+            // Heading south-east, then mirrored to south-west, north-east and north-west
+            String[] southEast = {".O.", "..O", "OOO"};
+            PatternScannerTest.place(engine, 20, 20, southEast);
+            PatternScannerTest.place(engine, 70, 20, ".O.", "O..", "OOO");
+            PatternScannerTest.place(engine, 20, 70, "OOO", "..O", ".O.");
+            PatternScannerTest.place(engine, 70, 70, "OOO", "O..", ".O.");
+            LifePattern glider = LifeEngine.createPattern("Glider");
+            for (int g = 1; g <= 8; g++) {
+                engine.step();
+                assertEquals(4L, engine.detectPatterns(List.of("Glider")).get("Glider"), "generation " + g);
+                // And through the per-anchor check the pattern classes use
+                int anchors = 0;
+                for (int y = 0; y < 100; y++) {
+                    for (int x = 0; x < 100; x++) {
+                        if (PatternTemplate.matchesAnchor(glider, engine.getPreviousGrid(), engine.getGrid(), y, x)) anchors++;
+                    }
+                }
+                assertTrue(anchors >= 4, "generation " + g);
+            }
+        }
+    }
+
+    /** The template's cells relative to its anchor, moved by the symmetry: current care and live, then previous. */
+    private static String cells(PatternTemplate t, int[] m) {
+        List<Set<String>> sets = new ArrayList<>();
+        sets.add(set(points(t.care, t.width, t.originX, t.originY, m), 0, 0));
+        sets.add(set(points(t.alive, t.width, t.originX, t.originY, m), 0, 0));
+        if (t.isEvolving()) {
+            sets.add(set(points(t.prevCare, t.prevWidth, t.originX + t.prevDx, t.originY + t.prevDy, m), 0, 0));
+            sets.add(set(points(t.prevAlive, t.prevWidth, t.originX + t.prevDx, t.originY + t.prevDy, m), 0, 0));
+        }
+        return sets.toString();
+    }
+
+    /** As cells(), translated so the current window's top-left is at the origin. */
+    private static String shape(PatternTemplate t, int[] m) {
+        List<Set<String>> sets = new ArrayList<>();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        for (int[] c : points(t.care, t.width, t.originX, t.originY, m)) {
+            minX = Math.min(minX, c[0]);
+            minY = Math.min(minY, c[1]);
+        }
+        sets.add(set(points(t.care, t.width, t.originX, t.originY, m), minX, minY));
+        sets.add(set(points(t.alive, t.width, t.originX, t.originY, m), minX, minY));
+        if (t.isEvolving()) {
+            sets.add(set(points(t.prevCare, t.prevWidth, t.originX + t.prevDx, t.originY + t.prevDy, m), minX, minY));
+            sets.add(set(points(t.prevAlive, t.prevWidth, t.originX + t.prevDx, t.originY + t.prevDy, m), minX, minY));
+        }
+        return t.wraps + " " + sets;
+    }
+
+    private static List<int[]> points(long[] rows, int width, int ox, int oy, int[] m) {
+        List<int[]> points = new ArrayList<>();
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < width; c++) {
+                if ((rows[r] >>> c & 1) == 0) continue;
+                int x = ox + c, y = oy + r;
+                points.add(new int[] {m[0] * x + m[1] * y, m[2] * x + m[3] * y});
+            }
+        }
+        return points;
+    }
+
+    private static Set<String> set(List<int[]> points, int dx, int dy) {
+        Set<String> set = new TreeSet<>();
+        for (int[] p : points) set.add((p[0] - dx) + "," + (p[1] - dy));
+        return set;
+    }
+}
@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The CSV log: a row per generation, and the log closed or replaced while a run writes to it. */
+class PipelineMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowFollowsEachGeneration() throws IOException {
+        Path file = dir.resolve("metrics.csv");
+        try (PipelineMetrics metrics = new PipelineMetrics()) {
+            metrics.logCsv(file);
+            for (long g = 1; g <= 3; g++) {
+                metrics.phase(PipelineMetrics.STEP, 1000 * g);
+                metrics.endGeneration(g, 10 * g, 2, 4, 1.5, 64);
+            }
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).startsWith("generation,step_ns,"));
+        assertEquals("3,3000,0,0,0,0,0,0,30,2,1.500,64", lines.get(3));
+    }
+
+    @Test
+    void closingWhileSteppingLosesNoGeneration() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread stepping = new Thread(() -> {
+            try {
+                for (long g = 1; g <= 200_000; g++) metrics.endGeneration(g, g, 1, 1, 1, 0);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        stepping.start();
+        for (int k = 0; stepping.isAlive(); k++) {
+            metrics.logCsv(dir.resolve("metrics" + (k & 3) + ".csv"));
+            metrics.close();
+        }
+        stepping.join();
+        assertNull(failure.get());
+        metrics.close();
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Plain reference implementations the engines are tested against: a boolean grid
+ * stepped one cell at a time, the way life2 did before the word kernel, and an
+ * unbounded plane kept as the set of its live cells, each packed by cell(x, y).
+ */
+final class ReferenceLife {
+
+    private ReferenceLife() { }
+
+    /** One generation on a torus, counting each cell's eight neighbours. */
+    static boolean[][] step(boolean[][] cells, LifeRule rule) {
+        int rows = cells.length;
+        int cols = cells[0].length;
+        boolean[][] next = new boolean[rows][cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                next[y][x] = rule.next(cells[y][x], countNeighbors(cells, x, y));
+            }
+        }
+        return next;
+    }
+
+    static int countNeighbors(boolean[][] cells, int x, int y) {
+        int rows = cells.length;
+        int cols = cells[0].length;
+        int n = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && cells[Math.floorMod(y + dy, rows)][Math.floorMod(x + dx, cols)]) n++;
+            }
+        }
+        return n;
+    }
+
+    static boolean[][] read(LifeEngine engine) {
+        return read(engine.getGrid());
+    }
+
+    static boolean[][] read(GridStore grid) {
+        boolean[][] cells = new boolean[grid.getRows()][grid.getCols()];
+        for (int y = 0; y < cells.length; y++) {
+            for (int x = 0; x < cells[0].length; x++) cells[y][x] = grid.get(x, y);
+        }
+        return cells;
+    }
+
+    static void write(boolean[][] cells, GridStore grid) {
+        for (int y = 0; y < cells.length; y++) {
+            for (int x = 0; x < cells[0].length; x++) grid.set(x, y, cells[y][x]);
+        }
+    }
+
+    static long count(boolean[][] cells) {
+        long n = 0;
+        for (boolean[] row : cells) {
+            for (boolean c : row) if (c) n++;
+        }
+        return n;
+    }
+
+    /** One generation of an unbounded plane. */
+    static Set<Long> step(Set<Long> cells, LifeRule rule) {
+        Map<Long, Integer> neighbours = new HashMap<>();
+        for (long c : cells) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx != 0 || dy != 0) neighbours.merge(cell(x(c) + dx, y(c) + dy), 1, Integer::sum);
+                }
+            }
+        }
+        Set<Long> next = new HashSet<>();
+        for (Map.Entry<Long, Integer> e : neighbours.entrySet()) {
+            if (rule.next(cells.contains(e.getKey()), e.getValue())) next.add(e.getKey());
+        }
+        return next;
+    }
+
+    /** Random live cells in the box of width x height with its top-left corner at (x0, y0). */
+    static Set<Long> soup(int x0, int y0, int width, int height, double density, long seed) {
+        Random random = new Random(seed);
+        Set<Long> cells = new HashSet<>();
+        for (int y = y0; y < y0 + height; y++) {
+            for (int x = x0; x < x0 + width; x++) {
+                if (random.nextDouble() < density) cells.add(cell(x, y));
+            }
+        }
+        return cells;
+    }
+
+    static Set<Long> live(GridStore grid) {
+        Set<Long> cells = new HashSet<>();
+        for (int y = 0; y < grid.getRows(); y++) {
+            for (int x = 0; x < grid.getCols(); x++) {
+                if (grid.get(x, y)) cells.add(cell(x, y));
+            }
+        }
+        return cells;
+    }
+
+    static long cell(long x, long y) {
+        return (y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    static long x(long cell) { return (int) cell; }
+    static long y(long cell) { return cell >> 32; }
+}
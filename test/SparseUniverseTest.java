@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** The chunked plane against a plain step over the live cells of an unbounded plane. */
+class SparseUniverseTest {
+
+    @Test
+    void soupMatchesPlainStep() throws InterruptedException {
+        for (int threads : new int[] {1, 4}) {
+            try (StepTeam team = threads == 1 ? null : new StepTeam(threads, "test")) {
+                // Across chunk corners and negative coordinates, with enough chunks for the team
+                Set<Long> cells = ReferenceLife.soup(-150, -100, 300, 200, 0.25, 5);
+                SparseUniverse universe = universe(cells, LifeRule.CONWAY, team);
+                for (int g = 1; g <= 60; g++) {
+                    universe.step();
+                    cells = ReferenceLife.step(cells, LifeRule.CONWAY);
+                    if (g % 15 == 0) assertSame(cells, universe, threads + " threads, generation " + g);
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherRulesMatchPlainStep() throws InterruptedException {
+        LifeRule highLife = LifeRule.parse("B36/S23");
+        Set<Long> cells = ReferenceLife.soup(-70, -70, 140, 140, 0.3, 9);
+        SparseUniverse universe = universe(cells, highLife, null);
+        for (int g = 1; g <= 80; g++) {
+            universe.step();
+            cells = ReferenceLife.step(cells, highLife);
+        }
+        assertSame(cells, universe, "B36/S23");
+    }
+
+    @Test
+    void gliderTravelsThroughChunksItLeavesBehind() throws InterruptedException {
+        // Heading up and left, into negative chunk coordinates
+        Set<Long> glider = Set.of(ReferenceLife.cell(0, 0), ReferenceLife.cell(1, 0), ReferenceLife.cell(2, 0),
+                ReferenceLife.cell(0, 1), ReferenceLife.cell(1, 2));
+        SparseUniverse universe = universe(glider, LifeRule.CONWAY, null);
+        universe.step(4096);
+        assertEquals(5, universe.getPopulation());
+        assertArrayEquals(new long[] {-1024, -1024, -1022, -1022}, universe.bounds());
+        assertTrue(universe.getChunkCount() <= 4, "empty chunks are released");
+        for (long c : glider) {
+            assertTrue(universe.get(ReferenceLife.x(c) - 1024, ReferenceLife.y(c) - 1024));
+        }
+    }
+
+    @Test
+    void setClearAndStoreRoundTrip() throws InterruptedException {
+        SparseUniverse universe = new SparseUniverse(LifeRule.CONWAY, null);
+        universe.set(-1, -1, true);
+        universe.set(63, 64, true);
+        universe.set(-65, 0, true);
+        assertEquals(3, universe.getPopulation());
+        assertEquals(3, universe.getChunkCount());
+        universe.set(63, 64, false);
+        assertFalse(universe.get(63, 64));
+        assertEquals(2, universe.getChunkCount());
+        universe.clear();
+        assertNull(universe.bounds());
+        assertEquals(0, universe.getChunkCount());
+
+        boolean[][] cells = new boolean[70][130];
+        for (int y = 0; y < 70; y++) {
+            for (int x = 0; x < 130; x++) cells[y][x] = (x * 7 + y * 13) % 5 == 0;
+        }
+        GridStore grid = HeapGridStore.FACTORY.create(70, 130);
+        ReferenceLife.write(cells, grid);
+        universe.load(grid);
+        assertEquals(ReferenceLife.count(cells), universe.getPopulation());
+        GridStore out = HeapGridStore.FACTORY.create(70, 130);
+        universe.store(out, 0, 0);
+        assertArrayEquals(cells, ReferenceLife.read(out));
+    }
+
+    private static SparseUniverse universe(Set<Long> cells, LifeRule rule, StepTeam team) {
+        SparseUniverse universe = new SparseUniverse(rule, team);
+        for (long c : cells) universe.set(ReferenceLife.x(c), ReferenceLife.y(c), true);
+        return universe;
+    }
+
+    private static void assertSame(Set<Long> cells, SparseUniverse universe, String where) {
+        assertEquals(cells.size(), universe.getPopulation(), where);
+        for (long c : cells) {
+            assertTrue(universe.get(ReferenceLife.x(c), ReferenceLife.y(c)), where);
+        }
+        long[] box = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+        for (long c : cells) {
+            box[0] = Math.min(box[0], ReferenceLife.x(c));
+            box[1] = Math.min(box[1], ReferenceLife.y(c));
+            box[2] = Math.max(box[2], ReferenceLife.x(c));
+            box[3] = Math.max(box[3], ReferenceLife.y(c));
+        }
+        assertArrayEquals(cells.isEmpty() ? null : box, universe.bounds(), where);
+    }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+/** Every unit run exactly once, and a failing unit thrown only once the whole team is done. */
+class StepTeamTest {
+
+    @Test
+    void everyUnitRunsOncePerRun() throws InterruptedException {
+        for (int size : new int[] {1, 2, 5}) {
+            try (StepTeam team = new StepTeam(size, "test")) {
+                for (int units : new int[] {0, 1, 3, 64, 1000}) {
+                    AtomicIntegerArray runs = new AtomicIntegerArray(units);
+                    for (int r = 0; r < 50; r++) {
+                        team.run(units, (worker, unit) -> runs.incrementAndGet(unit));
+                    }
+                    for (int u = 0; u < units; u++) assertEquals(50, runs.get(u), size + " workers, unit " + u);
+                }
+            }
+        }
+    }
+
+    @Test
+    void failuresAreThrownAfterEveryWorkerIsDone() throws InterruptedException {
+        try (StepTeam team = new StepTeam(4, "test")) {
+            // Thrown on the caller's own band and on a helper's
+            for (int bad : new int[] {0, 99}) {
+                AtomicInteger done = new AtomicInteger();
+                assertThrows(IllegalStateException.class, () -> team.run(100, (worker, unit) -> {
+                    if (unit == bad) throw new IllegalStateException("unit " + unit);
+                    done.incrementAndGet();
+                }));
+                assertEquals(99, done.get(), "the rest of the run still finished");
+
+                // The team is still usable and no straggler runs into the next job
+                AtomicInteger next = new AtomicInteger();
+                team.run(100, (worker, unit) -> next.incrementAndGet());
+                assertEquals(100, next.get());
+                assertEquals(99, done.get());
+            }
+        }
+    }
+
+    @Test
+    void closedTeamRefusesWork() {
+        StepTeam team = new StepTeam(3, "test");
+        team.close();
+        assertThrows(IllegalStateException.class, () -> team.run(10, (worker, unit) -> { }));
+    }
+}